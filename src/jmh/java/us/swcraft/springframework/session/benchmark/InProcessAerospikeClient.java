@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.ScanCallback;
+import com.aerospike.client.policy.GenerationPolicy;
+import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.client.policy.WritePolicy;
+
+/**
+ * In-process stand-in of Aerospike client with configurable latency of every
+ * store operation. It keeps records in memory and supports operations used by
+ * session store: exists, get, put (with generation check and create only
+ * mode), touch, delete and scan. Secondary index queries are not supported -
+ * expired sessions are never found.
+ */
+public final class InProcessAerospikeClient implements InvocationHandler {
+
+    private final ConcurrentMap<Key, Record> records = new ConcurrentHashMap<>();
+
+    private final long latencyNanos;
+
+    private InProcessAerospikeClient(final long latencyNanos) {
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * Creates client stand-in.
+     * 
+     * @param latencyMicros
+     *            latency added to every store operation, microseconds
+     * @return new client
+     */
+    public static IAerospikeClient create(final long latencyMicros) {
+        return (IAerospikeClient) Proxy.newProxyInstance(IAerospikeClient.class.getClassLoader(),
+                new Class<?>[] { IAerospikeClient.class },
+                new InProcessAerospikeClient(TimeUnit.MICROSECONDS.toNanos(latencyMicros)));
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        switch (method.getName()) {
+        case "isConnected":
+            return true;
+        case "close":
+            records.clear();
+            return null;
+        case "createIndex":
+            // records are scanned, there is no index to build
+            throw new AerospikeException(ResultCode.INDEX_ALREADY_EXISTS);
+        case "exists":
+            pause();
+            return records.containsKey(args[1]);
+        case "get":
+            pause();
+            return get((Key) args[1], args.length > 2 ? (String[]) args[2] : null);
+        case "put":
+            pause();
+            put((WritePolicy) args[0], (Key) args[1], (Bin[]) args[2]);
+            return null;
+        case "touch":
+            pause();
+            touch((WritePolicy) args[0], (Key) args[1]);
+            return null;
+        case "delete":
+            pause();
+            return records.remove(args[1]) != null;
+        case "scanAll":
+            scan((ScanCallback) args[3]);
+            return null;
+        case "query":
+            throw new AerospikeException(ResultCode.INDEX_NOTFOUND, "Queries are not supported");
+        case "hashCode":
+            return System.identityHashCode(proxy);
+        case "equals":
+            return proxy == args[0];
+        case "toString":
+            return "InProcessAerospikeClient[" + records.size() + " records]";
+        default:
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private void pause() {
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+
+    private Record get(final Key key, final String[] binNames) {
+        final Record record = records.get(key);
+        if (record == null || binNames == null || binNames.length == 0) {
+            return record;
+        }
+        final Map<String, Object> bins = new HashMap<>();
+        for (String binName : binNames) {
+            bins.put(binName, record.getValue(binName));
+        }
+        return new Record(bins, record.generation, record.expiration);
+    }
+
+    private void put(final WritePolicy policy, final Key key, final Bin[] bins) {
+        records.compute(key, (k, current) -> {
+            if (current != null && policy.recordExistsAction == RecordExistsAction.CREATE_ONLY) {
+                throw new AerospikeException(ResultCode.KEY_EXISTS_ERROR);
+            }
+            if (policy.generationPolicy == GenerationPolicy.EXPECT_GEN_EQUAL
+                    && (current == null || current.generation != policy.generation)) {
+                throw new AerospikeException(ResultCode.GENERATION_ERROR);
+            }
+            final Map<String, Object> values = current == null
+                    || policy.recordExistsAction == RecordExistsAction.REPLACE ? new HashMap<>()
+                            : new HashMap<>(current.bins);
+            for (Bin bin : bins) {
+                final Object value = bin.value.getObject();
+                if (value == null) {
+                    values.remove(bin.name);
+                } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                    // server returns integer bins as long
+                    values.put(bin.name, ((Number) value).longValue());
+                } else {
+                    values.put(bin.name, value);
+                }
+            }
+            return new Record(values, current == null ? 1 : current.generation + 1, policy.expiration);
+        });
+    }
+
+    private void touch(final WritePolicy policy, final Key key) {
+        if (records.computeIfPresent(key,
+                (k, current) -> new Record(current.bins, current.generation + 1, policy.expiration)) == null) {
+            throw new AerospikeException(ResultCode.KEY_NOT_FOUND_ERROR);
+        }
+    }
+
+    private void scan(final ScanCallback callback) {
+        for (Map.Entry<Key, Record> entry : records.entrySet()) {
+            callback.scanCallback(entry.getKey(), entry.getValue());
+        }
+    }
+
+}
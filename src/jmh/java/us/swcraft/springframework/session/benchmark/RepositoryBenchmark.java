@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+import com.aerospike.client.IAerospikeClient;
+
+import us.swcraft.springframework.session.aerospike.AerospikeStoreSessionRepository;
+import us.swcraft.springframework.session.aerospike.AerospikeStoreSessionRepository.AerospikeSession;
+import us.swcraft.springframework.session.aerospike.config.annotation.web.http.EnableAerospikeHttpSession;
+import us.swcraft.springframework.session.store.StoreSerializationType;
+
+/**
+ * End-to-end session repository benchmark. Session configuration is the same
+ * as in application, but Aerospike is replaced by in-process client with
+ * configurable latency. Sessions are saved asynchronously, so save latency
+ * includes store latency only when the save executor is saturated.
+ * <p>
+ * Request mix is driven by read ratio. Same session contention is measured
+ * with a single session shared by all benchmark threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepositoryBenchmark {
+
+    /**
+     * Share of read-only requests, the rest change and save the session.
+     */
+    @Param({ "0.9", "0.5" })
+    public double readRatio;
+
+    @Param({ SessionPayloads.SECURITY_CONTEXT, SessionPayloads.SHOPPING_CART, SessionPayloads.LARGE_LIST })
+    public String shape;
+
+    /**
+     * Number of sessions requests are spread over. A single session means
+     * all threads contend on the same record.
+     */
+    @Param({ "1", "1000" })
+    public int sessions;
+
+    /**
+     * Latency of every store operation, microseconds.
+     */
+    @Param({ "0", "250" })
+    public long latencyMicros;
+
+    private AnnotationConfigApplicationContext context;
+
+    private AerospikeStoreSessionRepository repository;
+
+    private List<String> sessionIds;
+
+    private String readAttributeName;
+
+    @Configuration
+    @EnableAerospikeHttpSession(serializationType = StoreSerializationType.KRYO)
+    static class SessionConfiguration {
+    }
+
+    @Setup
+    public void setup() throws InterruptedException {
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(IAerospikeClient.class, () -> InProcessAerospikeClient.create(latencyMicros));
+        context.register(SessionConfiguration.class);
+        context.refresh();
+        repository = context.getBean(AerospikeStoreSessionRepository.class);
+
+        final Map<String, Object> attributes = SessionPayloads.create(shape);
+        readAttributeName = attributes.keySet().iterator().next();
+        sessionIds = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            final AerospikeSession session = repository.createSession();
+            for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+                session.setAttribute(attribute.getKey(), attribute.getValue());
+            }
+            repository.save(session);
+            sessionIds.add(session.getId());
+        }
+        // saves are asynchronous - wait for the last one
+        final String lastId = sessionIds.get(sessions - 1);
+        while (repository.getSession(lastId) == null) {
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Loads the session and either reads or changes and saves it.
+     */
+    @Benchmark
+    public Object request() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final AerospikeSession session = repository.getSession(sessionIds.get(random.nextInt(sessions)));
+        if (session == null) {
+            return null;
+        }
+        if (random.nextDouble() < readRatio) {
+            return session.getAttribute(readAttributeName);
+        }
+        session.setAttribute("lastRequest", random.nextLong());
+        repository.save(session);
+        return session;
+    }
+
+    /**
+     * Creates, saves and deletes a new session.
+     */
+    @Benchmark
+    public String createAndDelete() {
+        final AerospikeSession session = repository.createSession();
+        session.setAttribute("lastRequest", ThreadLocalRandom.current().nextLong());
+        repository.save(session);
+        repository.delete(session.getId());
+        return session.getId();
+    }
+
+}
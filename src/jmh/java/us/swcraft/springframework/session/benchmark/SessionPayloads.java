@@ -0,0 +1,201 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.benchmark;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Realistic session attribute shapes used by benchmarks. Payloads are
+ * generated with fixed seed, so results are comparable between runs and
+ * releases.
+ */
+public final class SessionPayloads {
+
+    /**
+     * Security context with principal, authorities and request details.
+     */
+    public static final String SECURITY_CONTEXT = "SECURITY_CONTEXT";
+
+    /**
+     * Shopping cart with line items and recently viewed products.
+     */
+    public static final String SHOPPING_CART = "SHOPPING_CART";
+
+    /**
+     * Flash maps with redirect messages.
+     */
+    public static final String FLASH_MAP = "FLASH_MAP";
+
+    /**
+     * Large lists of search results and queries.
+     */
+    public static final String LARGE_LIST = "LARGE_LIST";
+
+    private static final long SEED = 20150101L;
+
+    private SessionPayloads() {
+    }
+
+    /**
+     * Creates session attributes of given shape.
+     * 
+     * @param shape
+     *            one of payload shape names
+     * @return new attributes map
+     */
+    public static HashMap<String, Object> create(final String shape) {
+        final Random random = new Random(SEED);
+        final HashMap<String, Object> attributes = new HashMap<>();
+        switch (shape) {
+        case SECURITY_CONTEXT:
+            attributes.put("SPRING_SECURITY_CONTEXT", securityContext(random));
+            attributes.put("locale", Locale.CANADA_FRENCH);
+            attributes.put("csrfToken", UUID.nameUUIDFromBytes(new byte[] { 1 }).toString());
+            break;
+        case SHOPPING_CART:
+            attributes.put("cart", cart(random));
+            attributes.put("lastViewed", strings(random, "product-", 20));
+            attributes.put("currency", "CAD");
+            break;
+        case FLASH_MAP:
+            final ArrayList<FlashMap> flashMaps = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                flashMaps.add(flashMap(random, i));
+            }
+            attributes.put("org.springframework.web.servlet.support.SessionFlashMapManager.FLASH_MAPS", flashMaps);
+            break;
+        case LARGE_LIST:
+            final ArrayList<Long> results = new ArrayList<>();
+            for (int i = 0; i < 10000; i++) {
+                results.add(random.nextLong());
+            }
+            attributes.put("searchResults", results);
+            attributes.put("recentQueries", strings(random, "query ", 1000));
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown payload shape " + shape);
+        }
+        return attributes;
+    }
+
+    private static SecurityContext securityContext(final Random random) {
+        final UserPrincipal principal = new UserPrincipal();
+        principal.username = "user" + random.nextInt(100000);
+        principal.email = principal.username + "@example.com";
+        principal.accountId = new UUID(random.nextLong(), random.nextLong());
+        principal.enabled = true;
+
+        final Authentication authentication = new Authentication();
+        authentication.principal = principal;
+        authentication.authorities = strings(random, "ROLE_", 12);
+        authentication.remoteAddress = "10.0." + random.nextInt(256) + "." + random.nextInt(256);
+        authentication.authenticated = true;
+
+        final SecurityContext context = new SecurityContext();
+        context.authentication = authentication;
+        return context;
+    }
+
+    private static Cart cart(final Random random) {
+        final Cart cart = new Cart();
+        cart.id = new UUID(random.nextLong(), random.nextLong());
+        cart.created = new Date(1500000000000L);
+        cart.items = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            final CartItem item = new CartItem();
+            item.sku = "SKU-" + random.nextInt(1000000);
+            item.name = "Product " + i;
+            item.quantity = 1 + random.nextInt(5);
+            item.unitPrice = BigDecimal.valueOf(random.nextInt(100000), 2);
+            item.options = new HashMap<>();
+            item.options.put("color", "blue");
+            item.options.put("size", "M");
+            cart.items.add(item);
+        }
+        return cart;
+    }
+
+    private static FlashMap flashMap(final Random random, final int index) {
+        final FlashMap flashMap = new FlashMap();
+        flashMap.targetRequestPath = "/orders/" + random.nextInt(100000);
+        flashMap.expirationTime = 1500000000000L + index;
+        flashMap.put("message", "Order " + index + " has been placed");
+        flashMap.put("status", "success");
+        flashMap.put("errors", strings(random, "error ", 5));
+        return flashMap;
+    }
+
+    private static ArrayList<String> strings(final Random random, final String prefix, final int count) {
+        final ArrayList<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(prefix + Integer.toHexString(random.nextInt()));
+        }
+        return strings;
+    }
+
+    public static class SecurityContext implements Serializable {
+        private static final long serialVersionUID = 1L;
+        Authentication authentication;
+    }
+
+    public static class Authentication implements Serializable {
+        private static final long serialVersionUID = 1L;
+        UserPrincipal principal;
+        List<String> authorities;
+        String remoteAddress;
+        boolean authenticated;
+    }
+
+    public static class UserPrincipal implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String username;
+        String email;
+        UUID accountId;
+        boolean enabled;
+    }
+
+    public static class Cart implements Serializable {
+        private static final long serialVersionUID = 1L;
+        UUID id;
+        Date created;
+        List<CartItem> items;
+    }
+
+    public static class CartItem implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String sku;
+        String name;
+        int quantity;
+        BigDecimal unitPrice;
+        Map<String, String> options;
+    }
+
+    public static class FlashMap extends HashMap<String, Object> {
+        private static final long serialVersionUID = 1L;
+        String targetRequestPath;
+        long expirationTime;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.benchmark;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import us.swcraft.springframework.session.store.StoreCompression;
+import us.swcraft.springframework.session.store.StoreSerializationType;
+import us.swcraft.springframework.session.store.StoreSerializer;
+import us.swcraft.springframework.session.store.StoreSerializers;
+
+/**
+ * Serialization and deserialization of whole session attributes map by every
+ * store serializer and compression. The serializer is shared by benchmark
+ * threads like it is shared by requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StoreSerializerBenchmark {
+
+    @Param({ "KRYO", "FST", "SMILE" })
+    public String serializationType;
+
+    @Param({ "NONE", "SNAPPY" })
+    public String compression;
+
+    @Param({ SessionPayloads.SECURITY_CONTEXT, SessionPayloads.SHOPPING_CART, SessionPayloads.FLASH_MAP,
+            SessionPayloads.LARGE_LIST })
+    public String shape;
+
+    private StoreSerializer<Serializable> serializer;
+
+    private Serializable payload;
+
+    private byte[] serialized;
+
+    @Setup
+    public void setup() {
+        serializer = StoreSerializers.attributeSerializer(StoreSerializationType.valueOf(serializationType),
+                StoreCompression.valueOf(compression), getClass().getClassLoader());
+        payload = SessionPayloads.create(shape);
+        serialized = serializer.serialize(payload);
+    }
+
+    @TearDown
+    public void tearDown() {
+        serializer.close();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(payload);
+    }
+
+    @Benchmark
+    public Serializable deserialize() {
+        return serializer.deserialize(serialized, Serializable.class);
+    }
+
+}
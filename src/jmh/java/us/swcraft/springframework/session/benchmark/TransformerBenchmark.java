@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import us.swcraft.springframework.session.model.MarshalledAttribute;
+import us.swcraft.springframework.session.store.SessionAttributesTransformer;
+import us.swcraft.springframework.session.store.StoreCompression;
+import us.swcraft.springframework.session.store.StoreSerializationType;
+
+/**
+ * Full session attributes marshalling and unmarshalling as done on every
+ * session save and load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TransformerBenchmark {
+
+    @Param({ "KRYO", "FST", "SMILE" })
+    public String serializationType;
+
+    @Param({ "NONE", "SNAPPY" })
+    public String compression;
+
+    @Param({ SessionPayloads.SECURITY_CONTEXT, SessionPayloads.SHOPPING_CART, SessionPayloads.FLASH_MAP,
+            SessionPayloads.LARGE_LIST })
+    public String shape;
+
+    private TransformerFixture fixture;
+
+    private SessionAttributesTransformer transformer;
+
+    private Map<String, Object> attributes;
+
+    private byte[] marshalled;
+
+    @Setup
+    public void setup() {
+        fixture = new TransformerFixture(StoreSerializationType.valueOf(serializationType),
+                StoreCompression.valueOf(compression));
+        transformer = fixture.getTransformer();
+        attributes = SessionPayloads.create(shape);
+        marshalled = transformer.marshall(attributes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public byte[] marshall() {
+        return transformer.marshall(attributes);
+    }
+
+    @Benchmark
+    public Map<String, Object> unmarshal() {
+        return transformer.unmarshal(marshalled);
+    }
+
+    /**
+     * Unmarshalling as done by session repository - stored form of attributes
+     * is collected too.
+     */
+    @Benchmark
+    public Map<String, Object> unmarshalWithStoredForm() {
+        return transformer.unmarshal(marshalled, new HashMap<String, MarshalledAttribute>());
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.benchmark;
+
+import java.io.Closeable;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import us.swcraft.springframework.session.aerospike.config.annotation.web.http.AerospikeHttpSessionConfiguration;
+import us.swcraft.springframework.session.store.SessionAttributesTransformer;
+import us.swcraft.springframework.session.store.StoreCompression;
+import us.swcraft.springframework.session.store.StoreSerializationType;
+
+/**
+ * Application context with the session configuration and in-memory store, so
+ * session attributes transformer is wired the same way as in application.
+ * Serialization type and compression are benchmark parameters and are set on
+ * the configuration directly instead of through the annotation.
+ */
+public final class TransformerFixture implements Closeable {
+
+    private final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+
+    public TransformerFixture(final StoreSerializationType serializationType, final StoreCompression compression) {
+        context.registerBean(AerospikeHttpSessionConfiguration.class,
+                definition -> definition.getPropertyValues()
+                        .add("serializationType", serializationType)
+                        .add("compression", compression)
+                        .add("inMemoryStore", true));
+        context.refresh();
+    }
+
+    public SessionAttributesTransformer getTransformer() {
+        return context.getBean(SessionAttributesTransformer.class);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+}
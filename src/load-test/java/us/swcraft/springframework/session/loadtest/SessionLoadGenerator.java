@@ -0,0 +1,294 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.loadtest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Host;
+import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.policy.ClientPolicy;
+
+import us.swcraft.springframework.session.aerospike.AerospikeStoreSessionRepository;
+import us.swcraft.springframework.session.aerospike.AerospikeStoreSessionRepository.AerospikeSession;
+import us.swcraft.springframework.session.aerospike.SessionPayloadCapture;
+import us.swcraft.springframework.session.aerospike.config.annotation.web.http.EnableAerospikeHttpSession;
+import us.swcraft.springframework.session.store.SessionAttributesTransformer;
+
+/**
+ * Drives session repository with configured {@link TrafficModel} and reports
+ * latency histograms and bytes per operation. Requests are issued at fixed
+ * rate and latency is measured from the intended request start, so store
+ * stalls are not hidden by coordinated omission.
+ * <p>
+ * Sessions are filled with payloads replayed from a corpus captured by
+ * {@link SessionPayloadCapture} or with a generated payload. Like
+ * {@link org.springframework.session.web.http.SessionRepositoryFilter},
+ * every request saves the session.
+ * <p>
+ * Run with <code>./gradlew loadTest -Dloadtest.rate=1000 ...</code>.
+ * Histograms are written to <code>loadtest.reportDir</code> if set.
+ */
+public class SessionLoadGenerator {
+
+    /**
+     * Request types.
+     */
+    enum Operation {
+        READ, WRITE, LOGIN, LOGOUT, BOT
+    }
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final TrafficModel model;
+
+    private final AerospikeStoreSessionRepository repository;
+
+    private final List<Map<String, Object>> payloads;
+
+    private final AtomicReferenceArray<String> sessionIds;
+
+    private final AtomicIntegerArray remainingRequests;
+
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+
+    SessionLoadGenerator(final TrafficModel model, final AerospikeStoreSessionRepository repository,
+            final List<Map<String, Object>> payloads) {
+        this.model = model;
+        this.repository = repository;
+        this.payloads = payloads;
+        this.sessionIds = new AtomicReferenceArray<>(model.getActiveSessions());
+        this.remainingRequests = new AtomicIntegerArray(model.getActiveSessions());
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3));
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final TrafficModel model = TrafficModel.from(System.getProperties());
+        System.out.println("Traffic model: " + model);
+
+        final StoreTrafficCounter counter = new StoreTrafficCounter();
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.getBeanFactory().addBeanPostProcessor(counter);
+            if (model.getAerospikeHost() == null) {
+                context.register(InMemoryStoreConfiguration.class);
+            } else {
+                context.registerBean(IAerospikeClient.class,
+                        () -> new AerospikeClient(new ClientPolicy(),
+                                new Host(model.getAerospikeHost(), model.getAerospikePort())),
+                        definition -> definition.setDestroyMethodName("close"));
+                context.register(AerospikeStoreConfiguration.class);
+            }
+            context.refresh();
+
+            final List<Map<String, Object>> payloads = loadPayloads(model,
+                    context.getBean(SessionAttributesTransformer.class));
+            final SessionLoadGenerator generator = new SessionLoadGenerator(model,
+                    context.getBean(AerospikeStoreSessionRepository.class), payloads);
+            final long requests = generator.run();
+            generator.report(requests, counter, System.getProperty("loadtest.reportDir"));
+        }
+    }
+
+    /**
+     * Issues requests at fixed rate for configured duration.
+     * 
+     * @return number of issued requests
+     * @throws InterruptedException
+     */
+    long run() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(model.getThreads());
+        final long intervalNanos = TimeUnit.SECONDS.toNanos(1) / model.getRate();
+        final long total = (long) model.getRate() * model.getDurationSeconds();
+        final long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            final long intendedStart = start + i * intervalNanos;
+            final long delay = intendedStart - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            executor.execute(() -> request(intendedStart));
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return total;
+    }
+
+    private void request(final long intendedStart) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final Operation operation;
+        if (random.nextDouble() < model.getBotRatio()) {
+            // no cookie - a new session on every request
+            final AerospikeSession session = repository.createSession();
+            session.setAttribute("visits", 1);
+            repository.save(session);
+            operation = Operation.BOT;
+        } else {
+            final int slot = random.nextInt(sessionIds.length());
+            final String sessionId = sessionIds.get(slot);
+            final AerospikeSession session = sessionId == null ? null : repository.getSession(sessionId);
+            if (session == null) {
+                login(slot);
+                operation = Operation.LOGIN;
+            } else if (remainingRequests.decrementAndGet(slot) < 0) {
+                repository.delete(sessionId);
+                sessionIds.compareAndSet(slot, sessionId, null);
+                operation = Operation.LOGOUT;
+            } else if (random.nextInt(model.getReadsPerWrite() + 1) == 0) {
+                mutate(session, random);
+                repository.save(session);
+                operation = Operation.WRITE;
+            } else {
+                for (String name : session.getAttributeNames()) {
+                    session.getAttribute(name);
+                }
+                repository.save(session);
+                operation = Operation.READ;
+            }
+        }
+        final long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart);
+        histograms.get(operation).recordValue(Math.min(latencyMicros, HIGHEST_LATENCY_MICROS));
+    }
+
+    private void login(final int slot) {
+        final AerospikeSession session = repository.createSession();
+        final Map<String, Object> payload = payloads.get(ThreadLocalRandom.current().nextInt(payloads.size()));
+        for (Map.Entry<String, Object> attribute : payload.entrySet()) {
+            session.setAttribute(attribute.getKey(), attribute.getValue());
+        }
+        repository.save(session);
+        remainingRequests.set(slot, model.getSessionLifetime());
+        sessionIds.set(slot, session.getId());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mutate(final AerospikeSession session, final ThreadLocalRandom random) {
+        switch (model.getMutation()) {
+        case COUNTER:
+            final Object counter = session.getAttribute("counter");
+            session.setAttribute("counter", counter instanceof Integer ? (Integer) counter + 1 : 1);
+            break;
+        case APPEND:
+            final Object list = session.getAttribute("history");
+            // never change value which may be serialized by pending save
+            final ArrayList<String> history = list instanceof ArrayList ? new ArrayList<>((ArrayList<String>) list)
+                    : new ArrayList<>();
+            history.add("/page/" + random.nextInt(10000));
+            session.setAttribute("history", history);
+            break;
+        case REPLACE:
+            final List<String> names = new ArrayList<>(session.getAttributeNames());
+            if (!names.isEmpty()) {
+                final String name = names.get(random.nextInt(names.size()));
+                session.setAttribute(name, session.getAttribute(name));
+            }
+            break;
+        default:
+            throw new IllegalStateException("Unknown mutation " + model.getMutation());
+        }
+    }
+
+    void report(final long requests, final StoreTrafficCounter counter, final String reportDir)
+            throws IOException {
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %10s%n", "op", "count", "p50 us", "p90 us", "p99 us",
+                "p99.9 us", "max us");
+        for (Map.Entry<Operation, Histogram> entry : histograms.entrySet()) {
+            final Histogram histogram = entry.getValue();
+            System.out.printf("%-8s %10d %10d %10d %10d %10d %10d%n", entry.getKey(), histogram.getTotalCount(),
+                    histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+                    histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+                    histogram.getMaxValue());
+            if (reportDir != null) {
+                final File file = new File(reportDir, entry.getKey().name().toLowerCase() + ".hgrm");
+                try (PrintStream out = new PrintStream(new FileOutputStream(file))) {
+                    histogram.outputPercentileDistribution(out, 1.0);
+                }
+            }
+        }
+        System.out.printf("store reads: %d, %d bytes/read, %d bytes/request%n", counter.getReads(),
+                perOperation(counter.getBytesRead(), counter.getReads()),
+                perOperation(counter.getBytesRead(), requests));
+        System.out.printf("store writes: %d, %d bytes/write, %d bytes/request%n", counter.getWrites(),
+                perOperation(counter.getBytesWritten(), counter.getWrites()),
+                perOperation(counter.getBytesWritten(), requests));
+    }
+
+    private static long perOperation(final long bytes, final long operations) {
+        return operations == 0 ? 0 : bytes / operations;
+    }
+
+    /**
+     * Reads captured payloads or generates a single payload.
+     */
+    private static List<Map<String, Object>> loadPayloads(final TrafficModel model,
+            final SessionAttributesTransformer transformer) throws IOException {
+        final List<Map<String, Object>> payloads = new ArrayList<>();
+        if (model.getCorpus() != null) {
+            for (byte[] payload : SessionPayloadCapture.readCorpus(new File(model.getCorpus()))) {
+                final Map<String, Object> attributes = transformer.unmarshal(payload);
+                if (!attributes.isEmpty()) {
+                    payloads.add(attributes);
+                }
+            }
+            System.out.println("Replay " + payloads.size() + " captured payloads");
+        }
+        if (payloads.isEmpty()) {
+            final Map<String, Object> attributes = new HashMap<>();
+            attributes.put("user", "user@example.com");
+            attributes.put("roles", new ArrayList<>(Arrays.asList("ROLE_USER", "ROLE_BUYER")));
+            final ArrayList<String> cart = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                cart.add("SKU-" + i);
+            }
+            attributes.put("cart", cart);
+            payloads.add(attributes);
+        }
+        return payloads;
+    }
+
+    @Configuration
+    @EnableAerospikeHttpSession(inMemoryStore = true)
+    static class InMemoryStoreConfiguration {
+    }
+
+    @Configuration
+    @EnableAerospikeHttpSession
+    static class AerospikeStoreConfiguration {
+    }
+
+}
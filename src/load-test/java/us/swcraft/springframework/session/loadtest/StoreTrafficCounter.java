@@ -0,0 +1,114 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.loadtest;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+
+/**
+ * Wraps session store operations bean and counts store operations and bytes
+ * read and written.
+ */
+public class StoreTrafficCounter implements BeanPostProcessor {
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    @Override
+    public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+        if (!(bean instanceof AerospikeOperations)) {
+            return bean;
+        }
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { AerospikeOperations.class },
+                (proxy, method, args) -> {
+                    final Object result;
+                    try {
+                        result = method.invoke(bean, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Record) {
+                        reads.increment();
+                        bytesRead.add(size((Record) result));
+                    } else if (method.getName().equals("fetch")) {
+                        reads.increment();
+                    } else if (method.getName().equals("persist") || method.getName().equals("compareAndSet")) {
+                        writes.increment();
+                        bytesWritten.add(size(args[args.length > 3 ? 2 : 1]));
+                    }
+                    return result;
+                });
+    }
+
+    private static long size(final Record record) {
+        long size = 0;
+        for (Object value : record.bins.values()) {
+            size += size(value);
+        }
+        return size;
+    }
+
+    private static long size(final Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof String) {
+            return ((String) value).length();
+        }
+        if (value instanceof Number) {
+            return 8;
+        }
+        if (value instanceof Bin) {
+            return ((Bin) value).name.length() + size(((Bin) value).value.getObject());
+        }
+        if (value instanceof Collection) {
+            long size = 0;
+            for (Object element : (Collection<?>) value) {
+                size += size(element);
+            }
+            return size;
+        }
+        return 0;
+    }
+
+    public long getReads() {
+        return reads.sum();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.loadtest;
+
+import java.util.Properties;
+
+/**
+ * Session traffic model. Every property can be set as
+ * <code>loadtest.&lt;name&gt;</code> system property.
+ */
+public class TrafficModel {
+
+    /**
+     * How a writing request changes session attributes.
+     */
+    public enum MutationPattern {
+        /**
+         * Increments a small counter attribute.
+         */
+        COUNTER,
+        /**
+         * Appends an item to a growing list attribute.
+         */
+        APPEND,
+        /**
+         * Replaces a randomly chosen attribute with a new value of the same
+         * size.
+         */
+        REPLACE
+    }
+
+    /**
+     * Requests per second.
+     */
+    private int rate = 500;
+
+    private int durationSeconds = 60;
+
+    /**
+     * Threads serving requests.
+     */
+    private int threads = 16;
+
+    /**
+     * Number of read-only requests per writing request.
+     */
+    private int readsPerWrite = 4;
+
+    /**
+     * Number of requests a session lives for before logout.
+     */
+    private int sessionLifetime = 20;
+
+    /**
+     * Number of concurrently active users.
+     */
+    private int activeSessions = 1000;
+
+    /**
+     * Share of requests without session cookie - every such request creates
+     * a new session.
+     */
+    private double botRatio = 0.05;
+
+    private MutationPattern mutation = MutationPattern.COUNTER;
+
+    /**
+     * Captured payloads to replay, <code>null</code> - use generated payload.
+     */
+    private String corpus;
+
+    /**
+     * Aerospike host, <code>null</code> - in-memory store.
+     */
+    private String aerospikeHost;
+
+    private int aerospikePort = 3000;
+
+    /**
+     * Creates model from <code>loadtest.*</code> properties.
+     * 
+     * @param properties
+     * @return traffic model
+     */
+    public static TrafficModel from(final Properties properties) {
+        final TrafficModel model = new TrafficModel();
+        model.rate = intValue(properties, "rate", model.rate);
+        model.durationSeconds = intValue(properties, "durationSeconds", model.durationSeconds);
+        model.threads = intValue(properties, "threads", model.threads);
+        model.readsPerWrite = intValue(properties, "readsPerWrite", model.readsPerWrite);
+        model.sessionLifetime = intValue(properties, "sessionLifetime", model.sessionLifetime);
+        model.activeSessions = intValue(properties, "activeSessions", model.activeSessions);
+        model.botRatio = Double.parseDouble(properties.getProperty("loadtest.botRatio", String.valueOf(model.botRatio)));
+        model.mutation = MutationPattern.valueOf(properties.getProperty("loadtest.mutation", model.mutation.name()));
+        model.corpus = properties.getProperty("loadtest.corpus");
+        model.aerospikeHost = properties.getProperty("loadtest.aerospikeHost");
+        model.aerospikePort = intValue(properties, "aerospikePort", model.aerospikePort);
+        return model;
+    }
+
+    private static int intValue(final Properties properties, final String name, final int defaultValue) {
+        return Integer.parseInt(properties.getProperty("loadtest." + name, String.valueOf(defaultValue)));
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getReadsPerWrite() {
+        return readsPerWrite;
+    }
+
+    public int getSessionLifetime() {
+        return sessionLifetime;
+    }
+
+    public int getActiveSessions() {
+        return activeSessions;
+    }
+
+    public double getBotRatio() {
+        return botRatio;
+    }
+
+    public MutationPattern getMutation() {
+        return mutation;
+    }
+
+    public String getCorpus() {
+        return corpus;
+    }
+
+    public String getAerospikeHost() {
+        return aerospikeHost;
+    }
+
+    public int getAerospikePort() {
+        return aerospikePort;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("rate=").append(rate).append("/s, duration=").append(durationSeconds)
+                .append("s, threads=").append(threads).append(", readsPerWrite=").append(readsPerWrite)
+                .append(", sessionLifetime=").append(sessionLifetime).append(", activeSessions=")
+                .append(activeSessions).append(", botRatio=").append(botRatio).append(", mutation=")
+                .append(mutation).append(", corpus=").append(corpus).toString();
+    }
+
+}
@@ -16,30 +16,51 @@
 
 package us.swcraft.springframework.session.aerospike;
 
+import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.CREATION_TIME_BIN;
 import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.EXPIRED_BIN;
+import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.LAST_ACCESSED_BIN;
+import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.MAX_INACTIVE_BIN;
+import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.SESSION_ATTRIBUTES_BIN;
 import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.SESSION_ID_BIN;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.session.MapSession;
 import org.springframework.session.events.SessionDestroyedEvent;
+import org.springframework.session.events.SessionExpiredEvent;
 import org.springframework.stereotype.Component;
 
+import com.aerospike.client.Record;
+
 import us.swcraft.springframework.session.aerospike.AerospikeStoreSessionRepository.AerospikeSession;
+import us.swcraft.springframework.session.metrics.SessionStoreEvents;
+import us.swcraft.springframework.session.model.StoreMetadata;
+import us.swcraft.springframework.session.store.SessionAttributesTransformer;
 import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
 
 /**
  * A strategy for expiring and deleting {@link AerospikeSession} instances.
+ * Explicitly deleted sessions are announced by {@link SessionDestroyedEvent}
+ * in calling thread. Sessions removed by expired sessions cleanup are
+ * announced by {@link SessionExpiredEvent}s published in batches by
+ * <code>ssa-eventExecutor</code>.
  *
  * @author Vlad Aleksandrov
  */
 
-@Component
+@Component("aerospikeSessionExpirationPolicy")
 public class AerospikeSessionExpirationPolicy {
 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
@@ -50,25 +71,114 @@ public class AerospikeSessionExpirationPolicy {
     @Inject
     private ApplicationEventPublisher eventPublisher;
 
+    @Inject
+    private StoreMetadata storeMetadata;
+
+    @Inject
+    private SessionAttributesTransformer transformer;
+
+    @Inject
+    @Named("ssa-eventExecutor")
+    private Executor eventExecutor;
+
+    private SessionSizeGuard sizeGuard;
+
+    @PostConstruct
+    public void init() {
+        sizeGuard = new SessionSizeGuard(this, storeMetadata, aerospikeOperations, transformer, eventPublisher);
+    }
+
     public void cleanExpiredSessions() {
         log.debug("Expired sessions cleanup");
+        final Object event = SessionStoreEvents.beginSweep();
+        final long start = System.nanoTime();
         final Set<String> expiredSession = aerospikeOperations.fetchRange(SESSION_ID_BIN, EXPIRED_BIN, 0L,
                 System.currentTimeMillis());
+        final long queryNanos = System.nanoTime() - start;
+        final boolean projected = storeMetadata.getExpiredEventAttributes().length > 0;
+        final int batchSize = Math.max(1, storeMetadata.getExpiredEventBatchSize());
+        List<ExpiredSession> batch = new ArrayList<>(Math.min(batchSize, expiredSession.size()));
+        final boolean offloaded = sizeGuard.isOffloadEnabled();
         for (String sessionId : expiredSession) {
-            onDelete(sessionId, false);
+            // expired session is read before deletion only to project it or
+            // to find its offloaded attributes
+            final Record record = projected || offloaded ? aerospikeOperations.fetchUntouched(sessionId) : null;
+            delete(sessionId, record);
+            batch.add(new ExpiredSession(sessionId, projected ? record : null));
+            if (batch.size() == batchSize) {
+                publishExpired(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            publishExpired(batch);
         }
+        SessionStoreEvents.commitSweep(event, expiredSession.size(), queryNanos);
     }
 
     public void onDelete(final String sessionId, final boolean publishEvent) {
         if (sessionId != null) {
-            aerospikeOperations.delete(sessionId);
-            log.trace("Session {} deleted", sessionId);
+            delete(sessionId,
+                    sizeGuard.isOffloadEnabled() ? aerospikeOperations.fetchUntouched(sessionId) : null);
             if (publishEvent) {
                 publishEvent(new SessionDestroyedEvent(this, sessionId));
             }
         }
     }
 
+    /**
+     * Deletes session record and side records of its offloaded attributes.
+     * 
+     * @param sessionId
+     * @param record
+     *            session record read before deletion or <code>null</code>
+     */
+    private void delete(final String sessionId, final Record record) {
+        sizeGuard.deleteOffloaded(sessionId, record);
+        aerospikeOperations.delete(sessionId);
+        log.trace("Session {} deleted", sessionId);
+    }
+
+    private void publishExpired(final List<ExpiredSession> batch) {
+        log.trace("Publish {} expired session events", batch.size());
+        eventExecutor.execute(() -> {
+            for (ExpiredSession expired : batch) {
+                publishEvent(expiredEvent(expired));
+            }
+        });
+    }
+
+    /**
+     * Creates expired session event. If session record has been read before
+     * deletion, the event session carries session metadata and configured
+     * attributes. Offloaded attributes are deleted with the session and are not
+     * projected.
+     */
+    private SessionExpiredEvent expiredEvent(final ExpiredSession expired) {
+        if (expired.record == null) {
+            return new SessionExpiredEvent(this, expired.sessionId);
+        }
+        try {
+            final MapSession session = new MapSession(expired.sessionId);
+            session.setCreationTime(expired.record.getLong(CREATION_TIME_BIN));
+            session.setLastAccessedTime(expired.record.getLong(LAST_ACCESSED_BIN));
+            session.setMaxInactiveIntervalInSeconds(expired.record.getInt(MAX_INACTIVE_BIN));
+            final Map<String, Object> attributes = transformer
+                    .unmarshal((byte[]) expired.record.getValue(SESSION_ATTRIBUTES_BIN));
+            for (String name : storeMetadata.getExpiredEventAttributes()) {
+                final Object value = attributes.get(name);
+                // offloaded attribute is deleted with the session
+                if (value != null && !(value instanceof OffloadedAttribute)) {
+                    session.setAttribute(name, value);
+                }
+            }
+            return new SessionExpiredEvent(this, session);
+        } catch (RuntimeException e) {
+            log.warn("Expired session {} can't be restored for event", expired.sessionId, e);
+            return new SessionExpiredEvent(this, expired.sessionId);
+        }
+    }
+
     private void publishEvent(final ApplicationEvent event) {
         try {
             this.eventPublisher.publishEvent(event);
@@ -77,4 +187,20 @@ public class AerospikeSessionExpirationPolicy {
         }
     }
 
+    /**
+     * Expired session id and its record if it has been read.
+     */
+    private static final class ExpiredSession {
+
+        private final String sessionId;
+
+        private final Record record;
+
+        private ExpiredSession(final String sessionId, final Record record) {
+            this.sessionId = sessionId;
+            this.record = record;
+        }
+
+    }
+
 }
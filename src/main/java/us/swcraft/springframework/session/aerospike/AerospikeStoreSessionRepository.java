@@ -24,6 +24,8 @@ import static us.swcraft.springframework.session.aerospike.PersistentSessionAero
 import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.SESSION_ATTRIBUTES_BIN;
 import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.SESSION_ID_BIN;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -37,6 +39,7 @@ import javax.inject.Named;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.session.ExpiringSession;
 import org.springframework.session.MapSession;
 import org.springframework.session.Session;
@@ -50,10 +53,18 @@ import com.aerospike.client.Bin;
 import com.aerospike.client.Record;
 import com.aerospike.client.query.IndexType;
 
+import us.swcraft.springframework.session.metrics.AttributeSizeAnalytics;
+import us.swcraft.springframework.session.metrics.SessionStoreEvents;
+import us.swcraft.springframework.session.metrics.SessionStoreMetrics;
+import us.swcraft.springframework.session.model.MarshalledAttribute;
 import us.swcraft.springframework.session.model.SessionSnapshot;
 import us.swcraft.springframework.session.model.StoreMetadata;
+import us.swcraft.springframework.session.store.AttributeDictionary;
 import us.swcraft.springframework.session.store.SessionAttributesTransformer;
+import us.swcraft.springframework.session.store.SizeLimitPolicy;
 import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+import us.swcraft.springframework.session.tracing.SessionStoreTracing;
+import us.swcraft.springframework.session.tracing.SessionStoreTracing.TracedSpan;
 
 /**
  * <p>
@@ -88,6 +99,23 @@ public class AerospikeStoreSessionRepository
     @Named("ssa-taskExecutor")
     private Executor taskExecutor;
 
+    @Inject
+    @Named("ssa-storeMetrics")
+    private SessionStoreMetrics metrics;
+
+    @Inject
+    @Named("ssa-storeTracing")
+    private SessionStoreTracing tracing;
+
+    @Inject
+    @Named("ssa-attributeAnalytics")
+    private AttributeSizeAnalytics attributeAnalytics;
+
+    @Inject
+    private ApplicationEventPublisher eventPublisher;
+
+    private SessionSizeGuard sizeGuard;
+
     /**
      * Storage initialization.
      */
@@ -97,21 +125,25 @@ public class AerospikeStoreSessionRepository
         // create index on "expired" bin
         aerospikeOperations.createIndex(EXPIRED_BIN, EXPIRED_INDEX + "." + storeMetadata.getSetname(),
                 IndexType.NUMERIC);
+        sizeGuard = new SessionSizeGuard(this, storeMetadata, aerospikeOperations, transformer, eventPublisher);
     }
 
     public void save(final AerospikeSession session) {
         // Check if session data is a special transient session (transient
         // attribute is true). The transient session is not stored.
-        final Object transientAttr = session.getAttribute("transient");
+        final Object transientAttr = session.attributes.get("transient");
         if (transientAttr != null && Boolean.valueOf(transientAttr.toString())) {
             log.trace("not saved - transient session {}", session.getId());
+            metrics.transientSessionSkipped();
             return;
         }
 
         final SessionSnapshot sessionSnapshot = createSessionSnapshot(session);
         log.debug("Prepare and save {}", sessionSnapshot);
 
-        CompletableFuture.supplyAsync(() -> prepareAndSave(sessionSnapshot), taskExecutor).whenComplete((id, e) -> {
+        // saved by another thread - link save trace to request trace
+        final Object origin = tracing.currentContext();
+        CompletableFuture.supplyAsync(() -> prepareAndSave(sessionSnapshot, origin), taskExecutor).whenComplete((id, e) -> {
             if (e == null) {
                 log.debug("Session {} saved", id);
             } else {
@@ -120,11 +152,26 @@ public class AerospikeStoreSessionRepository
         });
     }
 
-    private String prepareAndSave(final SessionSnapshot sessionSnapshot) {
+    private String prepareAndSave(final SessionSnapshot sessionSnapshot, final Object origin) {
+        try (TracedSpan span = tracing.startLinkedSpan("session.save", origin)) {
+            return prepareAndSave(sessionSnapshot, span);
+        }
+    }
+
+    private String prepareAndSave(final SessionSnapshot sessionSnapshot, final TracedSpan span) {
         final String sessionId = sessionSnapshot.getSessionId();
         final Set<Bin> binsToSave = new HashSet<>();
-
-        if (!aerospikeOperations.hasKey(sessionId)) {
+        final Object event = SessionStoreEvents.beginSave();
+        long storeNanos = 0;
+        long serializationNanos = 0;
+        int savedBytes = 0;
+
+        long start = event != null ? System.nanoTime() : 0;
+        final boolean newSession = !aerospikeOperations.hasKey(sessionId);
+        if (event != null) {
+            storeNanos = System.nanoTime() - start;
+        }
+        if (newSession) {
             log.trace("Save new session {}", sessionId);
             // newly created session - save "created", "max inactive interval"
             // and "id" itself
@@ -142,21 +189,104 @@ public class AerospikeStoreSessionRepository
         }
         if (sessionSnapshot.isUpdated()) {
             log.trace("Session {} attributes: {}", sessionId, sessionSnapshot.getSessionAttrs());
-            final byte[] attrs = transformer.marshall(sessionSnapshot.getSessionAttrs());
-            binsToSave.add(new Bin(SESSION_ATTRIBUTES_BIN, attrs));
+            start = event != null ? System.nanoTime() : 0;
+            final Map<String, Object> marshalledAttrs = marshallChangedAttributes(sessionSnapshot);
+            if (marshalledAttrs != null) {
+                final byte[] attrs = sizeGuard.marshall(sessionId, marshalledAttrs,
+                        sessionSnapshot.getStoredAttrs());
+                binsToSave.add(new Bin(SESSION_ATTRIBUTES_BIN, attrs));
+                savedBytes = attrs.length;
+                span.setAttribute("session.size", attrs.length);
+                span.setAttribute("session.attributes", marshalledAttrs.size());
+            } else {
+                log.trace("Session {} attributes are not changed", sessionId);
+            }
+            if (event != null) {
+                serializationNanos = System.nanoTime() - start;
+            }
         }
+        start = event != null ? System.nanoTime() : 0;
         aerospikeOperations.persist(sessionId, binsToSave);
+        if (event != null) {
+            storeNanos += System.nanoTime() - start;
+            SessionStoreEvents.commitSave(event, sessionId, newSession, savedBytes,
+                    sessionSnapshot.getSessionAttrs().size(), storeNanos, serializationNanos);
+        }
         return sessionId;
     }
 
+    /**
+     * Marshalls attributes which may have been changed and compares them with
+     * stored form. Attributes which were not touched are reused in stored form
+     * as is.
+     *
+     * @param sessionSnapshot
+     * @return all attributes in marshalled form or <code>null</code> if
+     *         nothing has been changed since the session was loaded
+     */
+    private Map<String, Object> marshallChangedAttributes(final SessionSnapshot sessionSnapshot) {
+        final Map<String, Object> sessionAttrs = sessionSnapshot.getSessionAttrs();
+        final Map<String, MarshalledAttribute> storedAttrs = sessionSnapshot.getStoredAttrs();
+        final Map<String, Object> marshalledAttrs = new HashMap<>(sessionAttrs.size());
+        boolean changed = sessionSnapshot.isAttributesRemoved();
+        for (Map.Entry<String, Object> entry : sessionAttrs.entrySet()) {
+            final String name = entry.getKey();
+            final Object value = entry.getValue();
+            if (value instanceof MarshalledAttribute) {
+                marshalledAttrs.put(name, value);
+                continue;
+            }
+            final MarshalledAttribute stored = storedAttrs.get(name);
+            if (stored != null && !sessionSnapshot.isDirty(name)) {
+                // untouched since load - reuse stored bytes
+                marshalledAttrs.put(name, stored);
+                continue;
+            }
+            // marshalled by size check on set
+            final MarshalledAttribute checked = sessionSnapshot.getCheckedAttrs().get(name);
+            final MarshalledAttribute marshalled = checked != null ? checked
+                    : transformer.marshallAttribute(name, value);
+            if (marshalled == null) {
+                // not marshallable any more - it is removed from stored form
+                if (stored != null && !changed) {
+                    log.trace("Session {} attribute '{}' is not stored any more", sessionSnapshot.getSessionId(),
+                            name);
+                    changed = true;
+                }
+                continue;
+            }
+            marshalledAttrs.put(name, marshalled);
+            if (!changed && !marshalled.hasSameContent(stored)) {
+                log.trace("Session {} attribute '{}' changed", sessionSnapshot.getSessionId(), name);
+                changed = true;
+            }
+        }
+        return changed ? marshalledAttrs : null;
+    }
+
     public void cleanupExpiredSessions() {
         this.expirationPolicy.cleanExpiredSessions();
     }
 
     public AerospikeSession getSession(final String id) {
+        if (AttributeDictionary.DICTIONARY_KEY.equals(id)
+                || id.indexOf(PersistentSessionAerospike.OFFLOADED_KEY_SEPARATOR) >= 0) {
+            // reserved record or offloaded attribute, never a session
+            return null;
+        }
+        try (TracedSpan span = tracing.startSpan("session.load")) {
+            return loadSession(id, span);
+        }
+    }
+
+    private AerospikeSession loadSession(final String id, final TracedSpan span) {
+        final Object event = SessionStoreEvents.beginLoad();
+        final long start = event != null ? System.nanoTime() : 0;
         final Record sessionRecord = aerospikeOperations.fetch(id);
+        final long storeNanos = event != null ? System.nanoTime() - start : 0;
         if (sessionRecord == null) {
             log.debug("Session {} not found", id);
+            SessionStoreEvents.commitLoad(event, id, false, 0, 0, storeNanos, 0);
             return null;
         }
         // reconstruct Aerospike session - extract metadata first
@@ -170,52 +300,68 @@ public class AerospikeStoreSessionRepository
         log.debug("Session max inactive interval: {}", loaded.getMaxInactiveIntervalInSeconds());
         loaded.setLastAccessedTime(sessionRecord.getLong(LAST_ACCESSED_BIN));
         log.debug("Session last access time: {}", loaded.getLastAccessedTime());
+        span.setAttribute("aerospike.generation", sessionRecord.generation);
         if (loaded.isExpired()) {
+            SessionStoreEvents.commitLoad(event, id, false, 0, 0, storeNanos, 0);
             return null;
         } else {
             // now extract session attributes as byte array and then convert it
             // back to map
             final byte[] serializedAttributes = (byte[]) sessionRecord.getValue(SESSION_ATTRIBUTES_BIN);
 
-            final Map<String, Object> attributes = transformer.unmarshal(serializedAttributes);
+            final Map<String, MarshalledAttribute> storedAttributes = new HashMap<>();
+            final long unmarshalStart = event != null ? System.nanoTime() : 0;
+            final Map<String, Object> attributes = transformer.unmarshal(serializedAttributes, storedAttributes);
+            sizeGuard.restoreOffloaded(id, attributes);
+            if (serializedAttributes != null) {
+                span.setAttribute("session.size", serializedAttributes.length);
+                span.setAttribute("session.attributes", attributes.size());
+            }
+            if (event != null) {
+                SessionStoreEvents.commitLoad(event, id, true,
+                        serializedAttributes == null ? 0 : serializedAttributes.length, attributes.size(),
+                        storeNanos, System.nanoTime() - unmarshalStart);
+            }
             if (serializedAttributes == null) {
                 final AerospikeSession session = new AerospikeSession();
                 session.setLastAccessedTime(System.currentTimeMillis());
                 return session;
             }
 
-            for (Map.Entry<String, Object> entry : attributes.entrySet()) {
-                final String key = entry.getKey();
-                final Object value = entry.getValue();
-                loaded.setAttribute(key, value);
-            }
-            // restore session
-            final AerospikeSession session = new AerospikeSession(loaded);
+            // restore session - unmarshalled attributes are used as is
+            final AerospikeSession session = new AerospikeSession(loaded,
+                    attributes.isEmpty() ? new HashMap<>() : attributes, storedAttributes);
             session.setLastAccessedTime(System.currentTimeMillis());
+            if (attributeAnalytics.sample()) {
+                attributeAnalytics.recordLoad();
+                session.readsSampled = true;
+            }
             return session;
         }
 
     }
 
     /**
-     * Creates immutable snapshot of session metadata and attributes.
+     * Creates immutable snapshot of session metadata and attributes. Session
+     * attributes are not copied - the snapshot gets read-only view of them and
+     * the session copies its attributes only if it is changed after save.
      *
      * @param aerospikeSession
      * @return immutable session snapshot
      */
     private SessionSnapshot createSessionSnapshot(final AerospikeSession aerospikeSession) {
-        final SessionSnapshot.Builder builder = new SessionSnapshot.Builder(aerospikeSession.getId())
+        return new SessionSnapshot.Builder(aerospikeSession.getId())
                 .creationTime(aerospikeSession.getCreationTime())
                 .expirationTimestamp(aerospikeSession.getExpirationTimestamp())
                 .lastAccessedTime(aerospikeSession.getLastAccessedTime())
                 .maxInactiveIntervalInSec(aerospikeSession.getMaxInactiveIntervalInSeconds())
-                .updated(aerospikeSession.isUpdated());
-
-        final Set<String> attributeNames = aerospikeSession.getAttributeNames();
-        for (String name : attributeNames) {
-            builder.addAattribute(name, aerospikeSession.getAttribute(name));
-        }
-        return builder.build();
+                .updated(aerospikeSession.isUpdated())
+                .attributesRemoved(aerospikeSession.attributesRemoved)
+                .attributes(Collections.unmodifiableMap(aerospikeSession.attributes))
+                .storedAttributes(aerospikeSession.storedAttributes)
+                .dirtyAttributes(Collections.unmodifiableSet(aerospikeSession.share()))
+                .checkedAttributes(Collections.unmodifiableMap(aerospikeSession.checkedAttributes))
+                .build();
     }
 
     public void delete(final String sessionId) {
@@ -231,7 +377,8 @@ public class AerospikeStoreSessionRepository
 
     /**
      * A custom implementation of {@link Session} that uses a {@link MapSession}
-     * as the basis for its mapping.
+     * as the basis for its metadata. Attributes are kept in copy-on-write map
+     * shared with the snapshot of the last save.
      *
      * @author Vlad Aleksandrov
      */
@@ -239,15 +386,42 @@ public class AerospikeStoreSessionRepository
         private final MapSession cached;
         private Long expirationTimestamp;
         /**
-         * Dirty session attributes flag
+         * Session attributes.
+         */
+        private Map<String, Object> attributes;
+        /**
+         * Stored form of attributes as they were loaded. Never changed.
+         */
+        private final Map<String, MarshalledAttribute> storedAttributes;
+        /**
+         * Attributes which were set or read as mutable and have to be
+         * marshalled again on save.
+         */
+        private Set<String> dirtyAttributes = new HashSet<>();
+        /**
+         * Attributes marshalled by size check on set. Value changed in place
+         * after set without setting it again is saved as it was checked.
          */
-        private boolean updated = false;
+        private Map<String, MarshalledAttribute> checkedAttributes = new HashMap<>();
+        /**
+         * Attributes removed flag
+         */
+        private boolean attributesRemoved = false;
+        /**
+         * <code>true</code> if attributes, dirty and checked attributes are
+         * shared with session snapshot and have to be copied before change.
+         */
+        private boolean shared = false;
+        /**
+         * Attribute reads are recorded by attribute analytics.
+         */
+        private boolean readsSampled = false;
 
         /**
          * Creates a new instance.
          */
         AerospikeSession() {
-            this(new MapSession());
+            this(new MapSession(), new HashMap<>(), Collections.<String, MarshalledAttribute> emptyMap());
         }
 
         /**
@@ -255,11 +429,21 @@ public class AerospikeStoreSessionRepository
          *
          * @param cached
          *            the {@link MapSession} that represents the persisted session
-         *            that was retrieved. Cannot be null.
+         *            metadata that was retrieved. Cannot be null.
+         * @param attributes
+         *            mutable map of loaded attributes. The session takes
+         *            ownership of the map. Cannot be null.
+         * @param storedAttributes
+         *            stored form of loaded attributes. Cannot be null.
          */
-        AerospikeSession(final MapSession cached) {
+        AerospikeSession(final MapSession cached, final Map<String, Object> attributes,
+                final Map<String, MarshalledAttribute> storedAttributes) {
             Assert.notNull(cached, "MapSession cannot be null");
+            Assert.notNull(attributes, "Attributes cannot be null");
+            Assert.notNull(storedAttributes, "Stored attributes cannot be null");
             this.cached = cached;
+            this.attributes = attributes;
+            this.storedAttributes = storedAttributes;
             updateExpirationTimestamp(cached.getLastAccessedTime(), cached.getMaxInactiveIntervalInSeconds());
         }
 
@@ -293,30 +477,98 @@ public class AerospikeStoreSessionRepository
             return cached.getMaxInactiveIntervalInSeconds();
         }
 
+        /**
+         * Returns attribute value. Mutable value may be changed in place, so it
+         * is marked as dirty and checked for changes on save.
+         */
         @SuppressWarnings("unchecked")
         public Object getAttribute(String attributeName) {
-            return cached.getAttribute(attributeName);
+            final Object value = attributes.get(attributeName);
+            if (readsSampled && value != null) {
+                attributeAnalytics.recordRead(attributeName, value instanceof MarshalledAttribute
+                        ? ((MarshalledAttribute) value).getClassName() : value.getClass().getName());
+            }
+            if (!Attributes.isImmutable(value) && !(value instanceof MarshalledAttribute)
+                    && (!dirtyAttributes.contains(attributeName) || checkedAttributes.containsKey(attributeName))) {
+                copyOnWrite();
+                dirtyAttributes.add(attributeName);
+                checkedAttributes.remove(attributeName);
+            }
+            return value;
         }
 
         public Set<String> getAttributeNames() {
-            return cached.getAttributeNames();
+            return Collections.unmodifiableSet(attributes.keySet());
         }
 
+        /**
+         * Sets attribute and marks it as dirty. Immutable value equal to the
+         * current one is ignored.
+         * 
+         * @throws IllegalArgumentException
+         *             in strict serialization mode if the value can't be
+         *             serialized or if the value exceeds attribute size
+         *             limit with {@link SizeLimitPolicy#REJECT} policy
+         */
         public void setAttribute(String attributeName, Object attributeValue) {
-            if (!Attributes.areEqual(cached.getAttribute(attributeName), attributeValue)) {
-                cached.setAttribute(attributeName, attributeValue);
-                updated = true;
+            if (attributeValue == null) {
+                removeAttribute(attributeName);
+                return;
+            }
+            if (storeMetadata.isStrictSerialization() && !transformer.isSerializable(attributeValue)) {
+                throw new IllegalArgumentException(
+                        "Session attribute '" + attributeName + "' value of " + attributeValue.getClass().getName()
+                                + " is not serializable");
+            }
+            final MarshalledAttribute checked = sizeGuard.checkAttribute(attributeName, attributeValue);
+            if (Attributes.isImmutable(attributeValue)
+                    && attributeValue.equals(attributes.get(attributeName))) {
+                return;
+            }
+            copyOnWrite();
+            attributes.put(attributeName, attributeValue);
+            dirtyAttributes.add(attributeName);
+            if (checked != null) {
+                checkedAttributes.put(attributeName, checked);
+            } else {
+                checkedAttributes.remove(attributeName);
             }
         }
 
         /**
-         * Removes attribute and sets "updated" flag if the attribute did exist
-         * in session.
+         * Removes attribute and sets "attributes removed" flag if the attribute
+         * did exist in session.
          */
         public void removeAttribute(String attributeName) {
-            if (cached.getAttribute(attributeName) != null) {
-                cached.removeAttribute(attributeName);
-                updated = true;
+            if (attributes.containsKey(attributeName)) {
+                copyOnWrite();
+                attributes.remove(attributeName);
+                dirtyAttributes.remove(attributeName);
+                checkedAttributes.remove(attributeName);
+                attributesRemoved = true;
+            }
+        }
+
+        /**
+         * Marks attributes as shared with session snapshot.
+         * 
+         * @return dirty attributes to share
+         */
+        private Set<String> share() {
+            shared = true;
+            return dirtyAttributes;
+        }
+
+        /**
+         * Copies attributes shared with session snapshot before the first
+         * change after save.
+         */
+        private void copyOnWrite() {
+            if (shared) {
+                attributes = new HashMap<>(attributes);
+                dirtyAttributes = new HashSet<>(dirtyAttributes);
+                checkedAttributes = new HashMap<>(checkedAttributes);
+                shared = false;
             }
         }
 
@@ -336,8 +588,12 @@ public class AerospikeStoreSessionRepository
             }
         }
 
+        /**
+         * @return <code>true</code> if any attribute has been set, removed or
+         *         read as mutable value
+         */
         public boolean isUpdated() {
-            return updated;
+            return attributesRemoved || !dirtyAttributes.isEmpty();
         }
 
     }
@@ -15,8 +15,12 @@
  */
 package us.swcraft.springframework.session.aerospike;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -53,6 +57,24 @@ class Attributes {
         }
     }
 
+    /**
+     * Checks if attribute value can't be changed in place. Such attributes are
+     * not re-marshalled on save unless set again with a different value.
+     * 
+     * @param value
+     * @return <code>true</code> if the value is of well-known immutable type.
+     */
+    public static boolean isImmutable(final Object value) {
+        if (value == null) {
+            return true;
+        }
+        final Class<?> type = value.getClass();
+        return type == String.class || type == Boolean.class || type == Integer.class || type == Long.class
+                || type == Double.class || type == Float.class || type == Short.class || type == Byte.class
+                || type == Character.class || type == BigDecimal.class || type == BigInteger.class
+                || type == UUID.class || type == Locale.class || value instanceof Enum;
+    }
+
     /**
      * Checks if two maps are equal.
      * 
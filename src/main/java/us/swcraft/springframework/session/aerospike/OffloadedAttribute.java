@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.aerospike;
+
+import java.io.Serializable;
+
+/**
+ * Placeholder saved in session record instead of attribute offloaded to side
+ * record. It is replaced by the attribute value when the session is loaded.
+ */
+public class OffloadedAttribute implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Offloaded attribute value class.
+     */
+    private String className;
+
+    /**
+     * Offloaded attribute size in bytes.
+     */
+    private int size;
+
+    public OffloadedAttribute() {
+    }
+
+    public OffloadedAttribute(final String className, final int size) {
+        this.className = className;
+        this.size = size;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public void setClassName(final String className) {
+        this.className = className;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(final int size) {
+        this.size = size;
+    }
+
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.aerospike;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.MonthDay;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Anonymizes session attributes before they are written to payload corpus.
+ * The whole attribute value graph is walked: collections, maps, arrays and
+ * fields of application objects (beans, principals).
+ * <ul>
+ * <li>Strings, string builders and <code>char[]</code> values, including map
+ * keys, are replaced with same length pseudonyms. Pseudonyms are keyed by a
+ * random secret of the anonymizer instance: equal strings stay equal within a
+ * capture, so set and map sizes and compressibility are mostly kept, but
+ * values can't be recovered.</li>
+ * <li>Attribute names, numbers, booleans, enums, dates, times, UUIDs and
+ * locales are kept as is. Other JDK types (e.g. {@link java.util.Optional},
+ * atomic references, URIs, X.500 principals) may hold strings in fields
+ * which can't be walked, so they fail anonymization.</li>
+ * <li>Collections and maps keep their type when they can be modified,
+ * unmodifiable ones are replaced with insertion ordered copies.</li>
+ * </ul>
+ * Values which can't be walked (e.g. final fields of records) fail
+ * anonymization - such payloads must not be captured.
+ */
+class PayloadAnonymizer {
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * JDK types kept as is - scalar values without strings.
+     */
+    private static final Set<Class<?>> KEPT_JDK_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            Object.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class, AtomicBoolean.class, AtomicInteger.class,
+            AtomicLong.class, UUID.class, Locale.class, Currency.class, Date.class, java.sql.Date.class, Time.class,
+            Timestamp.class, Instant.class, LocalDate.class, LocalTime.class, LocalDateTime.class, OffsetTime.class,
+            OffsetDateTime.class, ZonedDateTime.class, ZoneOffset.class, Duration.class, Period.class, Year.class,
+            YearMonth.class, MonthDay.class)));
+
+    private final SecretKeySpec key;
+
+    PayloadAnonymizer() {
+        final byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+    }
+
+    /**
+     * @param attributes
+     *            deserialized session attributes, they are modified in place
+     * @return anonymized attributes
+     * @throws IllegalStateException
+     *             if an attribute value can't be anonymized
+     */
+    Map<String, Object> anonymize(final Map<String, Object> attributes) {
+        final Walk walk = new Walk();
+        final Map<String, Object> anonymized = new LinkedHashMap<>(attributes.size());
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            anonymized.put(entry.getKey(), walk.anonymize(entry.getValue()));
+        }
+        return anonymized;
+    }
+
+    /**
+     * Single payload walk, keeps visited objects so shared references and
+     * cycles are anonymized once.
+     */
+    private final class Walk {
+
+        private final Map<Object, Object> visited = new IdentityHashMap<>();
+
+        private final Mac mac;
+
+        private Walk() {
+            try {
+                mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Pseudonym MAC is not available", e);
+            }
+        }
+
+        private Object anonymize(final Object value) {
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof String) {
+                return new String(mask((String) value));
+            }
+            if (value instanceof char[]) {
+                return mask(new String((char[]) value));
+            }
+            if (value instanceof StringBuilder) {
+                return new StringBuilder().append(mask(value.toString()));
+            }
+            if (value instanceof StringBuffer) {
+                return new StringBuffer().append(mask(value.toString()));
+            }
+            final Object seen = visited.get(value);
+            if (seen != null) {
+                return seen;
+            }
+            if (value instanceof Map) {
+                return anonymizeMap(value);
+            }
+            if (value instanceof Collection) {
+                return anonymizeCollection(value);
+            }
+            final Class<?> type = value.getClass();
+            if (type.isArray()) {
+                visited.put(value, value);
+                if (!type.getComponentType().isPrimitive()) {
+                    for (int i = 0; i < Array.getLength(value); i++) {
+                        Array.set(value, i, anonymize(Array.get(value, i)));
+                    }
+                }
+                return value;
+            }
+            if (type.isEnum() || KEPT_JDK_TYPES.contains(type)) {
+                return value;
+            }
+            if (isJdkType(type)) {
+                throw new IllegalStateException("Value of " + type.getName() + " can't be anonymized");
+            }
+            return anonymizeFields(value);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object anonymizeMap(final Object value) {
+            final Map<Object, Object> map = (Map<Object, Object>) value;
+            visited.put(value, value);
+            final Map<Object, Object> anonymized = new LinkedHashMap<>(map.size());
+            for (Map.Entry<Object, Object> entry : map.entrySet()) {
+                anonymized.put(anonymize(entry.getKey()), anonymize(entry.getValue()));
+            }
+            try {
+                map.clear();
+                map.putAll(anonymized);
+                return map;
+            } catch (UnsupportedOperationException e) {
+                visited.put(value, anonymized);
+                return anonymized;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object anonymizeCollection(final Object value) {
+            final Collection<Object> collection = (Collection<Object>) value;
+            visited.put(value, value);
+            final List<Object> anonymized = new ArrayList<>(collection.size());
+            for (Object element : collection) {
+                anonymized.add(anonymize(element));
+            }
+            try {
+                collection.clear();
+                collection.addAll(anonymized);
+                return collection;
+            } catch (UnsupportedOperationException e) {
+                if (value instanceof List) {
+                    // fixed size lists can't be cleared but can be set
+                    try {
+                        final List<Object> list = (List<Object>) value;
+                        for (int i = 0; i < anonymized.size(); i++) {
+                            list.set(i, anonymized.get(i));
+                        }
+                        return list;
+                    } catch (UnsupportedOperationException notModifiable) {
+                        visited.put(value, anonymized);
+                        return anonymized;
+                    }
+                }
+                final Collection<Object> copy = value instanceof Set ? new LinkedHashSet<>(anonymized) : anonymized;
+                visited.put(value, copy);
+                return copy;
+            }
+        }
+
+        private Object anonymizeFields(final Object value) {
+            visited.put(value, value);
+            for (Class<?> type = value.getClass(); type != Object.class; type = type.getSuperclass()) {
+                final boolean jdkType = isJdkType(type);
+                for (Field field : type.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                        continue;
+                    }
+                    if (jdkType) {
+                        // JDK super class state can't be walked
+                        throw new IllegalStateException(
+                                "Field " + type.getName() + "." + field.getName() + " can't be anonymized");
+                    }
+                    try {
+                        field.setAccessible(true);
+                        final Object fieldValue = field.get(value);
+                        final Object anonymized = anonymize(fieldValue);
+                        if (anonymized != fieldValue) {
+                            field.set(value, anonymized);
+                        }
+                    } catch (IllegalAccessException | RuntimeException e) {
+                        throw new IllegalStateException(
+                                "Field " + type.getName() + "." + field.getName() + " can't be anonymized", e);
+                    }
+                }
+            }
+            return value;
+        }
+
+        /**
+         * @return same length pseudonym of lower case letters
+         */
+        private char[] mask(final String value) {
+            final char[] masked = new char[value.length()];
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int filled = 0;
+            for (int block = 0; filled < masked.length; block++) {
+                mac.update(bytes);
+                mac.update((byte) block);
+                for (byte b : mac.doFinal()) {
+                    if (filled == masked.length) {
+                        break;
+                    }
+                    masked[filled++] = (char) ('a' + (b & 0xff) % 26);
+                }
+            }
+            return masked;
+        }
+
+    }
+
+    private static boolean isJdkType(final Class<?> type) {
+        final String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.")
+                || name.startsWith("sun.");
+    }
+
+}
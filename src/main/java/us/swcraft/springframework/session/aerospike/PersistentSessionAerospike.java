@@ -56,4 +56,20 @@ abstract class PersistentSessionAerospike {
      */
     static final String SESSION_ATTRIBUTES_BIN = "attributes";
 
+    /**
+     * The Aerospike bin name for offloaded attribute content.
+     */
+    static final String OFFLOADED_CONTENT_BIN = "content";
+
+    /**
+     * The Aerospike bin name for offloaded attribute class name.
+     */
+    static final String OFFLOADED_CLASS_BIN = "className";
+
+    /**
+     * Separator of session id and attribute name in offloaded attribute
+     * record key.
+     */
+    static final char OFFLOADED_KEY_SEPARATOR = '#';
+
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.aerospike;
+
+import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.SESSION_ATTRIBUTES_BIN;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.aerospike.client.Record;
+
+import us.swcraft.springframework.session.store.AttributeDictionary;
+import us.swcraft.springframework.session.store.SessionAttributesTransformer;
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+import us.swcraft.springframework.session.store.aerospike.RecordCaptureHook;
+
+/**
+ * Captures a sample of stored session attributes payloads from live traffic
+ * into a corpus file, which can be replayed by load tests. Define it as a bean
+ * next to the session configuration:
+ * 
+ * <pre>
+ * {@literal @Bean}
+ * public SessionPayloadCapture sessionPayloadCapture() {
+ *     return new SessionPayloadCapture(new File("/tmp/sessions.corpus"), 0.01, 10000);
+ * }
+ * </pre>
+ * 
+ * Payloads are anonymized before they are written: session ids and
+ * timestamps are not captured, strings anywhere in attribute values are
+ * replaced with same length pseudonyms, see {@link PayloadAnonymizer} for
+ * what is kept. Payloads which can't be anonymized are skipped.
+ * <p>
+ * Records are captured as returned by the session store, decorated stores
+ * (sharded, replicated, tiered, fault injecting) included.
+ */
+public class SessionPayloadCapture implements RecordCaptureHook {
+
+    /**
+     * Corpus file header.
+     */
+    static final int MAGIC = 0x53534143;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    @Inject
+    private AerospikeOperations<String> aerospikeOperations;
+
+    @Inject
+    private SessionAttributesTransformer transformer;
+
+    private final PayloadAnonymizer anonymizer = new PayloadAnonymizer();
+
+    private final File corpusFile;
+
+    private final double sampleRate;
+
+    private final int maxEntries;
+
+    private DataOutputStream out;
+
+    private int entries;
+
+    /**
+     * @param corpusFile
+     *            file to write captured payloads to
+     * @param sampleRate
+     *            share of fetched sessions to capture, <code>0</code> -
+     *            <code>1</code>
+     * @param maxEntries
+     *            capture stops after this number of payloads
+     */
+    public SessionPayloadCapture(final File corpusFile, final double sampleRate, final int maxEntries) {
+        Assert.notNull(corpusFile, "corpus file can't be null");
+        Assert.isTrue(sampleRate > 0 && sampleRate <= 1, "Sample rate should be in (0, 1] range");
+        Assert.isTrue(maxEntries > 0, "Max entries should be positive");
+        this.corpusFile = corpusFile;
+        this.sampleRate = sampleRate;
+        this.maxEntries = maxEntries;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(corpusFile)));
+        out.writeInt(MAGIC);
+        aerospikeOperations.setCaptureHook(this);
+        log.info("Capture {} of session payloads to {}", sampleRate, corpusFile);
+    }
+
+    @Override
+    public void onFetch(final String key, final Record record) {
+        if (AttributeDictionary.DICTIONARY_KEY.equals(key) || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        final Object payload = record.getValue(SESSION_ATTRIBUTES_BIN);
+        if (payload instanceof byte[]) {
+            final Map<String, Object> anonymized;
+            try {
+                anonymized = anonymizer.anonymize(transformer.unmarshal((byte[]) payload));
+            } catch (IllegalStateException e) {
+                log.debug("Session payload skipped: {}", e.getMessage());
+                return;
+            }
+            write(transformer.marshall(anonymized));
+        }
+    }
+
+    private synchronized void write(final byte[] payload) {
+        if (out == null || entries >= maxEntries) {
+            return;
+        }
+        try {
+            out.writeInt(payload.length);
+            out.write(payload);
+            if (++entries == maxEntries) {
+                log.info("Session payload capture completed: {} payloads", entries);
+                close();
+            }
+        } catch (IOException e) {
+            log.error("Unable to write session payload - capture stopped", e);
+            close();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        aerospikeOperations.setCaptureHook(null);
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.warn("Unable to close corpus file: {}", e.getMessage());
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Reads payloads captured to corpus file.
+     * 
+     * @param corpusFile
+     * @return session attributes payloads
+     * @throws IOException
+     *             if the file can't be read or it is not a corpus file
+     */
+    public static List<byte[]> readCorpus(final File corpusFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(corpusFile)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a session payload corpus: " + corpusFile);
+            }
+            final List<byte[]> payloads = new ArrayList<>();
+            while (true) {
+                final int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return payloads;
+                }
+                final byte[] payload = new byte[length];
+                in.readFully(payload);
+                payloads.add(payload);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.aerospike;
+
+import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.OFFLOADED_CLASS_BIN;
+import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.OFFLOADED_CONTENT_BIN;
+import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.OFFLOADED_KEY_SEPARATOR;
+import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.SESSION_ATTRIBUTES_BIN;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+
+import us.swcraft.springframework.session.model.MarshalledAttribute;
+import us.swcraft.springframework.session.model.StoreMetadata;
+import us.swcraft.springframework.session.store.SessionAttributesTransformer;
+import us.swcraft.springframework.session.store.SizeLimitPolicy;
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+
+/**
+ * Applies session size limits. Limits are checked against sizes of
+ * attributes marshalled for save, so no extra serialization is needed except
+ * {@link SizeLimitPolicy#REJECT} of attributes, which has to know the size on
+ * <code>setAttribute</code>.
+ * <p>
+ * Offloaded attribute is saved in side record
+ * <code>&lt;session id&gt;#&lt;attribute name&gt;</code> and replaced by
+ * {@link OffloadedAttribute} placeholder in session record. Side records have
+ * the same TTL as session records, are touched when the session is loaded and
+ * deleted with the session.
+ */
+class SessionSizeGuard {
+
+    private static final String PLACEHOLDER_CLASS_NAME = OffloadedAttribute.class.getName();
+
+    /**
+     * The largest attributes first, attributes of the same size in name order.
+     */
+    private static final Comparator<MarshalledAttribute> LARGEST_FIRST = Comparator
+            .comparingInt((MarshalledAttribute attr) -> attr.getContent().length).reversed()
+            .thenComparing(MarshalledAttribute::getAttributeName);
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final Object source;
+
+    private final StoreMetadata storeMetadata;
+
+    private final AerospikeOperations<String> aerospikeOperations;
+
+    private final SessionAttributesTransformer transformer;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    SessionSizeGuard(final Object source, final StoreMetadata storeMetadata,
+            final AerospikeOperations<String> aerospikeOperations, final SessionAttributesTransformer transformer,
+            final ApplicationEventPublisher eventPublisher) {
+        this.source = source;
+        this.storeMetadata = storeMetadata;
+        this.aerospikeOperations = aerospikeOperations;
+        this.transformer = transformer;
+        this.eventPublisher = eventPublisher;
+    }
+
+    static String offloadedKey(final String sessionId, final String attributeName) {
+        return sessionId + OFFLOADED_KEY_SEPARATOR + attributeName;
+    }
+
+    /**
+     * Rejects oversized attribute if {@link SizeLimitPolicy#REJECT} policy is
+     * configured for attributes.
+     * 
+     * @param name
+     * @param value
+     * @return marshalled value to be saved without marshalling it again or
+     *         <code>null</code> if the value is not checked
+     * @throws IllegalArgumentException
+     *             if serialized value exceeds the limit
+     */
+    MarshalledAttribute checkAttribute(final String name, final Object value) {
+        final int limit = storeMetadata.getMaxAttributeBytes();
+        if (limit <= 0 || storeMetadata.getAttributeSizePolicy() != SizeLimitPolicy.REJECT) {
+            return null;
+        }
+        final MarshalledAttribute marshalled = transformer.marshallAttribute(name, value);
+        if (marshalled != null && marshalled.getContent().length > limit) {
+            throw new IllegalArgumentException("Session attribute '" + name + "' value of "
+                    + value.getClass().getName() + " is " + marshalled.getContent().length
+                    + " bytes, the limit is " + limit + " bytes");
+        }
+        return marshalled;
+    }
+
+    /**
+     * Marshalls session attributes within configured limits.
+     * 
+     * @param sessionId
+     * @param marshalledAttrs
+     *            marshalled attributes to save, changed by the limits
+     * @param storedAttrs
+     *            stored form of attributes as they were loaded
+     * @return session attributes
+     */
+    byte[] marshall(final String sessionId, final Map<String, Object> marshalledAttrs,
+            final Map<String, MarshalledAttribute> storedAttrs) {
+        limitAttributes(sessionId, marshalledAttrs);
+        byte[] attrs = transformer.marshall(marshalledAttrs);
+        final int warn = storeMetadata.getWarnRecordBytes();
+        if (warn > 0 && attrs.length >= warn) {
+            log.warn("Session {} attributes are {} bytes, largest: {}", sessionId, attrs.length,
+                    largest(marshalledAttrs, 3));
+        }
+        final int limit = storeMetadata.getMaxRecordBytes();
+        if (limit > 0 && attrs.length > limit) {
+            attrs = limitRecord(sessionId, marshalledAttrs, attrs, limit);
+        }
+        deleteStaleOffloaded(sessionId, marshalledAttrs, storedAttrs);
+        return attrs;
+    }
+
+    private void limitAttributes(final String sessionId, final Map<String, Object> marshalledAttrs) {
+        final int limit = storeMetadata.getMaxAttributeBytes();
+        if (limit <= 0) {
+            return;
+        }
+        // value changed after rejecting set can't be rejected any more
+        final SizeLimitPolicy policy = storeMetadata.getAttributeSizePolicy() == SizeLimitPolicy.OFFLOAD
+                ? SizeLimitPolicy.OFFLOAD : SizeLimitPolicy.DROP;
+        for (Iterator<Map.Entry<String, Object>> it = marshalledAttrs.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<String, Object> entry = it.next();
+            final MarshalledAttribute attr = (MarshalledAttribute) entry.getValue();
+            final int size = attr.getContent().length;
+            if (size <= limit || isPlaceholder(attr)) {
+                continue;
+            }
+            if (policy == SizeLimitPolicy.OFFLOAD) {
+                entry.setValue(offload(sessionId, attr));
+            } else {
+                it.remove();
+            }
+            log.warn("Session {} attribute '{}' is {} bytes, the limit is {} bytes - {}", sessionId,
+                    entry.getKey(), size, limit, policy);
+            publishEvent(new SessionSizeLimitEvent(source, sessionId, entry.getKey(), size, limit, policy));
+        }
+    }
+
+    /**
+     * Drops or offloads the largest attributes until the session fits,
+     * attributes of the same size in name order. Session is saved after the
+     * request is completed and can't be rejected, so
+     * {@link SizeLimitPolicy#REJECT} drops attributes like
+     * {@link SizeLimitPolicy#DROP}.
+     */
+    private byte[] limitRecord(final String sessionId, final Map<String, Object> marshalledAttrs,
+            final byte[] attrs, final int limit) {
+        final SizeLimitPolicy policy = storeMetadata.getRecordSizePolicy() == SizeLimitPolicy.OFFLOAD
+                ? SizeLimitPolicy.OFFLOAD : SizeLimitPolicy.DROP;
+        byte[] result = attrs;
+        final List<MarshalledAttribute> candidates = new ArrayList<>();
+        for (Object value : marshalledAttrs.values()) {
+            if (!isPlaceholder((MarshalledAttribute) value)) {
+                candidates.add((MarshalledAttribute) value);
+            }
+        }
+        candidates.sort(LARGEST_FIRST);
+        for (MarshalledAttribute attr : candidates) {
+            if (result.length <= limit) {
+                break;
+            }
+            final String name = attr.getAttributeName();
+            if (policy == SizeLimitPolicy.OFFLOAD) {
+                marshalledAttrs.put(name, offload(sessionId, attr));
+            } else {
+                marshalledAttrs.remove(name);
+            }
+            log.warn("Session {} is {} bytes, the limit is {} bytes - {} attribute '{}'", sessionId,
+                    result.length, limit, policy, name);
+            publishEvent(new SessionSizeLimitEvent(source, sessionId, name, attr.getContent().length, limit,
+                    policy));
+            result = transformer.marshall(marshalledAttrs);
+        }
+        if (result.length > limit) {
+            // offloaded attribute placeholders only
+            log.error("Session {} is {} bytes after all attributes are {}, the limit is {} bytes", sessionId,
+                    result.length, policy, limit);
+        }
+        return result;
+    }
+
+    private MarshalledAttribute offload(final String sessionId, final MarshalledAttribute attr) {
+        final Set<Bin> bins = new HashSet<>();
+        bins.add(new Bin(OFFLOADED_CONTENT_BIN, attr.getContent()));
+        bins.add(new Bin(OFFLOADED_CLASS_BIN, attr.getClassName()));
+        aerospikeOperations.persist(offloadedKey(sessionId, attr.getAttributeName()), bins);
+        return transformer.marshallAttribute(attr.getAttributeName(),
+                new OffloadedAttribute(attr.getClassName(), attr.getContent().length));
+    }
+
+    /**
+     * Deletes side records of attributes which are saved in session record
+     * again or removed.
+     */
+    private void deleteStaleOffloaded(final String sessionId, final Map<String, Object> marshalledAttrs,
+            final Map<String, MarshalledAttribute> storedAttrs) {
+        for (MarshalledAttribute stored : storedAttrs.values()) {
+            if (isPlaceholder(stored)) {
+                final MarshalledAttribute saved = (MarshalledAttribute) marshalledAttrs
+                        .get(stored.getAttributeName());
+                if (saved == null || !isPlaceholder(saved)) {
+                    aerospikeOperations.delete(offloadedKey(sessionId, stored.getAttributeName()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces placeholders of offloaded attributes by their values. Lost
+     * attributes are removed.
+     * 
+     * @param sessionId
+     * @param attributes
+     *            unmarshalled session attributes
+     */
+    void restoreOffloaded(final String sessionId, final Map<String, Object> attributes) {
+        for (Iterator<Map.Entry<String, Object>> it = attributes.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<String, Object> entry = it.next();
+            if (!(entry.getValue() instanceof OffloadedAttribute)) {
+                continue;
+            }
+            final String name = entry.getKey();
+            final Record record = aerospikeOperations.fetch(offloadedKey(sessionId, name));
+            final Object value = record == null ? null
+                    : transformer.unmarshalAttribute(new MarshalledAttribute(name,
+                            record.getString(OFFLOADED_CLASS_BIN), (byte[]) record.getValue(OFFLOADED_CONTENT_BIN)));
+            if (value == null) {
+                log.warn("Offloaded attribute '{}' of session {} is lost", name, sessionId);
+                it.remove();
+            } else {
+                entry.setValue(value);
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if attributes can be offloaded to side records
+     */
+    boolean isOffloadEnabled() {
+        return storeMetadata.getAttributeSizePolicy() == SizeLimitPolicy.OFFLOAD
+                || storeMetadata.getRecordSizePolicy() == SizeLimitPolicy.OFFLOAD;
+    }
+
+    /**
+     * Deletes side records of offloaded attributes of the session. Must be
+     * called before the session record is deleted. Session record is read
+     * only if attributes can be offloaded.
+     * 
+     * @param sessionId
+     */
+    void deleteOffloaded(final String sessionId) {
+        if (sessionId != null && isOffloadEnabled()) {
+            deleteOffloaded(sessionId, aerospikeOperations.fetchUntouched(sessionId));
+        }
+    }
+
+    /**
+     * Deletes side records of offloaded attributes of the session record which
+     * has been read already. Attribute values are not restored, placeholders
+     * are found by their class name.
+     * 
+     * @param sessionId
+     * @param record
+     *            session record or <code>null</code>
+     */
+    void deleteOffloaded(final String sessionId, final Record record) {
+        final byte[] payload = record == null ? null : (byte[]) record.getValue(SESSION_ATTRIBUTES_BIN);
+        if (payload == null) {
+            return;
+        }
+        for (MarshalledAttribute stored : transformer.unmarshalStored(payload).values()) {
+            if (isPlaceholder(stored)) {
+                log.trace("Delete offloaded attribute '{}' of session {}", stored.getAttributeName(), sessionId);
+                aerospikeOperations.delete(offloadedKey(sessionId, stored.getAttributeName()));
+            }
+        }
+    }
+
+    private static boolean isPlaceholder(final MarshalledAttribute attr) {
+        return PLACEHOLDER_CLASS_NAME.equals(attr.getClassName());
+    }
+
+    private static String largest(final Map<String, Object> marshalledAttrs, final int count) {
+        final List<MarshalledAttribute> attrs = new ArrayList<>();
+        for (Object value : marshalledAttrs.values()) {
+            attrs.add((MarshalledAttribute) value);
+        }
+        attrs.sort(LARGEST_FIRST);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(count, attrs.size()); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(attrs.get(i).getAttributeName()).append('=').append(attrs.get(i).getContent().length);
+        }
+        return sb.toString();
+    }
+
+    private void publishEvent(final SessionSizeLimitEvent event) {
+        try {
+            eventPublisher.publishEvent(event);
+        } catch (Throwable ex) {
+            log.error("Error publishing " + event, ex);
+        }
+    }
+
+}
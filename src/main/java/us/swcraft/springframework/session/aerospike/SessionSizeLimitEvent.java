@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.aerospike;
+
+import org.springframework.context.ApplicationEvent;
+
+import us.swcraft.springframework.session.store.SizeLimitPolicy;
+
+/**
+ * Published when serialized session attribute or session record exceeds
+ * configured size limit and the limit policy is applied.
+ */
+public class SessionSizeLimitEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String sessionId;
+
+    private final String attributeName;
+
+    private final int size;
+
+    private final int limit;
+
+    private final SizeLimitPolicy policy;
+
+    /**
+     * @param source
+     * @param sessionId
+     * @param attributeName
+     *            dropped or offloaded attribute, <code>null</code> if the
+     *            whole record is rejected
+     * @param size
+     *            serialized size of the attribute or the record
+     * @param limit
+     *            exceeded limit
+     * @param policy
+     *            applied policy
+     */
+    public SessionSizeLimitEvent(final Object source, final String sessionId, final String attributeName,
+            final int size, final int limit, final SizeLimitPolicy policy) {
+        super(source);
+        this.sessionId = sessionId;
+        this.attributeName = attributeName;
+        this.size = size;
+        this.limit = limit;
+        this.policy = policy;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public SizeLimitPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + sessionId + (attributeName == null ? "" : ", " + attributeName)
+                + ", " + size + " > " + limit + " bytes, " + policy + "]";
+    }
+
+}
@@ -18,7 +18,10 @@ package us.swcraft.springframework.session.aerospike.config.annotation.web.http;
 import java.io.Serializable;
 import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.servlet.ServletContext;
@@ -27,11 +30,12 @@ import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanClassLoaderAware;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.ImportAware;
 import org.springframework.core.annotation.AnnotationAttributes;
 import org.springframework.core.annotation.AnnotationUtils;
@@ -48,14 +52,29 @@ import org.springframework.util.ClassUtils;
 
 import com.aerospike.client.IAerospikeClient;
 
+import us.swcraft.springframework.session.aerospike.AerospikeSessionExpirationPolicy;
+import us.swcraft.springframework.session.aerospike.AerospikeStoreSessionRepository;
+import us.swcraft.springframework.session.metrics.AttributeSizeAnalytics;
+import us.swcraft.springframework.session.metrics.MicrometerSessionStoreMetrics;
+import us.swcraft.springframework.session.metrics.SessionStoreMetrics;
 import us.swcraft.springframework.session.model.MarshalledAttribute;
 import us.swcraft.springframework.session.model.StoreMetadata;
+import us.swcraft.springframework.session.store.AttributeDictionary;
+import us.swcraft.springframework.session.store.CachingClassLoader;
+import us.swcraft.springframework.session.store.SizeLimitPolicy;
 import us.swcraft.springframework.session.store.StoreCompression;
 import us.swcraft.springframework.session.store.StoreSerializationType;
 import us.swcraft.springframework.session.store.StoreSerializer;
+import us.swcraft.springframework.session.store.StoreSerializers;
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
 import us.swcraft.springframework.session.store.aerospike.AerospikeTemplate;
-import us.swcraft.springframework.session.store.fst.FastStoreSerializer;
-import us.swcraft.springframework.session.store.kryo.KryoStoreSerializer;
+import us.swcraft.springframework.session.store.aerospike.InMemoryAerospikeOperations;
+import us.swcraft.springframework.session.store.aerospike.fault.FaultInjectionBeanPostProcessor;
+import us.swcraft.springframework.session.store.aerospike.fault.FaultInjector;
+import us.swcraft.springframework.session.store.codec.AttributeCodecRegistry;
+import us.swcraft.springframework.session.tracing.OpenTelemetrySessionStoreTracing;
+import us.swcraft.springframework.session.tracing.SessionStoreTracing;
+import us.swcraft.springframework.session.transformer.DefaultSessionAttributesTransformer;
 
 /**
  * Exposes the {@link SessionRepositoryFilter} as a bean named
@@ -67,9 +86,16 @@ import us.swcraft.springframework.session.store.kryo.KryoStoreSerializer;
  */
 @Configuration
 @EnableAsync
-@ComponentScan("us.swcraft.springframework.session")
+@Import({ AerospikeStoreSessionRepository.class, AerospikeSessionExpirationPolicy.class,
+        DefaultSessionAttributesTransformer.class })
 public class AerospikeHttpSessionConfiguration implements ImportAware, BeanClassLoaderAware, BeanFactoryAware {
 
+    private static final boolean MICROMETER_PRESENT = ClassUtils.isPresent(
+            "io.micrometer.core.instrument.MeterRegistry", AerospikeHttpSessionConfiguration.class.getClassLoader());
+
+    private static final boolean OPENTELEMETRY_PRESENT = ClassUtils.isPresent(
+            "io.opentelemetry.api.OpenTelemetry", AerospikeHttpSessionConfiguration.class.getClassLoader());
+
     private ClassLoader beanClassLoader;
 
     private BeanFactory beanFactory;
@@ -97,6 +123,40 @@ public class AerospikeHttpSessionConfiguration implements ImportAware, BeanClass
      */
     private StoreCompression compression = StoreCompression.NONE;
 
+    /**
+     * Reject non-serializable attributes on set.
+     */
+    private boolean strictSerialization = false;
+
+    /**
+     * Replace attribute and class names with dictionary ids.
+     */
+    private boolean dictionaryEncoding = false;
+
+    /**
+     * Keep sessions in memory instead of Aerospike.
+     */
+    private boolean inMemoryStore = false;
+
+    private double attributeAnalyticsSampleRate = 0.01;
+
+    private int maxAttributeBytes = 0;
+    private SizeLimitPolicy attributeSizePolicy = SizeLimitPolicy.DROP;
+    private int maxRecordBytes = 0;
+    private SizeLimitPolicy recordSizePolicy = SizeLimitPolicy.REJECT;
+    private int warnRecordBytes = 0;
+
+    private int expiredEventBatchSize = 100;
+    private int expiredEventBufferSize = 16;
+    private String[] expiredEventAttributes = new String[0];
+
+    /**
+     * Parallel attributes unmarshalling thresholds and pool size.
+     */
+    private int parallelUnmarshalAttributeThreshold = 32;
+    private int parallelUnmarshalSizeThreshold = 131072;
+    private int parallelUnmarshalPoolSize = 4;
+
     private HttpSessionStrategy httpSessionStrategy;
 
     @Bean("ssa-taskExecutor")
@@ -106,23 +166,150 @@ public class AerospikeHttpSessionConfiguration implements ImportAware, BeanClass
         executor.setMaxPoolSize(4);
         executor.setQueueCapacity(0);
         executor.setDaemon(true);
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        final SessionStoreMetrics metrics = storeMetrics();
+        final ThreadPoolExecutor.CallerRunsPolicy callerRuns = new ThreadPoolExecutor.CallerRunsPolicy();
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            metrics.callerRunsFallback();
+            callerRuns.rejectedExecution(task, pool);
+        });
         executor.setThreadNamePrefix("sessionStore-");
         executor.initialize();
+        metrics.monitorExecutor("ssa-taskExecutor", executor.getThreadPoolExecutor());
+        return executor;
+    }
+
+    /**
+     * Single thread executor publishing expired session events. When its
+     * buffer is full, the batch is published by the calling thread.
+     * 
+     * @return
+     */
+    @Bean("ssa-eventExecutor")
+    public Executor eventExecutor() {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(expiredEventBufferSize);
+        executor.setDaemon(true);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("sessionEvents-");
+        executor.initialize();
+        storeMetrics().monitorExecutor("ssa-eventExecutor", executor.getThreadPoolExecutor());
         return executor;
     }
 
+    /**
+     * Session store metrics. Recorded in Micrometer if it is on the classpath
+     * and {@code MeterRegistry} bean is available, not recorded otherwise.
+     *
+     * @return
+     */
+    @Bean("ssa-storeMetrics")
+    public SessionStoreMetrics storeMetrics() {
+        if (MICROMETER_PRESENT) {
+            final SessionStoreMetrics metrics = MicrometerSessionStoreMetrics.create(beanFactory);
+            if (metrics != null) {
+                return metrics;
+            }
+        }
+        return SessionStoreMetrics.NOOP;
+    }
+
+    /**
+     * Sampled session attribute size analytics exposed as MXBean.
+     *
+     * @return
+     */
+    @Bean("ssa-attributeAnalytics")
+    public AttributeSizeAnalytics attributeAnalytics() {
+        return new AttributeSizeAnalytics(attributeAnalyticsSampleRate, setname);
+    }
+
+    /**
+     * Session store tracing. Recorded with OpenTelemetry if it is on the
+     * classpath and SDK is configured either as {@code OpenTelemetry} bean or
+     * globally, not recorded otherwise.
+     *
+     * @return
+     */
+    @Bean("ssa-storeTracing")
+    public SessionStoreTracing storeTracing() {
+        if (OPENTELEMETRY_PRESENT) {
+            final SessionStoreTracing tracing = OpenTelemetrySessionStoreTracing.create(beanFactory);
+            if (tracing != null) {
+                return tracing;
+            }
+        }
+        return SessionStoreTracing.NOOP;
+    }
+
+    /**
+     * Dedicated pool for parallel deserialization of large sessions.
+     *
+     * @return
+     */
+    @Bean(name = "ssa-unmarshalPool", destroyMethod = "shutdown")
+    public ForkJoinPool unmarshalPool() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return new ForkJoinPool(Math.max(1, parallelUnmarshalPoolSize), pool -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("sessionUnmarshal-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Session store operations - Aerospike template or in-memory store.
+     *
+     * @param aerospikeClient
+     *            Aerospike client, not required for in-memory store
+     * @return
+     */
     @Bean(name = "ssa-sessionAerospikeTemplate", initMethod = "init")
     @Inject
-    public AerospikeTemplate sessionAerospikeTemplate(final IAerospikeClient aerospikeClient) {
+    public AerospikeOperations<String> sessionAerospikeTemplate(
+            final ObjectProvider<IAerospikeClient> aerospikeClient) {
+        if (inMemoryStore) {
+            final InMemoryAerospikeOperations operations = new InMemoryAerospikeOperations();
+            operations.setExpiration(this.maxInactiveIntervalInSeconds);
+            return operations;
+        }
         final AerospikeTemplate template = new AerospikeTemplate();
-        template.setAerospikeClient(aerospikeClient);
+        template.setAerospikeClient(aerospikeClient.getObject());
         template.setNamespace(this.namespace);
         template.setSetname(this.setname);
         template.setExpiration(this.maxInactiveIntervalInSeconds);
+        template.setMetrics(storeMetrics());
+        template.setTracing(storeTracing());
         return template;
     }
 
+    /**
+     * Fault injection into session store operations, enabled by scenario file
+     * set by {@value FaultInjector#SCENARIO_PROPERTY} system property or
+     * {@value FaultInjector#SCENARIO_ENV} environment variable. Client layer
+     * faults require Aerospike store.
+     *
+     * @return
+     */
+    @Bean("ssa-faultInjectionPostProcessor")
+    public static FaultInjectionBeanPostProcessor faultInjectionPostProcessor() {
+        return new FaultInjectionBeanPostProcessor("ssa-sessionAerospikeTemplate", FaultInjector.fromEnvironment());
+    }
+
+    /**
+     * Shared dictionary of attribute and class names. It is always available
+     * to read dictionary encoded sessions.
+     *
+     * @return
+     */
+    @Bean("ssa-attributeDictionary")
+    @Inject
+    public AttributeDictionary attributeDictionary(final AerospikeOperations<String> aerospikeOperations) {
+        return new AttributeDictionary(aerospikeOperations);
+    }
+
     @Bean(name = "ssa-storeMetadata")
     public StoreMetadata storeMetadata() {
         final StoreMetadata storeMetadata = new StoreMetadata();
@@ -131,9 +318,31 @@ public class AerospikeHttpSessionConfiguration implements ImportAware, BeanClass
         storeMetadata.setSetname(this.setname);
         storeMetadata.setSerializationType(serializationType);
         storeMetadata.setCompression(compression);
+        storeMetadata.setStrictSerialization(strictSerialization);
+        storeMetadata.setDictionaryEncoding(dictionaryEncoding);
+        storeMetadata.setParallelUnmarshalAttributeThreshold(parallelUnmarshalAttributeThreshold);
+        storeMetadata.setParallelUnmarshalSizeThreshold(parallelUnmarshalSizeThreshold);
+        storeMetadata.setMaxAttributeBytes(maxAttributeBytes);
+        storeMetadata.setAttributeSizePolicy(attributeSizePolicy);
+        storeMetadata.setMaxRecordBytes(maxRecordBytes);
+        storeMetadata.setRecordSizePolicy(recordSizePolicy);
+        storeMetadata.setWarnRecordBytes(warnRecordBytes);
+        storeMetadata.setExpiredEventBatchSize(expiredEventBatchSize);
+        storeMetadata.setExpiredEventAttributes(expiredEventAttributes);
         return storeMetadata;
     }
 
+    /**
+     * Class loader caching resolution of attribute class names.
+     *
+     * @return
+     */
+    @Bean("ssa-classLoader")
+    public CachingClassLoader classLoader() {
+        return new CachingClassLoader(
+                beanClassLoader != null ? beanClassLoader : ClassUtils.getDefaultClassLoader());
+    }
+
     /**
      * Single attribute serializer/deserializer.
      *
@@ -141,27 +350,19 @@ public class AerospikeHttpSessionConfiguration implements ImportAware, BeanClass
      */
     @Bean("ssa-attributeSerializer")
     public StoreSerializer<Serializable> attributeSerializer() {
-        if (serializationType == StoreSerializationType.FST) {
-            switch (compression) {
-                case NONE:
-                    return new FastStoreSerializer<Serializable>();
-                case SNAPPY:
-                    return new FastStoreSerializer<Serializable>(StoreCompression.SNAPPY);
-                default:
-                    throw new RuntimeException("Unsupported compression " + compression);
-            }
-        }
-        if (serializationType == StoreSerializationType.KRYO) {
-            switch (compression) {
-                case NONE:
-                    return new KryoStoreSerializer<Serializable>();
-                case SNAPPY:
-                    return new KryoStoreSerializer<Serializable>(StoreCompression.SNAPPY);
-                default:
-                    throw new RuntimeException("Unsupported compression " + compression);
-            }
-        }
-        throw new RuntimeException("Unsupported serializer " + serializationType);
+        return StoreSerializers.attributeSerializer(serializationType, compression, classLoader());
+    }
+
+    /**
+     * Compact codecs for well-known attribute types and generated codecs found
+     * on classpath. Application specific codecs may be registered in this bean.
+     *
+     * @return
+     */
+    @Bean("ssa-attributeCodecRegistry")
+    public AttributeCodecRegistry attributeCodecRegistry() {
+        return new AttributeCodecRegistry(
+                beanClassLoader != null ? beanClassLoader : ClassUtils.getDefaultClassLoader());
     }
 
     /**
@@ -171,20 +372,18 @@ public class AerospikeHttpSessionConfiguration implements ImportAware, BeanClass
      */
     @Bean("ssa-marshalledAttrobutesSerializer")
     public StoreSerializer<Map<String, MarshalledAttribute>> marshalledAttributesSerializer() {
-        if (serializationType == StoreSerializationType.FST) {
-            return new FastStoreSerializer<Map<String, MarshalledAttribute>>();
-        }
-        if (serializationType == StoreSerializationType.KRYO) {
-            return new KryoStoreSerializer<Map<String, MarshalledAttribute>>();
-        }
-        throw new RuntimeException("Unsupported serializer " + serializationType);
+        return StoreSerializers.marshalledAttributesSerializer(serializationType);
     }
 
     @Bean
     public <S extends ExpiringSession> SessionRepositoryFilter<? extends ExpiringSession> springSessionRepositoryFilter(
-            SessionRepository<S> sessionRepository, ServletContext servletContext) {
+            SessionRepository<S> sessionRepository, ObjectProvider<ServletContext> servletContext) {
         final SessionRepositoryFilter<S> sessionRepositoryFilter = new SessionRepositoryFilter<S>(sessionRepository);
-        sessionRepositoryFilter.setServletContext(servletContext);
+        // no servlet context in non-web contexts (tests, benchmarks, load generators)
+        final ServletContext context = servletContext.getIfAvailable();
+        if (context != null) {
+            sessionRepositoryFilter.setServletContext(context);
+        }
         if (httpSessionStrategy != null) {
             sessionRepositoryFilter.setHttpSessionStrategy(httpSessionStrategy);
         }
@@ -196,6 +395,18 @@ public class AerospikeHttpSessionConfiguration implements ImportAware, BeanClass
         this.maxInactiveIntervalInSeconds = maxInactiveIntervalInSeconds;
     }
 
+    public void setSerializationType(StoreSerializationType serializationType) {
+        this.serializationType = serializationType;
+    }
+
+    public void setCompression(StoreCompression compression) {
+        this.compression = compression;
+    }
+
+    public void setInMemoryStore(boolean inMemoryStore) {
+        this.inMemoryStore = inMemoryStore;
+    }
+
     public void setImportMetadata(AnnotationMetadata importMetadata) {
         Map<String, Object> enableAttrMap = importMetadata
                 .getAnnotationAttributes(EnableAerospikeHttpSession.class.getName());
@@ -235,6 +446,21 @@ public class AerospikeHttpSessionConfiguration implements ImportAware, BeanClass
         maxInactiveIntervalInSeconds = enableAttrs.getNumber("maxInactiveIntervalInSeconds");
         serializationType = enableAttrs.getEnum("serializationType");
         compression = enableAttrs.getEnum("compression");
+        strictSerialization = enableAttrs.getBoolean("strictSerialization");
+        dictionaryEncoding = enableAttrs.getBoolean("dictionaryEncoding");
+        parallelUnmarshalAttributeThreshold = enableAttrs.getNumber("parallelUnmarshalAttributeThreshold");
+        parallelUnmarshalSizeThreshold = enableAttrs.getNumber("parallelUnmarshalSizeThreshold");
+        parallelUnmarshalPoolSize = enableAttrs.getNumber("parallelUnmarshalPoolSize");
+        inMemoryStore = enableAttrs.getBoolean("inMemoryStore");
+        attributeAnalyticsSampleRate = enableAttrs.<Double> getNumber("attributeAnalyticsSampleRate");
+        maxAttributeBytes = enableAttrs.getNumber("maxAttributeBytes");
+        attributeSizePolicy = enableAttrs.getEnum("attributeSizePolicy");
+        maxRecordBytes = enableAttrs.getNumber("maxRecordBytes");
+        recordSizePolicy = enableAttrs.getEnum("recordSizePolicy");
+        warnRecordBytes = enableAttrs.getNumber("warnRecordBytes");
+        expiredEventBatchSize = enableAttrs.getNumber("expiredEventBatchSize");
+        expiredEventBufferSize = enableAttrs.getNumber("expiredEventBufferSize");
+        expiredEventAttributes = enableAttrs.getStringArray("expiredEventAttributes");
     }
 
     /**
@@ -25,6 +25,7 @@ import org.springframework.session.Session;
 
 import com.aerospike.client.IAerospikeClient;
 
+import us.swcraft.springframework.session.store.SizeLimitPolicy;
 import us.swcraft.springframework.session.store.StoreCompression;
 import us.swcraft.springframework.session.store.StoreSerializationType;
 
@@ -32,7 +33,8 @@ import us.swcraft.springframework.session.store.StoreSerializationType;
  * Add this annotation to an {@code @Configuration} class to expose the
  * SessionRepositoryFilter as a bean named "springSessionRepositoryFilter" and
  * backed by Aerospike. In order to leverage the annotation, a single instance
- * of each {@link IAerospikeClient} must be provided. For example:
+ * of each {@link IAerospikeClient} must be provided (unless
+ * {@link #inMemoryStore()} is enabled). For example:
  *
  * <pre>
  * {@literal @Configuration}
@@ -93,4 +95,136 @@ public @interface EnableAerospikeHttpSession {
      * @return compression type
      */
     StoreCompression compression() default StoreCompression.NONE;  
+
+    /**
+     * Strict serialization mode. When enabled, setting an attribute which
+     * can't be serialized fails immediately with
+     * {@link IllegalArgumentException} instead of the attribute being silently
+     * dropped on save.
+     * 
+     * @return <code>true</code> to reject non-serializable attributes
+     */
+    boolean strictSerialization() default false;
+
+    /**
+     * Dictionary encoding. When enabled, attribute names and class names are
+     * stored once in a shared dictionary record and sessions carry small
+     * integer ids instead. Sessions written with dictionary encoding can't be
+     * read by versions without dictionary support.
+     * 
+     * @return <code>true</code> to enable dictionary encoding
+     */
+    boolean dictionaryEncoding() default false;
+
+    /**
+     * Number of session attributes starting from which the attributes are
+     * deserialized in parallel. Zero disables the threshold.
+     * 
+     * @return attribute count threshold
+     */
+    int parallelUnmarshalAttributeThreshold() default 32;
+
+    /**
+     * Stored session size in bytes starting from which the attributes are
+     * deserialized in parallel. Zero disables the threshold.
+     * 
+     * @return session size threshold
+     */
+    int parallelUnmarshalSizeThreshold() default 131072;
+
+    /**
+     * Parallelism of the pool deserializing large sessions.
+     * 
+     * @return number of threads
+     */
+    int parallelUnmarshalPoolSize() default 4;
+
+    /**
+     * In-memory store. When enabled, sessions are kept in memory of the
+     * application instead of Aerospike and no {@link IAerospikeClient} is
+     * required. It is intended for local development, tests and load tests.
+     * 
+     * @return <code>true</code> to keep sessions in memory
+     */
+    boolean inMemoryStore() default false;
+
+    /**
+     * Share of session saves and loads sampled by attribute size analytics.
+     * Analytics is exposed as
+     * <code>us.swcraft.springframework.session:type=AttributeSizeAnalytics</code>
+     * MXBean and can be tuned at runtime.
+     * 
+     * @return sample rate between 0 (disabled) and 1
+     */
+    double attributeAnalyticsSampleRate() default 0.01;
+
+    /**
+     * Maximum serialized size of session attribute in bytes. Zero disables
+     * the limit.
+     * 
+     * @return size limit
+     */
+    int maxAttributeBytes() default 0;
+
+    /**
+     * Action on attribute exceeding {@link #maxAttributeBytes()}.
+     * {@link SizeLimitPolicy#REJECT} serializes the value on
+     * <code>setAttribute</code>.
+     * 
+     * @return size limit policy
+     */
+    SizeLimitPolicy attributeSizePolicy() default SizeLimitPolicy.DROP;
+
+    /**
+     * Maximum serialized size of session attributes in bytes. It should be
+     * below Aerospike namespace write block size. Zero disables the limit.
+     * 
+     * @return size limit
+     */
+    int maxRecordBytes() default 0;
+
+    /**
+     * Action on session exceeding {@link #maxRecordBytes()}.
+     * {@link SizeLimitPolicy#DROP} and {@link SizeLimitPolicy#OFFLOAD} are
+     * applied to the largest attributes until the session fits,
+     * {@link SizeLimitPolicy#REJECT} drops them like
+     * {@link SizeLimitPolicy#DROP}.
+     * 
+     * @return size limit policy
+     */
+    SizeLimitPolicy recordSizePolicy() default SizeLimitPolicy.REJECT;
+
+    /**
+     * Serialized size of session attributes in bytes starting from which a
+     * warning is logged. Zero disables the warning.
+     * 
+     * @return size threshold
+     */
+    int warnRecordBytes() default 0;
+
+    /**
+     * Number of {@code SessionExpiredEvent}s of expired sessions cleanup
+     * published in one batch.
+     * 
+     * @return batch size
+     */
+    int expiredEventBatchSize() default 100;
+
+    /**
+     * Number of event batches waiting to be published. When the buffer is
+     * full, cleanup publishes the batch itself.
+     * 
+     * @return buffer size in batches
+     */
+    int expiredEventBufferSize() default 16;
+
+    /**
+     * Names of attributes included in session of {@code SessionExpiredEvent},
+     * for example the principal name. Expired session is fetched before
+     * deletion only if attributes are set; otherwise the event carries
+     * session id only.
+     * 
+     * @return attribute names
+     */
+    String[] expiredEventAttributes() default {};
 }
\ No newline at end of file
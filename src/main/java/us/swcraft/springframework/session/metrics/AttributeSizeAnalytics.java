@@ -0,0 +1,310 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import us.swcraft.springframework.session.model.MarshalledAttribute;
+
+/**
+ * Sampled size analytics of session attributes for capacity planning. Only
+ * sampled saves and loads are recorded, so not sampled save costs a random
+ * number. For every attribute name and class it records serialized size
+ * distribution, write and read frequency. Statistics are exposed as
+ * <code>us.swcraft.springframework.session:type=AttributeSizeAnalytics</code>
+ * MXBean.
+ * <p>
+ * Number of tracked attributes is limited by
+ * {@value #MAX_TRACKED_ATTRIBUTES}, other attributes are recorded as
+ * {@value #OTHER}.
+ */
+public class AttributeSizeAnalytics implements AttributeSizeAnalyticsMXBean {
+
+    public static final int MAX_TRACKED_ATTRIBUTES = 1024;
+
+    public static final String OTHER = "<other>";
+
+    /**
+     * Aerospike primary index entry size.
+     */
+    static final int PRIMARY_INDEX_BYTES = 64;
+
+    private static final int BUCKETS = 33;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final String name;
+
+    private volatile double sampleRate;
+
+    private final ConcurrentMap<Key, Stats> stats = new ConcurrentHashMap<>();
+
+    private final LongAdder sampledSaves = new LongAdder();
+
+    private final LongAdder sampledLoads = new LongAdder();
+
+    private final LongAdder sampledPayloadBytes = new LongAdder();
+
+    private ObjectName objectName;
+
+    /**
+     * @param sampleRate
+     *            share of saves and loads to sample, 0 - disabled
+     * @param name
+     *            name of MXBean, usually session set name
+     */
+    public AttributeSizeAnalytics(final double sampleRate, final String name) {
+        setSampleRate(sampleRate);
+        this.name = name;
+    }
+
+    @PostConstruct
+    public void register() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            objectName = new ObjectName("us.swcraft.springframework.session:type=AttributeSizeAnalytics,name="
+                    + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+        } catch (InstanceAlreadyExistsException e) {
+            log.warn("Attribute size analytics {} is already registered", objectName);
+            objectName = null;
+        } catch (JMException e) {
+            log.warn("Unable to register attribute size analytics: {}", e.getMessage());
+            objectName = null;
+        }
+    }
+
+    @PreDestroy
+    public void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.debug("Unable to unregister attribute size analytics: {}", e.getMessage());
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if current save or load has to be recorded
+     */
+    public boolean sample() {
+        final double rate = sampleRate;
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * Records sampled save.
+     * 
+     * @param marshalledAttributes
+     *            saved attributes
+     * @param payloadBytes
+     *            serialized session size
+     */
+    public void recordWrite(final Map<String, MarshalledAttribute> marshalledAttributes, final int payloadBytes) {
+        final double weight = weight();
+        sampledSaves.increment();
+        sampledPayloadBytes.add(payloadBytes);
+        for (MarshalledAttribute attribute : marshalledAttributes.values()) {
+            stats(attribute.getAttributeName(), attribute.getClassName()).write(attribute.getContent().length,
+                    weight);
+        }
+    }
+
+    /**
+     * Records sampled session load. Attributes read from the session are
+     * recorded by {@link #recordRead(String, String)}.
+     */
+    public void recordLoad() {
+        sampledLoads.increment();
+    }
+
+    /**
+     * Records attribute read from sampled session.
+     * 
+     * @param attributeName
+     * @param className
+     */
+    public void recordRead(final String attributeName, final String className) {
+        stats(attributeName, className).read(weight());
+    }
+
+    private double weight() {
+        final double rate = sampleRate;
+        return rate > 0 ? 1 / Math.min(rate, 1) : 0;
+    }
+
+    private Stats stats(final String attributeName, final String className) {
+        final Key key = new Key(attributeName, className);
+        Stats s = stats.get(key);
+        if (s == null) {
+            if (stats.size() >= MAX_TRACKED_ATTRIBUTES) {
+                return stats.computeIfAbsent(new Key(OTHER, OTHER), k -> new Stats());
+            }
+            s = stats.computeIfAbsent(key, k -> new Stats());
+        }
+        return s;
+    }
+
+    @Override
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void setSampleRate(final double sampleRate) {
+        Assert.isTrue(sampleRate >= 0 && sampleRate <= 1, "sample rate must be between 0 and 1");
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public long getSampledSaves() {
+        return sampledSaves.sum();
+    }
+
+    @Override
+    public long getSampledLoads() {
+        return sampledLoads.sum();
+    }
+
+    @Override
+    public double getMeanSessionBytes() {
+        final long saves = sampledSaves.sum();
+        return saves == 0 ? 0 : (double) sampledPayloadBytes.sum() / saves;
+    }
+
+    @Override
+    public List<AttributeSizeStats> getAttributes() {
+        final long saves = sampledSaves.sum();
+        final List<AttributeSizeStats> result = new ArrayList<>(stats.size());
+        for (Map.Entry<Key, Stats> entry : stats.entrySet()) {
+            result.add(entry.getValue().snapshot(entry.getKey(), saves));
+        }
+        result.sort(Comparator.comparingDouble(AttributeSizeStats::getBytesPerSession).reversed());
+        return result;
+    }
+
+    @Override
+    public long projectNamespaceBytes(final long activeSessions, final int replicationFactor) {
+        return Math.round(activeSessions * (PRIMARY_INDEX_BYTES + getMeanSessionBytes()) * replicationFactor);
+    }
+
+    @Override
+    public void reset() {
+        stats.clear();
+        sampledSaves.reset();
+        sampledLoads.reset();
+        sampledPayloadBytes.reset();
+    }
+
+    private static final class Key {
+        private final String name;
+        private final String className;
+
+        Key(final String name, final String className) {
+            this.name = name;
+            this.className = className;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + (className == null ? 0 : className.hashCode());
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return name.equals(other.name)
+                    && (className == null ? other.className == null : className.equals(other.className));
+        }
+    }
+
+    /**
+     * Counters of single attribute. Sizes are counted in power of 2 buckets.
+     */
+    private static final class Stats {
+        private final LongAdder writes = new LongAdder();
+        private final DoubleAdder estimatedWrites = new DoubleAdder();
+        private final LongAdder reads = new LongAdder();
+        private final DoubleAdder estimatedReads = new DoubleAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAccumulator maxBytes = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray sizeBuckets = new AtomicLongArray(BUCKETS);
+
+        void write(final int size, final double weight) {
+            writes.increment();
+            estimatedWrites.add(weight);
+            bytes.add(size);
+            maxBytes.accumulate(size);
+            sizeBuckets.incrementAndGet(Integer.SIZE - Integer.numberOfLeadingZeros(size));
+        }
+
+        void read(final double weight) {
+            reads.increment();
+            estimatedReads.add(weight);
+        }
+
+        AttributeSizeStats snapshot(final Key key, final long saves) {
+            final long w = writes.sum();
+            return new AttributeSizeStats(key.name, key.className, w, Math.round(estimatedWrites.sum()), reads.sum(),
+                    Math.round(estimatedReads.sum()), w == 0 ? 0 : (double) bytes.sum() / w, maxBytes.get(),
+                    percentile(w, 0.5), percentile(w, 0.95), percentile(w, 0.99),
+                    saves == 0 ? 0 : Math.min(1, (double) w / saves));
+        }
+
+        private long percentile(final long count, final double p) {
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = (long) Math.ceil(count * p);
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += sizeBuckets.get(bucket);
+                if (seen >= rank) {
+                    return bucket == 0 ? 0 : 1L << bucket;
+                }
+            }
+            return maxBytes.get();
+        }
+    }
+
+}
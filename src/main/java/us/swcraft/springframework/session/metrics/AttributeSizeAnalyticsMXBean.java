@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view of sampled session attribute analytics.
+ */
+public interface AttributeSizeAnalyticsMXBean {
+
+    /**
+     * @return share of saves and loads which are sampled, 0 - disabled
+     */
+    double getSampleRate();
+
+    void setSampleRate(double sampleRate);
+
+    long getSampledSaves();
+
+    long getSampledLoads();
+
+    /**
+     * @return mean serialized session size in bytes
+     */
+    double getMeanSessionBytes();
+
+    /**
+     * @return statistics by attribute name and class, largest contribution
+     *         to session size first
+     */
+    List<AttributeSizeStats> getAttributes();
+
+    /**
+     * Projects namespace memory needed for given number of active sessions:
+     * primary index and mean session record size multiplied by replication
+     * factor.
+     * 
+     * @param activeSessions
+     * @param replicationFactor
+     * @return bytes
+     */
+    long projectNamespaceBytes(long activeSessions, int replicationFactor);
+
+    /**
+     * Discards collected statistics.
+     */
+    void reset();
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.metrics;
+
+/**
+ * Sampled statistics of session attribute with given name and class.
+ * Estimated counts are sampled counts scaled by sample rate.
+ */
+public class AttributeSizeStats {
+
+    private final String name;
+    private final String className;
+    private final long sampledWrites;
+    private final long estimatedWrites;
+    private final long sampledReads;
+    private final long estimatedReads;
+    private final double meanBytes;
+    private final long maxBytes;
+    private final long p50Bytes;
+    private final long p95Bytes;
+    private final long p99Bytes;
+    private final double presence;
+
+    public AttributeSizeStats(final String name, final String className, final long sampledWrites,
+            final long estimatedWrites, final long sampledReads, final long estimatedReads, final double meanBytes,
+            final long maxBytes, final long p50Bytes, final long p95Bytes, final long p99Bytes,
+            final double presence) {
+        this.name = name;
+        this.className = className;
+        this.sampledWrites = sampledWrites;
+        this.estimatedWrites = estimatedWrites;
+        this.sampledReads = sampledReads;
+        this.estimatedReads = estimatedReads;
+        this.meanBytes = meanBytes;
+        this.maxBytes = maxBytes;
+        this.p50Bytes = p50Bytes;
+        this.p95Bytes = p95Bytes;
+        this.p99Bytes = p99Bytes;
+        this.presence = presence;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public long getSampledWrites() {
+        return sampledWrites;
+    }
+
+    public long getEstimatedWrites() {
+        return estimatedWrites;
+    }
+
+    public long getSampledReads() {
+        return sampledReads;
+    }
+
+    public long getEstimatedReads() {
+        return estimatedReads;
+    }
+
+    public double getMeanBytes() {
+        return meanBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return upper bound of median size, power of 2
+     */
+    public long getP50Bytes() {
+        return p50Bytes;
+    }
+
+    /**
+     * @return upper bound of 95th percentile of size, power of 2
+     */
+    public long getP95Bytes() {
+        return p95Bytes;
+    }
+
+    /**
+     * @return upper bound of 99th percentile of size, power of 2
+     */
+    public long getP99Bytes() {
+        return p99Bytes;
+    }
+
+    /**
+     * @return share of saved sessions having the attribute
+     */
+    public double getPresence() {
+        return presence;
+    }
+
+    /**
+     * @return mean contribution of the attribute to session size in bytes
+     */
+    public double getBytesPerSession() {
+        return meanBytes * presence;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + className + "): " + estimatedWrites + " writes, " + estimatedReads + " reads, mean "
+                + Math.round(meanBytes) + " bytes, p99 " + p99Bytes + " bytes, presence " + presence;
+    }
+
+}
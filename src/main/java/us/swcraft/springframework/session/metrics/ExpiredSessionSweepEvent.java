@@ -0,0 +1,43 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Expired sessions cleanup.
+ */
+@Name("us.swcraft.session.ExpiredSessionSweep")
+@Label("Expired Session Sweep")
+@Category({ "Spring Session", "Aerospike" })
+@Description("Expired sessions queried and deleted from store")
+@StackTrace(false)
+public class ExpiredSessionSweepEvent extends Event {
+
+    @Label("Expired Sessions")
+    int expiredSessions;
+
+    @Label("Query Latency")
+    @Timespan
+    long queryLatency;
+
+}
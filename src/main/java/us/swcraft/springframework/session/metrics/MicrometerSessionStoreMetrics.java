@@ -0,0 +1,163 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.util.Assert;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Session store metrics registered in Micrometer registry. All meters are
+ * created upfront, so recording is a lookup in array and a meter update.
+ * <ul>
+ * <li><code>ssa.store.operations</code> - store operation timers tagged by
+ * <code>operation</code> and <code>outcome</code>;</li>
+ * <li><code>ssa.session.size</code>, <code>ssa.session.attributes</code> -
+ * serialized session size and attribute count tagged by
+ * <code>operation</code> (<code>marshall</code> or
+ * <code>unmarshal</code>);</li>
+ * <li><code>ssa.transformer.marshall</code>,
+ * <code>ssa.transformer.unmarshal</code> - session attributes transformation
+ * timers;</li>
+ * <li><code>ssa.executor.active</code>, <code>ssa.executor.queued</code> -
+ * executor gauges tagged by <code>name</code>;</li>
+ * <li><code>ssa.executor.caller.runs</code>,
+ * <code>ssa.session.transient.skipped</code>,
+ * <code>ssa.deserialization.failures</code> - counters.</li>
+ * </ul>
+ */
+public class MicrometerSessionStoreMetrics implements SessionStoreMetrics {
+
+    private final MeterRegistry registry;
+
+    private final Timer[][] storeOperationTimers;
+
+    private final Timer marshallTimer;
+    private final Timer unmarshalTimer;
+
+    private final DistributionSummary marshalledSize;
+    private final DistributionSummary marshalledAttributes;
+    private final DistributionSummary unmarshalledSize;
+    private final DistributionSummary unmarshalledAttributes;
+
+    private final Counter callerRuns;
+    private final Counter transientSkipped;
+    private final Counter deserializationFailures;
+
+    public MicrometerSessionStoreMetrics(final MeterRegistry registry) {
+        Assert.notNull(registry, "meter registry can't be null");
+        this.registry = registry;
+        storeOperationTimers = new Timer[StoreOperation.values().length][Outcome.values().length];
+        for (StoreOperation operation : StoreOperation.values()) {
+            for (Outcome outcome : Outcome.values()) {
+                storeOperationTimers[operation.ordinal()][outcome.ordinal()] = Timer.builder("ssa.store.operations")
+                        .description("Session store operations").tag("operation", tagValue(operation))
+                        .tag("outcome", tagValue(outcome)).register(registry);
+            }
+        }
+        marshallTimer = Timer.builder("ssa.transformer.marshall").description("Session attributes marshalling")
+                .register(registry);
+        unmarshalTimer = Timer.builder("ssa.transformer.unmarshal").description("Session attributes unmarshalling")
+                .register(registry);
+        marshalledSize = sizeSummary("marshall");
+        unmarshalledSize = sizeSummary("unmarshal");
+        marshalledAttributes = attributesSummary("marshall");
+        unmarshalledAttributes = attributesSummary("unmarshal");
+        callerRuns = Counter.builder("ssa.executor.caller.runs")
+                .description("Session saves executed by calling thread").register(registry);
+        transientSkipped = Counter.builder("ssa.session.transient.skipped")
+                .description("Transient sessions which are not saved").register(registry);
+        deserializationFailures = Counter.builder("ssa.deserialization.failures")
+                .description("Sessions and attributes which can't be deserialized").register(registry);
+    }
+
+    /**
+     * Creates metrics if Micrometer registry bean is available.
+     * 
+     * @param beanFactory
+     * @return metrics or <code>null</code> if there is no registry
+     */
+    public static SessionStoreMetrics create(final BeanFactory beanFactory) {
+        final MeterRegistry registry = beanFactory.getBeanProvider(MeterRegistry.class).getIfAvailable();
+        return registry == null ? null : new MicrometerSessionStoreMetrics(registry);
+    }
+
+    private DistributionSummary sizeSummary(final String operation) {
+        return DistributionSummary.builder("ssa.session.size").description("Serialized session size")
+                .baseUnit("bytes").tag("operation", operation).register(registry);
+    }
+
+    private DistributionSummary attributesSummary(final String operation) {
+        return DistributionSummary.builder("ssa.session.attributes").description("Session attribute count")
+                .tag("operation", operation).register(registry);
+    }
+
+    private static String tagValue(final Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT).replace('_', '.');
+    }
+
+    @Override
+    public void recordStoreOperation(final StoreOperation operation, final Outcome outcome, final long nanos) {
+        storeOperationTimers[operation.ordinal()][outcome.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordMarshall(final long nanos, final int size, final int attributeCount) {
+        marshallTimer.record(nanos, TimeUnit.NANOSECONDS);
+        marshalledSize.record(size);
+        marshalledAttributes.record(attributeCount);
+    }
+
+    @Override
+    public void recordUnmarshal(final long nanos, final int size, final int attributeCount) {
+        unmarshalTimer.record(nanos, TimeUnit.NANOSECONDS);
+        unmarshalledSize.record(size);
+        unmarshalledAttributes.record(attributeCount);
+    }
+
+    @Override
+    public void callerRunsFallback() {
+        callerRuns.increment();
+    }
+
+    @Override
+    public void transientSessionSkipped() {
+        transientSkipped.increment();
+    }
+
+    @Override
+    public void deserializationFailure() {
+        deserializationFailures.increment();
+    }
+
+    @Override
+    public void monitorExecutor(final String name, final ThreadPoolExecutor executor) {
+        Gauge.builder("ssa.executor.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Active executor threads").tag("name", name).register(registry);
+        Gauge.builder("ssa.executor.queued", executor, e -> e.getQueue().size())
+                .description("Tasks waiting in executor queue").tag("name", name).register(registry);
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Session loaded from store.
+ */
+@Name("us.swcraft.session.SessionLoad")
+@Label("Session Load")
+@Category({ "Spring Session", "Aerospike" })
+@Description("Session fetched from store and unmarshalled")
+@StackTrace(false)
+@Threshold("1 ms")
+public class SessionLoadEvent extends Event {
+
+    @Label("Session Id Hash")
+    int sessionIdHash;
+
+    @Label("Found")
+    boolean found;
+
+    @Label("Size")
+    @DataAmount
+    int bytes;
+
+    @Label("Attributes")
+    int attributes;
+
+    @Label("Aerospike Latency")
+    @Timespan
+    long storeLatency;
+
+    @Label("Unmarshal Time")
+    @Timespan
+    long unmarshalTime;
+
+}
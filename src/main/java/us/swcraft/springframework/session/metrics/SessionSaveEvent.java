@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Session saved to store.
+ */
+@Name("us.swcraft.session.SessionSave")
+@Label("Session Save")
+@Category({ "Spring Session", "Aerospike" })
+@Description("Changed session attributes marshalled and session saved to store")
+@StackTrace(false)
+@Threshold("1 ms")
+public class SessionSaveEvent extends Event {
+
+    @Label("Session Id Hash")
+    int sessionIdHash;
+
+    @Label("New Session")
+    boolean newSession;
+
+    @Label("Size")
+    @Description("Size of saved attributes, 0 if attributes are not changed")
+    @DataAmount
+    int bytes;
+
+    @Label("Attributes")
+    int attributes;
+
+    @Label("Aerospike Latency")
+    @Timespan
+    long storeLatency;
+
+    @Label("Serialization Time")
+    @Timespan
+    long serializationTime;
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.metrics;
+
+import org.springframework.util.ClassUtils;
+
+/**
+ * Java Flight Recorder events of session store. Events are emitted only if
+ * JFR is available and the event is enabled in running recording, otherwise
+ * <code>begin</code> methods return <code>null</code> and nothing is
+ * allocated or measured. Events shorter than configured threshold are
+ * dropped by JFR on commit.
+ * <p>
+ * Usage:
+ * 
+ * <pre>
+ * final Object event = SessionStoreEvents.beginLoad();
+ * ...
+ * SessionStoreEvents.commitLoad(event, sessionId, ...);
+ * </pre>
+ */
+public final class SessionStoreEvents {
+
+    private static final boolean JFR_PRESENT = ClassUtils.isPresent("jdk.jfr.Event",
+            SessionStoreEvents.class.getClassLoader());
+
+    private SessionStoreEvents() {
+    }
+
+    /**
+     * @return session load event or <code>null</code> if it is not recorded
+     */
+    public static Object beginLoad() {
+        return JFR_PRESENT ? JfrEvents.beginLoad() : null;
+    }
+
+    /**
+     * @param event
+     *            event returned by {@link #beginLoad()}
+     * @param sessionId
+     * @param found
+     *            <code>true</code> if session has been found
+     * @param bytes
+     *            serialized attributes size
+     * @param attributes
+     *            attribute count
+     * @param storeNanos
+     *            Aerospike latency
+     * @param unmarshalNanos
+     *            unmarshal time
+     */
+    public static void commitLoad(final Object event, final String sessionId, final boolean found, final int bytes,
+            final int attributes, final long storeNanos, final long unmarshalNanos) {
+        if (event != null) {
+            JfrEvents.commitLoad(event, sessionId, found, bytes, attributes, storeNanos, unmarshalNanos);
+        }
+    }
+
+    /**
+     * @return session save event or <code>null</code> if it is not recorded
+     */
+    public static Object beginSave() {
+        return JFR_PRESENT ? JfrEvents.beginSave() : null;
+    }
+
+    /**
+     * @param event
+     *            event returned by {@link #beginSave()}
+     * @param sessionId
+     * @param newSession
+     * @param bytes
+     *            serialized attributes size, 0 if attributes are not saved
+     * @param attributes
+     *            attribute count
+     * @param storeNanos
+     *            Aerospike latency
+     * @param serializationNanos
+     *            attributes marshalling time
+     */
+    public static void commitSave(final Object event, final String sessionId, final boolean newSession,
+            final int bytes, final int attributes, final long storeNanos, final long serializationNanos) {
+        if (event != null) {
+            JfrEvents.commitSave(event, sessionId, newSession, bytes, attributes, storeNanos, serializationNanos);
+        }
+    }
+
+    /**
+     * @return marshall event or <code>null</code> if it is not recorded
+     */
+    public static Object beginMarshall() {
+        return JFR_PRESENT ? JfrEvents.beginMarshall() : null;
+    }
+
+    /**
+     * @param event
+     *            event returned by {@link #beginMarshall()}
+     * @param unmarshal
+     *            <code>true</code> if attributes have been unmarshalled
+     * @param bytes
+     *            serialized attributes size
+     * @param attributes
+     *            attribute count
+     */
+    public static void commitMarshall(final Object event, final boolean unmarshal, final int bytes,
+            final int attributes) {
+        if (event != null) {
+            JfrEvents.commitMarshall(event, unmarshal, bytes, attributes);
+        }
+    }
+
+    /**
+     * @return sweep event or <code>null</code> if it is not recorded
+     */
+    public static Object beginSweep() {
+        return JFR_PRESENT ? JfrEvents.beginSweep() : null;
+    }
+
+    /**
+     * @param event
+     *            event returned by {@link #beginSweep()}
+     * @param expiredSessions
+     *            number of deleted sessions
+     * @param queryNanos
+     *            query latency
+     */
+    public static void commitSweep(final Object event, final int expiredSessions, final long queryNanos) {
+        if (event != null) {
+            JfrEvents.commitSweep(event, expiredSessions, queryNanos);
+        }
+    }
+
+    /**
+     * JFR bound part, loaded only if JFR is available.
+     */
+    private static final class JfrEvents {
+
+        private static final jdk.jfr.EventType LOAD = jdk.jfr.EventType.getEventType(SessionLoadEvent.class);
+        private static final jdk.jfr.EventType SAVE = jdk.jfr.EventType.getEventType(SessionSaveEvent.class);
+        private static final jdk.jfr.EventType MARSHALL = jdk.jfr.EventType
+                .getEventType(SessionMarshallEvent.class);
+        private static final jdk.jfr.EventType SWEEP = jdk.jfr.EventType
+                .getEventType(ExpiredSessionSweepEvent.class);
+
+        static Object beginLoad() {
+            if (!LOAD.isEnabled()) {
+                return null;
+            }
+            final SessionLoadEvent event = new SessionLoadEvent();
+            event.begin();
+            return event;
+        }
+
+        static void commitLoad(final Object e, final String sessionId, final boolean found, final int bytes,
+                final int attributes, final long storeNanos, final long unmarshalNanos) {
+            final SessionLoadEvent event = (SessionLoadEvent) e;
+            event.end();
+            if (event.shouldCommit()) {
+                event.sessionIdHash = hash(sessionId);
+                event.found = found;
+                event.bytes = bytes;
+                event.attributes = attributes;
+                event.storeLatency = storeNanos;
+                event.unmarshalTime = unmarshalNanos;
+                event.commit();
+            }
+        }
+
+        static Object beginSave() {
+            if (!SAVE.isEnabled()) {
+                return null;
+            }
+            final SessionSaveEvent event = new SessionSaveEvent();
+            event.begin();
+            return event;
+        }
+
+        static void commitSave(final Object e, final String sessionId, final boolean newSession, final int bytes,
+                final int attributes, final long storeNanos, final long serializationNanos) {
+            final SessionSaveEvent event = (SessionSaveEvent) e;
+            event.end();
+            if (event.shouldCommit()) {
+                event.sessionIdHash = hash(sessionId);
+                event.newSession = newSession;
+                event.bytes = bytes;
+                event.attributes = attributes;
+                event.storeLatency = storeNanos;
+                event.serializationTime = serializationNanos;
+                event.commit();
+            }
+        }
+
+        static Object beginMarshall() {
+            if (!MARSHALL.isEnabled()) {
+                return null;
+            }
+            final SessionMarshallEvent event = new SessionMarshallEvent();
+            event.begin();
+            return event;
+        }
+
+        static void commitMarshall(final Object e, final boolean unmarshal, final int bytes, final int attributes) {
+            final SessionMarshallEvent event = (SessionMarshallEvent) e;
+            event.end();
+            if (event.shouldCommit()) {
+                event.unmarshal = unmarshal;
+                event.bytes = bytes;
+                event.attributes = attributes;
+                event.commit();
+            }
+        }
+
+        static Object beginSweep() {
+            if (!SWEEP.isEnabled()) {
+                return null;
+            }
+            final ExpiredSessionSweepEvent event = new ExpiredSessionSweepEvent();
+            event.begin();
+            return event;
+        }
+
+        static void commitSweep(final Object e, final int expiredSessions, final long queryNanos) {
+            final ExpiredSessionSweepEvent event = (ExpiredSessionSweepEvent) e;
+            event.end();
+            if (event.shouldCommit()) {
+                event.expiredSessions = expiredSessions;
+                event.queryLatency = queryNanos;
+                event.commit();
+            }
+        }
+
+        private static int hash(final String sessionId) {
+            return sessionId == null ? 0 : sessionId.hashCode();
+        }
+
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.metrics;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Session store instrumentation. All methods do nothing by default, so
+ * {@link #NOOP} costs nothing when metrics library is not available.
+ * Implementations must be thread-safe and must not allocate on recording.
+ */
+public interface SessionStoreMetrics {
+
+    /**
+     * Store operations.
+     */
+    enum StoreOperation {
+        FETCH, PERSIST, DELETE, EXISTS, QUERY
+    }
+
+    /**
+     * Store operation outcomes.
+     */
+    enum Outcome {
+        /**
+         * Operation succeeded.
+         */
+        SUCCESS,
+        /**
+         * Record not found.
+         */
+        NOT_FOUND,
+        /**
+         * Record has been changed concurrently.
+         */
+        CONFLICT,
+        /**
+         * Operation failed.
+         */
+        ERROR
+    }
+
+    /**
+     * Metrics which are not recorded.
+     */
+    SessionStoreMetrics NOOP = new SessionStoreMetrics() {
+    };
+
+    /**
+     * Records store operation.
+     * 
+     * @param operation
+     * @param outcome
+     * @param nanos
+     *            operation duration
+     */
+    default void recordStoreOperation(final StoreOperation operation, final Outcome outcome, final long nanos) {
+    }
+
+    /**
+     * Records session attributes marshalling.
+     * 
+     * @param nanos
+     *            duration
+     * @param size
+     *            serialized session size in bytes
+     * @param attributeCount
+     */
+    default void recordMarshall(final long nanos, final int size, final int attributeCount) {
+    }
+
+    /**
+     * Records session attributes unmarshalling.
+     * 
+     * @param nanos
+     *            duration
+     * @param size
+     *            serialized session size in bytes
+     * @param attributeCount
+     */
+    default void recordUnmarshal(final long nanos, final int size, final int attributeCount) {
+    }
+
+    /**
+     * Counts session save executed by calling thread because store executor
+     * is saturated.
+     */
+    default void callerRunsFallback() {
+    }
+
+    /**
+     * Counts transient session which is not saved.
+     */
+    default void transientSessionSkipped() {
+    }
+
+    /**
+     * Counts session or attribute which can't be deserialized.
+     */
+    default void deserializationFailure() {
+    }
+
+    /**
+     * Starts monitoring of executor active threads and queue depth.
+     * 
+     * @param name
+     *            executor name
+     * @param executor
+     */
+    default void monitorExecutor(final String name, final ThreadPoolExecutor executor) {
+    }
+
+}
@@ -34,13 +34,28 @@ public class MarshalledAttribute implements Serializable  {
     private final String className;
     private final byte[] content;
 
+    /**
+     * Content hash, calculated on demand. Not stored.
+     */
+    private transient int contentHash;
+
+    /**
+     * Creates marshalled attribute. The content array is not copied - the
+     * attribute takes ownership of it and the caller must not modify it
+     * afterwards.
+     * 
+     * @param attributeName
+     * @param className
+     * @param content
+     *            serialized attribute value
+     */
     public MarshalledAttribute(String attributeName, String className, byte[] content) {
         Assert.notNull(attributeName, "attribute name can't be null");
         Assert.notNull(className, "class name can't be null");
         Assert.notNull(content, "Serialized content can't be null");
         this.attributeName = attributeName;
         this.className = className;
-        this.content = Arrays.copyOf(content, content.length);
+        this.content = content;
     }
 
     public String getAttributeName() {
@@ -51,9 +66,48 @@ public class MarshalledAttribute implements Serializable  {
         return className;
     }
 
+    /**
+     * @return serialized content - shared, must not be modified
+     */
     public byte[] getContent() {
         return content;
     }
+
+    /**
+     * Returns content hash. It is calculated once and cached, so it is cheap to
+     * compare attribute loaded with session with the same attribute marshalled
+     * again on save.
+     * 
+     * @return content hash
+     */
+    public int getContentHash() {
+        int h = contentHash;
+        if (h == 0) {
+            h = Arrays.hashCode(content);
+            if (h == 0) {
+                h = 1;
+            }
+            contentHash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Checks if other marshalled attribute has the same class and content.
+     * Hashes are compared first, so different content is usually detected
+     * without comparing bytes.
+     * 
+     * @param other
+     * @return <code>true</code> if class name and content are equal
+     */
+    public boolean hasSameContent(final MarshalledAttribute other) {
+        if (other == this) {
+            return true;
+        }
+        return other != null && content.length == other.content.length
+                && getContentHash() == other.getContentHash() && className.equals(other.className)
+                && Arrays.equals(content, other.content);
+    }
     
     @Override
     public String toString() {
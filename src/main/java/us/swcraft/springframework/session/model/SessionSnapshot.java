@@ -15,31 +15,44 @@
  */
 package us.swcraft.springframework.session.model;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * Immutable session snapshot to save.
+ * Immutable session snapshot to save. Attribute maps are not copied - the
+ * snapshot takes ownership of the maps handed to the builder, so the session
+ * must not change them after the snapshot is built.
  */
 public class SessionSnapshot {
 
     private final String sessionId;
     private long expirationTimestamp;
     private boolean updated;
+    private boolean attributesRemoved;
     private long creationTime;
     private long lastAccessedTime;
     private int maxInactiveIntervalInSec;
     private Map<String, Object> sessionAttrs;
+    private Map<String, MarshalledAttribute> storedAttrs;
+    private Set<String> dirtyAttrs;
+    private Map<String, MarshalledAttribute> checkedAttrs;
 
     public static class Builder {
 
         private final String sessionId;
         private long expirationTimestamp;
         private boolean updated;
+        private boolean attributesRemoved;
         private long creationTime;
         private long lastAccessedTime;
         private int maxInactiveIntervalInSec;
         private Map<String, Object> sessionAttrs = new HashMap<>();
+        private boolean sessionAttrsAdopted;
+        private Map<String, MarshalledAttribute> storedAttrs = Collections.emptyMap();
+        private Set<String> dirtyAttrs;
+        private Map<String, MarshalledAttribute> checkedAttrs = Collections.emptyMap();
 
         public Builder(final String sessionId) {
             this.sessionId = sessionId;
@@ -55,6 +68,11 @@ public class SessionSnapshot {
             return this;
         }
 
+        public Builder attributesRemoved(final boolean attributesRemoved) {
+            this.attributesRemoved = attributesRemoved;
+            return this;
+        }
+
         public Builder creationTime(final long creationTime) {
             this.creationTime = creationTime;
             return this;
@@ -79,11 +97,66 @@ public class SessionSnapshot {
          */
         public Builder addAattribute(final String name, final Object value) {
             if (name != null && value != null) {
+                if (sessionAttrsAdopted) {
+                    this.sessionAttrs = new HashMap<>(sessionAttrs);
+                    this.sessionAttrsAdopted = false;
+                }
                 this.sessionAttrs.put(name, value);
             }
             return this;
         }
 
+        /**
+         * Uses given map as snapshot attributes without copying. The map must
+         * not contain <code>null</code> values and must not be changed
+         * afterwards.
+         * 
+         * @param attributes
+         * @return
+         */
+        public Builder attributes(final Map<String, Object> attributes) {
+            this.sessionAttrs = attributes;
+            this.sessionAttrsAdopted = true;
+            return this;
+        }
+
+        /**
+         * Stored (loaded with session) form of attributes. It is reused for
+         * attributes which are not dirty and used to detect if dirty attribute
+         * value has been really changed.
+         * 
+         * @param storedAttributes
+         * @return
+         */
+        public Builder storedAttributes(final Map<String, MarshalledAttribute> storedAttributes) {
+            this.storedAttrs = storedAttributes;
+            return this;
+        }
+
+        /**
+         * Names of attributes which have to be marshalled again. If not set,
+         * all attributes are considered dirty.
+         * 
+         * @param dirtyAttributes
+         * @return
+         */
+        public Builder dirtyAttributes(final Set<String> dirtyAttributes) {
+            this.dirtyAttrs = dirtyAttributes;
+            return this;
+        }
+
+        /**
+         * Attributes marshalled when they were set, to be saved without
+         * marshalling them again.
+         * 
+         * @param checkedAttributes
+         * @return
+         */
+        public Builder checkedAttributes(final Map<String, MarshalledAttribute> checkedAttributes) {
+            this.checkedAttrs = checkedAttributes;
+            return this;
+        }
+
         public SessionSnapshot build() {
             return new SessionSnapshot(this);
         }
@@ -94,10 +167,14 @@ public class SessionSnapshot {
         sessionId = builder.sessionId;
         expirationTimestamp = builder.expirationTimestamp;
         updated = builder.updated;
+        attributesRemoved = builder.attributesRemoved;
         creationTime = builder.creationTime;
         lastAccessedTime = builder.lastAccessedTime;
         maxInactiveIntervalInSec = builder.maxInactiveIntervalInSec;
-        sessionAttrs = new HashMap<>(builder.sessionAttrs);
+        sessionAttrs = builder.sessionAttrs;
+        storedAttrs = builder.storedAttrs;
+        dirtyAttrs = builder.dirtyAttrs;
+        checkedAttrs = builder.checkedAttrs;
     }
 
     public String getSessionId() {
@@ -112,6 +189,14 @@ public class SessionSnapshot {
         return updated;
     }
 
+    /**
+     * @return <code>true</code> if at least one attribute has been removed from
+     *         loaded session
+     */
+    public boolean isAttributesRemoved() {
+        return attributesRemoved;
+    }
+
     public Long getLastAccessedTime() {
         return lastAccessedTime;
     }
@@ -120,6 +205,35 @@ public class SessionSnapshot {
         return sessionAttrs;
     }
 
+    /**
+     * Stored form of attributes as they were loaded with session.
+     * 
+     * @return stored attributes by name
+     */
+    public Map<String, MarshalledAttribute> getStoredAttrs() {
+        return storedAttrs;
+    }
+
+    /**
+     * Attributes marshalled when they were set and not read as mutable value
+     * since then.
+     * 
+     * @return marshalled attributes by name
+     */
+    public Map<String, MarshalledAttribute> getCheckedAttrs() {
+        return checkedAttrs;
+    }
+
+    /**
+     * @param name
+     *            attribute name
+     * @return <code>true</code> if the attribute has been set or read as
+     *         mutable value and has to be marshalled again
+     */
+    public boolean isDirty(final String name) {
+        return dirtyAttrs == null || dirtyAttrs.contains(name);
+    }
+
     public Long getCreationTime() {
         return creationTime;
     }
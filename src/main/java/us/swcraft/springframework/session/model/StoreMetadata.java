@@ -18,6 +18,7 @@ package us.swcraft.springframework.session.model;
 import org.springframework.session.Session;
 
 import us.swcraft.springframework.session.store.StoreCompression;
+import us.swcraft.springframework.session.store.SizeLimitPolicy;
 import us.swcraft.springframework.session.store.StoreSerializationType;
 
 /**
@@ -47,6 +48,66 @@ public class StoreMetadata {
      */
     private StoreCompression compression;
 
+    /**
+     * Reject non-serializable attributes on set.
+     */
+    private boolean strictSerialization;
+
+    /**
+     * Replace attribute and class names with shared dictionary ids.
+     */
+    private boolean dictionaryEncoding;
+
+    /**
+     * Number of attributes starting from which session attributes are
+     * unmarshalled in parallel. Zero or negative disables the threshold.
+     */
+    private int parallelUnmarshalAttributeThreshold;
+
+    /**
+     * Session size in bytes starting from which session attributes are
+     * unmarshalled in parallel. Zero or negative disables the threshold.
+     */
+    private int parallelUnmarshalSizeThreshold;
+
+    /**
+     * Maximum serialized attribute size in bytes. Zero or negative - no
+     * limit.
+     */
+    private int maxAttributeBytes;
+
+    /**
+     * Action on oversized attribute.
+     */
+    private SizeLimitPolicy attributeSizePolicy = SizeLimitPolicy.DROP;
+
+    /**
+     * Maximum serialized session attributes size in bytes. Zero or negative -
+     * no limit.
+     */
+    private int maxRecordBytes;
+
+    /**
+     * Action on oversized session record.
+     */
+    private SizeLimitPolicy recordSizePolicy = SizeLimitPolicy.REJECT;
+
+    /**
+     * Serialized session attributes size in bytes starting from which a
+     * warning is logged. Zero or negative - no warning.
+     */
+    private int warnRecordBytes;
+
+    /**
+     * Number of expired session events published in one batch.
+     */
+    private int expiredEventBatchSize = 100;
+
+    /**
+     * Session attributes included in expired session events.
+     */
+    private String[] expiredEventAttributes = new String[0];
+
     /**
      * Sets the maximum inactive interval in seconds between requests before
      * newly created sessions will be invalidated. A negative time indicates
@@ -98,4 +159,92 @@ public class StoreMetadata {
         this.compression = compression;
     }
 
+    public boolean isStrictSerialization() {
+        return strictSerialization;
+    }
+
+    public void setStrictSerialization(boolean strictSerialization) {
+        this.strictSerialization = strictSerialization;
+    }
+
+    public int getParallelUnmarshalAttributeThreshold() {
+        return parallelUnmarshalAttributeThreshold;
+    }
+
+    public void setParallelUnmarshalAttributeThreshold(int parallelUnmarshalAttributeThreshold) {
+        this.parallelUnmarshalAttributeThreshold = parallelUnmarshalAttributeThreshold;
+    }
+
+    public int getParallelUnmarshalSizeThreshold() {
+        return parallelUnmarshalSizeThreshold;
+    }
+
+    public void setParallelUnmarshalSizeThreshold(int parallelUnmarshalSizeThreshold) {
+        this.parallelUnmarshalSizeThreshold = parallelUnmarshalSizeThreshold;
+    }
+
+    public int getMaxAttributeBytes() {
+        return maxAttributeBytes;
+    }
+
+    public void setMaxAttributeBytes(int maxAttributeBytes) {
+        this.maxAttributeBytes = maxAttributeBytes;
+    }
+
+    public SizeLimitPolicy getAttributeSizePolicy() {
+        return attributeSizePolicy;
+    }
+
+    public void setAttributeSizePolicy(SizeLimitPolicy attributeSizePolicy) {
+        this.attributeSizePolicy = attributeSizePolicy;
+    }
+
+    public int getMaxRecordBytes() {
+        return maxRecordBytes;
+    }
+
+    public void setMaxRecordBytes(int maxRecordBytes) {
+        this.maxRecordBytes = maxRecordBytes;
+    }
+
+    public SizeLimitPolicy getRecordSizePolicy() {
+        return recordSizePolicy;
+    }
+
+    public void setRecordSizePolicy(SizeLimitPolicy recordSizePolicy) {
+        this.recordSizePolicy = recordSizePolicy;
+    }
+
+    public int getWarnRecordBytes() {
+        return warnRecordBytes;
+    }
+
+    public void setWarnRecordBytes(int warnRecordBytes) {
+        this.warnRecordBytes = warnRecordBytes;
+    }
+
+    public int getExpiredEventBatchSize() {
+        return expiredEventBatchSize;
+    }
+
+    public void setExpiredEventBatchSize(int expiredEventBatchSize) {
+        this.expiredEventBatchSize = expiredEventBatchSize;
+    }
+
+    public String[] getExpiredEventAttributes() {
+        return expiredEventAttributes;
+    }
+
+    public void setExpiredEventAttributes(String[] expiredEventAttributes) {
+        this.expiredEventAttributes = expiredEventAttributes;
+    }
+
+    public boolean isDictionaryEncoding() {
+        return dictionaryEncoding;
+    }
+
+    public void setDictionaryEncoding(boolean dictionaryEncoding) {
+        this.dictionaryEncoding = dictionaryEncoding;
+    }
+
 }
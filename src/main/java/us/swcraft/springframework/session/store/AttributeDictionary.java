@@ -0,0 +1,355 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+
+/**
+ * Append-only dictionary of attribute and class names shared by all nodes.
+ * Payloads written with {@link PayloadHeader#VERSION_DICTIONARY} carry small
+ * integer ids instead of names.
+ * <p>
+ * The dictionary is stored in a never expiring record in the session set and
+ * cached on every node. New names are appended with compare-and-set on record
+ * generation, so ids are never reassigned. Unknown ids trigger dictionary
+ * refresh. Every dictionary has a random epoch written into payloads, so
+ * payloads written with a lost (deleted) dictionary are rejected instead of
+ * being decoded with wrong names.
+ * <p>
+ * Refreshes triggered by lookup misses are at least
+ * {@link #setRefreshInterval(long) refresh interval} apart; concurrent misses
+ * share one refresh. Epochs found unknown are remembered and rejected without
+ * refresh.
+ * <p>
+ * Dictionary is thread-safe. Lookups are lock-free.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class AttributeDictionary {
+
+    /**
+     * Dictionary record key.
+     */
+    public static final String DICTIONARY_KEY = "__ssa_dictionary";
+
+    static final String NAMES_BIN = "names";
+
+    static final String EPOCH_BIN = "epoch";
+
+    /**
+     * Default max number of names. Names beyond the limit are not added and
+     * sessions with such names are written without dictionary.
+     */
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    /**
+     * Default min interval between refreshes triggered by lookup misses,
+     * milliseconds.
+     */
+    public static final long DEFAULT_REFRESH_INTERVAL = 100;
+
+    private static final int MAX_APPEND_ATTEMPTS = 5;
+
+    private static final int MAX_UNKNOWN_EPOCHS = 16;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final AerospikeOperations<String> aerospikeOperations;
+
+    private final int maxSize;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    private long refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_REFRESH_INTERVAL);
+
+    /**
+     * {@link System#nanoTime()} when the last refresh started reading the
+     * store. Guarded by this.
+     */
+    private long lastRefresh;
+
+    private boolean refreshed;
+
+    /**
+     * Epochs of payloads written with lost dictionaries. Such payloads never
+     * become readable, so their epochs are not looked up again.
+     */
+    private final Set<Integer> unknownEpochs = ConcurrentHashMap.newKeySet();
+
+    public AttributeDictionary(final AerospikeOperations<String> aerospikeOperations) {
+        this(aerospikeOperations, DEFAULT_MAX_SIZE);
+    }
+
+    public AttributeDictionary(final AerospikeOperations<String> aerospikeOperations, final int maxSize) {
+        Assert.notNull(aerospikeOperations, "Aerospike operations can't be null");
+        Assert.isTrue(maxSize > 0, "Max dictionary size should be positive");
+        this.aerospikeOperations = aerospikeOperations;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param refreshInterval
+     *            min interval between refreshes triggered by lookup misses,
+     *            milliseconds
+     */
+    public synchronized void setRefreshInterval(final long refreshInterval) {
+        Assert.isTrue(refreshInterval >= 0, "Refresh interval can't be negative");
+        this.refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(refreshInterval);
+    }
+
+    /**
+     * Makes sure all names have ids. Missing names are appended to the stored
+     * dictionary at once.
+     * 
+     * @param names
+     * @return <code>true</code> if all names have ids, <code>false</code> if
+     *         dictionary is full or could not be updated
+     */
+    public boolean ensure(final Collection<String> names) {
+        if (snapshot.containsAll(names)) {
+            return true;
+        }
+        synchronized (this) {
+            if (snapshot.isEmpty()) {
+                refresh();
+            }
+            for (int attempt = 0; attempt < MAX_APPEND_ATTEMPTS; attempt++) {
+                final Snapshot current = snapshot;
+                final Set<String> missing = new LinkedHashSet<>();
+                for (String name : names) {
+                    if (current.idOf(name) < 0) {
+                        missing.add(name);
+                    }
+                }
+                if (missing.isEmpty()) {
+                    return true;
+                }
+                if (current.names.size() + missing.size() > maxSize) {
+                    log.debug("Attribute dictionary is full - {} names are not added", missing.size());
+                    return false;
+                }
+                final List<String> appended = new ArrayList<>(current.names);
+                appended.addAll(missing);
+                final int epoch = current.epoch != 0 ? current.epoch : newEpoch();
+                final Set<Bin> bins = new HashSet<>();
+                bins.add(new Bin(NAMES_BIN, appended));
+                bins.add(new Bin(EPOCH_BIN, epoch));
+                if (aerospikeOperations.compareAndSet(DICTIONARY_KEY, current.generation, bins, -1)) {
+                    log.debug("Attribute dictionary: {} names added, size {}", missing.size(), appended.size());
+                    snapshot = new Snapshot(appended, epoch, current.generation + 1);
+                    return true;
+                }
+                // concurrently updated by other node - reload and retry
+                refresh();
+            }
+            log.warn("Unable to update attribute dictionary in {} attempts", MAX_APPEND_ATTEMPTS);
+            return false;
+        }
+    }
+
+    /**
+     * Returns name id.
+     * 
+     * @param name
+     * @return id or <code>-1</code> if there is no such name in dictionary
+     */
+    public int idOf(final String name) {
+        return snapshot.idOf(name);
+    }
+
+    /**
+     * Returns name by id. Unknown id triggers dictionary refresh, which may
+     * wait for the rest of refresh interval.
+     * 
+     * @param id
+     * @return name
+     * @throws SerializationException
+     *             if the id is unknown
+     */
+    public String nameOf(final int id) throws SerializationException {
+        String name = snapshot.nameOf(id);
+        if (name == null) {
+            refreshOnMiss();
+            name = snapshot.nameOf(id);
+            if (name == null) {
+                throw new SerializationException("Unknown attribute dictionary id " + id);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * @return current dictionary epoch, <code>0</code> if the dictionary is
+     *         empty
+     */
+    public int getEpoch() {
+        return snapshot.epoch;
+    }
+
+    /**
+     * Checks payload dictionary epoch. Mismatch triggers dictionary refresh
+     * unless the epoch is already known to be lost.
+     * 
+     * @param epoch
+     *            payload dictionary epoch
+     * @throws SerializationException
+     *             if payload was written with another dictionary
+     */
+    public void checkEpoch(final int epoch) throws SerializationException {
+        if (snapshot.epoch != epoch) {
+            if (!unknownEpochs.contains(epoch)) {
+                refreshOnMiss();
+                if (snapshot.epoch == epoch) {
+                    return;
+                }
+                if (unknownEpochs.size() >= MAX_UNKNOWN_EPOCHS) {
+                    unknownEpochs.clear();
+                }
+                unknownEpochs.add(epoch);
+            }
+            throw new SerializationException("Payload written with unknown attribute dictionary " + epoch);
+        }
+    }
+
+    /**
+     * @return number of names in dictionary
+     */
+    public int size() {
+        return snapshot.names.size();
+    }
+
+    /**
+     * Reloads dictionary from the store.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void refresh() {
+        lastRefresh = System.nanoTime();
+        refreshed = true;
+        final Record record = aerospikeOperations.fetchUntouched(DICTIONARY_KEY);
+        if (record == null) {
+            log.debug("Attribute dictionary record not found");
+            snapshot = Snapshot.EMPTY;
+            return;
+        }
+        final List<String> names = (List<String>) record.getList(NAMES_BIN);
+        final Snapshot current = snapshot;
+        final int epoch = record.getInt(EPOCH_BIN);
+        if (current.epoch != 0 && current.epoch != epoch) {
+            log.warn("Attribute dictionary has been recreated - payloads written with old dictionary are lost");
+        }
+        snapshot = new Snapshot(names == null ? Collections.<String> emptyList() : names, epoch,
+                record.generation);
+        log.debug("Attribute dictionary loaded: {} names, generation {}", snapshot.names.size(),
+                record.generation);
+    }
+
+    /**
+     * Refreshes dictionary after lookup miss. Refresh started after the miss
+     * by another thread is shared; refresh sooner than refresh interval after
+     * the previous one waits for the rest of the interval.
+     */
+    private void refreshOnMiss() {
+        final long missTime = System.nanoTime();
+        synchronized (this) {
+            while (!refreshed || lastRefresh - missTime < 0) {
+                final long delay = refreshed ? lastRefresh + refreshIntervalNanos - System.nanoTime() : 0;
+                if (delay <= 0) {
+                    refresh();
+                    return;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static int newEpoch() {
+        int epoch;
+        do {
+            epoch = ThreadLocalRandom.current().nextInt();
+        } while (epoch == 0);
+        return epoch;
+    }
+
+    /**
+     * Immutable dictionary state.
+     */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(Collections.<String> emptyList(), 0, 0);
+
+        private final List<String> names;
+        private final Map<String, Integer> ids;
+        private final int epoch;
+        private final int generation;
+
+        Snapshot(final List<String> names, final int epoch, final int generation) {
+            this.names = Collections.unmodifiableList(new ArrayList<>(names));
+            this.ids = new HashMap<>(names.size() * 2);
+            for (int i = 0; i < names.size(); i++) {
+                ids.putIfAbsent(names.get(i), i);
+            }
+            this.epoch = epoch;
+            this.generation = generation;
+        }
+
+        boolean isEmpty() {
+            return names.isEmpty();
+        }
+
+        boolean containsAll(final Collection<String> names) {
+            for (String name : names) {
+                if (!ids.containsKey(name)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int idOf(final String name) {
+            final Integer id = ids.get(name);
+            return id == null ? -1 : id;
+        }
+
+        String nameOf(final int id) {
+            return id >= 0 && id < names.size() ? names.get(id) : null;
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.util.Assert;
+
+/**
+ * Class loader which caches class resolution results of its parent: both
+ * resolved classes and misses. Misses are typical for attributes put in
+ * session by other web applications sharing the same set, and every miss
+ * otherwise goes through the whole class loader hierarchy and its locks.
+ * <p>
+ * One instance is created per application class loader and given to store
+ * serializers, so class names in the payload are resolved through the cache.
+ * The cache has to be invalidated when the application context is reloaded.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class CachingClassLoader extends ClassLoader {
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    /**
+     * Default maximum number of cached misses.
+     */
+    public static final int DEFAULT_MAX_MISSES = 1024;
+
+    private final ConcurrentMap<String, Class<?>> classes = new ConcurrentHashMap<>();
+
+    private final Set<String> misses = ConcurrentHashMap.newKeySet();
+
+    private final int maxMisses;
+
+    public CachingClassLoader(final ClassLoader parent) {
+        this(parent, DEFAULT_MAX_MISSES);
+    }
+
+    public CachingClassLoader(final ClassLoader parent, final int maxMisses) {
+        super(parent);
+        Assert.notNull(parent, "Parent class loader cannot be null");
+        Assert.isTrue(maxMisses >= 0, "Max misses cannot be negative");
+        this.maxMisses = maxMisses;
+    }
+
+    /**
+     * Resolves class by name. Unlike {@link #loadClass(String)} array class
+     * names are supported too.
+     * 
+     * @param className
+     * @return resolved class, not initialized
+     * @throws ClassNotFoundException
+     *             if the class is not available to parent class loader
+     */
+    public Class<?> resolve(final String className) throws ClassNotFoundException {
+        final Class<?> cached = classes.get(className);
+        if (cached != null) {
+            return cached;
+        }
+        if (misses.contains(className)) {
+            throw new ClassNotFoundException(className);
+        }
+        try {
+            final Class<?> resolved = Class.forName(className, false, getParent());
+            classes.putIfAbsent(className, resolved);
+            return resolved;
+        } catch (ClassNotFoundException | LinkageError e) {
+            if (misses.size() >= maxMisses) {
+                misses.clear();
+            }
+            if (maxMisses > 0) {
+                misses.add(className);
+            }
+            throw e instanceof ClassNotFoundException ? (ClassNotFoundException) e
+                    : new ClassNotFoundException(className, e);
+        }
+    }
+
+    @Override
+    protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+        final Class<?> c = resolve(name);
+        if (resolve) {
+            resolveClass(c);
+        }
+        return c;
+    }
+
+    /**
+     * Drops all cached classes and misses.
+     */
+    public void invalidate() {
+        classes.clear();
+        misses.clear();
+    }
+
+    /**
+     * @return number of cached classes
+     */
+    public int getCachedClassCount() {
+        return classes.size();
+    }
+
+    /**
+     * @return number of cached misses
+     */
+    public int getCachedMissCount() {
+        return misses.size();
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store;
+
+import java.util.Objects;
+
+import org.springframework.util.Assert;
+
+/**
+ * Immutable header of stored session attributes payload. It describes payload
+ * format version, serialization type and compression so every record can be
+ * decoded regardless of the store settings of the node reading it.
+ * <p>
+ * Binary layout: 3 magic bytes, format version, serialization type id and
+ * compression id.
+ */
+public final class PayloadHeader {
+
+    /**
+     * Payload format version with attributes written by store serializer only.
+     */
+    public static final byte VERSION_SERIALIZER_ONLY = 1;
+
+    /**
+     * Payload format version with every attribute prefixed by attribute codec
+     * tag.
+     */
+    public static final byte VERSION_CODEC_TAGGED = 2;
+
+    /**
+     * Payload format version with codec tagged attributes and attribute and
+     * class names replaced by {@link AttributeDictionary} ids.
+     */
+    public static final byte VERSION_DICTIONARY = 3;
+
+    /**
+     * Current payload format version, written unless dictionary encoding is
+     * enabled.
+     */
+    public static final byte CURRENT_VERSION = VERSION_CODEC_TAGGED;
+
+    /**
+     * Latest payload format version this code can read.
+     */
+    public static final byte LATEST_VERSION = VERSION_DICTIONARY;
+
+    /**
+     * Header length in bytes.
+     */
+    public static final int LENGTH = 6;
+
+    private static final byte[] MAGIC = { (byte) 0xA5, 'S', 'A' };
+
+    private final byte version;
+    private final StoreSerializationType serializationType;
+    private final StoreCompression compression;
+
+    public PayloadHeader(final StoreSerializationType serializationType, final StoreCompression compression) {
+        this(CURRENT_VERSION, serializationType, compression);
+    }
+
+    public PayloadHeader(final byte version, final StoreSerializationType serializationType,
+            final StoreCompression compression) {
+        Assert.notNull(serializationType, "serialization type can't be null");
+        Assert.notNull(compression, "compression can't be null");
+        this.version = version;
+        this.serializationType = serializationType;
+        this.compression = compression;
+    }
+
+    /**
+     * Reads header from the beginning of stored payload.
+     * 
+     * @param payload
+     * @return header or <code>null</code> if payload was written without header
+     * @throws SerializationException
+     *             if header has unknown version, serialization type or
+     *             compression
+     */
+    public static PayloadHeader read(final byte[] payload) throws SerializationException {
+        if (payload == null || payload.length < LENGTH) {
+            return null;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (payload[i] != MAGIC[i]) {
+                return null;
+            }
+        }
+        final byte version = payload[3];
+        if (version < 1 || version > LATEST_VERSION) {
+            throw new SerializationException("Unsupported payload format version " + version);
+        }
+        final StoreSerializationType serializationType = StoreSerializationType.fromId(payload[4]);
+        if (serializationType == null) {
+            throw new SerializationException("Unsupported payload serialization type " + payload[4]);
+        }
+        final StoreCompression compression = StoreCompression.fromId(payload[5]);
+        if (compression == null) {
+            throw new SerializationException("Unsupported payload compression " + payload[5]);
+        }
+        return new PayloadHeader(version, serializationType, compression);
+    }
+
+    /**
+     * Returns binary representation of the header.
+     * 
+     * @return header bytes
+     */
+    public byte[] toBytes() {
+        final byte[] bytes = new byte[LENGTH];
+        System.arraycopy(MAGIC, 0, bytes, 0, MAGIC.length);
+        bytes[3] = version;
+        bytes[4] = serializationType.getId();
+        bytes[5] = compression.getId();
+        return bytes;
+    }
+
+    public byte getVersion() {
+        return version;
+    }
+
+    public StoreSerializationType getSerializationType() {
+        return serializationType;
+    }
+
+    public StoreCompression getCompression() {
+        return compression;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PayloadHeader)) {
+            return false;
+        }
+        final PayloadHeader other = (PayloadHeader) o;
+        return version == other.version && serializationType == other.serializationType
+                && compression == other.compression;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, serializationType, compression);
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append(this.getClass().getSimpleName()).append("[v").append(version).append(" ")
+                .append(serializationType).append("/").append(compression).append("]").toString();
+    }
+
+}
@@ -17,6 +17,8 @@ package us.swcraft.springframework.session.store;
 
 import java.util.Map;
 
+import us.swcraft.springframework.session.model.MarshalledAttribute;
+
 /**
  * Marshallung and unmarshalling of session attributes to byte arrays (binary
  * data).
@@ -26,8 +28,69 @@ import java.util.Map;
  */
 public interface SessionAttributesTransformer {
 
+    /**
+     * Marshalls session attributes. {@link MarshalledAttribute} values are
+     * written as is.
+     * 
+     * @param attrs
+     * @return binary session attributes
+     */
     byte[] marshall(Map<String, Object> attrs);
 
+    /**
+     * Marshalls single session attribute.
+     * 
+     * @param name
+     *            attribute name
+     * @param value
+     *            attribute value
+     * @return marshalled attribute or <code>null</code> if the value can't be
+     *         marshalled
+     */
+    MarshalledAttribute marshallAttribute(String name, Object value);
+
+    /**
+     * Unmarshalls single session attribute marshalled by
+     * {@link #marshallAttribute(String, Object)}.
+     * 
+     * @param attr
+     *            marshalled attribute
+     * @return attribute value or <code>null</code> if the attribute can't be
+     *         unmarshalled
+     */
+    Object unmarshalAttribute(MarshalledAttribute attr);
+
+    /**
+     * Checks if the value can be marshalled.
+     * 
+     * @param value
+     *            attribute value
+     * @return <code>true</code> if the value is not lost on save
+     */
+    boolean isSerializable(Object value);
+
     Map<String, Object> unmarshal(byte[] attrs);
 
+    /**
+     * Unmarshalls session attributes and collects stored form of attributes
+     * which may be written back as is with {@link #marshall(Map)}.
+     * 
+     * @param attrs
+     *            binary session attributes
+     * @param marshalledAttrs
+     *            receives marshalled attributes by name
+     * @return session attributes
+     */
+    Map<String, Object> unmarshal(byte[] attrs, Map<String, MarshalledAttribute> marshalledAttrs);
+
+    /**
+     * Reads stored form of session attributes without restoring their values,
+     * so classes of the values don't have to be available.
+     * 
+     * @param attrs
+     *            binary session attributes
+     * @return marshalled attributes by name
+     */
+    Map<String, MarshalledAttribute> unmarshalStored(byte[] attrs);
+
 }
\ No newline at end of file
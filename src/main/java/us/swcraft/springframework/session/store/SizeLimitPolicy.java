@@ -0,0 +1,45 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store;
+
+/**
+ * Action taken when serialized session attribute or session record exceeds
+ * configured size limit.
+ */
+public enum SizeLimitPolicy {
+
+    /**
+     * Oversized attribute is rejected by <code>setAttribute</code> with
+     * {@link IllegalArgumentException}. Session record is saved after the
+     * request is completed and can't be rejected - the largest attributes of
+     * oversized record are dropped like with {@link #DROP}.
+     */
+    REJECT,
+
+    /**
+     * Oversized attribute, or the largest attributes of oversized record, are
+     * not saved. Attributes of the same size are dropped in name order. {@link us.swcraft.springframework.session.aerospike.SessionSizeLimitEvent}
+     * is published for every dropped attribute.
+     */
+    DROP,
+
+    /**
+     * Oversized attribute, or the largest attributes of oversized record, are
+     * saved in separate side records and loaded with the session.
+     */
+    OFFLOAD
+
+}
@@ -21,7 +21,35 @@ package us.swcraft.springframework.session.store;
  */
 public enum StoreCompression {
     
-    NONE,
-    SNAPPY;
+    NONE((byte) 0),
+    SNAPPY((byte) 1);
+
+    /**
+     * Stable identifier written into the payload header.
+     */
+    private final byte id;
+
+    StoreCompression(final byte id) {
+        this.id = id;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * Resolves compression by payload header identifier.
+     * 
+     * @param id
+     * @return compression or <code>null</code> if the identifier is unknown
+     */
+    public static StoreCompression fromId(final byte id) {
+        for (StoreCompression compression : values()) {
+            if (compression.id == id) {
+                return compression;
+            }
+        }
+        return null;
+    }
 
 }
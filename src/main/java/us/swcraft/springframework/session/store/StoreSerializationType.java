@@ -25,12 +25,47 @@ public enum StoreSerializationType {
      * fast-serialization
      * https://github.com/RuedigerMoeller/fast-serialization
      */
-    FST,
+    FST((byte) 1),
 
     /**
      * Kryo
      * https://github.com/EsotericSoftware/kryo
      */
-    KRYO;
+    KRYO((byte) 2),
+
+    /**
+     * Smile binary JSON format via Jackson
+     * https://github.com/FasterXML/smile-format-specification
+     */
+    SMILE((byte) 3);
+
+    /**
+     * Stable identifier written into the payload header.
+     */
+    private final byte id;
+
+    StoreSerializationType(final byte id) {
+        this.id = id;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * Resolves serialization type by payload header identifier.
+     * 
+     * @param id
+     * @return serialization type or <code>null</code> if the identifier is
+     *         unknown
+     */
+    public static StoreSerializationType fromId(final byte id) {
+        for (StoreSerializationType type : values()) {
+            if (type.id == id) {
+                return type;
+            }
+        }
+        return null;
+    }
 
 }
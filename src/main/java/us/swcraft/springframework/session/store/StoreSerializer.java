@@ -42,7 +42,42 @@ public interface StoreSerializer<T> {
      * @return the equivalent object instance
      */
     T deserialize(byte[] bytes, Class<T> type) throws SerializationException;
-    
+
+    /**
+     * Serialize the given object to binary data that starts with the given
+     * prefix. The prefix is written as is (never compressed).
+     * 
+     * @param t
+     *            object to serialize
+     * @param prefix
+     *            raw bytes to put in front of serialized data
+     * @return the equivalent binary data
+     */
+    default byte[] serialize(T t, byte[] prefix) throws SerializationException {
+        final byte[] data = serialize(t);
+        final byte[] result = new byte[prefix.length + data.length];
+        System.arraycopy(prefix, 0, result, 0, prefix.length);
+        System.arraycopy(data, 0, result, prefix.length, data.length);
+        return result;
+    }
+
+    /**
+     * Deserialize an object from the region of the given binary data.
+     * 
+     * @param bytes
+     *            binary data
+     * @param offset
+     *            start of object binary representation
+     * @param length
+     *            length of object binary representation
+     * @return the equivalent object instance
+     */
+    default T deserialize(byte[] bytes, int offset, int length, Class<T> type) throws SerializationException {
+        final byte[] data = new byte[length];
+        System.arraycopy(bytes, offset, data, 0, length);
+        return deserialize(data, type);
+    }
+
     /**
      * Closes serializer.
      */
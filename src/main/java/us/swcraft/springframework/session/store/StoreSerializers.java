@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import us.swcraft.springframework.session.model.MarshalledAttribute;
+import us.swcraft.springframework.session.store.fst.FastStoreSerializer;
+import us.swcraft.springframework.session.store.kryo.KryoStoreSerializer;
+import us.swcraft.springframework.session.store.smile.SmileStoreSerializer;
+
+/**
+ * Factory methods for store serializers of supported serialization types and
+ * compressions.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public abstract class StoreSerializers {
+
+    /**
+     * Creates single attribute serializer/deserializer.
+     * 
+     * @param serializationType
+     * @param compression
+     * @return new serializer instance
+     */
+    public static StoreSerializer<Serializable> attributeSerializer(final StoreSerializationType serializationType,
+            final StoreCompression compression) {
+        return attributeSerializer(serializationType, compression, null);
+    }
+
+    /**
+     * Creates single attribute serializer/deserializer resolving class names
+     * with given class loader.
+     * 
+     * @param serializationType
+     * @param compression
+     * @param classLoader
+     *            class loader, <code>null</code> for serializer default
+     * @return new serializer instance
+     */
+    public static StoreSerializer<Serializable> attributeSerializer(final StoreSerializationType serializationType,
+            final StoreCompression compression, final ClassLoader classLoader) {
+        if (compression != StoreCompression.NONE && compression != StoreCompression.SNAPPY) {
+            throw new RuntimeException("Unsupported compression " + compression);
+        }
+        if (serializationType == StoreSerializationType.FST) {
+            return new FastStoreSerializer<Serializable>(compression, classLoader);
+        }
+        if (serializationType == StoreSerializationType.KRYO) {
+            return new KryoStoreSerializer<Serializable>(compression, classLoader);
+        }
+        if (serializationType == StoreSerializationType.SMILE) {
+            return new SmileStoreSerializer<Serializable>(compression, classLoader);
+        }
+        throw new RuntimeException("Unsupported serializer " + serializationType);
+    }
+
+    /**
+     * Creates marshalled attributes serializer/deserializer.
+     * 
+     * @param serializationType
+     * @return new serializer instance
+     */
+    public static StoreSerializer<Map<String, MarshalledAttribute>> marshalledAttributesSerializer(
+            final StoreSerializationType serializationType) {
+        if (serializationType == StoreSerializationType.FST) {
+            return new FastStoreSerializer<Map<String, MarshalledAttribute>>();
+        }
+        if (serializationType == StoreSerializationType.KRYO) {
+            return new KryoStoreSerializer<Map<String, MarshalledAttribute>>();
+        }
+        if (serializationType == StoreSerializationType.SMILE) {
+            return new SmileStoreSerializer<Map<String, MarshalledAttribute>>();
+        }
+        throw new RuntimeException("Unsupported serializer " + serializationType);
+    }
+
+}
@@ -59,6 +59,30 @@ public interface AerospikeOperations<K> {
 
     Record fetch(K key);
 
+    /**
+     * Fetches record without touching it, so its TTL is not changed.
+     * 
+     * @param key
+     * @return record or <code>null</code> if not found
+     */
+    Record fetchUntouched(K key);
+
+    /**
+     * Persists bins only if the record generation is equal to expected one.
+     * 
+     * @param key
+     * @param expectedGeneration
+     *            expected record generation, <code>0</code> - record must not
+     *            exist
+     * @param data
+     *            bins to persist
+     * @param expiration
+     *            record TTL in seconds, <code>-1</code> - never expire
+     * @return <code>true</code> if persisted, <code>false</code> if the record
+     *         has been changed (or created) concurrently or write failed
+     */
+    boolean compareAndSet(K key, int expectedGeneration, Set<Bin> data, int expiration);
+
     /**
      * Creates secondary index.
      * 
@@ -79,4 +103,23 @@ public interface AerospikeOperations<K> {
      */
     Set<K> fetchRange(String idBinName, String indexedBinName, long begin, long end);
 
+    /**
+     * Checks if the store can be reached, without a round trip.
+     * 
+     * @return <code>false</code> if the store is known to be unavailable
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Sets hook receiving records fetched by {@link #fetch(Object)}. Stores
+     * which don't support capture ignore it.
+     * 
+     * @param captureHook
+     *            hook, <code>null</code> to stop capture
+     */
+    default void setCaptureHook(final RecordCaptureHook captureHook) {
+    }
+
 }
@@ -27,8 +27,10 @@ import com.aerospike.client.AerospikeException;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
 import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
 import com.aerospike.client.ScanCallback;
 import com.aerospike.client.policy.CommitLevel;
+import com.aerospike.client.policy.GenerationPolicy;
 import com.aerospike.client.policy.Policy;
 import com.aerospike.client.policy.RecordExistsAction;
 import com.aerospike.client.policy.ScanPolicy;
@@ -39,6 +41,12 @@ import com.aerospike.client.query.RecordSet;
 import com.aerospike.client.query.Statement;
 import com.aerospike.client.task.IndexTask;
 
+import us.swcraft.springframework.session.metrics.SessionStoreMetrics;
+import us.swcraft.springframework.session.metrics.SessionStoreMetrics.Outcome;
+import us.swcraft.springframework.session.metrics.SessionStoreMetrics.StoreOperation;
+import us.swcraft.springframework.session.tracing.SessionStoreTracing;
+import us.swcraft.springframework.session.tracing.SessionStoreTracing.TracedSpan;
+
 /**
  * Helper class that simplifies Aerospike data access code.
  * <br>
@@ -80,6 +88,15 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
     private WritePolicy writePolicy;
     private Policy readPolicy;
 
+    /**
+     * Optional hook receiving fetched records.
+     */
+    private volatile RecordCaptureHook captureHook;
+
+    private SessionStoreMetrics metrics = SessionStoreMetrics.NOOP;
+
+    private SessionStoreTracing tracing = SessionStoreTracing.NOOP;
+
     public void init() {
         Assert.hasLength(namespace, "Aerospike 'namespace' name for session data is not configured");
         Assert.hasLength(setname, "Aerospike 'setname' name for session data is not configured");
@@ -103,9 +120,15 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
         log.trace("has {} key?", key);
         Assert.notNull(key, "key can't be null");
         final Key recordKey = new Key(namespace, setname, key);
+        final long start = System.nanoTime();
+        final TracedSpan span = tracing.startStoreCall("exists", namespace, setname);
         try {
-            return getAerospikeClient().exists(readPolicy, recordKey);
+            final boolean exists = getAerospikeClient().exists(readPolicy, recordKey);
+            record(StoreOperation.EXISTS, exists ? Outcome.SUCCESS : Outcome.NOT_FOUND, start, span);
+            return exists;
         } catch (AerospikeException e) {
+            span.recordError(e);
+            record(StoreOperation.EXISTS, Outcome.ERROR, start, span);
             log.error("check exist  fails", e);
             return false;
         }
@@ -116,9 +139,14 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
         log.trace("delete {} key", key);
         Assert.notNull(key, "key can't be null");
         final Key recordKey = new Key(namespace, setname, key);
+        final long start = System.nanoTime();
+        final TracedSpan span = tracing.startStoreCall("delete", namespace, setname);
         try {
-            getAerospikeClient().delete(deletePolicy, recordKey);
+            final boolean existed = getAerospikeClient().delete(deletePolicy, recordKey);
+            record(StoreOperation.DELETE, existed ? Outcome.SUCCESS : Outcome.NOT_FOUND, start, span);
         } catch (AerospikeException e) {
+            span.recordError(e);
+            record(StoreOperation.DELETE, Outcome.ERROR, start, span);
             log.error("delete key fails", e);
         }
     }
@@ -130,9 +158,14 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
         final Key recordKey = new Key(namespace, setname, key);
         Assert.notNull(binName, "bin name can't be null");
         final Bin bin = Bin.asNull(binName);
+        final long start = System.nanoTime();
+        final TracedSpan span = tracing.startStoreCall("put", namespace, setname);
         try {
             getAerospikeClient().put(deletePolicy, recordKey, bin);
+            record(StoreOperation.PERSIST, Outcome.SUCCESS, start, span);
         } catch (AerospikeException e) {
+            span.recordError(e);
+            record(StoreOperation.PERSIST, Outcome.ERROR, start, span);
             log.error("delete bin fails", e);
         }
     }
@@ -143,9 +176,14 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
         Assert.notNull(key, "key can't be null");
         final Key recordKey = new Key(namespace, setname, key);
         Assert.notNull(bin, "bin can't be null");
+        final long start = System.nanoTime();
+        final TracedSpan span = tracing.startStoreCall("put", namespace, setname);
         try {
             getAerospikeClient().put(writePolicy, recordKey, bin);
+            record(StoreOperation.PERSIST, Outcome.SUCCESS, start, span);
         } catch (AerospikeException e) {
+            span.recordError(e);
+            record(StoreOperation.PERSIST, Outcome.ERROR, start, span);
             log.error("write fails", e);
         }
     }
@@ -156,9 +194,14 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
         final Key recordKey = new Key(namespace, setname, key);
         Assert.notNull(bins, "bins can't be null");
         Assert.notEmpty(bins, "bins should have data to store");
+        final long start = System.nanoTime();
+        final TracedSpan span = tracing.startStoreCall("put", namespace, setname);
         try {
             getAerospikeClient().put(writePolicy, recordKey, bins.toArray(BIN_ARRAY_TYPE));
+            record(StoreOperation.PERSIST, Outcome.SUCCESS, start, span);
         } catch (AerospikeException e) {
+            span.recordError(e);
+            record(StoreOperation.PERSIST, Outcome.ERROR, start, span);
             log.error("write fails", e);
         }
     }
@@ -167,18 +210,88 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
     public Record fetch(final String key) {
         Assert.notNull(key, "key can't be null");
         final Key recordKey = new Key(namespace, setname, key);
+        final long start = System.nanoTime();
+        final TracedSpan span = tracing.startStoreCall("get", namespace, setname);
         try {
             final Record r = getAerospikeClient().get(readPolicy, recordKey);
             if (r != null) {
+                span.setAttribute("aerospike.generation", r.generation);
                 getAerospikeClient().touch(writePolicy, recordKey);
+                record(StoreOperation.FETCH, Outcome.SUCCESS, start, span);
+                capture(key, r);
+            } else {
+                record(StoreOperation.FETCH, Outcome.NOT_FOUND, start, span);
+            }
+            return r;
+        } catch (AerospikeException e) {
+            span.recordError(e);
+            record(StoreOperation.FETCH, Outcome.ERROR, start, span);
+            log.error("read fails", e);
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record fetchUntouched(final String key) {
+        Assert.notNull(key, "key can't be null");
+        final Key recordKey = new Key(namespace, setname, key);
+        final long start = System.nanoTime();
+        final TracedSpan span = tracing.startStoreCall("get", namespace, setname);
+        try {
+            final Record r = getAerospikeClient().get(readPolicy, recordKey);
+            if (r != null) {
+                span.setAttribute("aerospike.generation", r.generation);
             }
+            record(StoreOperation.FETCH, r != null ? Outcome.SUCCESS : Outcome.NOT_FOUND, start, span);
             return r;
         } catch (AerospikeException e) {
+            span.recordError(e);
+            record(StoreOperation.FETCH, Outcome.ERROR, start, span);
             log.error("read fails", e);
             return null;
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean compareAndSet(final String key, final int expectedGeneration, final Set<Bin> bins,
+            final int expiration) {
+        Assert.notNull(key, "key can't be null");
+        final Key recordKey = new Key(namespace, setname, key);
+        Assert.notEmpty(bins, "bins should have data to store");
+        final WritePolicy casPolicy = new WritePolicy(writePolicy);
+        casPolicy.expiration = expiration;
+        if (expectedGeneration == 0) {
+            casPolicy.recordExistsAction = RecordExistsAction.CREATE_ONLY;
+        } else {
+            casPolicy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
+            casPolicy.generation = expectedGeneration;
+        }
+        final long start = System.nanoTime();
+        final TracedSpan span = tracing.startStoreCall("put", namespace, setname);
+        span.setAttribute("aerospike.generation", expectedGeneration);
+        try {
+            getAerospikeClient().put(casPolicy, recordKey, bins.toArray(BIN_ARRAY_TYPE));
+            record(StoreOperation.PERSIST, Outcome.SUCCESS, start, span);
+            return true;
+        } catch (AerospikeException e) {
+            if (e.getResultCode() == ResultCode.GENERATION_ERROR || e.getResultCode() == ResultCode.KEY_EXISTS_ERROR) {
+                record(StoreOperation.PERSIST, Outcome.CONFLICT, start, span);
+                log.debug("Record {} has been changed concurrently", key);
+            } else {
+                span.recordError(e);
+                record(StoreOperation.PERSIST, Outcome.ERROR, start, span);
+                log.error("write fails", e);
+            }
+            return false;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -217,6 +330,8 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
         stmt.setBinNames(indexedBinName);
         stmt.setFilter(Filter.range(indexedBinName, begin, end));
 
+        final long start = System.nanoTime();
+        final TracedSpan span = tracing.startStoreCall("query", namespace, setname);
         try {
             final RecordSet rs = getAerospikeClient().query(null, stmt);
             final Set<String> result = new HashSet<>();
@@ -232,13 +347,74 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
             } finally {
                 rs.close();
             }
+            record(StoreOperation.QUERY, result.isEmpty() ? Outcome.NOT_FOUND : Outcome.SUCCESS, start, span);
             return result;
         } catch (AerospikeException e) {
+            span.recordError(e);
+            record(StoreOperation.QUERY, Outcome.ERROR, start, span);
             log.error("query failed", e);
             return Collections.emptySet();
         }
     }
 
+    /**
+     * @return <code>true</code> if the client is connected to at least one
+     *         cluster node
+     */
+    @Override
+    public boolean isAvailable() {
+        return getAerospikeClient().isConnected();
+    }
+
+    private void record(final StoreOperation operation, final Outcome outcome, final long start,
+            final TracedSpan span) {
+        metrics.recordStoreOperation(operation, outcome, System.nanoTime() - start);
+        span.close();
+    }
+
+    /**
+     * Passes fetched record to capture hook. Hook failure never fails the
+     * fetch.
+     */
+    private void capture(final String key, final Record record) {
+        final RecordCaptureHook hook = captureHook;
+        if (hook != null) {
+            try {
+                hook.onFetch(key, record);
+            } catch (RuntimeException e) {
+                log.warn("Record capture failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setCaptureHook(final RecordCaptureHook captureHook) {
+        this.captureHook = captureHook;
+    }
+
+    /**
+     * Sets metrics recording store operations.
+     * 
+     * @param metrics
+     */
+    public void setMetrics(final SessionStoreMetrics metrics) {
+        Assert.notNull(metrics, "metrics can't be null");
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets tracing of Aerospike calls.
+     * 
+     * @param tracing
+     */
+    public void setTracing(final SessionStoreTracing tracing) {
+        Assert.notNull(tracing, "tracing can't be null");
+        this.tracing = tracing;
+    }
+
     public void setNamespace(final String namespace) {
         log.debug("Session store namespace: {}", namespace);
         this.namespace = namespace;
@@ -0,0 +1,520 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+import com.aerospike.client.query.IndexType;
+
+/**
+ * In-memory implementation of {@link AerospikeOperations} for local
+ * development, tests and load tests without Aerospike server. It emulates
+ * store behavior relevant for sessions:
+ * <ul>
+ * <li>record generation is incremented on every write and touch;</li>
+ * <li>records expire after TTL - an expired record is never returned, it is
+ * removed on access or by periodic eviction done on writes. TTL
+ * <code>0</code> means namespace default TTL, <code>-1</code> - never expire,
+ * <code>-2</code> - keep current TTL on update;</li>
+ * <li>bins are updated one by one, a bin with <code>null</code> value is
+ * removed;</li>
+ * <li>numeric range queries are answered only for bins with created index.
+ * </li>
+ * </ul>
+ * Records are kept in lock-striped maps, so operations on different records
+ * rarely contend.
+ * <br>
+ * Once configured, this class is thread-safe.
+ */
+public class InMemoryAerospikeOperations implements AerospikeOperations<String> {
+
+    /**
+     * Default number of lock stripes.
+     */
+    public static final int DEFAULT_STRIPES = 64;
+
+    /**
+     * Aerospike record expiration is counted from 2010-01-01 00:00:00 GMT.
+     */
+    private static final long CITRUSLEAF_EPOCH_MILLIS = 1262304000000L;
+
+    /**
+     * Minimal interval between expired records eviction in the same stripe.
+     */
+    private static final long EVICTION_INTERVAL_MILLIS = 1000L;
+
+    /**
+     * Range query bounds - any key is greater than empty string and less than
+     * <code>null</code>.
+     */
+    private static final Comparator<IndexEntry> INDEX_ORDER = (a, b) -> {
+        final int byValue = Long.compare(a.value, b.value);
+        if (byValue != 0) {
+            return byValue;
+        }
+        if (a.key == null || b.key == null) {
+            return a.key == b.key ? 0 : a.key == null ? 1 : -1;
+        }
+        return a.key.compareTo(b.key);
+    };
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final Stripe[] stripes;
+
+    /**
+     * Numeric secondary indexes by bin name.
+     */
+    private final ConcurrentMap<String, NavigableSet<IndexEntry>> indexes = new ConcurrentHashMap<>();
+
+    private final LongSupplier clock;
+
+    private volatile RecordCaptureHook captureHook;
+
+    /**
+     * Record TTL, seconds.
+     */
+    private int expiration;
+
+    /**
+     * Namespace default TTL, seconds. Zero or negative - never expire, like
+     * <code>default-ttl 0</code> of Aerospike namespace.
+     */
+    private int defaultTtl;
+
+    public InMemoryAerospikeOperations() {
+        this(DEFAULT_STRIPES, System::currentTimeMillis);
+    }
+
+    /**
+     * @param stripes
+     *            number of lock stripes
+     * @param clock
+     *            current time in milliseconds
+     */
+    InMemoryAerospikeOperations(final int stripes, final LongSupplier clock) {
+        Assert.isTrue(stripes > 0, "Number of stripes should be positive");
+        Assert.notNull(clock, "clock can't be null");
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.clock = clock;
+    }
+
+    public void init() {
+        log.info("In-memory session store with {} stripes, TTL {} sec", stripes.length, expiration);
+    }
+
+    public void setExpiration(final int expiration) {
+        this.expiration = expiration;
+    }
+
+    public void setDefaultTtl(final int defaultTtl) {
+        this.defaultTtl = defaultTtl;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasKey(final String key) {
+        Assert.notNull(key, "key can't be null");
+        final Stripe stripe = stripeOf(key);
+        stripe.lock.lock();
+        try {
+            return live(stripe, key) != null;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(final String key) {
+        Assert.notNull(key, "key can't be null");
+        final Stripe stripe = stripeOf(key);
+        stripe.lock.lock();
+        try {
+            remove(stripe, key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteBin(final String key, final String binName) {
+        Assert.notNull(key, "key can't be null");
+        Assert.notNull(binName, "bin name can't be null");
+        final Stripe stripe = stripeOf(key);
+        stripe.lock.lock();
+        try {
+            final StoredRecord current = live(stripe, key);
+            if (current != null) {
+                write(stripe, key, current, Collections.singleton(Bin.asNull(binName)), current.expiresAt);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (String key : new HashSet<>(stripe.records.keySet())) {
+                    remove(stripe, key);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void persist(final String key, final Bin bin) {
+        Assert.notNull(bin, "bin can't be null");
+        persist(key, Collections.singleton(bin));
+    }
+
+    @Override
+    public void persist(final String key, final Set<Bin> bins) {
+        Assert.notNull(key, "key can't be null");
+        Assert.notEmpty(bins, "bins should have data to store");
+        final Stripe stripe = stripeOf(key);
+        stripe.lock.lock();
+        try {
+            final StoredRecord current = live(stripe, key);
+            write(stripe, key, current, bins, expiresAt(expiration, current));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the record as it was read and touches it - generation is
+     * incremented and TTL is reset.
+     */
+    @Override
+    public Record fetch(final String key) {
+        Assert.notNull(key, "key can't be null");
+        final Stripe stripe = stripeOf(key);
+        final Record record;
+        stripe.lock.lock();
+        try {
+            final StoredRecord current = live(stripe, key);
+            if (current == null) {
+                return null;
+            }
+            stripe.records.put(key,
+                    new StoredRecord(current.bins, current.generation + 1, expiresAt(expiration, current)));
+            record = current.toRecord();
+        } finally {
+            stripe.lock.unlock();
+        }
+        final RecordCaptureHook hook = captureHook;
+        if (hook != null) {
+            try {
+                hook.onFetch(key, record);
+            } catch (RuntimeException e) {
+                log.warn("Record capture failed: {}", e.getMessage());
+            }
+        }
+        return record;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setCaptureHook(final RecordCaptureHook captureHook) {
+        this.captureHook = captureHook;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record fetchUntouched(final String key) {
+        Assert.notNull(key, "key can't be null");
+        final Stripe stripe = stripeOf(key);
+        stripe.lock.lock();
+        try {
+            final StoredRecord current = live(stripe, key);
+            return current == null ? null : current.toRecord();
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean compareAndSet(final String key, final int expectedGeneration, final Set<Bin> bins,
+            final int expiration) {
+        Assert.notNull(key, "key can't be null");
+        Assert.notEmpty(bins, "bins should have data to store");
+        final Stripe stripe = stripeOf(key);
+        stripe.lock.lock();
+        try {
+            final StoredRecord current = live(stripe, key);
+            final int generation = current == null ? 0 : current.generation;
+            if (generation != expectedGeneration) {
+                log.debug("Record {} generation {}, expected {}", key, generation, expectedGeneration);
+                return false;
+            }
+            write(stripe, key, current, bins, expiresAt(expiration, current));
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Only numeric indexes are supported. Bin values stored before index
+     * creation are indexed too.
+     */
+    @Override
+    public void createIndex(final String binName, final String indexName, final IndexType indexType) {
+        Assert.notNull(binName, "bin name can't be null");
+        Assert.isTrue(indexType == IndexType.NUMERIC, "Only numeric indexes are supported");
+        final NavigableSet<IndexEntry> index = new ConcurrentSkipListSet<>(INDEX_ORDER);
+        if (indexes.putIfAbsent(binName, index) != null) {
+            log.debug("Index on bin '{}' already exists", binName);
+            return;
+        }
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (Map.Entry<String, StoredRecord> entry : stripe.records.entrySet()) {
+                    final Object value = entry.getValue().bins.get(binName);
+                    if (value instanceof Number) {
+                        index.add(new IndexEntry(((Number) value).longValue(), entry.getKey()));
+                    }
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        log.debug("Index '{}' on bin '{}' created", indexName, binName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> fetchRange(final String idBinName, final String indexedBinName, final long begin,
+            final long end) {
+        final NavigableSet<IndexEntry> index = indexes.get(indexedBinName);
+        if (index == null) {
+            log.error("query failed - no index on bin '{}'", indexedBinName);
+            return Collections.emptySet();
+        }
+        final Set<String> result = new HashSet<>();
+        for (IndexEntry entry : index.subSet(new IndexEntry(begin, ""), true, new IndexEntry(end, null), true)) {
+            final Stripe stripe = stripeOf(entry.key);
+            stripe.lock.lock();
+            try {
+                final StoredRecord record = live(stripe, entry.key);
+                if (record != null && record.bins.get(idBinName) != null) {
+                    result.add(record.bins.get(idBinName).toString());
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return number of live records
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                evictExpired(stripe);
+                size += stripe.records.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeOf(final String key) {
+        final int h = key.hashCode();
+        return stripes[((h ^ (h >>> 16)) & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    /**
+     * Returns not expired record, expired one is removed. Must be called
+     * under stripe lock.
+     */
+    private StoredRecord live(final Stripe stripe, final String key) {
+        final StoredRecord record = stripe.records.get(key);
+        if (record != null && record.expiresAt <= clock.getAsLong()) {
+            log.trace("Record {} expired", key);
+            remove(stripe, key);
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * Removes all expired records of the stripe. Must be called under stripe
+     * lock.
+     */
+    private void evictExpired(final Stripe stripe) {
+        final long now = clock.getAsLong();
+        stripe.nextEviction = now + EVICTION_INTERVAL_MILLIS;
+        for (String key : new HashSet<>(stripe.records.keySet())) {
+            if (stripe.records.get(key).expiresAt <= now) {
+                remove(stripe, key);
+            }
+        }
+    }
+
+    private void remove(final Stripe stripe, final String key) {
+        final StoredRecord removed = stripe.records.remove(key);
+        if (removed != null) {
+            unindex(key, removed.bins);
+        }
+    }
+
+    /**
+     * Updates bins of existing or creates a new record. Must be called under
+     * stripe lock.
+     */
+    private void write(final Stripe stripe, final String key, final StoredRecord current, final Set<Bin> bins,
+            final long expiresAt) {
+        if (stripe.nextEviction <= clock.getAsLong()) {
+            evictExpired(stripe);
+        }
+        final Map<String, Object> values = current == null ? new HashMap<>() : new HashMap<>(current.bins);
+        for (Bin bin : bins) {
+            final Object value = storedValue(bin.value.getObject());
+            if (value == null) {
+                values.remove(bin.name);
+            } else {
+                values.put(bin.name, value);
+            }
+        }
+        if (current != null) {
+            unindex(key, current.bins);
+        }
+        stripe.records.put(key,
+                new StoredRecord(values, current == null ? 1 : current.generation + 1, expiresAt));
+        for (Map.Entry<String, NavigableSet<IndexEntry>> index : indexes.entrySet()) {
+            final Object value = values.get(index.getKey());
+            if (value instanceof Number) {
+                index.getValue().add(new IndexEntry(((Number) value).longValue(), key));
+            }
+        }
+    }
+
+    private void unindex(final String key, final Map<String, Object> bins) {
+        for (Map.Entry<String, NavigableSet<IndexEntry>> index : indexes.entrySet()) {
+            final Object value = bins.get(index.getKey());
+            if (value instanceof Number) {
+                index.getValue().remove(new IndexEntry(((Number) value).longValue(), key));
+            }
+        }
+    }
+
+    /**
+     * Integer values are stored and returned as long like Aerospike does.
+     */
+    private static Object storedValue(final Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+
+    /**
+     * @param ttl
+     *            TTL in seconds, <code>0</code> - namespace default TTL,
+     *            <code>-1</code> - never expire, <code>-2</code> - keep TTL of
+     *            existing record
+     * @param current
+     *            existing record or <code>null</code>
+     * @return expiration timestamp in milliseconds
+     */
+    private long expiresAt(final int ttl, final StoredRecord current) {
+        Assert.isTrue(ttl >= -2, "Unsupported TTL " + ttl);
+        if (ttl == -2 && current != null) {
+            return current.expiresAt;
+        }
+        final int effective = ttl == 0 || ttl == -2 ? defaultTtl : ttl;
+        return effective > 0 ? clock.getAsLong() + TimeUnit.SECONDS.toMillis(effective) : Long.MAX_VALUE;
+    }
+
+    private static class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, StoredRecord> records = new HashMap<>();
+        private long nextEviction;
+    }
+
+    private static class StoredRecord {
+        private final Map<String, Object> bins;
+        private final int generation;
+        private final long expiresAt;
+
+        StoredRecord(final Map<String, Object> bins, final int generation, final long expiresAt) {
+            this.bins = bins;
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+        }
+
+        Record toRecord() {
+            final int recordExpiration = expiresAt == Long.MAX_VALUE ? 0
+                    : (int) TimeUnit.MILLISECONDS.toSeconds(expiresAt - CITRUSLEAF_EPOCH_MILLIS);
+            return new Record(new HashMap<>(bins), generation, recordExpiration);
+        }
+    }
+
+    private static class IndexEntry {
+        private final long value;
+        private final String key;
+
+        IndexEntry(final long value, final String key) {
+            this.value = value;
+            this.key = key;
+        }
+    }
+
+}
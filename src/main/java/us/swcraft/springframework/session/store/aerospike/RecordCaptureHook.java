@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike;
+
+import com.aerospike.client.Record;
+
+/**
+ * Receives records fetched by {@link AerospikeOperations#fetch(Object)}. It is
+ * called on request thread, so implementations should sample and return
+ * quickly.
+ */
+public interface RecordCaptureHook {
+
+    /**
+     * Called after the record has been fetched.
+     * 
+     * @param key
+     *            record key
+     * @param record
+     *            fetched record, never <code>null</code>
+     */
+    void onFetch(String key, Record record);
+
+}
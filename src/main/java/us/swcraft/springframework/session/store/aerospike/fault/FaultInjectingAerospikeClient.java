@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.fault;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.springframework.util.Assert;
+
+import com.aerospike.client.IAerospikeClient;
+
+import us.swcraft.springframework.session.store.aerospike.fault.FaultRule.Fault;
+
+/**
+ * Aerospike client decorator injecting latency and faults. Failed calls throw
+ * {@link com.aerospike.client.AerospikeException} with result code of the
+ * fault, so error handling of the template is exercised.
+ */
+public final class FaultInjectingAerospikeClient implements InvocationHandler {
+
+    private final IAerospikeClient delegate;
+
+    private final FaultInjector injector;
+
+    private FaultInjectingAerospikeClient(final IAerospikeClient delegate, final FaultInjector injector) {
+        this.delegate = delegate;
+        this.injector = injector;
+    }
+
+    /**
+     * Wraps Aerospike client.
+     * 
+     * @param client
+     * @param injector
+     * @return client injecting faults
+     */
+    public static IAerospikeClient wrap(final IAerospikeClient client, final FaultInjector injector) {
+        Assert.notNull(client, "client can't be null");
+        Assert.notNull(injector, "fault injector can't be null");
+        return (IAerospikeClient) Proxy.newProxyInstance(IAerospikeClient.class.getClassLoader(),
+                new Class<?>[] { IAerospikeClient.class }, new FaultInjectingAerospikeClient(client, injector));
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        final OperationType type = method.getDeclaringClass() == Object.class ? null
+                : OperationType.of(method.getName());
+        final Fault fault = injector.inject(type);
+        if (fault != Fault.NONE) {
+            throw injector.toException(type, fault);
+        }
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+}
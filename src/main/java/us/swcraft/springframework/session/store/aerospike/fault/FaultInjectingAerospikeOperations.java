@@ -0,0 +1,133 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.fault;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.springframework.util.Assert;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+import com.aerospike.client.query.IndexType;
+
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+import us.swcraft.springframework.session.store.aerospike.RecordCaptureHook;
+import us.swcraft.springframework.session.store.aerospike.fault.FaultRule.Fault;
+
+/**
+ * Decorator injecting latency and faults into store operations. Failed
+ * operations behave like {@link us.swcraft.springframework.session.store.aerospike.AerospikeTemplate}
+ * on Aerospike error: reads return nothing, writes are lost and compare and
+ * set fails.
+ */
+public class FaultInjectingAerospikeOperations implements AerospikeOperations<String> {
+
+    private final AerospikeOperations<String> delegate;
+
+    private final FaultInjector injector;
+
+    public FaultInjectingAerospikeOperations(final AerospikeOperations<String> delegate,
+            final FaultInjector injector) {
+        Assert.notNull(delegate, "delegate can't be null");
+        Assert.notNull(injector, "fault injector can't be null");
+        this.delegate = delegate;
+        this.injector = injector;
+    }
+
+    private boolean fails(final OperationType type) {
+        return injector.inject(type) != Fault.NONE;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+
+    @Override
+    public void setCaptureHook(final RecordCaptureHook captureHook) {
+        delegate.setCaptureHook(captureHook);
+    }
+
+    @Override
+    public boolean hasKey(final String key) {
+        return !fails(OperationType.READ) && delegate.hasKey(key);
+    }
+
+    @Override
+    public void delete(final String key) {
+        if (!fails(OperationType.DELETE)) {
+            delegate.delete(key);
+        }
+    }
+
+    @Override
+    public void deleteBin(final String key, final String binName) {
+        if (!fails(OperationType.WRITE)) {
+            delegate.deleteBin(key, binName);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        if (!fails(OperationType.DELETE)) {
+            delegate.deleteAll();
+        }
+    }
+
+    @Override
+    public void persist(final String key, final Bin value) {
+        if (!fails(OperationType.WRITE)) {
+            delegate.persist(key, value);
+        }
+    }
+
+    @Override
+    public void persist(final String key, final Set<Bin> data) {
+        if (!fails(OperationType.WRITE)) {
+            delegate.persist(key, data);
+        }
+    }
+
+    @Override
+    public Record fetch(final String key) {
+        return fails(OperationType.READ) ? null : delegate.fetch(key);
+    }
+
+    @Override
+    public Record fetchUntouched(final String key) {
+        return fails(OperationType.READ) ? null : delegate.fetchUntouched(key);
+    }
+
+    @Override
+    public boolean compareAndSet(final String key, final int expectedGeneration, final Set<Bin> data,
+            final int expiration) {
+        return !fails(OperationType.WRITE) && delegate.compareAndSet(key, expectedGeneration, data, expiration);
+    }
+
+    @Override
+    public void createIndex(final String binName, final String indexName, final IndexType indexType) {
+        delegate.createIndex(binName, indexName, indexType);
+    }
+
+    @Override
+    public Set<String> fetchRange(final String idBinName, final String indexedBinName, final long begin,
+            final long end) {
+        return fails(OperationType.QUERY) ? Collections.<String> emptySet()
+                : delegate.fetchRange(idBinName, indexedBinName, begin, end);
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.fault;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+import us.swcraft.springframework.session.store.aerospike.AerospikeTemplate;
+
+/**
+ * Applies fault injection to session store operations bean. Aerospike client
+ * of the template is wrapped before the template is initialized, store
+ * operations are decorated after initialization. Does nothing if fault
+ * injection is not enabled.
+ */
+public class FaultInjectionBeanPostProcessor implements BeanPostProcessor {
+
+    private final String operationsBeanName;
+
+    private final FaultInjector injector;
+
+    /**
+     * @param operationsBeanName
+     *            name of session store operations bean
+     * @param injector
+     *            fault injector, <code>null</code> - fault injection is
+     *            disabled
+     */
+    public FaultInjectionBeanPostProcessor(final String operationsBeanName, final FaultInjector injector) {
+        this.operationsBeanName = operationsBeanName;
+        this.injector = injector;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(final Object bean, final String beanName) {
+        if (injector != null && injector.getLayer() == FaultInjector.Layer.CLIENT
+                && operationsBeanName.equals(beanName) && bean instanceof AerospikeTemplate) {
+            final AerospikeTemplate template = (AerospikeTemplate) bean;
+            template.setAerospikeClient(FaultInjectingAerospikeClient.wrap(template.getAerospikeClient(), injector));
+        }
+        return bean;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+        if (injector != null && injector.getLayer() == FaultInjector.Layer.OPERATIONS
+                && operationsBeanName.equals(beanName) && bean instanceof AerospikeOperations) {
+            return new FaultInjectingAerospikeOperations((AerospikeOperations<String>) bean, injector);
+        }
+        return bean;
+    }
+
+}
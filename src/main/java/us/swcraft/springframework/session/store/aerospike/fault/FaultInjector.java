@@ -0,0 +1,203 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.fault;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.ResultCode;
+
+import us.swcraft.springframework.session.store.aerospike.fault.FaultRule.Fault;
+
+/**
+ * Injects latency and faults into store operations according to a scenario.
+ * Scenario is a properties file with {@link FaultRule} properties prefixed by
+ * operation type (<code>read.</code>, <code>write.</code>,
+ * <code>delete.</code>, <code>query.</code>) or <code>all.</code> for all
+ * types, and <code>layer</code> - <code>client</code> (default) to inject
+ * faults into Aerospike client calls or <code>operations</code> to inject
+ * them into store operations. For example:
+ * 
+ * <pre>
+ * layer=client
+ * all.latency=exponential
+ * all.latencyMillis=5
+ * read.timeoutRate=0.01
+ * read.timeoutMillis=1000
+ * write.outageStartSeconds=60
+ * write.outageSeconds=30
+ * write.outageRate=0.5
+ * </pre>
+ * 
+ * Scenario start is the time the injector is created.
+ */
+public class FaultInjector {
+
+    /**
+     * System property with scenario file path.
+     */
+    public static final String SCENARIO_PROPERTY = "ssa.faultScenario";
+
+    /**
+     * Environment variable with scenario file path.
+     */
+    public static final String SCENARIO_ENV = "SSA_FAULT_SCENARIO";
+
+    /**
+     * Where faults are injected.
+     */
+    public enum Layer {
+        /**
+         * Aerospike client - faults are exceptions handled by the template.
+         */
+        CLIENT,
+        /**
+         * Store operations - faults are results of failed operations.
+         */
+        OPERATIONS
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(FaultInjector.class);
+
+    private final Map<OperationType, FaultRule> rules = new EnumMap<>(OperationType.class);
+
+    private final Layer layer;
+
+    private final LongSupplier clock;
+
+    private final long start;
+
+    public FaultInjector(final Properties scenario) {
+        this(scenario, System::currentTimeMillis);
+    }
+
+    FaultInjector(final Properties scenario, final LongSupplier clock) {
+        Assert.notNull(scenario, "scenario can't be null");
+        this.layer = Layer.valueOf(scenario.getProperty("layer", Layer.CLIENT.name()).trim().toUpperCase());
+        final FaultRule defaults = FaultRule.from(scenario, "all.", FaultRule.NO_FAULTS);
+        for (OperationType type : OperationType.values()) {
+            rules.put(type, FaultRule.from(scenario, type.name().toLowerCase() + ".", defaults));
+        }
+        this.clock = clock;
+        this.start = clock.getAsLong();
+    }
+
+    /**
+     * Loads scenario file.
+     * 
+     * @param scenarioFile
+     * @return fault injector
+     * @throws IOException
+     */
+    public static FaultInjector load(final File scenarioFile) throws IOException {
+        final Properties scenario = new Properties();
+        try (InputStream in = new FileInputStream(scenarioFile)) {
+            scenario.load(in);
+        }
+        return new FaultInjector(scenario);
+    }
+
+    /**
+     * Loads scenario file set by {@value #SCENARIO_PROPERTY} system property or
+     * {@value #SCENARIO_ENV} environment variable.
+     * 
+     * @return fault injector or <code>null</code> if fault injection is not
+     *         enabled
+     */
+    public static FaultInjector fromEnvironment() {
+        final String path = System.getProperty(SCENARIO_PROPERTY, System.getenv(SCENARIO_ENV));
+        if (path == null || path.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            final FaultInjector injector = load(new File(path.trim()));
+            log.warn("FAULT INJECTION ENABLED - session store faults are injected by scenario {}", path);
+            return injector;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read fault scenario " + path, e);
+        }
+    }
+
+    public Layer getLayer() {
+        return layer;
+    }
+
+    /**
+     * Delays the calling thread by random latency and picks a fault. Timed
+     * out operation is delayed by timeout too.
+     * 
+     * @param type
+     *            operation type, <code>null</code> - no faults
+     * @return injected fault
+     */
+    public Fault inject(final OperationType type) {
+        if (type == null) {
+            return Fault.NONE;
+        }
+        final FaultRule rule = rules.get(type);
+        sleep(rule.nextLatencyMillis());
+        final Fault fault = rule.nextFault(clock.getAsLong() - start);
+        if (fault == Fault.TIMEOUT) {
+            sleep(rule.getTimeoutMillis());
+        }
+        if (fault != Fault.NONE) {
+            log.debug("Injected {} into {} operation", fault, type);
+        }
+        return fault;
+    }
+
+    /**
+     * Creates exception Aerospike client would throw on the fault.
+     * 
+     * @param type
+     * @param fault
+     *            injected fault, not {@link Fault#NONE}
+     * @return exception
+     */
+    public AerospikeException toException(final OperationType type, final Fault fault) {
+        switch (fault) {
+        case TIMEOUT:
+            return new AerospikeException(ResultCode.TIMEOUT, "Injected timeout");
+        case OUTAGE:
+            return new AerospikeException(ResultCode.SERVER_NOT_AVAILABLE, "Injected outage");
+        default:
+            return new AerospikeException(rules.get(type).getErrorCode(), "Injected error");
+        }
+    }
+
+    private static void sleep(final long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
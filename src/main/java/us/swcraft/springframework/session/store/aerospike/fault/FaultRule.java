@@ -0,0 +1,156 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.fault;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.aerospike.client.ResultCode;
+
+/**
+ * Faults injected into one operation type. Properties are prefixed with
+ * lower case operation type or <code>all</code>:
+ * <ul>
+ * <li><code>latency</code> - latency distribution: <code>none</code>,
+ * <code>fixed</code>, <code>uniform</code> (0 - 2 x mean) or
+ * <code>exponential</code>;</li>
+ * <li><code>latencyMillis</code> - mean latency;</li>
+ * <li><code>latencyMaxMillis</code> - latency cap;</li>
+ * <li><code>errorRate</code>, <code>errorCode</code> - share of failed
+ * operations and Aerospike result code, <code>KEY_NOT_FOUND_ERROR</code> by
+ * default;</li>
+ * <li><code>timeoutRate</code>, <code>timeoutMillis</code> - share of
+ * operations which time out after given time;</li>
+ * <li><code>outageStartSeconds</code>, <code>outageSeconds</code>,
+ * <code>outageRate</code> - outage window counted from scenario start and
+ * share of operations failing with <code>SERVER_NOT_AVAILABLE</code> in the
+ * window, <code>1</code> by default.</li>
+ * </ul>
+ */
+public class FaultRule {
+
+    /**
+     * Latency distributions.
+     */
+    public enum Latency {
+        NONE, FIXED, UNIFORM, EXPONENTIAL
+    }
+
+    /**
+     * Outcome of an operation.
+     */
+    public enum Fault {
+        NONE, ERROR, TIMEOUT, OUTAGE
+    }
+
+    static final FaultRule NO_FAULTS = new FaultRule();
+
+    private Latency latency = Latency.NONE;
+    private long latencyMillis;
+    private long latencyMaxMillis = Long.MAX_VALUE;
+    private double errorRate;
+    private int errorCode = ResultCode.KEY_NOT_FOUND_ERROR;
+    private double timeoutRate;
+    private long timeoutMillis = 1000;
+    private long outageStartMillis = -1;
+    private long outageMillis;
+    private double outageRate = 1;
+
+    /**
+     * Reads rule with given prefix, missing properties are taken from
+     * default rule.
+     */
+    static FaultRule from(final Properties properties, final String prefix, final FaultRule defaults) {
+        final FaultRule rule = new FaultRule();
+        rule.latency = Latency.valueOf(
+                properties.getProperty(prefix + "latency", defaults.latency.name()).toUpperCase());
+        rule.latencyMillis = longValue(properties, prefix + "latencyMillis", defaults.latencyMillis);
+        rule.latencyMaxMillis = longValue(properties, prefix + "latencyMaxMillis", defaults.latencyMaxMillis);
+        rule.errorRate = doubleValue(properties, prefix + "errorRate", defaults.errorRate);
+        rule.errorCode = (int) longValue(properties, prefix + "errorCode", defaults.errorCode);
+        rule.timeoutRate = doubleValue(properties, prefix + "timeoutRate", defaults.timeoutRate);
+        rule.timeoutMillis = longValue(properties, prefix + "timeoutMillis", defaults.timeoutMillis);
+        rule.outageStartMillis = properties.containsKey(prefix + "outageStartSeconds")
+                ? longValue(properties, prefix + "outageStartSeconds", 0) * 1000
+                : defaults.outageStartMillis;
+        rule.outageMillis = properties.containsKey(prefix + "outageSeconds")
+                ? longValue(properties, prefix + "outageSeconds", 0) * 1000
+                : defaults.outageMillis;
+        rule.outageRate = doubleValue(properties, prefix + "outageRate", defaults.outageRate);
+        return rule;
+    }
+
+    private static long longValue(final Properties properties, final String name, final long defaultValue) {
+        final String value = properties.getProperty(name);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private static double doubleValue(final Properties properties, final String name, final double defaultValue) {
+        final String value = properties.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    /**
+     * @return random latency in milliseconds
+     */
+    long nextLatencyMillis() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long value;
+        switch (latency) {
+        case FIXED:
+            value = latencyMillis;
+            break;
+        case UNIFORM:
+            value = (long) (random.nextDouble() * 2 * latencyMillis);
+            break;
+        case EXPONENTIAL:
+            value = (long) (-Math.log(1 - random.nextDouble()) * latencyMillis);
+            break;
+        default:
+            value = 0;
+        }
+        return Math.min(value, latencyMaxMillis);
+    }
+
+    /**
+     * @param elapsedMillis
+     *            time since scenario start
+     * @return random fault
+     */
+    Fault nextFault(final long elapsedMillis) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (outageStartMillis >= 0 && elapsedMillis >= outageStartMillis
+                && elapsedMillis < outageStartMillis + outageMillis && random.nextDouble() < outageRate) {
+            return Fault.OUTAGE;
+        }
+        if (timeoutRate > 0 && random.nextDouble() < timeoutRate) {
+            return Fault.TIMEOUT;
+        }
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            return Fault.ERROR;
+        }
+        return Fault.NONE;
+    }
+
+    int getErrorCode() {
+        return errorCode;
+    }
+
+    long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+}
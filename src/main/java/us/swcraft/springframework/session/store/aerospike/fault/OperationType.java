@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.fault;
+
+/**
+ * Store operation types faults are configured for.
+ */
+public enum OperationType {
+
+    READ, WRITE, DELETE, QUERY;
+
+    /**
+     * Maps {@link us.swcraft.springframework.session.store.aerospike.AerospikeOperations}
+     * and {@link com.aerospike.client.IAerospikeClient} method names to
+     * operation types.
+     * 
+     * @param methodName
+     * @return operation type or <code>null</code> if faults are not injected
+     *         into the method
+     */
+    public static OperationType of(final String methodName) {
+        switch (methodName) {
+        case "hasKey":
+        case "exists":
+        case "fetch":
+        case "fetchUntouched":
+        case "get":
+        case "touch":
+            return READ;
+        case "persist":
+        case "compareAndSet":
+        case "put":
+        case "deleteBin":
+            return WRITE;
+        case "delete":
+        case "deleteAll":
+            return DELETE;
+        case "fetchRange":
+        case "query":
+        case "scanAll":
+            return QUERY;
+        default:
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,601 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.replication;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+import com.aerospike.client.query.IndexType;
+
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+import us.swcraft.springframework.session.store.aerospike.RecordCaptureHook;
+
+/**
+ * Session store operations over two clusters - local one in the same data
+ * center and remote one. Records are read from local cluster first; record
+ * found only in remote cluster is copied to local one, so a session created in
+ * other data center is available. Writes go to local cluster and changed keys
+ * are replicated to remote cluster asynchronously.
+ * <p>
+ * Replication queue is bounded and coalescing - it holds keys, not writes,
+ * and replicates the latest record state, so a session saved many times
+ * before replication is sent once. When the queue is full, replication of new
+ * keys is dropped.
+ * <p>
+ * When local cluster is not available, reads and writes fail over to remote
+ * cluster and its changes are replicated back when local cluster recovers.
+ * Local cluster which reports itself available but fails operations is
+ * treated the same way: a failed read or write is repeated on remote cluster,
+ * and after {@link #setFailureThreshold(int) several} consecutive failures
+ * local cluster is not used until a request, sent once per
+ * {@link #setProbeInterval(long) probe interval}, succeeds on it.
+ */
+public class ReplicatedAerospikeOperations implements AerospikeOperations<String> {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final AerospikeOperations<String> local;
+
+    private final AerospikeOperations<String> remote;
+
+    private final int queueCapacity;
+
+    /**
+     * Keys waiting for replication with operations they have been written to,
+     * in order of first write. Guards replication state.
+     */
+    private final LinkedHashMap<String, AerospikeOperations<String>> pending = new LinkedHashMap<>();
+
+    private boolean replicating;
+
+    private final AtomicLong replicated = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Delay of replication retry when target cluster is not available,
+     * milliseconds.
+     */
+    private long retryDelay = 1000;
+
+    /**
+     * Consecutive failures of local cluster which make it unused.
+     */
+    private int failureThreshold = 3;
+
+    /**
+     * Interval of local cluster probes while it is not used after failures,
+     * milliseconds.
+     */
+    private long probeInterval = 5000;
+
+    private final AtomicInteger localFailures = new AtomicInteger();
+
+    /**
+     * Time of the next local cluster probe, 0 if local cluster is used.
+     */
+    private final AtomicLong localProbeTime = new AtomicLong();
+
+    private volatile boolean failedOver;
+
+    private volatile boolean running;
+
+    private Thread replicator;
+
+    public ReplicatedAerospikeOperations(final AerospikeOperations<String> local,
+            final AerospikeOperations<String> remote) {
+        this(local, remote, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param local
+     *            local cluster operations
+     * @param remote
+     *            remote cluster operations
+     * @param queueCapacity
+     *            maximum number of keys waiting for replication
+     */
+    public ReplicatedAerospikeOperations(final AerospikeOperations<String> local,
+            final AerospikeOperations<String> remote, final int queueCapacity) {
+        Assert.notNull(local, "local operations can't be null");
+        Assert.notNull(remote, "remote operations can't be null");
+        Assert.isTrue(queueCapacity > 0, "Replication queue capacity should be positive");
+        this.local = local;
+        this.remote = remote;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public synchronized void init() {
+        if (replicator == null) {
+            running = true;
+            replicator = new Thread(this::replicate, "sessionReplication");
+            replicator.setDaemon(true);
+            replicator.start();
+            log.info("Session replication started, queue capacity {}", queueCapacity);
+        }
+    }
+
+    /**
+     * Stops replication. Keys waiting for replication are not replicated, use
+     * {@link #awaitReplication(long)} to replicate them first.
+     */
+    public synchronized void destroy() {
+        if (replicator != null) {
+            running = false;
+            synchronized (pending) {
+                pending.notifyAll();
+            }
+            try {
+                replicator.join(retryDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            replicator = null;
+            log.info("Session replication stopped, {} keys not replicated", getPendingReplications());
+        }
+    }
+
+    public void setRetryDelay(final long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public void setFailureThreshold(final int failureThreshold) {
+        Assert.isTrue(failureThreshold > 0, "Failure threshold should be positive");
+        this.failureThreshold = failureThreshold;
+    }
+
+    public void setProbeInterval(final long probeInterval) {
+        this.probeInterval = probeInterval;
+    }
+
+    /**
+     * Waits until all keys waiting for replication are replicated.
+     * 
+     * @param timeoutMillis
+     * @return <code>true</code> if replication queue is empty
+     */
+    public boolean awaitReplication(final long timeoutMillis) {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (pending) {
+            long remaining = timeoutMillis;
+            while ((replicating || !pending.isEmpty()) && remaining > 0) {
+                try {
+                    pending.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return !replicating && pending.isEmpty();
+        }
+    }
+
+    public int getPendingReplications() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    public long getReplicatedCount() {
+        return replicated.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return <code>true</code> if remote cluster is used because local one is
+     *         not available or has failed several times in a row
+     */
+    public boolean isFailedOver() {
+        return failedOver;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return local.isAvailable() || remote.isAvailable();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Records fetched from either cluster are captured, replication reads
+     * are not.
+     */
+    @Override
+    public void setCaptureHook(final RecordCaptureHook captureHook) {
+        local.setCaptureHook(captureHook);
+        remote.setCaptureHook(captureHook);
+    }
+
+    @Override
+    public boolean hasKey(final String key) {
+        final AerospikeOperations<String> active = active();
+        final boolean found;
+        try {
+            found = active.hasKey(key);
+        } catch (RuntimeException e) {
+            return fallback(active, e).hasKey(key);
+        }
+        succeeded(active);
+        if (found) {
+            return true;
+        }
+        final AerospikeOperations<String> standby = standby(active);
+        return isUsable(standby) && standby.hasKey(key);
+    }
+
+    @Override
+    public void delete(final String key) {
+        AerospikeOperations<String> active = active();
+        try {
+            active.delete(key);
+            succeeded(active);
+        } catch (RuntimeException e) {
+            active = fallback(active, e);
+            active.delete(key);
+        }
+        enqueue(key, active);
+    }
+
+    @Override
+    public void deleteBin(final String key, final String binName) {
+        AerospikeOperations<String> active = active();
+        try {
+            active.deleteBin(key, binName);
+            succeeded(active);
+        } catch (RuntimeException e) {
+            active = fallback(active, e);
+            active.deleteBin(key, binName);
+        }
+        enqueue(key, active);
+    }
+
+    @Override
+    public void deleteAll() {
+        synchronized (pending) {
+            pending.clear();
+        }
+        local.deleteAll();
+        remote.deleteAll();
+    }
+
+    @Override
+    public void persist(final String key, final Bin value) {
+        AerospikeOperations<String> active = active();
+        try {
+            active.persist(key, value);
+            succeeded(active);
+        } catch (RuntimeException e) {
+            active = fallback(active, e);
+            active.persist(key, value);
+        }
+        enqueue(key, active);
+    }
+
+    @Override
+    public void persist(final String key, final Set<Bin> data) {
+        AerospikeOperations<String> active = active();
+        try {
+            active.persist(key, data);
+            succeeded(active);
+        } catch (RuntimeException e) {
+            active = fallback(active, e);
+            active.persist(key, data);
+        }
+        enqueue(key, active);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Record found only in standby cluster is copied to active one. Record
+     * read from standby cluster because active one has failed is not copied.
+     */
+    @Override
+    public Record fetch(final String key) {
+        final AerospikeOperations<String> active = active();
+        final Record record;
+        try {
+            record = active.fetch(key);
+        } catch (RuntimeException e) {
+            return fallback(active, e).fetch(key);
+        }
+        succeeded(active);
+        if (record != null) {
+            return record;
+        }
+        final AerospikeOperations<String> standby = standby(active);
+        if (!isUsable(standby)) {
+            return null;
+        }
+        final Record standbyRecord = standby.fetch(key);
+        if (standbyRecord != null && standbyRecord.bins != null && !standbyRecord.bins.isEmpty()) {
+            log.debug("Record {} is copied from {} cluster", key, standby == remote ? "remote" : "local");
+            try {
+                // create only - record written concurrently is newer
+                active.compareAndSet(key, 0, bins(standbyRecord, null), standbyRecord.getTimeToLive());
+            } catch (RuntimeException e) {
+                failed(active, e);
+            }
+        }
+        return standbyRecord;
+    }
+
+    @Override
+    public Record fetchUntouched(final String key) {
+        final AerospikeOperations<String> active = active();
+        final Record record;
+        try {
+            record = active.fetchUntouched(key);
+        } catch (RuntimeException e) {
+            return fallback(active, e).fetchUntouched(key);
+        }
+        succeeded(active);
+        if (record != null) {
+            return record;
+        }
+        final AerospikeOperations<String> standby = standby(active);
+        return isUsable(standby) ? standby.fetchUntouched(key) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Failed update is not repeated on standby cluster - record generations
+     * differ between clusters.
+     */
+    @Override
+    public boolean compareAndSet(final String key, final int expectedGeneration, final Set<Bin> data,
+            final int expiration) {
+        final AerospikeOperations<String> active = active();
+        final boolean updated;
+        try {
+            updated = active.compareAndSet(key, expectedGeneration, data, expiration);
+        } catch (RuntimeException e) {
+            failed(active, e);
+            throw e;
+        }
+        succeeded(active);
+        if (updated) {
+            enqueue(key, active);
+        }
+        return updated;
+    }
+
+    @Override
+    public void createIndex(final String binName, final String indexName, final IndexType indexType) {
+        local.createIndex(binName, indexName, indexType);
+        remote.createIndex(binName, indexName, indexType);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only active cluster is queried - deletes of found records are
+     * replicated.
+     */
+    @Override
+    public Set<String> fetchRange(final String idBinName, final String indexedBinName, final long begin,
+            final long end) {
+        final AerospikeOperations<String> active = active();
+        final Set<String> keys;
+        try {
+            keys = active.fetchRange(idBinName, indexedBinName, begin, end);
+        } catch (RuntimeException e) {
+            return fallback(active, e).fetchRange(idBinName, indexedBinName, begin, end);
+        }
+        succeeded(active);
+        return keys;
+    }
+
+    private AerospikeOperations<String> active() {
+        if (localProbeTime.get() != 0 && remote.isAvailable()) {
+            return probeLocal() ? local : remote;
+        }
+        final boolean localAvailable = local.isAvailable();
+        final boolean failover = !localAvailable && remote.isAvailable();
+        if (failover != failedOver) {
+            failedOver = failover;
+            if (failover) {
+                log.warn("Local session store is not available - fail over to remote one");
+            } else {
+                log.info("Local session store is available again");
+            }
+        }
+        return failover ? remote : local;
+    }
+
+    /**
+     * Lets one caller per probe interval use local cluster which is not used
+     * after failures.
+     * 
+     * @return <code>true</code> if the caller should probe local cluster
+     */
+    private boolean probeLocal() {
+        final long probeTime = localProbeTime.get();
+        final long now = System.currentTimeMillis();
+        return probeTime != 0 && now >= probeTime && local.isAvailable()
+                && localProbeTime.compareAndSet(probeTime, now + probeInterval);
+    }
+
+    private AerospikeOperations<String> standby(final AerospikeOperations<String> active) {
+        return active == local ? remote : local;
+    }
+
+    /**
+     * @return <code>true</code> if the cluster is available and is not
+     *         unused after failures
+     */
+    private boolean isUsable(final AerospikeOperations<String> operations) {
+        return operations.isAvailable() && (operations != local || localProbeTime.get() == 0);
+    }
+
+    /**
+     * Counts failure of active cluster.
+     * 
+     * @return standby cluster to repeat failed operation on
+     * @throws RuntimeException
+     *             the failure if standby cluster is not usable
+     */
+    private AerospikeOperations<String> fallback(final AerospikeOperations<String> active,
+            final RuntimeException failure) {
+        failed(active, failure);
+        final AerospikeOperations<String> standby = standby(active);
+        if (!isUsable(standby)) {
+            throw failure;
+        }
+        log.debug("Session store operation failed, repeated on {} cluster: {}", standby == remote ? "remote"
+                : "local", failure.toString());
+        return standby;
+    }
+
+    /**
+     * Stops using local cluster after consecutive failures, if remote one is
+     * available.
+     */
+    private void failed(final AerospikeOperations<String> operations, final RuntimeException failure) {
+        if (operations != local || localFailures.incrementAndGet() < failureThreshold || !remote.isAvailable()) {
+            return;
+        }
+        if (localProbeTime.getAndSet(System.currentTimeMillis() + probeInterval) == 0) {
+            failedOver = true;
+            log.warn("Local session store failed " + localFailures.get() + " times in a row - fail over to remote one",
+                    failure);
+        }
+    }
+
+    private void succeeded(final AerospikeOperations<String> operations) {
+        if (operations != local || localFailures.get() == 0) {
+            return;
+        }
+        localFailures.set(0);
+        // failover state is cleared by the next active() call
+        localProbeTime.set(0);
+    }
+
+    private void enqueue(final String key, final AerospikeOperations<String> source) {
+        synchronized (pending) {
+            if (pending.size() >= queueCapacity && !pending.containsKey(key)) {
+                if (dropped.incrementAndGet() % 1000 == 1) {
+                    log.warn("Replication queue is full - {} keys are not replicated", dropped.get());
+                }
+                return;
+            }
+            pending.put(key, source);
+            pending.notifyAll();
+        }
+    }
+
+    /**
+     * Replicator thread loop.
+     */
+    private void replicate() {
+        while (running) {
+            final String key;
+            final AerospikeOperations<String> source;
+            synchronized (pending) {
+                replicating = false;
+                pending.notifyAll();
+                try {
+                    if (pending.isEmpty()) {
+                        pending.wait();
+                        continue;
+                    }
+                    final Iterator<Map.Entry<String, AerospikeOperations<String>>> it = pending.entrySet()
+                            .iterator();
+                    final Map.Entry<String, AerospikeOperations<String>> next = it.next();
+                    if (!isUsable(standby(next.getValue()))) {
+                        pending.wait(retryDelay);
+                        continue;
+                    }
+                    it.remove();
+                    key = next.getKey();
+                    source = next.getValue();
+                    replicating = true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            try {
+                replicate(key, source, standby(source));
+                replicated.incrementAndGet();
+            } catch (RuntimeException e) {
+                log.error("Replication of " + key + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Copies the latest state of the record. Record TTL is kept and bins
+     * removed in source record are removed in target record.
+     */
+    private void replicate(final String key, final AerospikeOperations<String> source,
+            final AerospikeOperations<String> target) {
+        final Record record = source.fetchUntouched(key);
+        if (record == null || record.bins == null || record.bins.isEmpty()) {
+            target.delete(key);
+            return;
+        }
+        for (int attempt = 0; attempt < 3; attempt++) {
+            final Record current = target.fetchUntouched(key);
+            if (target.compareAndSet(key, current == null ? 0 : current.generation, bins(record, current),
+                    record.getTimeToLive())) {
+                return;
+            }
+        }
+        log.warn("Replication of {} failed - concurrent update", key);
+    }
+
+    /**
+     * @param record
+     * @param previous
+     *            target record, its bins not present in the record are
+     *            removed
+     * @return bins to write
+     */
+    private static Set<Bin> bins(final Record record, final Record previous) {
+        final Set<Bin> bins = new HashSet<>();
+        for (Map.Entry<String, Object> bin : record.bins.entrySet()) {
+            bins.add(new Bin(bin.getKey(), bin.getValue()));
+        }
+        if (previous != null && previous.bins != null) {
+            for (String name : previous.bins.keySet()) {
+                if (!record.bins.containsKey(name)) {
+                    bins.add(Bin.asNull(name));
+                }
+            }
+        }
+        return bins;
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.util.Assert;
+
+/**
+ * Immutable consistent hash ring. Each shard is placed on the ring as
+ * <code>virtualNodes * weight</code> points, a key belongs to the shard of
+ * the first point following key hash. Adding or removing a shard moves only
+ * keys of that shard's share.
+ */
+class ConsistentHashRing {
+
+    private final long[] points;
+
+    private final Shard[] owners;
+
+    private final List<Shard> shards;
+
+    ConsistentHashRing(final List<Shard> shards, final int virtualNodes) {
+        Assert.notEmpty(shards, "At least one shard is required");
+        Assert.isTrue(virtualNodes > 0, "Number of virtual nodes should be positive");
+        final Set<String> names = new HashSet<>();
+        int size = 0;
+        for (Shard shard : shards) {
+            Assert.isTrue(names.add(shard.getName()), "Duplicate shard name " + shard.getName());
+            size += virtualNodes * shard.getWeight();
+        }
+        final long[][] nodes = new long[size][];
+        int n = 0;
+        for (int s = 0; s < shards.size(); s++) {
+            final Shard shard = shards.get(s);
+            for (int i = 0; i < virtualNodes * shard.getWeight(); i++) {
+                nodes[n++] = new long[] { hash(shard.getName() + '#' + i), s };
+            }
+        }
+        Arrays.sort(nodes, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[size];
+        this.owners = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = nodes[i][0];
+            owners[i] = shards.get((int) nodes[i][1]);
+        }
+        this.shards = shards;
+    }
+
+    /**
+     * @param key
+     * @return shard owning the key
+     */
+    Shard shardOf(final String key) {
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * 64-bit FNV-1a of UTF-8 bytes finalized by MurmurHash3 mix, so similar
+     * keys are spread over the ring.
+     */
+    static long hash(final String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.shard;
+
+import org.springframework.util.Assert;
+
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+
+/**
+ * Session store shard - operations on Aerospike cluster, namespace and set
+ * with its share of sessions.
+ */
+public class Shard {
+
+    private final String name;
+
+    private final AerospikeOperations<String> operations;
+
+    private final int weight;
+
+    /**
+     * @param name
+     *            unique shard name. Sessions are placed by the name, so it
+     *            must not change while sessions are stored
+     * @param operations
+     *            shard store operations
+     * @param weight
+     *            relative shard capacity
+     */
+    public Shard(final String name, final AerospikeOperations<String> operations, final int weight) {
+        Assert.hasLength(name, "Shard name can't be empty");
+        Assert.notNull(operations, "Shard operations can't be null");
+        Assert.isTrue(weight > 0, "Shard weight should be positive");
+        this.name = name;
+        this.operations = operations;
+        this.weight = weight;
+    }
+
+    public Shard(final String name, final AerospikeOperations<String> operations) {
+        this(name, operations, 1);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AerospikeOperations<String> getOperations() {
+        return operations;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return "Shard[" + name + ", weight " + weight + "]";
+    }
+
+}
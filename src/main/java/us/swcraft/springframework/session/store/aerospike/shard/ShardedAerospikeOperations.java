@@ -0,0 +1,395 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.shard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+import com.aerospike.client.query.IndexType;
+
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+import us.swcraft.springframework.session.store.aerospike.RecordCaptureHook;
+
+/**
+ * Session store operations spread over several shards - Aerospike clusters,
+ * namespaces or sets. Each key is routed to a shard by consistent hashing with
+ * virtual nodes, so shard capacity is proportional to its weight.
+ * <p>
+ * Shards can be changed at runtime with {@link #reshard(List)}. While
+ * resharding is in progress, keys not found in new location are read from the
+ * old one and a record is moved to new location on first write. Remaining
+ * records are moved by {@link #migrate(String, String)} or expire in old
+ * location; {@link #finishResharding()} stops reading old locations.
+ */
+public class ShardedAerospikeOperations implements AerospikeOperations<String> {
+
+    /**
+     * Virtual nodes per shard weight unit. Keeps shard load within a few
+     * percent of its share.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final int virtualNodes;
+
+    private volatile ConsistentHashRing ring;
+
+    /**
+     * Ring before resharding, <code>null</code> if resharding is not in
+     * progress.
+     */
+    private volatile ConsistentHashRing previousRing;
+
+    private RecordCaptureHook captureHook;
+
+    /**
+     * Indexes created on all shards, by index name. Shards added by
+     * {@link #reshard(List)} get the same indexes.
+     */
+    private final Map<String, IndexDefinition> indexes = new LinkedHashMap<>();
+
+    public ShardedAerospikeOperations(final List<Shard> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param shards
+     *            shards with unique names
+     * @param virtualNodes
+     *            virtual nodes per shard weight unit
+     */
+    public ShardedAerospikeOperations(final List<Shard> shards, final int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+        this.ring = new ConsistentHashRing(new ArrayList<>(shards), virtualNodes);
+    }
+
+    public void init() {
+        log.info("Sharded session store: {}", ring.getShards());
+    }
+
+    /**
+     * @param key
+     * @return shard owning the key
+     */
+    public Shard shardOf(final String key) {
+        return ring.shardOf(key);
+    }
+
+    public List<Shard> getShards() {
+        return Collections.unmodifiableList(ring.getShards());
+    }
+
+    /**
+     * Starts resharding - keys are routed to new shards, old shards are read
+     * until {@link #finishResharding()}. Indexes created by
+     * {@link #createIndex(String, String, IndexType)} are created on added
+     * shards before keys are routed to them.
+     * 
+     * @param shards
+     *            new shards. Shards which are kept should have the same names
+     * @throws IllegalStateException
+     *             if previous resharding is not finished
+     */
+    public synchronized void reshard(final List<Shard> shards) {
+        Assert.state(previousRing == null, "Previous resharding is not finished");
+        final ConsistentHashRing next = new ConsistentHashRing(new ArrayList<>(shards), virtualNodes);
+        final Set<AerospikeOperations<String>> existing = distinct(ring);
+        for (AerospikeOperations<String> operations : distinct(next)) {
+            if (!existing.contains(operations)) {
+                for (IndexDefinition index : indexes.values()) {
+                    operations.createIndex(index.binName, index.indexName, index.indexType);
+                }
+            }
+        }
+        for (Shard shard : shards) {
+            shard.getOperations().setCaptureHook(captureHook);
+        }
+        // old ring is visible before keys are routed to new one
+        previousRing = ring;
+        ring = next;
+        log.info("Resharding {} -> {}", previousRing.getShards(), shards);
+    }
+
+    /**
+     * Moves all records which are found by range query of indexed bin on old
+     * shards to their new shards.
+     * 
+     * @param idBinName
+     *            bin with record key
+     * @param indexedBinName
+     *            indexed bin set in every record to move
+     * @return number of moved records
+     */
+    public int migrate(final String idBinName, final String indexedBinName) {
+        final ConsistentHashRing previous = previousRing;
+        if (previous == null) {
+            return 0;
+        }
+        int moved = 0;
+        for (AerospikeOperations<String> operations : distinct(previous)) {
+            for (String key : operations.fetchRange(idBinName, indexedBinName, Long.MIN_VALUE, Long.MAX_VALUE)) {
+                final AerospikeOperations<String> current = ring.shardOf(key).getOperations();
+                if (current != operations && moveRecord(key, operations, current)) {
+                    moved++;
+                }
+            }
+        }
+        log.info("{} records moved to new shards", moved);
+        return moved;
+    }
+
+    /**
+     * Stops reading old shards. Records not moved are not available any
+     * more.
+     */
+    public synchronized void finishResharding() {
+        previousRing = null;
+        log.info("Resharding finished: {}", ring.getShards());
+    }
+
+    public boolean isResharding() {
+        return previousRing != null;
+    }
+
+    @Override
+    public boolean hasKey(final String key) {
+        final AerospikeOperations<String> current = ring.shardOf(key).getOperations();
+        if (current.hasKey(key)) {
+            return true;
+        }
+        final AerospikeOperations<String> previous = previousOwner(key, current);
+        return previous != null && previous.hasKey(key);
+    }
+
+    @Override
+    public void delete(final String key) {
+        final AerospikeOperations<String> current = ring.shardOf(key).getOperations();
+        current.delete(key);
+        final AerospikeOperations<String> previous = previousOwner(key, current);
+        if (previous != null) {
+            previous.delete(key);
+        }
+    }
+
+    @Override
+    public void deleteBin(final String key, final String binName) {
+        writable(key).deleteBin(key, binName);
+    }
+
+    @Override
+    public void deleteAll() {
+        for (AerospikeOperations<String> operations : allOperations()) {
+            operations.deleteAll();
+        }
+    }
+
+    @Override
+    public void persist(final String key, final Bin value) {
+        writable(key).persist(key, value);
+    }
+
+    @Override
+    public void persist(final String key, final Set<Bin> data) {
+        writable(key).persist(key, data);
+    }
+
+    @Override
+    public Record fetch(final String key) {
+        final AerospikeOperations<String> current = ring.shardOf(key).getOperations();
+        final Record record = current.fetch(key);
+        if (record != null) {
+            return record;
+        }
+        final AerospikeOperations<String> previous = previousOwner(key, current);
+        return previous == null ? null : previous.fetch(key);
+    }
+
+    @Override
+    public Record fetchUntouched(final String key) {
+        final AerospikeOperations<String> current = ring.shardOf(key).getOperations();
+        final Record record = current.fetchUntouched(key);
+        if (record != null) {
+            return record;
+        }
+        final AerospikeOperations<String> previous = previousOwner(key, current);
+        return previous == null ? null : previous.fetchUntouched(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Record read from old location during resharding is moved first, so its
+     * generation changes and the update fails - caller should read the record
+     * again.
+     */
+    @Override
+    public boolean compareAndSet(final String key, final int expectedGeneration, final Set<Bin> data,
+            final int expiration) {
+        return writable(key).compareAndSet(key, expectedGeneration, data, expiration);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The index is also created on shards added by {@link #reshard(List)}
+     * later.
+     */
+    @Override
+    public synchronized void createIndex(final String binName, final String indexName, final IndexType indexType) {
+        indexes.put(indexName, new IndexDefinition(binName, indexName, indexType));
+        for (AerospikeOperations<String> operations : allOperations()) {
+            operations.createIndex(binName, indexName, indexType);
+        }
+    }
+
+    @Override
+    public Set<String> fetchRange(final String idBinName, final String indexedBinName, final long begin,
+            final long end) {
+        final Set<String> result = new HashSet<>();
+        for (AerospikeOperations<String> operations : allOperations()) {
+            result.addAll(operations.fetchRange(idBinName, indexedBinName, begin, end));
+        }
+        return result;
+    }
+
+    /**
+     * @return <code>true</code> if all current shards are available
+     */
+    @Override
+    public boolean isAvailable() {
+        for (Shard shard : ring.getShards()) {
+            if (!shard.getOperations().isAvailable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The hook is set on all shards, including shards added by
+     * {@link #reshard(List)} later. Migration reads are not captured.
+     */
+    @Override
+    public synchronized void setCaptureHook(final RecordCaptureHook captureHook) {
+        this.captureHook = captureHook;
+        final ConsistentHashRing previous = previousRing;
+        if (previous != null) {
+            for (Shard shard : previous.getShards()) {
+                shard.getOperations().setCaptureHook(captureHook);
+            }
+        }
+        for (Shard shard : ring.getShards()) {
+            shard.getOperations().setCaptureHook(captureHook);
+        }
+    }
+
+    /**
+     * @return owner of the key before resharding if it is not the current
+     *         one, <code>null</code> otherwise
+     */
+    private AerospikeOperations<String> previousOwner(final String key, final AerospikeOperations<String> current) {
+        final ConsistentHashRing previous = previousRing;
+        if (previous == null) {
+            return null;
+        }
+        final AerospikeOperations<String> operations = previous.shardOf(key).getOperations();
+        return operations == current ? null : operations;
+    }
+
+    /**
+     * @return current owner of the key with the record moved from old
+     *         location
+     */
+    private AerospikeOperations<String> writable(final String key) {
+        final AerospikeOperations<String> current = ring.shardOf(key).getOperations();
+        final AerospikeOperations<String> previous = previousOwner(key, current);
+        if (previous != null) {
+            moveRecord(key, previous, current);
+        }
+        return current;
+    }
+
+    private boolean moveRecord(final String key, final AerospikeOperations<String> from,
+            final AerospikeOperations<String> to) {
+        final Record record = from.fetchUntouched(key);
+        if (record == null) {
+            return false;
+        }
+        if (record.bins != null && !record.bins.isEmpty()) {
+            final Set<Bin> bins = new HashSet<>();
+            for (Map.Entry<String, Object> bin : record.bins.entrySet()) {
+                bins.add(new Bin(bin.getKey(), bin.getValue()));
+            }
+            // create only - record written to new location concurrently is
+            // newer
+            if (!to.compareAndSet(key, 0, bins, record.getTimeToLive())) {
+                log.debug("Record {} is already in new location", key);
+            }
+        }
+        from.delete(key);
+        log.trace("Record {} moved to new shard", key);
+        return true;
+    }
+
+    private Set<AerospikeOperations<String>> allOperations() {
+        final Set<AerospikeOperations<String>> operations = distinct(ring);
+        final ConsistentHashRing previous = previousRing;
+        if (previous != null) {
+            operations.addAll(distinct(previous));
+        }
+        return operations;
+    }
+
+    private static Set<AerospikeOperations<String>> distinct(final ConsistentHashRing ring) {
+        final Set<AerospikeOperations<String>> operations = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Shard shard : ring.getShards()) {
+            operations.add(shard.getOperations());
+        }
+        return operations;
+    }
+
+    private static final class IndexDefinition {
+
+        private final String binName;
+
+        private final String indexName;
+
+        private final IndexType indexType;
+
+        private IndexDefinition(final String binName, final String indexName, final IndexType indexType) {
+            this.binName = binName;
+            this.indexName = indexName;
+            this.indexType = indexType;
+        }
+
+    }
+
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.tier;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+import com.aerospike.client.query.IndexType;
+
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+import us.swcraft.springframework.session.store.aerospike.RecordCaptureHook;
+
+/**
+ * Session store operations over hot and cold tiers, e.g. in-memory and SSD
+ * namespaces. Records idle longer than a threshold are moved to cold tier by a
+ * background task, binary bins are recompressed with Deflate on the way. Hot
+ * tier keeps a bin-less marker record of a moved record, so a record accessed
+ * while it is moved is not lost. The record is moved back to hot tier on the
+ * next access and bins written to the marker record take precedence.
+ * <p>
+ * Idle records are found by range query of last access time bin, the index is
+ * created in hot tier on {@link #init()}.
+ */
+public class TieredAerospikeOperations implements AerospikeOperations<String> {
+
+    /**
+     * Cold record bin listing bins compressed by the tier.
+     */
+    static final String DEFLATED_BINS_BIN = "tierDeflated";
+
+    /**
+     * Hot tier marker record bin of a record moved to cold tier.
+     */
+    static final String COLD_BIN = "tierCold";
+
+    /**
+     * Suffix of cold tier index names. Index names are unique within a
+     * namespace, so cold tier set in the same namespace as hot tier one needs
+     * its own names.
+     */
+    static final String COLD_INDEX_SUFFIX = "_cold";
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final AerospikeOperations<String> hot;
+
+    private final AerospikeOperations<String> cold;
+
+    private final long idleMillis;
+
+    private volatile RecordCaptureHook captureHook;
+
+    private String idBinName = "sessionId";
+
+    private String lastAccessedBinName = "lastAccessed";
+
+    private String lastAccessedIndexName = "lai";
+
+    /**
+     * Idle records check interval, milliseconds. Zero - records are moved
+     * only by {@link #moveIdle()} calls.
+     */
+    private long moveInterval = 60000;
+
+    private ScheduledExecutorService mover;
+
+    /**
+     * @param hot
+     *            hot tier operations
+     * @param cold
+     *            cold tier operations
+     * @param idleMillis
+     *            time since last access after which a record is moved to
+     *            cold tier, milliseconds
+     */
+    public TieredAerospikeOperations(final AerospikeOperations<String> hot, final AerospikeOperations<String> cold,
+            final long idleMillis) {
+        Assert.notNull(hot, "hot tier operations can't be null");
+        Assert.notNull(cold, "cold tier operations can't be null");
+        Assert.isTrue(idleMillis > 0, "Idle time should be positive");
+        this.hot = hot;
+        this.cold = cold;
+        this.idleMillis = idleMillis;
+    }
+
+    public synchronized void init() {
+        hot.createIndex(lastAccessedBinName, lastAccessedIndexName, IndexType.NUMERIC);
+        if (moveInterval > 0 && mover == null) {
+            mover = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "sessionTierMover");
+                thread.setDaemon(true);
+                return thread;
+            });
+            mover.scheduleWithFixedDelay(this::moveIdleSafely, moveInterval, moveInterval, TimeUnit.MILLISECONDS);
+        }
+        log.info("Tiered session store: records idle for {} ms are moved to cold tier every {} ms", idleMillis,
+                moveInterval);
+    }
+
+    public synchronized void destroy() {
+        if (mover != null) {
+            mover.shutdownNow();
+            mover = null;
+        }
+    }
+
+    public void setIdBinName(final String idBinName) {
+        this.idBinName = idBinName;
+    }
+
+    public void setLastAccessedBinName(final String lastAccessedBinName) {
+        this.lastAccessedBinName = lastAccessedBinName;
+    }
+
+    /**
+     * @param lastAccessedIndexName
+     *            name of the index on last access time bin, unique in hot
+     *            tier namespace
+     */
+    public void setLastAccessedIndexName(final String lastAccessedIndexName) {
+        this.lastAccessedIndexName = lastAccessedIndexName;
+    }
+
+    public void setMoveInterval(final long moveInterval) {
+        this.moveInterval = moveInterval;
+    }
+
+    /**
+     * Moves records idle longer than the threshold to cold tier. A record
+     * accessed while it is moved stays in hot tier.
+     * 
+     * @return number of moved records
+     */
+    public int moveIdle() {
+        final Set<String> idle = hot.fetchRange(idBinName, lastAccessedBinName, 0L,
+                System.currentTimeMillis() - idleMillis);
+        int moved = 0;
+        for (String key : idle) {
+            final Record record = hot.fetchUntouched(key);
+            if (record == null || record.bins == null || record.bins.isEmpty() || isCold(record)) {
+                continue;
+            }
+            final Record coldRecord = cold.fetchUntouched(key);
+            if (!cold.compareAndSet(key, coldRecord == null ? 0 : coldRecord.generation, deflate(record, coldRecord),
+                    record.getTimeToLive())) {
+                continue;
+            }
+            // fetch touches the record, so its generation changes on access
+            if (hot.compareAndSet(key, record.generation, marker(record), record.getTimeToLive())) {
+                moved++;
+            } else {
+                cold.delete(key);
+            }
+        }
+        if (moved > 0) {
+            log.debug("{} idle records moved to cold tier", moved);
+        }
+        return moved;
+    }
+
+    private void moveIdleSafely() {
+        try {
+            moveIdle();
+        } catch (RuntimeException e) {
+            log.error("Moving idle records to cold tier failed", e);
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return hot.isAvailable();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Records are captured as returned by {@link #fetch(String)}, with
+     * attributes from either tier. Tier moves are not captured.
+     */
+    @Override
+    public void setCaptureHook(final RecordCaptureHook captureHook) {
+        this.captureHook = captureHook;
+    }
+
+    @Override
+    public boolean hasKey(final String key) {
+        return hot.hasKey(key);
+    }
+
+    @Override
+    public void delete(final String key) {
+        hot.delete(key);
+        cold.delete(key);
+    }
+
+    @Override
+    public void deleteBin(final String key, final String binName) {
+        // bin may be in cold tier
+        promote(key);
+        hot.deleteBin(key, binName);
+    }
+
+    @Override
+    public void deleteAll() {
+        hot.deleteAll();
+        cold.deleteAll();
+    }
+
+    @Override
+    public void persist(final String key, final Bin value) {
+        hot.persist(key, value);
+    }
+
+    @Override
+    public void persist(final String key, final Set<Bin> data) {
+        hot.persist(key, data);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Record found in cold tier is moved to hot tier.
+     */
+    @Override
+    public Record fetch(final String key) {
+        final Record record = fetchPromoted(key);
+        final RecordCaptureHook hook = captureHook;
+        if (record != null && hook != null) {
+            try {
+                hook.onFetch(key, record);
+            } catch (RuntimeException e) {
+                log.warn("Record capture failed: {}", e.getMessage());
+            }
+        }
+        return record;
+    }
+
+    private Record fetchPromoted(final String key) {
+        final Record record = hot.fetch(key);
+        if (record == null || !isCold(record)) {
+            return record;
+        }
+        for (int attempt = 0; attempt < 3; attempt++) {
+            if (promote(key)) {
+                log.trace("Record {} moved to hot tier", key);
+                return hot.fetchUntouched(key);
+            }
+        }
+        log.warn("Record {} can't be moved to hot tier - concurrent update", key);
+        return fetchUntouched(key);
+    }
+
+    @Override
+    public Record fetchUntouched(final String key) {
+        final Record record = hot.fetchUntouched(key);
+        if (record == null || !isCold(record)) {
+            return record;
+        }
+        final Map<String, Bin> bins = merge(record, cold.fetchUntouched(key));
+        if (bins.isEmpty()) {
+            return null;
+        }
+        final Map<String, Object> values = new HashMap<>();
+        for (Bin bin : bins.values()) {
+            values.put(bin.name, bin.value.getObject());
+        }
+        return new Record(values, record.generation, record.expiration);
+    }
+
+    @Override
+    public boolean compareAndSet(final String key, final int expectedGeneration, final Set<Bin> data,
+            final int expiration) {
+        return hot.compareAndSet(key, expectedGeneration, data, expiration);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cold tier index name has {@value #COLD_INDEX_SUFFIX} suffix.
+     */
+    @Override
+    public void createIndex(final String binName, final String indexName, final IndexType indexType) {
+        hot.createIndex(binName, indexName, indexType);
+        cold.createIndex(binName, indexName + COLD_INDEX_SUFFIX, indexType);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Both tiers are queried, so expired records are found in cold tier too.
+     */
+    @Override
+    public Set<String> fetchRange(final String idBinName, final String indexedBinName, final long begin,
+            final long end) {
+        final Set<String> result = new HashSet<>(hot.fetchRange(idBinName, indexedBinName, begin, end));
+        result.addAll(cold.fetchRange(idBinName, indexedBinName, begin, end));
+        return result;
+    }
+
+    /**
+     * Moves record from cold tier back to hot tier.
+     * 
+     * @return <code>false</code> if hot tier record has been changed
+     *         concurrently
+     */
+    private boolean promote(final String key) {
+        final Record marker = hot.fetchUntouched(key);
+        if (marker == null || !isCold(marker)) {
+            return true;
+        }
+        final Record coldRecord = cold.fetchUntouched(key);
+        final Map<String, Bin> bins = merge(marker, coldRecord);
+        if (bins.isEmpty()) {
+            log.warn("Record {} is lost in cold tier", key);
+            hot.delete(key);
+            return true;
+        }
+        bins.put(COLD_BIN, Bin.asNull(COLD_BIN));
+        if (!hot.compareAndSet(key, marker.generation, new HashSet<>(bins.values()), marker.getTimeToLive())) {
+            return false;
+        }
+        if (coldRecord != null) {
+            cold.delete(key);
+        }
+        return true;
+    }
+
+    /**
+     * @return cold tier record bins overridden by bins written to hot tier
+     *         marker record
+     */
+    private static Map<String, Bin> merge(final Record marker, final Record coldRecord) {
+        final Map<String, Bin> bins = new HashMap<>();
+        if (coldRecord != null) {
+            for (Bin bin : inflate(coldRecord)) {
+                bins.put(bin.name, bin);
+            }
+        }
+        for (Map.Entry<String, Object> bin : marker.bins.entrySet()) {
+            if (!COLD_BIN.equals(bin.getKey())) {
+                bins.put(bin.getKey(), new Bin(bin.getKey(), bin.getValue()));
+            }
+        }
+        return bins;
+    }
+
+    private static boolean isCold(final Record record) {
+        return record.getValue(COLD_BIN) != null;
+    }
+
+    /**
+     * @return hot tier marker record bins - record bins are removed
+     */
+    private static Set<Bin> marker(final Record record) {
+        final Set<Bin> bins = new HashSet<>();
+        for (String name : record.bins.keySet()) {
+            bins.add(Bin.asNull(name));
+        }
+        bins.add(new Bin(COLD_BIN, 1));
+        return bins;
+    }
+
+    /**
+     * @param record
+     *            hot tier record
+     * @param previous
+     *            existing cold tier record, its other bins are removed
+     * @return cold record bins - binary bins are compressed if it makes them
+     *         smaller
+     */
+    static Set<Bin> deflate(final Record record, final Record previous) {
+        final Set<Bin> bins = new HashSet<>();
+        final StringBuilder deflated = new StringBuilder();
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            for (Map.Entry<String, Object> bin : record.bins.entrySet()) {
+                Object value = bin.getValue();
+                if (value instanceof byte[]) {
+                    final byte[] compressed = deflate(deflater, (byte[]) value);
+                    if (compressed.length < ((byte[]) value).length) {
+                        value = compressed;
+                        deflated.append(deflated.length() == 0 ? "" : ",").append(bin.getKey());
+                    }
+                }
+                bins.add(new Bin(bin.getKey(), value));
+            }
+        } finally {
+            deflater.end();
+        }
+        bins.add(deflated.length() == 0 ? Bin.asNull(DEFLATED_BINS_BIN)
+                : new Bin(DEFLATED_BINS_BIN, deflated.toString()));
+        if (previous != null && previous.bins != null) {
+            for (String name : previous.bins.keySet()) {
+                if (!record.bins.containsKey(name) && !DEFLATED_BINS_BIN.equals(name)) {
+                    bins.add(Bin.asNull(name));
+                }
+            }
+        }
+        return bins;
+    }
+
+    /**
+     * @return hot record bins
+     */
+    static Set<Bin> inflate(final Record coldRecord) {
+        final String deflatedNames = coldRecord.getString(DEFLATED_BINS_BIN);
+        final Set<String> deflated = new HashSet<>();
+        if (deflatedNames != null) {
+            for (String name : deflatedNames.split(",")) {
+                deflated.add(name);
+            }
+        }
+        final Set<Bin> bins = new HashSet<>();
+        for (Map.Entry<String, Object> bin : coldRecord.bins.entrySet()) {
+            if (DEFLATED_BINS_BIN.equals(bin.getKey())) {
+                continue;
+            }
+            final Object value = bin.getValue();
+            bins.add(new Bin(bin.getKey(), deflated.contains(bin.getKey()) ? inflate((byte[]) value) : value));
+        }
+        return bins;
+    }
+
+    private static byte[] deflate(final Deflater deflater, final byte[] data) {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        final byte[] buffer = new byte[Math.min(8192, Math.max(64, data.length))];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(final byte[] data) {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            final byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                final int n = inflater.inflate(buffer);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new IllegalArgumentException("Truncated cold tier record bin");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupted cold tier record bin", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
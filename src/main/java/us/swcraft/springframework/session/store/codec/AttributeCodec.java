@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.codec;
+
+/**
+ * Compact binary codec for a single well-known session attribute type. Encoded
+ * attribute starts with one byte codec tag, so the tag has to be unique and
+ * never change once sessions are stored.
+ * <p>
+ * Tags <code>1</code> - <code>31</code> are reserved for built-in codecs.
+ * 
+ * @param <T>
+ *            attribute type
+ */
+public interface AttributeCodec<T> {
+
+    /**
+     * Codec tag written in front of encoded value, <code>1</code> -
+     * <code>255</code>. Tag
+     * {@link AttributeCodecRegistry#FOREIGN_SERIALIZER_TAG} is reserved.
+     * 
+     * @return codec tag
+     */
+    int getTag();
+
+    /**
+     * Attribute class handled by codec. Only instances of exactly this class are
+     * encoded.
+     * 
+     * @return attribute class
+     */
+    Class<T> getType();
+
+    /**
+     * Writes attribute value.
+     * 
+     * @param value
+     *            attribute value, never <code>null</code>
+     * @param out
+     *            output
+     */
+    void write(T value, CodecOutput out);
+
+    /**
+     * Reads attribute value.
+     * 
+     * @param in
+     *            input
+     * @return attribute value
+     */
+    T read(CodecInput in);
+
+}
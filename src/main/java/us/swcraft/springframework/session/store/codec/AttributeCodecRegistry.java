@@ -0,0 +1,203 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.codec;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import us.swcraft.springframework.session.store.SerializationException;
+
+/**
+ * Registry of compact attribute codecs. Attributes of registered types are
+ * encoded by their codec instead of general purpose store serializer. Encoded
+ * attribute is the codec tag followed by codec data. Tag <code>0</code> marks
+ * attributes written by store serializer.
+ * <p>
+ * Built-in codecs cover {@link String}, primitive wrappers, <code>byte[]</code>,
+ * {@link java.util.UUID}, {@link java.util.Locale}, {@link java.util.Date},
+ * {@link java.math.BigDecimal} and {@link java.math.BigInteger}. Application
+ * specific codecs are added with {@link #register(AttributeCodec)} before the
+ * first session is processed, or generated for classes annotated with
+ * {@link SessionAttributeCodec} and loaded as services.
+ * <p>
+ * Registry is thread-safe.
+ */
+public class AttributeCodecRegistry {
+
+    /**
+     * Tag of attributes serialized by store serializer.
+     */
+    public static final int SERIALIZER_TAG = 0;
+
+    /**
+     * Tag of attributes written by a store serializer other than configured
+     * one, followed by serialization type id, compression id and serializer
+     * data. Unknown class attributes of other payload formats are kept with
+     * it, so they can be saved back with current format.
+     */
+    public static final int FOREIGN_SERIALIZER_TAG = 31;
+
+    /**
+     * Max size of reusable per-thread output buffer.
+     */
+    private static final int MAX_RETAINED_OUTPUT = 64 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private volatile Map<Class<?>, AttributeCodec<?>> codecsByType = new IdentityHashMap<>();
+
+    private volatile AttributeCodec<?>[] codecsByTag = new AttributeCodec<?>[256];
+
+    private final ThreadLocal<CodecOutput> outputs = ThreadLocal.withInitial(CodecOutput::new);
+
+    /**
+     * Creates registry with built-in codecs.
+     */
+    public AttributeCodecRegistry() {
+        BuiltInAttributeCodecs.registerAll(this);
+    }
+
+    /**
+     * Creates registry with built-in codecs and codecs listed in
+     * <code>META-INF/services/us.swcraft.springframework.session.store.codec.AttributeCodec</code>,
+     * for example generated for {@link SessionAttributeCodec} classes.
+     * 
+     * @param classLoader
+     *            class loader to look up codecs
+     */
+    @SuppressWarnings("rawtypes")
+    public AttributeCodecRegistry(final ClassLoader classLoader) {
+        this();
+        for (AttributeCodec codec : ServiceLoader.load(AttributeCodec.class, classLoader)) {
+            register(codec);
+        }
+    }
+
+    /**
+     * Registers codec.
+     * 
+     * @param codec
+     * @return this registry
+     * @throws IllegalArgumentException
+     *             if codec tag is out of range or tag or type already have a
+     *             codec
+     */
+    public synchronized AttributeCodecRegistry register(final AttributeCodec<?> codec) {
+        Assert.notNull(codec, "codec can't be null");
+        Assert.notNull(codec.getType(), "codec type can't be null");
+        final int tag = codec.getTag();
+        Assert.isTrue(tag > SERIALIZER_TAG && tag < 256, "codec tag should be in 1 - 255 range: " + tag);
+        Assert.isTrue(tag != FOREIGN_SERIALIZER_TAG, "codec tag " + tag + " is reserved");
+        Assert.isTrue(codecsByTag[tag] == null,
+                "codec tag " + tag + " is already used by " + codecsByTag[tag]);
+        Assert.isTrue(!codecsByType.containsKey(codec.getType()),
+                "codec for " + codec.getType().getName() + " is already registered");
+
+        final Map<Class<?>, AttributeCodec<?>> byType = new IdentityHashMap<>(codecsByType);
+        byType.put(codec.getType(), codec);
+        final AttributeCodec<?>[] byTag = codecsByTag.clone();
+        byTag[tag] = codec;
+        codecsByType = byType;
+        codecsByTag = byTag;
+        return this;
+    }
+
+    /**
+     * Checks if value class has a codec.
+     * 
+     * @param value
+     * @return <code>true</code> if value can be encoded by codec
+     */
+    public boolean canEncode(final Object value) {
+        return value != null && codecsByType.containsKey(value.getClass());
+    }
+
+    /**
+     * Checks if encoded attribute can be decoded by registered codec.
+     * 
+     * @param content
+     *            encoded attribute
+     * @return <code>true</code> if codec for content tag is registered
+     */
+    public boolean canDecode(final byte[] content) {
+        return content.length > 0 && codecsByTag[content[0] & 0xFF] != null;
+    }
+
+    /**
+     * Encodes value with codec registered for its class.
+     * 
+     * @param value
+     * @return encoded attribute or <code>null</code> if value class has no
+     *         codec or the codec can't encode the value
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] encode(final Object value) {
+        if (value == null) {
+            return null;
+        }
+        final AttributeCodec<Object> codec = (AttributeCodec<Object>) codecsByType.get(value.getClass());
+        if (codec == null) {
+            return null;
+        }
+        final CodecOutput out = outputs.get();
+        try {
+            out.reset();
+            out.writeByte(codec.getTag());
+            codec.write(value, out);
+            return out.toByteArray();
+        } catch (UnsupportedValueException e) {
+            log.debug("{} value is left to serializer: {}", value.getClass().getName(), e.getMessage());
+            return null;
+        } finally {
+            if (out.capacity() > MAX_RETAINED_OUTPUT) {
+                outputs.remove();
+            }
+        }
+    }
+
+    /**
+     * Decodes attribute encoded by {@link #encode(Object)}.
+     * 
+     * @param content
+     *            encoded attribute
+     * @return attribute value
+     * @throws SerializationException
+     *             if there is no codec for content tag or content is malformed
+     */
+    public Object decode(final byte[] content) throws SerializationException {
+        if (content.length == 0) {
+            throw new SerializationException("Empty encoded attribute");
+        }
+        final int tag = content[0] & 0xFF;
+        final AttributeCodec<?> codec = codecsByTag[tag];
+        if (codec == null) {
+            throw new SerializationException("No codec for tag " + tag);
+        }
+        final CodecInput in = new CodecInput(content, 1, content.length - 1);
+        final Object value = codec.read(in);
+        if (in.remaining() != 0) {
+            throw new SerializationException(
+                    "Unexpected " + in.remaining() + " bytes after " + codec.getType().getName() + " value");
+        }
+        return value;
+    }
+
+}
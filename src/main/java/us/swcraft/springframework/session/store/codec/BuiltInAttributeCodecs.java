@@ -0,0 +1,328 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.codec;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Codecs for the most common session attribute types. Tags must never change.
+ */
+final class BuiltInAttributeCodecs {
+
+    private BuiltInAttributeCodecs() {
+    }
+
+    static void registerAll(final AttributeCodecRegistry registry) {
+        registry.register(new StringCodec());
+        registry.register(new BooleanCodec());
+        registry.register(new IntegerCodec());
+        registry.register(new LongCodec());
+        registry.register(new DoubleCodec());
+        registry.register(new FloatCodec());
+        registry.register(new ShortCodec());
+        registry.register(new ByteCodec());
+        registry.register(new CharacterCodec());
+        registry.register(new ByteArrayCodec());
+        registry.register(new UUIDCodec());
+        registry.register(new LocaleCodec());
+        registry.register(new DateCodec());
+        registry.register(new BigDecimalCodec());
+        registry.register(new BigIntegerCodec());
+    }
+
+    static final class StringCodec implements AttributeCodec<String> {
+        public int getTag() {
+            return 1;
+        }
+
+        public Class<String> getType() {
+            return String.class;
+        }
+
+        public void write(final String value, final CodecOutput out) {
+            out.writeString(value);
+        }
+
+        public String read(final CodecInput in) {
+            return in.readString();
+        }
+    }
+
+    static final class BooleanCodec implements AttributeCodec<Boolean> {
+        public int getTag() {
+            return 2;
+        }
+
+        public Class<Boolean> getType() {
+            return Boolean.class;
+        }
+
+        public void write(final Boolean value, final CodecOutput out) {
+            out.writeBoolean(value);
+        }
+
+        public Boolean read(final CodecInput in) {
+            return in.readBoolean();
+        }
+    }
+
+    static final class IntegerCodec implements AttributeCodec<Integer> {
+        public int getTag() {
+            return 3;
+        }
+
+        public Class<Integer> getType() {
+            return Integer.class;
+        }
+
+        public void write(final Integer value, final CodecOutput out) {
+            out.writeSignedVarInt(value);
+        }
+
+        public Integer read(final CodecInput in) {
+            return in.readSignedVarInt();
+        }
+    }
+
+    static final class LongCodec implements AttributeCodec<Long> {
+        public int getTag() {
+            return 4;
+        }
+
+        public Class<Long> getType() {
+            return Long.class;
+        }
+
+        public void write(final Long value, final CodecOutput out) {
+            out.writeSignedVarLong(value);
+        }
+
+        public Long read(final CodecInput in) {
+            return in.readSignedVarLong();
+        }
+    }
+
+    static final class DoubleCodec implements AttributeCodec<Double> {
+        public int getTag() {
+            return 5;
+        }
+
+        public Class<Double> getType() {
+            return Double.class;
+        }
+
+        public void write(final Double value, final CodecOutput out) {
+            out.writeDouble(value);
+        }
+
+        public Double read(final CodecInput in) {
+            return in.readDouble();
+        }
+    }
+
+    static final class FloatCodec implements AttributeCodec<Float> {
+        public int getTag() {
+            return 6;
+        }
+
+        public Class<Float> getType() {
+            return Float.class;
+        }
+
+        public void write(final Float value, final CodecOutput out) {
+            out.writeFloat(value);
+        }
+
+        public Float read(final CodecInput in) {
+            return in.readFloat();
+        }
+    }
+
+    static final class ShortCodec implements AttributeCodec<Short> {
+        public int getTag() {
+            return 7;
+        }
+
+        public Class<Short> getType() {
+            return Short.class;
+        }
+
+        public void write(final Short value, final CodecOutput out) {
+            out.writeSignedVarInt(value);
+        }
+
+        public Short read(final CodecInput in) {
+            return (short) in.readSignedVarInt();
+        }
+    }
+
+    static final class ByteCodec implements AttributeCodec<Byte> {
+        public int getTag() {
+            return 8;
+        }
+
+        public Class<Byte> getType() {
+            return Byte.class;
+        }
+
+        public void write(final Byte value, final CodecOutput out) {
+            out.writeByte(value);
+        }
+
+        public Byte read(final CodecInput in) {
+            return in.readByte();
+        }
+    }
+
+    static final class CharacterCodec implements AttributeCodec<Character> {
+        public int getTag() {
+            return 9;
+        }
+
+        public Class<Character> getType() {
+            return Character.class;
+        }
+
+        public void write(final Character value, final CodecOutput out) {
+            out.writeVarInt(value);
+        }
+
+        public Character read(final CodecInput in) {
+            return (char) in.readVarInt();
+        }
+    }
+
+    static final class ByteArrayCodec implements AttributeCodec<byte[]> {
+        public int getTag() {
+            return 10;
+        }
+
+        public Class<byte[]> getType() {
+            return byte[].class;
+        }
+
+        public void write(final byte[] value, final CodecOutput out) {
+            out.writeBytes(value, 0, value.length);
+        }
+
+        public byte[] read(final CodecInput in) {
+            return in.readBytes(in.remaining());
+        }
+    }
+
+    static final class UUIDCodec implements AttributeCodec<UUID> {
+        public int getTag() {
+            return 11;
+        }
+
+        public Class<UUID> getType() {
+            return UUID.class;
+        }
+
+        public void write(final UUID value, final CodecOutput out) {
+            out.writeLong(value.getMostSignificantBits());
+            out.writeLong(value.getLeastSignificantBits());
+        }
+
+        public UUID read(final CodecInput in) {
+            return new UUID(in.readLong(), in.readLong());
+        }
+    }
+
+    static final class LocaleCodec implements AttributeCodec<Locale> {
+        public int getTag() {
+            return 12;
+        }
+
+        public Class<Locale> getType() {
+            return Locale.class;
+        }
+
+        public void write(final Locale value, final CodecOutput out) {
+            // written as is - language tag would normalize legacy locales
+            out.writeString(value.getLanguage());
+            out.writeString(value.getCountry());
+            out.writeString(value.getVariant());
+        }
+
+        public Locale read(final CodecInput in) {
+            return new Locale(in.readString(), in.readString(), in.readString());
+        }
+    }
+
+    static final class DateCodec implements AttributeCodec<Date> {
+        public int getTag() {
+            return 13;
+        }
+
+        public Class<Date> getType() {
+            return Date.class;
+        }
+
+        public void write(final Date value, final CodecOutput out) {
+            out.writeSignedVarLong(value.getTime());
+        }
+
+        public Date read(final CodecInput in) {
+            return new Date(in.readSignedVarLong());
+        }
+    }
+
+    static final class BigDecimalCodec implements AttributeCodec<BigDecimal> {
+        public int getTag() {
+            return 14;
+        }
+
+        public Class<BigDecimal> getType() {
+            return BigDecimal.class;
+        }
+
+        public void write(final BigDecimal value, final CodecOutput out) {
+            out.writeSignedVarInt(value.scale());
+            final byte[] unscaled = value.unscaledValue().toByteArray();
+            out.writeBytes(unscaled, 0, unscaled.length);
+        }
+
+        public BigDecimal read(final CodecInput in) {
+            final int scale = in.readSignedVarInt();
+            return new BigDecimal(new BigInteger(in.readBytes(in.remaining())), scale);
+        }
+    }
+
+    static final class BigIntegerCodec implements AttributeCodec<BigInteger> {
+        public int getTag() {
+            return 15;
+        }
+
+        public Class<BigInteger> getType() {
+            return BigInteger.class;
+        }
+
+        public void write(final BigInteger value, final CodecOutput out) {
+            final byte[] bytes = value.toByteArray();
+            out.writeBytes(bytes, 0, bytes.length);
+        }
+
+        public BigInteger read(final CodecInput in) {
+            return new BigInteger(in.readBytes(in.remaining()));
+        }
+    }
+
+}
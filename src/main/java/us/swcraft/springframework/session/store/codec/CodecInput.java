@@ -0,0 +1,162 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.codec;
+
+import java.nio.charset.StandardCharsets;
+
+import us.swcraft.springframework.session.store.SerializationException;
+
+/**
+ * Reader of {@link AttributeCodec} data over a byte array region. Not
+ * thread-safe.
+ */
+public final class CodecInput {
+
+    private final byte[] buffer;
+    private final int limit;
+    private int position;
+
+    public CodecInput(final byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    public CodecInput(final byte[] buffer, final int offset, final int length) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Number of bytes left to read.
+     * 
+     * @return remaining bytes
+     */
+    public int remaining() {
+        return limit - position;
+    }
+
+    public byte readByte() {
+        require(1);
+        return buffer[position++];
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public byte[] readBytes(final int length) {
+        require(length);
+        final byte[] result = new byte[length];
+        System.arraycopy(buffer, position, result, 0, length);
+        position += length;
+        return result;
+    }
+
+    /**
+     * Reads nullable byte array written by
+     * {@link CodecOutput#writeByteArray(byte[])}.
+     * 
+     * @return byte array or <code>null</code>
+     */
+    public byte[] readByteArray() {
+        final int length = readVarInt();
+        if (length == 0) {
+            return null;
+        }
+        return readBytes(length - 1);
+    }
+
+    public int readInt() {
+        require(4);
+        return ((buffer[position++] & 0xFF) << 24) | ((buffer[position++] & 0xFF) << 16)
+                | ((buffer[position++] & 0xFF) << 8) | (buffer[position++] & 0xFF);
+    }
+
+    public long readLong() {
+        require(8);
+        long result = 0;
+        for (int i = 0; i < 8; i++) {
+            result = (result << 8) | (buffer[position++] & 0xFF);
+        }
+        return result;
+    }
+
+    public float readFloat() {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    public int readVarInt() {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = readByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new SerializationException("Malformed variable length int");
+    }
+
+    public long readVarLong() {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            final byte b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new SerializationException("Malformed variable length long");
+    }
+
+    public int readSignedVarInt() {
+        final int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public long readSignedVarLong() {
+        final long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads nullable string written by {@link CodecOutput#writeString(String)}.
+     * 
+     * @return string or <code>null</code>
+     */
+    public String readString() {
+        final int length = readVarInt();
+        if (length == 0) {
+            return null;
+        }
+        final int utf8Length = length - 1;
+        require(utf8Length);
+        final String result = new String(buffer, position, utf8Length, StandardCharsets.UTF_8);
+        position += utf8Length;
+        return result;
+    }
+
+    private void require(final int length) {
+        if (length < 0 || position + length > limit) {
+            throw new SerializationException("Unexpected end of encoded attribute");
+        }
+    }
+
+}
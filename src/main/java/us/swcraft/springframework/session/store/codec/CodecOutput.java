@@ -0,0 +1,238 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.codec;
+
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer for {@link AttributeCodec} output. Not thread-safe,
+ * intended to be reused by a single thread.
+ */
+public final class CodecOutput {
+
+    private byte[] buffer;
+    private int position;
+
+    public CodecOutput() {
+        this(256);
+    }
+
+    public CodecOutput(final int initialCapacity) {
+        buffer = new byte[initialCapacity];
+    }
+
+    /**
+     * Discards written data keeping allocated buffer.
+     */
+    public void reset() {
+        position = 0;
+    }
+
+    public int size() {
+        return position;
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Returns copy of written data.
+     * 
+     * @return written bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    public void writeByte(final int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeBoolean(final boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    public void writeBytes(final byte[] value, final int offset, final int length) {
+        ensureCapacity(length);
+        System.arraycopy(value, offset, buffer, position, length);
+        position += length;
+    }
+
+    /**
+     * Writes nullable byte array with its length.
+     * 
+     * @param value
+     */
+    public void writeByteArray(final byte[] value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        writeVarInt(value.length + 1);
+        writeBytes(value, 0, value.length);
+    }
+
+    public void writeInt(final int value) {
+        ensureCapacity(4);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeLong(final long value) {
+        ensureCapacity(8);
+        buffer[position++] = (byte) (value >>> 56);
+        buffer[position++] = (byte) (value >>> 48);
+        buffer[position++] = (byte) (value >>> 40);
+        buffer[position++] = (byte) (value >>> 32);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeFloat(final float value) {
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    public void writeDouble(final double value) {
+        writeLong(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Writes unsigned variable length int, 1 - 5 bytes.
+     * 
+     * @param value
+     */
+    public void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes unsigned variable length long, 1 - 10 bytes.
+     * 
+     * @param value
+     */
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes signed int as zig-zag encoded variable length int, so small
+     * negative values stay short.
+     * 
+     * @param value
+     */
+    public void writeSignedVarInt(final int value) {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Writes signed long as zig-zag encoded variable length long.
+     * 
+     * @param value
+     */
+    public void writeSignedVarLong(final long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes nullable string as UTF-8 bytes with length.
+     * 
+     * @param value
+     * @throws UnsupportedValueException
+     *             if the string has unpaired surrogate - UTF-8 can't
+     *             represent it, so the value is left to store serializer
+     */
+    public void writeString(final String value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        final int chars = value.length();
+        final int utf8Length = utf8Length(value, chars);
+        writeVarInt(utf8Length + 1);
+        ensureCapacity(utf8Length);
+        if (utf8Length == chars) {
+            // ASCII only - any other char takes 2 or more bytes
+            for (int i = 0; i < chars; i++) {
+                buffer[position++] = (byte) value.charAt(i);
+            }
+            return;
+        }
+        for (int i = 0; i < chars; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < chars
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (cp >> 18));
+                buffer[position++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static int utf8Length(final String value, final int chars) {
+        int length = 0;
+        for (int i = 0; i < chars; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < chars
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                throw new UnsupportedValueException("Unpaired surrogate at " + i);
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void ensureCapacity(final int required) {
+        if (position + required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + required));
+        }
+    }
+
+}
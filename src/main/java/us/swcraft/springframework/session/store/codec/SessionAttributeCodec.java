@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.codec;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks session attribute class for which {@link AttributeCodec} is generated
+ * at compile time. The generated codec <code>&lt;ClassName&gt;_AttributeCodec</code>
+ * is put in the same package and listed in
+ * <code>META-INF/services/us.swcraft.springframework.session.store.codec.AttributeCodec</code>,
+ * so {@link AttributeCodecRegistry} picks it up with {@link java.util.ServiceLoader}.
+ * <p>
+ * Annotated class must be concrete, have accessible no-arg constructor, and
+ * every non-static non-transient field (including inherited ones) has to be
+ * either accessible from the class package or have accessible getter and
+ * setter. Supported field types are primitives and their wrappers,
+ * {@link String}, <code>byte[]</code>, enums, {@link java.util.UUID},
+ * {@link java.util.Date}, {@link java.math.BigDecimal},
+ * {@link java.math.BigInteger} and other classes annotated with
+ * {@link SessionAttributeCodec}. Such nested value is encoded only if it is
+ * exactly of the field type; attribute with a nested value of a subclass is
+ * left to store serializer, so the subclass is not lost.
+ * <p>
+ * Fields are written in declaration order without names, so adding, removing
+ * or reordering fields changes the binary format - use a new tag then.
+ * 
+ * @author Vlad Aleksandrov
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface SessionAttributeCodec {
+
+    /**
+     * Codec tag, <code>32</code> - <code>255</code>. Tags <code>1</code> -
+     * <code>31</code> are reserved for built-in codecs.
+     * 
+     * @return codec tag
+     */
+    int tag();
+
+}
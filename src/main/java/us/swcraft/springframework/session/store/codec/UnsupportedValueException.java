@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.codec;
+
+import us.swcraft.springframework.session.store.SerializationException;
+
+/**
+ * Thrown by {@link AttributeCodec} which can't encode a value of its type,
+ * e.g. a nested value of a subclass. {@link AttributeCodecRegistry} leaves such
+ * attribute to store serializer.
+ */
+public class UnsupportedValueException extends SerializationException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new <code>UnsupportedValueException</code> instance.
+     * 
+     * @param msg
+     */
+    public UnsupportedValueException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,497 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.codec.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+import us.swcraft.springframework.session.store.codec.AttributeCodec;
+import us.swcraft.springframework.session.store.codec.SessionAttributeCodec;
+
+/**
+ * Generates reflection-free {@link AttributeCodec} implementations for classes
+ * annotated with {@link SessionAttributeCodec} and lists them in
+ * <code>META-INF/services</code>.
+ * 
+ * @author Vlad Aleksandrov
+ */
+@SupportedAnnotationTypes("us.swcraft.springframework.session.store.codec.SessionAttributeCodec")
+public class SessionAttributeCodecProcessor extends AbstractProcessor {
+
+    /**
+     * Generated codec class name suffix.
+     */
+    public static final String CODEC_SUFFIX = "_AttributeCodec";
+
+    static final String SERVICE_FILE = "META-INF/services/" + AttributeCodec.class.getName();
+
+    /**
+     * Lowest tag available for generated codecs.
+     */
+    static final int MIN_TAG = 32;
+
+    private static final int MAX_TAG = 255;
+
+    /**
+     * Write statement and read expression templates by type name.
+     */
+    private static final Map<String, String[]> TEMPLATES = new HashMap<>();
+
+    static {
+        TEMPLATES.put("boolean", new String[] { "out.writeBoolean(%s);", "in.readBoolean()" });
+        TEMPLATES.put("byte", new String[] { "out.writeByte(%s);", "in.readByte()" });
+        TEMPLATES.put("short", new String[] { "out.writeSignedVarInt(%s);", "(short) in.readSignedVarInt()" });
+        TEMPLATES.put("char", new String[] { "out.writeVarInt(%s);", "(char) in.readVarInt()" });
+        TEMPLATES.put("int", new String[] { "out.writeSignedVarInt(%s);", "in.readSignedVarInt()" });
+        TEMPLATES.put("long", new String[] { "out.writeSignedVarLong(%s);", "in.readSignedVarLong()" });
+        TEMPLATES.put("float", new String[] { "out.writeFloat(%s);", "in.readFloat()" });
+        TEMPLATES.put("double", new String[] { "out.writeDouble(%s);", "in.readDouble()" });
+        TEMPLATES.put("java.lang.Boolean",
+                new String[] { "out.writeBoolean(%s);", "Boolean.valueOf(in.readBoolean())" });
+        TEMPLATES.put("java.lang.Byte", new String[] { "out.writeByte(%s);", "Byte.valueOf(in.readByte())" });
+        TEMPLATES.put("java.lang.Short",
+                new String[] { "out.writeSignedVarInt(%s);", "Short.valueOf((short) in.readSignedVarInt())" });
+        TEMPLATES.put("java.lang.Character",
+                new String[] { "out.writeVarInt(%s);", "Character.valueOf((char) in.readVarInt())" });
+        TEMPLATES.put("java.lang.Integer",
+                new String[] { "out.writeSignedVarInt(%s);", "Integer.valueOf(in.readSignedVarInt())" });
+        TEMPLATES.put("java.lang.Long",
+                new String[] { "out.writeSignedVarLong(%s);", "Long.valueOf(in.readSignedVarLong())" });
+        TEMPLATES.put("java.lang.Float", new String[] { "out.writeFloat(%s);", "Float.valueOf(in.readFloat())" });
+        TEMPLATES.put("java.lang.Double",
+                new String[] { "out.writeDouble(%s);", "Double.valueOf(in.readDouble())" });
+        TEMPLATES.put("java.util.UUID",
+                new String[] { "out.writeLong(%1$s.getMostSignificantBits());\n"
+                        + "out.writeLong(%1$s.getLeastSignificantBits());",
+                        "new java.util.UUID(in.readLong(), in.readLong())" });
+        TEMPLATES.put("java.util.Date",
+                new String[] { "out.writeSignedVarLong(%s.getTime());", "new java.util.Date(in.readSignedVarLong())" });
+        TEMPLATES.put("java.math.BigDecimal",
+                new String[] { "out.writeByteArray(%1$s.unscaledValue().toByteArray());\n"
+                        + "out.writeSignedVarInt(%1$s.scale());",
+                        "new java.math.BigDecimal(new java.math.BigInteger(in.readByteArray()), in.readSignedVarInt())" });
+        TEMPLATES.put("java.math.BigInteger",
+                new String[] { "out.writeByteArray(%s.toByteArray());", "new java.math.BigInteger(in.readByteArray())" });
+    }
+
+    /**
+     * Generated codecs, including ones from previous compilations.
+     */
+    private final Set<String> generatedCodecs = new TreeSet<>();
+
+    /**
+     * Annotated types by tag, for duplicates detection.
+     */
+    private final Map<Integer, String> tags = new HashMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(SessionAttributeCodec.class)) {
+            try {
+                if (element.getKind() != ElementKind.CLASS) {
+                    throw new CodecGenerationException("@SessionAttributeCodec is applicable to classes only",
+                            element);
+                }
+                generate((TypeElement) element);
+            } catch (CodecGenerationException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.getElement());
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Unable to write attribute codec: " + e.getMessage(), element);
+            }
+        }
+        if (roundEnv.processingOver() && !generatedCodecs.isEmpty()) {
+            try {
+                writeServiceFile();
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Unable to write " + SERVICE_FILE + ": " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private void generate(final TypeElement type) throws IOException {
+        final int tag = type.getAnnotation(SessionAttributeCodec.class).tag();
+        if (tag < MIN_TAG || tag > MAX_TAG) {
+            throw new CodecGenerationException(
+                    "Attribute codec tag should be in " + MIN_TAG + " - " + MAX_TAG + " range: " + tag, type);
+        }
+        final String typeName = type.getQualifiedName().toString();
+        final String previous = tags.put(tag, typeName);
+        if (previous != null && !previous.equals(typeName)) {
+            throw new CodecGenerationException("Attribute codec tag " + tag + " is already used by " + previous,
+                    type);
+        }
+        checkInstantiable(type);
+
+        final String packageName = packageOf(type);
+        final String codecName = codecSimpleName(type);
+        final String codecQualifiedName = packageName.isEmpty() ? codecName : packageName + "." + codecName;
+
+        final Map<String, String> nestedCodecs = new LinkedHashMap<>();
+        final StringBuilder write = new StringBuilder();
+        final StringBuilder read = new StringBuilder();
+        for (Property property : properties(type, packageName)) {
+            appendProperty(type, property, nestedCodecs, write, read);
+        }
+
+        final StringBuilder src = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+        src.append("/**\n * Attribute codec for {@link ").append(typeName).append("}.\n");
+        src.append(" * Generated by ").append(getClass().getName()).append(" - do not edit.\n */\n");
+        src.append("public final class ").append(codecName)
+                .append(" implements us.swcraft.springframework.session.store.codec.AttributeCodec<")
+                .append(typeName).append("> {\n\n");
+        // nested codecs are created on first use, so codecs of types referring
+        // each other never initialize or create one another in a cycle
+        for (Map.Entry<String, String> nested : nestedCodecs.entrySet()) {
+            src.append("    private ").append(nested.getKey()).append(' ').append(nested.getValue())
+                    .append(";\n\n");
+            src.append("    private ").append(nested.getKey()).append(' ').append(nested.getValue())
+                    .append("() {\n        if (").append(nested.getValue()).append(" == null) {\n            ")
+                    .append(nested.getValue()).append(" = new ").append(nested.getKey())
+                    .append("();\n        }\n        return ").append(nested.getValue()).append(";\n    }\n\n");
+        }
+        src.append("    @Override\n    public int getTag() {\n        return ").append(tag).append(";\n    }\n\n");
+        src.append("    @Override\n    public Class<").append(typeName).append("> getType() {\n        return ")
+                .append(typeName).append(".class;\n    }\n\n");
+        src.append("    @Override\n    public void write(final ").append(typeName).append(" value,\n")
+                .append("            final us.swcraft.springframework.session.store.codec.CodecOutput out) {\n")
+                .append(write).append("    }\n\n");
+        src.append("    @Override\n    public ").append(typeName)
+                .append(" read(final us.swcraft.springframework.session.store.codec.CodecInput in) {\n")
+                .append("        final ").append(typeName).append(" value = new ").append(typeName).append("();\n")
+                .append(read).append("        return value;\n    }\n\n}\n");
+
+        final JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(codecQualifiedName, type);
+        try (Writer writer = sourceFile.openWriter()) {
+            writer.write(src.toString());
+        }
+        generatedCodecs.add(codecQualifiedName);
+    }
+
+    private void appendProperty(final TypeElement owner, final Property property,
+            final Map<String, String> nestedCodecs, final StringBuilder write, final StringBuilder read) {
+        final TypeMirror fieldType = property.field.asType();
+        final String getter = property.getter();
+        final String[] template;
+        boolean nullable = !fieldType.getKind().isPrimitive();
+
+        if (fieldType.getKind().isPrimitive()) {
+            template = TEMPLATES.get(fieldType.toString());
+        } else if (fieldType.getKind() == TypeKind.ARRAY
+                && ((ArrayType) fieldType).getComponentType().getKind() == TypeKind.BYTE) {
+            template = new String[] { "out.writeByteArray(%s);", "in.readByteArray()" };
+            nullable = false;
+        } else if (fieldType.getKind() == TypeKind.DECLARED) {
+            final TypeElement fieldTypeElement = (TypeElement) ((DeclaredType) fieldType).asElement();
+            final String fieldTypeName = fieldTypeElement.getQualifiedName().toString();
+            if ("java.lang.String".equals(fieldTypeName)) {
+                template = new String[] { "out.writeString(%s);", "in.readString()" };
+                nullable = false;
+            } else if (TEMPLATES.containsKey(fieldTypeName)) {
+                template = TEMPLATES.get(fieldTypeName);
+            } else if (fieldTypeElement.getKind() == ElementKind.ENUM) {
+                template = new String[] { "out.writeString(%s.name());",
+                        fieldTypeName + ".valueOf(in.readString())" };
+            } else if (fieldTypeElement.getAnnotation(SessionAttributeCodec.class) != null) {
+                final String codec;
+                if (fieldTypeElement.equals(owner)) {
+                    codec = "this";
+                } else {
+                    final String nestedPackage = packageOf(fieldTypeElement);
+                    final String nestedCodecName = (nestedPackage.isEmpty() ? "" : nestedPackage + ".")
+                            + codecSimpleName(fieldTypeElement);
+                    if (!nestedCodecs.containsKey(nestedCodecName)) {
+                        nestedCodecs.put(nestedCodecName, "codec" + nestedCodecs.size());
+                    }
+                    codec = nestedCodecs.get(nestedCodecName) + "()";
+                }
+                if (fieldTypeElement.getModifiers().contains(Modifier.FINAL)) {
+                    template = new String[] { codec + ".write(%s, out);", codec + ".read(in)" };
+                } else {
+                    // subclass instance would be read back as the field type
+                    template = new String[] { "if (%1$s.getClass() != " + fieldTypeName + ".class) {\n"
+                            + "    throw new us.swcraft.springframework.session.store.codec.UnsupportedValueException(\n"
+                            + "            \"" + property.name + " is \" + %1$s.getClass().getName());\n"
+                            + "}\n" + codec + ".write(%1$s, out);", codec + ".read(in)" };
+                }
+            } else {
+                template = null;
+            }
+        } else {
+            template = null;
+        }
+        if (template == null) {
+            throw new CodecGenerationException("Unsupported attribute codec field type " + fieldType,
+                    property.field);
+        }
+
+        if (nullable) {
+            final String local = "f_" + property.name;
+            write.append("        {\n");
+            write.append("            final ").append(fieldType).append(' ').append(local).append(" = ")
+                    .append(getter).append(";\n");
+            write.append("            out.writeBoolean(").append(local).append(" != null);\n");
+            write.append("            if (").append(local).append(" != null) {\n");
+            appendLines(write, "                ", String.format(template[0], local));
+            write.append("            }\n");
+            write.append("        }\n");
+            read.append("        ").append(property.setter("in.readBoolean() ? " + template[1] + " : null"))
+                    .append("\n");
+        } else {
+            appendLines(write, "        ", String.format(template[0], getter));
+            read.append("        ").append(property.setter(template[1])).append("\n");
+        }
+    }
+
+    private static void appendLines(final StringBuilder src, final String indent, final String statements) {
+        for (String line : statements.split("\n")) {
+            src.append(indent).append(line).append("\n");
+        }
+    }
+
+    /**
+     * Collects serializable properties, super class ones first.
+     */
+    private List<Property> properties(final TypeElement type, final String packageName) {
+        final List<TypeElement> hierarchy = new ArrayList<>();
+        for (TypeElement t = type; t != null && !"java.lang.Object".equals(t.getQualifiedName().toString());) {
+            hierarchy.add(t);
+            final TypeMirror superclass = t.getSuperclass();
+            t = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement()
+                    : null;
+        }
+        Collections.reverse(hierarchy);
+
+        final List<ExecutableElement> methods = ElementFilter
+                .methodsIn(processingEnv.getElementUtils().getAllMembers(type));
+        final List<Property> properties = new ArrayList<>();
+        for (TypeElement t : hierarchy) {
+            for (VariableElement field : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                final Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                if (modifiers.contains(Modifier.FINAL)) {
+                    throw new CodecGenerationException("Final fields are not supported by attribute codec", field);
+                }
+                final Property property = new Property(field);
+                if (!isAccessible(field, packageName)) {
+                    property.getterName = findAccessor(methods, field, packageName, true);
+                    property.setterName = findAccessor(methods, field, packageName, false);
+                    if (property.getterName == null || property.setterName == null) {
+                        throw new CodecGenerationException(
+                                "Field is not accessible and has no accessible getter and setter", field);
+                    }
+                }
+                properties.add(property);
+            }
+        }
+        return properties;
+    }
+
+    private String findAccessor(final List<ExecutableElement> methods, final VariableElement field,
+            final String packageName, final boolean getter) {
+        final String name = field.getSimpleName().toString();
+        final String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (ExecutableElement method : methods) {
+            if (method.getModifiers().contains(Modifier.STATIC) || !isAccessible(method, packageName)) {
+                continue;
+            }
+            final String methodName = method.getSimpleName().toString();
+            if (getter) {
+                final boolean nameMatches = methodName.equals("get" + suffix)
+                        || (field.asType().getKind() == TypeKind.BOOLEAN && methodName.equals("is" + suffix));
+                if (nameMatches && method.getParameters().isEmpty()
+                        && processingEnv.getTypeUtils().isSameType(method.getReturnType(), field.asType())) {
+                    return methodName;
+                }
+            } else if (methodName.equals("set" + suffix) && method.getParameters().size() == 1
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(),
+                            field.asType())) {
+                return methodName;
+            }
+        }
+        return null;
+    }
+
+    private void checkInstantiable(final TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new CodecGenerationException("Attribute codec can't be generated for abstract class", type);
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            throw new CodecGenerationException("Attribute codec can't be generated for generic class", type);
+        }
+        for (Element e = type; e.getKind() == ElementKind.CLASS; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                throw new CodecGenerationException("Attribute codec can't be generated for private class", type);
+            }
+            if (e.getEnclosingElement().getKind() == ElementKind.CLASS
+                    && !e.getModifiers().contains(Modifier.STATIC)) {
+                throw new CodecGenerationException("Attribute codec can't be generated for inner class", type);
+            }
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return;
+            }
+        }
+        throw new CodecGenerationException("Attribute codec requires non-private no-arg constructor", type);
+    }
+
+    /**
+     * Checks if member is accessible from generated codec in the given package.
+     */
+    private boolean isAccessible(final Element member, final String packageName) {
+        final Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        return packageOf(member).equals(packageName);
+    }
+
+    private String packageOf(final Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+    }
+
+    /**
+     * Codec name for <code>Outer.Inner</code> is
+     * <code>Outer_Inner_AttributeCodec</code>.
+     */
+    static String codecSimpleName(final TypeElement type) {
+        final StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element e = type.getEnclosingElement(); e.getKind() == ElementKind.CLASS; e = e
+                .getEnclosingElement()) {
+            name.insert(0, e.getSimpleName() + "_");
+        }
+        return name.append(CODEC_SUFFIX).toString();
+    }
+
+    private void writeServiceFile() throws IOException {
+        // keep codecs generated by previous (incremental) compilations
+        try {
+            final FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+                    SERVICE_FILE);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        generatedCodecs.add(line);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // no service file yet
+        }
+        final FileObject serviceFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                SERVICE_FILE);
+        try (Writer writer = serviceFile.openWriter()) {
+            for (String codec : generatedCodecs) {
+                writer.write(codec);
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Serializable field and the way to access it.
+     */
+    private static final class Property {
+        private final VariableElement field;
+        private final String name;
+        private String getterName;
+        private String setterName;
+
+        Property(final VariableElement field) {
+            this.field = field;
+            this.name = field.getSimpleName().toString();
+        }
+
+        String getter() {
+            return getterName == null ? "value." + name : "value." + getterName + "()";
+        }
+
+        String setter(final String expression) {
+            return setterName == null ? "value." + name + " = " + expression + ";"
+                    : "value." + setterName + "(" + expression + ");";
+        }
+    }
+
+    /**
+     * Code generation error reported against the element.
+     */
+    private static final class CodecGenerationException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Element element;
+
+        CodecGenerationException(final String message, final Element element) {
+            super(message);
+            this.element = element;
+        }
+
+        Element getElement() {
+            return element;
+        }
+    }
+
+}
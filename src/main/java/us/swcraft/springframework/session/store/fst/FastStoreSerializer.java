@@ -46,6 +46,8 @@ import us.swcraft.springframework.session.store.StoreSerializer;
  */
 public class FastStoreSerializer<T> implements StoreSerializer<T> {
 
+    private static final byte[] NO_PREFIX = new byte[0];
+
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
     /**
@@ -53,6 +55,12 @@ public class FastStoreSerializer<T> implements StoreSerializer<T> {
      */
     private StoreCompression compressionType = StoreCompression.NONE;
 
+    /**
+     * Class loader used to resolve class names. Default is FST configuration
+     * class loader.
+     */
+    private ClassLoader classLoader;
+
     private ObjectPool<FSTConfiguration> fstConfPool;
 
     public FastStoreSerializer() {
@@ -64,6 +72,12 @@ public class FastStoreSerializer<T> implements StoreSerializer<T> {
         init();
     }
 
+    public FastStoreSerializer(final StoreCompression compressionType, final ClassLoader classLoader) {
+        this.compressionType = compressionType;
+        this.classLoader = classLoader;
+        init();
+    }
+
     private void init() {
         final PoolConfig poolConfig = new PoolConfig();
         poolConfig.setPartitionSize(8);
@@ -73,7 +87,11 @@ public class FastStoreSerializer<T> implements StoreSerializer<T> {
         final ObjectFactory<FSTConfiguration> fstConfConfactory = new ObjectFactory<FSTConfiguration>() {
             @Override
             public FSTConfiguration create() {
-                return FSTConfiguration.createDefaultConfiguration();
+                final FSTConfiguration conf = FSTConfiguration.createDefaultConfiguration();
+                if (classLoader != null) {
+                    conf.setClassLoader(classLoader);
+                }
+                return conf;
             }
 
             @Override
@@ -94,11 +112,17 @@ public class FastStoreSerializer<T> implements StoreSerializer<T> {
 
     @Override
     public byte[] serialize(final T data) throws SerializationException {
+        return serialize(data, NO_PREFIX);
+    }
+
+    @Override
+    public byte[] serialize(final T data, final byte[] prefix) throws SerializationException {
         try (Poolable<FSTConfiguration> po = fstConfPool.borrowObject()) {
             final FSTConfiguration conf = po.getObject();
 
-            try (final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(8192);
-                    final OutputStream compressionOutputStream = wrapOutputStream(outputStream);
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(8192);
+            outputStream.write(prefix, 0, prefix.length);
+            try (final OutputStream compressionOutputStream = wrapOutputStream(outputStream);
                     final FSTObjectOutput output = new FSTObjectOutput(compressionOutputStream, conf);) {
                 output.writeObject(data);
                 output.flush();
@@ -115,9 +139,15 @@ public class FastStoreSerializer<T> implements StoreSerializer<T> {
 
     @Override
     public T deserialize(final byte[] serializedData, final Class<T> type) throws SerializationException {
+        return deserialize(serializedData, 0, serializedData.length, type);
+    }
+
+    @Override
+    public T deserialize(final byte[] serializedData, final int offset, final int length, final Class<T> type)
+            throws SerializationException {
         try (Poolable<FSTConfiguration> po = fstConfPool.borrowObject()) {
             final FSTConfiguration conf = po.getObject();
-            try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(serializedData);
+            try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(serializedData, offset, length);
                     final InputStream decompressionInputStream = wrapInputStream(inputStream);
                     final FSTObjectInput input = new FSTObjectInput(decompressionInputStream, conf);) {
 
@@ -68,6 +68,8 @@ import us.swcraft.springframework.session.store.StoreSerializer;
  */
 public class KryoStoreSerializer<T> implements StoreSerializer<T> {
 
+    private static final byte[] NO_PREFIX = new byte[0];
+
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
     /**
@@ -75,6 +77,12 @@ public class KryoStoreSerializer<T> implements StoreSerializer<T> {
      */
     private StoreCompression compressionType = StoreCompression.NONE;
 
+    /**
+     * Class loader used to resolve class names. Default is Kryo's own class
+     * loader.
+     */
+    private ClassLoader classLoader;
+
     private ObjectPool<Kryo> kryoPool;
 
     public KryoStoreSerializer() {
@@ -86,6 +94,12 @@ public class KryoStoreSerializer<T> implements StoreSerializer<T> {
         init();
     }
 
+    public KryoStoreSerializer(final StoreCompression compressionType, final ClassLoader classLoader) {
+        this.compressionType = compressionType;
+        this.classLoader = classLoader;
+        init();
+    }
+
     private void init() {
 
         final PoolConfig poolConfig = new PoolConfig();
@@ -100,6 +114,9 @@ public class KryoStoreSerializer<T> implements StoreSerializer<T> {
                 // Configure the Kryo instance.
                 kryo = new KryoReflectionFactorySupport();
                 kryo.setRegistrationRequired(false);
+                if (classLoader != null) {
+                    kryo.setClassLoader(classLoader);
+                }
                 kryo.addDefaultSerializer(Locale.class, LocaleSerializer.class);
 
                 kryo.register(Arrays.asList("").getClass(), new ArraysAsListSerializer());
@@ -142,11 +159,17 @@ public class KryoStoreSerializer<T> implements StoreSerializer<T> {
 
     @Override
     public byte[] serialize(final T data) throws SerializationException {
+        return serialize(data, NO_PREFIX);
+    }
+
+    @Override
+    public byte[] serialize(final T data, final byte[] prefix) throws SerializationException {
         try (Poolable<Kryo> po = kryoPool.borrowObject()) {
             final Kryo kryo = po.getObject();
 
-            try (final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(8192);
-                    final OutputStream compressionOutputStream = wrapOutputStream(outputStream);
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(8192);
+            outputStream.write(prefix, 0, prefix.length);
+            try (final OutputStream compressionOutputStream = wrapOutputStream(outputStream);
                     final Output output = new Output(compressionOutputStream);) {
 
                 kryo.writeClassAndObject(output, data);
@@ -162,13 +185,19 @@ public class KryoStoreSerializer<T> implements StoreSerializer<T> {
         }
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public T deserialize(final byte[] serializedData, final Class<T> type) throws SerializationException {
+        return deserialize(serializedData, 0, serializedData.length, type);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T deserialize(final byte[] serializedData, final int offset, final int length, final Class<T> type)
+            throws SerializationException {
         try (Poolable<Kryo> po = kryoPool.borrowObject()) {
             final Kryo kryo = po.getObject();
 
-            try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(serializedData);
+            try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(serializedData, offset, length);
                     final InputStream decompressionInputStream = wrapInputStream(inputStream);
                     final Input input = new Input(decompressionInputStream);) {
 
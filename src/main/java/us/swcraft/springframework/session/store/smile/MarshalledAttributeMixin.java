@@ -0,0 +1,34 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.smile;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import us.swcraft.springframework.session.model.MarshalledAttribute;
+
+/**
+ * Jackson mix-in for immutable {@link MarshalledAttribute}, so the model class
+ * does not depend on Jackson.
+ */
+abstract class MarshalledAttributeMixin {
+
+    @JsonCreator
+    MarshalledAttributeMixin(@JsonProperty("attributeName") final String attributeName,
+            @JsonProperty("className") final String className, @JsonProperty("content") final byte[] content) {
+    }
+
+}
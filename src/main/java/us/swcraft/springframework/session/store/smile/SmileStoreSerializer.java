@@ -0,0 +1,179 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.smile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+import org.iq80.snappy.SnappyFramedInputStream;
+import org.iq80.snappy.SnappyFramedOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+
+import us.swcraft.springframework.session.model.MarshalledAttribute;
+import us.swcraft.springframework.session.store.SerializationException;
+import us.swcraft.springframework.session.store.StoreCompression;
+import us.swcraft.springframework.session.store.StoreSerializer;
+
+/**
+ * Smile (binary JSON) serializer based on Jackson. Objects are written field
+ * by field with class name type hints for non-final types; repeated type
+ * hints and property names are written as back references.
+ * <p>
+ * Unlike Kryo and FST, only bean-like classes are supported: all non-transient
+ * fields are written, and a class has to have a no-arg constructor or a
+ * Jackson creator to be read back. Attributes which can't be written are
+ * skipped on save like any other non-serializable attribute.
+ *
+ * @param <T>
+ */
+public class SmileStoreSerializer<T> implements StoreSerializer<T> {
+
+    private static final byte[] NO_PREFIX = new byte[0];
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    /**
+     * Compression type. Default is {@link StoreCompression.NONE}.
+     */
+    private StoreCompression compressionType = StoreCompression.NONE;
+
+    private final ObjectWriter writer;
+
+    private final ObjectReader reader;
+
+    public SmileStoreSerializer() {
+        this(StoreCompression.NONE, null);
+    }
+
+    public SmileStoreSerializer(final StoreCompression compressionType) {
+        this(compressionType, null);
+    }
+
+    public SmileStoreSerializer(final StoreCompression compressionType, final ClassLoader classLoader) {
+        this.compressionType = compressionType;
+        final ObjectMapper mapper = createObjectMapper(classLoader);
+        // readers and writers are immutable and thread-safe
+        writer = mapper.writerFor(Object.class);
+        reader = mapper.readerFor(Object.class);
+    }
+
+    private static ObjectMapper createObjectMapper(final ClassLoader classLoader) {
+        final SmileFactory smileFactory = new SmileFactory();
+        smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        smileFactory.disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT);
+        // compression stream is closed by serializer after the value is written
+        smileFactory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        final ObjectMapper mapper = new ObjectMapper(smileFactory);
+        mapper.registerModule(new AfterburnerModule());
+        mapper.setVisibility(PropertyAccessor.ALL, Visibility.NONE);
+        mapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        // type hints only for serializable types
+        mapper.activateDefaultTyping(BasicPolymorphicTypeValidator.builder().allowIfSubType(Serializable.class)
+                .allowIfSubTypeIsArray().build(), ObjectMapper.DefaultTyping.NON_FINAL);
+        mapper.addMixIn(MarshalledAttribute.class, MarshalledAttributeMixin.class);
+        if (classLoader != null) {
+            mapper.setTypeFactory(mapper.getTypeFactory().withClassLoader(classLoader));
+        }
+        return mapper;
+    }
+
+    @Override
+    public byte[] serialize(final T data) throws SerializationException {
+        return serialize(data, NO_PREFIX);
+    }
+
+    @Override
+    public byte[] serialize(final T data, final byte[] prefix) throws SerializationException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(8192);
+        outputStream.write(prefix, 0, prefix.length);
+        try (final OutputStream compressionOutputStream = wrapOutputStream(outputStream)) {
+            writer.writeValue(compressionOutputStream, data);
+        } catch (Exception e) {
+            log.error("Serialization error: {}", e.getMessage());
+            log.trace("", e);
+            throw new SerializationException(data.getClass() + " serialization problem", e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    @Override
+    public T deserialize(final byte[] serializedData, final Class<T> type) throws SerializationException {
+        return deserialize(serializedData, 0, serializedData.length, type);
+    }
+
+    @Override
+    public T deserialize(final byte[] serializedData, final int offset, final int length, final Class<T> type)
+            throws SerializationException {
+        try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(serializedData, offset, length);
+                final InputStream decompressionInputStream = wrapInputStream(inputStream)) {
+            return reader.readValue(decompressionInputStream);
+        } catch (Exception e) {
+            log.error("Deserialization error: {}", e.getMessage());
+            log.trace("", e);
+            throw new SerializationException(type + " deserialization problem", e);
+        }
+    }
+
+    private OutputStream wrapOutputStream(final OutputStream os) throws IOException {
+        switch (compressionType) {
+            case SNAPPY:
+                return new SnappyFramedOutputStream(os);
+            default:
+                return new BufferedOutputStream(os);
+        }
+    }
+
+    private InputStream wrapInputStream(final InputStream is) throws IOException {
+        switch (compressionType) {
+            case SNAPPY:
+                return new SnappyFramedInputStream(is, false);
+            default:
+                return new BufferedInputStream(is);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        // no-op
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.tracing;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.util.Assert;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.TracerProvider;
+import io.opentelemetry.context.Scope;
+
+/**
+ * Session store tracing with OpenTelemetry.
+ */
+public class OpenTelemetrySessionStoreTracing implements SessionStoreTracing {
+
+    /**
+     * Instrumentation scope name.
+     */
+    public static final String INSTRUMENTATION_NAME = "us.swcraft.spring-session-aerospike";
+
+    private final Tracer tracer;
+
+    public OpenTelemetrySessionStoreTracing(final OpenTelemetry openTelemetry) {
+        Assert.notNull(openTelemetry, "OpenTelemetry can't be null");
+        this.tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME);
+    }
+
+    /**
+     * Creates tracing with {@link OpenTelemetry} bean or global instance.
+     * 
+     * @param beanFactory
+     * @return tracing or <code>null</code> if OpenTelemetry SDK is not
+     *         configured
+     */
+    public static SessionStoreTracing create(final BeanFactory beanFactory) {
+        final OpenTelemetry openTelemetry = beanFactory.getBeanProvider(OpenTelemetry.class)
+                .getIfAvailable(GlobalOpenTelemetry::get);
+        if (openTelemetry == null || openTelemetry.getTracerProvider() == TracerProvider.noop()) {
+            return null;
+        }
+        return new OpenTelemetrySessionStoreTracing(openTelemetry);
+    }
+
+    @Override
+    public TracedSpan startSpan(final String name) {
+        final Span span = tracer.spanBuilder(name).startSpan();
+        return new OpenTelemetrySpan(span, span.makeCurrent());
+    }
+
+    @Override
+    public TracedSpan startStoreCall(final String operation, final String namespace, final String setname) {
+        final Span span = tracer.spanBuilder("aerospike." + operation).setSpanKind(SpanKind.CLIENT)
+                .setAttribute("db.system", "aerospike").setAttribute("db.operation", operation)
+                .setAttribute("db.name", namespace).setAttribute("aerospike.set", setname).startSpan();
+        return new OpenTelemetrySpan(span, null);
+    }
+
+    @Override
+    public Object currentContext() {
+        final SpanContext origin = Span.current().getSpanContext();
+        return origin.isValid() ? origin : null;
+    }
+
+    @Override
+    public TracedSpan startLinkedSpan(final String name, final Object origin) {
+        final SpanBuilder builder = tracer.spanBuilder(name).setNoParent();
+        if (origin instanceof SpanContext) {
+            builder.addLink((SpanContext) origin);
+        }
+        final Span span = builder.startSpan();
+        return new OpenTelemetrySpan(span, span.makeCurrent());
+    }
+
+    private static final class OpenTelemetrySpan implements TracedSpan {
+
+        private final Span span;
+
+        private final Scope scope;
+
+        OpenTelemetrySpan(final Span span, final Scope scope) {
+            this.span = span;
+            this.scope = scope;
+        }
+
+        @Override
+        public void setAttribute(final String key, final long value) {
+            span.setAttribute(key, value);
+        }
+
+        @Override
+        public void recordError(final Throwable error) {
+            span.recordException(error);
+            span.setStatus(StatusCode.ERROR);
+        }
+
+        @Override
+        public void close() {
+            if (scope != null) {
+                scope.close();
+            }
+            span.end();
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.tracing;
+
+/**
+ * Session store tracing. All methods do nothing by default, so
+ * {@link #NOOP} costs nothing when tracing library is not available.
+ */
+public interface SessionStoreTracing {
+
+    /**
+     * Started span. Span made current must be closed by the thread which
+     * started it.
+     */
+    interface TracedSpan extends AutoCloseable {
+
+        default void setAttribute(final String key, final long value) {
+        }
+
+        default void recordError(final Throwable error) {
+        }
+
+        /**
+         * Ends the span and restores current span.
+         */
+        @Override
+        default void close() {
+        }
+
+    }
+
+    /**
+     * Span which is not recorded.
+     */
+    TracedSpan NOOP_SPAN = new TracedSpan() {
+    };
+
+    /**
+     * Tracing which is not recorded.
+     */
+    SessionStoreTracing NOOP = new SessionStoreTracing() {
+    };
+
+    /**
+     * Starts span as child of current span and makes it current.
+     * 
+     * @param name
+     *            span name
+     * @return started span
+     */
+    default TracedSpan startSpan(final String name) {
+        return NOOP_SPAN;
+    }
+
+    /**
+     * Starts client span of Aerospike call as child of current span. The span
+     * is not made current.
+     * 
+     * @param operation
+     *            Aerospike operation
+     * @param namespace
+     * @param setname
+     * @return started span
+     */
+    default TracedSpan startStoreCall(final String operation, final String namespace, final String setname) {
+        return NOOP_SPAN;
+    }
+
+    /**
+     * Captures current trace context to link span started by another thread.
+     * 
+     * @return context or <code>null</code> if there is nothing to link
+     */
+    default Object currentContext() {
+        return null;
+    }
+
+    /**
+     * Starts new trace linked to captured context and makes it current.
+     * 
+     * @param name
+     *            span name
+     * @param origin
+     *            context captured by {@link #currentContext()}
+     * @return started span
+     */
+    default TracedSpan startLinkedSpan(final String name, final Object origin) {
+        return NOOP_SPAN;
+    }
+
+}
@@ -16,39 +16,156 @@
 package us.swcraft.springframework.session.transformer;
 
 import java.io.Serializable;
-import java.lang.reflect.Array;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ApplicationContextEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.stereotype.Component;
 
+import us.swcraft.springframework.session.metrics.AttributeSizeAnalytics;
+import us.swcraft.springframework.session.metrics.SessionStoreEvents;
+import us.swcraft.springframework.session.metrics.SessionStoreMetrics;
 import us.swcraft.springframework.session.model.MarshalledAttribute;
+import us.swcraft.springframework.session.model.StoreMetadata;
+import us.swcraft.springframework.session.store.AttributeDictionary;
+import us.swcraft.springframework.session.store.CachingClassLoader;
+import us.swcraft.springframework.session.store.PayloadHeader;
 import us.swcraft.springframework.session.store.SerializationException;
 import us.swcraft.springframework.session.store.SessionAttributesTransformer;
+import us.swcraft.springframework.session.store.StoreCompression;
+import us.swcraft.springframework.session.store.StoreSerializationType;
 import us.swcraft.springframework.session.store.StoreSerializer;
+import us.swcraft.springframework.session.store.StoreSerializers;
+import us.swcraft.springframework.session.store.codec.AttributeCodecRegistry;
+import us.swcraft.springframework.session.store.codec.CodecInput;
+import us.swcraft.springframework.session.store.codec.CodecOutput;
 
 @Component("ssa-defaultSessionAttributesTransformer")
-public class DefaultSessionAttributesTransformer implements SessionAttributesTransformer {
+public class DefaultSessionAttributesTransformer
+        implements SessionAttributesTransformer, ApplicationListener<ApplicationContextEvent> {
 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
+    @Inject
+    private StoreMetadata storeMetadata;
+
     @Inject
     @Named("ssa-attributeSerializer")
     private StoreSerializer<Serializable> attributeSerializer;
 
+    @Inject
+    @Named("ssa-attributeCodecRegistry")
+    private AttributeCodecRegistry codecRegistry;
+
+    @Inject
+    @Named("ssa-classLoader")
+    private CachingClassLoader classLoader;
+
+    @Inject
+    @Named("ssa-attributeDictionary")
+    private AttributeDictionary attributeDictionary;
+
+    @Inject
+    @Named("ssa-unmarshalPool")
+    private ForkJoinPool unmarshalPool;
+
     @Inject
     @Named("ssa-marshalledAttrobutesSerializer")
     private StoreSerializer<Map<String, MarshalledAttribute>> marshalledAttributesSerializer;
 
+    @Inject
+    @Named("ssa-storeMetrics")
+    private SessionStoreMetrics metrics;
+
+    @Inject
+    @Named("ssa-attributeAnalytics")
+    private AttributeSizeAnalytics attributeAnalytics;
+
+    /**
+     * Cached serializability verdicts by attribute class.
+     */
+    private final SerializationPlanCache serializationPlanCache = new SerializationPlanCache();
+
+    /**
+     * Prefix of attributes written by store serializer.
+     */
+    private static final byte[] SERIALIZER_TAG_PREFIX = { AttributeCodecRegistry.SERIALIZER_TAG };
+
     @SuppressWarnings("rawtypes")
     private Class marshalledAttributesMapClass = new HashMap<String, MarshalledAttribute>().getClass();
 
+    /**
+     * Header written in front of every marshalled session.
+     */
+    private PayloadHeader defaultHeader;
+
+    private byte[] defaultHeaderBytes;
+
+    /**
+     * Header of dictionary encoded payloads.
+     */
+    private byte[] dictionaryHeaderBytes;
+
+    /**
+     * Codec matching configured serialization type and compression.
+     */
+    private PayloadCodec defaultCodec;
+
+    /**
+     * Codecs for payloads written with other store settings, created on
+     * demand.
+     */
+    private final ConcurrentMap<String, PayloadCodec> foreignCodecs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        defaultHeader = new PayloadHeader(storeMetadata.getSerializationType(), storeMetadata.getCompression());
+        defaultHeaderBytes = defaultHeader.toBytes();
+        dictionaryHeaderBytes = new PayloadHeader(PayloadHeader.VERSION_DICTIONARY,
+                storeMetadata.getSerializationType(), storeMetadata.getCompression()).toBytes();
+        defaultCodec = new PayloadCodec(attributeSerializer, marshalledAttributesSerializer);
+        log.debug("Session payload format: {}", defaultHeader);
+    }
+
+    /**
+     * Class resolution results and serializability verdicts refer to classes
+     * of the application class loader - drop them when the context is
+     * refreshed or closed.
+     */
+    @Override
+    public void onApplicationEvent(final ApplicationContextEvent event) {
+        if (event instanceof ContextRefreshedEvent || event instanceof ContextClosedEvent) {
+            log.debug("Invalidate class resolution cache on {}", event.getClass().getSimpleName());
+            classLoader.invalidate();
+            serializationPlanCache.clear();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (PayloadCodec codec : foreignCodecs.values()) {
+            codec.close();
+        }
+        foreignCodecs.clear();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -56,6 +173,7 @@ public class DefaultSessionAttributesTransformer implements SessionAttributesTra
     public byte[] marshall(final Map<String, Object> sessionAttributes) {
         final Map<String, MarshalledAttribute> marshalledAttributes = new HashMap<>(sessionAttributes.size());
 
+        final Object event = SessionStoreEvents.beginMarshall();
         final long start = System.nanoTime();
         try {
             for (Map.Entry<String, Object> sessionAttribute : sessionAttributes.entrySet()) {
@@ -70,26 +188,28 @@ public class DefaultSessionAttributesTransformer implements SessionAttributesTra
                     continue;
                 }
 
-                if (isEligebleForSerialization(attrValue)) {
-                    try {
-                        final byte[] binValue = attributeSerializer.serialize((Serializable) attrValue);
-                        final MarshalledAttribute marshalledAttribute = new MarshalledAttribute(attrName,
-                                attrValue.getClass().getName(), binValue);
-                        log.trace("Save session attribute '{}' as serialized {}", attrName, marshalledAttribute);
-                        marshalledAttributes.put(attrName, marshalledAttribute);
-                    } catch (Exception e) {
-                        log.warn("Unable to marshall class {}: {} - ignore", attrValue.getClass().getName(),
-                                e.getMessage());
-                    }
-                    continue;
+                final MarshalledAttribute marshalledAttribute = marshallAttribute(attrName, attrValue);
+                if (marshalledAttribute != null) {
+                    log.trace("Save session attribute '{}' as serialized {}", attrName, marshalledAttribute);
+                    marshalledAttributes.put(attrName, marshalledAttribute);
                 }
-
-                log.debug("Attribute '{}' value '{}' is not eligible for serialization - ignore.", attrName, attrValue);
             }
 
-            // Marshall the result map and convert into byte array
-            final byte[] binaryAttrs = marshalledAttributesSerializer.serialize(marshalledAttributes);
-            log.trace("Session data: {} bytes", binaryAttrs.length);
+            byte[] binaryAttrs = storeMetadata.isDictionaryEncoding() ? encodeWithDictionary(marshalledAttributes)
+                    : null;
+            if (binaryAttrs != null) {
+                log.trace("Session data: {} bytes, dictionary encoded", binaryAttrs.length);
+            } else {
+                // Marshall the result map and convert into byte array prefixed
+                // with payload header
+                binaryAttrs = marshalledAttributesSerializer.serialize(marshalledAttributes, defaultHeaderBytes);
+                log.trace("Session data: {} bytes", binaryAttrs.length);
+            }
+            metrics.recordMarshall(System.nanoTime() - start, binaryAttrs.length, marshalledAttributes.size());
+            SessionStoreEvents.commitMarshall(event, false, binaryAttrs.length, marshalledAttributes.size());
+            if (attributeAnalytics.sample()) {
+                attributeAnalytics.recordWrite(marshalledAttributes, binaryAttrs.length);
+            }
             return binaryAttrs;
         } catch (Exception e) {
             final String msg = "Unable to marshall session attributes";
@@ -101,47 +221,102 @@ public class DefaultSessionAttributesTransformer implements SessionAttributesTra
 
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MarshalledAttribute marshallAttribute(final String attrName, final Object attrValue) {
+        byte[] binValue = codecRegistry.encode(attrValue);
+        if (binValue == null) {
+            if (!isEligebleForSerialization(attrValue)) {
+                log.debug("Attribute '{}' value '{}' is not eligible for serialization - ignore.", attrName,
+                        attrValue);
+                return null;
+            }
+            try {
+                binValue = attributeSerializer.serialize((Serializable) attrValue, SERIALIZER_TAG_PREFIX);
+            } catch (Exception e) {
+                log.warn("Unable to marshall class {}: {} - ignore", attrValue.getClass().getName(), e.getMessage());
+                return null;
+            }
+        }
+        return new MarshalledAttribute(attrName, attrValue.getClass().getName(), binValue);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object unmarshalAttribute(final MarshalledAttribute attr) {
+        final Object value = restoreAttribute(attr, defaultCodec, true, false, defaultHeader);
+        // attribute of unknown class is kept by session only
+        return value == attr ? null : value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSerializable(final Object value) {
+        return value == null || codecRegistry.canEncode(value) || isEligebleForSerialization(value);
+    }
+
     @Override
     public Map<String, Object> unmarshal(final byte[] binarySessionData) {
+        return unmarshal(binarySessionData, null);
+    }
+
+    @Override
+    public Map<String, Object> unmarshal(final byte[] binarySessionData,
+            final Map<String, MarshalledAttribute> marshalledAttrs) {
         if (binarySessionData == null || binarySessionData.length < 2) {
             log.trace("Stored session data is short - return an empty session");
             return Collections.emptyMap();
         }
 
+        final Object event = SessionStoreEvents.beginMarshall();
         final long start = System.nanoTime();
         try {
-            final Map<String, MarshalledAttribute> marshalledAttributes = marshalledAttributesSerializer
-                    .deserialize(binarySessionData, marshalledAttributesMapClass);
+            final PayloadHeader header = PayloadHeader.read(binarySessionData);
+            // written before payload header was introduced - assume configured
+            // store settings
+            final PayloadCodec codec = header == null ? defaultCodec : codecFor(header);
+            final Map<String, MarshalledAttribute> marshalledAttributes = readMarshalledAttributes(
+                    binarySessionData, header, codec);
             final Map<String, Object> unmarshalledAttributes = new HashMap<>(marshalledAttributes.size());
+            final boolean tagged = header != null && header.getVersion() >= PayloadHeader.VERSION_CODEC_TAGGED;
+            // only attributes of current payload format can be saved back
+            // 'as-is'
+            final boolean currentFormat = codec == defaultCodec && tagged;
 
-            for (Map.Entry<String, MarshalledAttribute> entry : marshalledAttributes.entrySet()) {
-                final String attributeName = entry.getKey();
-                final MarshalledAttribute marshalledAttribute = entry.getValue();
-                log.trace("Load session attribute '{}' from serialized form {}", attributeName, marshalledAttribute);
-                // check if we can de-serialize value
-                try {
-                    Class.forName(marshalledAttribute.getClassName());
-                    final Serializable attrValue = (Serializable) attributeSerializer
-                            .deserialize(marshalledAttribute.getContent(), Serializable.class);
-                    unmarshalledAttributes.put(attributeName, attrValue);
-                } catch (ClassNotFoundException e) {
-                    // Probably created by another webapp
-                    log.debug("Unknown class '{}' for attribute '{}' in stored session. Put it in session 'as-is'",
-                            marshalledAttribute.getClassName(), marshalledAttribute.getAttributeName());
-                    unmarshalledAttributes.put(attributeName, marshalledAttribute);
-                } catch (SerializationException e) {
-                    // Something else
-                    log.warn(
-                            "Unable to deserialize class '{}' for attribute '{}' in stored session. Attribute removed. Error: {}",
-                            marshalledAttribute.getClassName(), marshalledAttribute.getAttributeName(), e.getMessage());
-                    log.debug("", e);
+            if (isParallelUnmarshalEligible(marshalledAttributes.size(), binarySessionData.length)) {
+                log.trace("Unmarshal {} attributes in parallel", marshalledAttributes.size());
+                final Map<String, ForkJoinTask<Object>> tasks = new HashMap<>(marshalledAttributes.size());
+                for (Map.Entry<String, MarshalledAttribute> entry : marshalledAttributes.entrySet()) {
+                    final MarshalledAttribute marshalledAttribute = entry.getValue();
+                    tasks.put(entry.getKey(), unmarshalPool
+                            .submit(() -> restoreAttribute(marshalledAttribute, codec, tagged, currentFormat, header)));
+                }
+                for (Map.Entry<String, ForkJoinTask<Object>> task : tasks.entrySet()) {
+                    putRestoredAttribute(task.getKey(), marshalledAttributes.get(task.getKey()),
+                            task.getValue().join(), currentFormat, unmarshalledAttributes, marshalledAttrs);
+                }
+            } else {
+                for (Map.Entry<String, MarshalledAttribute> entry : marshalledAttributes.entrySet()) {
+                    final MarshalledAttribute marshalledAttribute = entry.getValue();
+                    final Object attrValue = restoreAttribute(marshalledAttribute, codec, tagged, currentFormat, header);
+                    putRestoredAttribute(entry.getKey(), marshalledAttribute, attrValue, currentFormat,
+                            unmarshalledAttributes, marshalledAttrs);
                 }
             }
+            metrics.recordUnmarshal(System.nanoTime() - start, binarySessionData.length,
+                    unmarshalledAttributes.size());
+            SessionStoreEvents.commitMarshall(event, true, binarySessionData.length, unmarshalledAttributes.size());
             return unmarshalledAttributes;
 
         } catch (Exception e) {
             log.error("Unable to unmarshall session data", e);
+            metrics.deserializationFailure();
             return Collections.emptyMap();
 
         } finally {
@@ -151,56 +326,328 @@ public class DefaultSessionAttributesTransformer implements SessionAttributesTra
     }
 
     /**
-     * Checks if object itself of all elements in collections are serializble.
+     * Writes marshalled attributes with attribute and class names replaced by
+     * dictionary ids: header, dictionary epoch, attributes count and then name
+     * id, class name id and content of every attribute.
      * 
-     * @param attrValue
-     * @return
+     * @param marshalledAttributes
+     * @return payload or <code>null</code> if names can't be added to
+     *         dictionary
      */
-    @SuppressWarnings("rawtypes")
-    private boolean isEligebleForSerialization(final Object attrValue) {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, MarshalledAttribute> unmarshalStored(final byte[] binarySessionData) {
+        if (binarySessionData == null || binarySessionData.length < 2) {
+            return Collections.emptyMap();
+        }
+        try {
+            final PayloadHeader header = PayloadHeader.read(binarySessionData);
+            return readMarshalledAttributes(binarySessionData, header,
+                    header == null ? defaultCodec : codecFor(header));
+        } catch (Exception e) {
+            log.error("Unable to read stored session data", e);
+            metrics.deserializationFailure();
+            return Collections.emptyMap();
+        }
+    }
 
-        // list or set
-        if (Iterable.class.isAssignableFrom(attrValue.getClass())) {
-            Iterable iter = (Iterable) attrValue;
-            for (Object object : iter) {
-                if (!Serializable.class.isAssignableFrom(object.getClass())) {
-                    log.trace("one element in collection is not serializble: {}", object);
-                    return false;
-                }
+    @SuppressWarnings("unchecked")
+    private Map<String, MarshalledAttribute> readMarshalledAttributes(final byte[] binarySessionData,
+            final PayloadHeader header, final PayloadCodec codec) {
+        if (header == null) {
+            return codec.marshalledAttributesSerializer.deserialize(binarySessionData, marshalledAttributesMapClass);
+        }
+        if (header.getVersion() == PayloadHeader.VERSION_DICTIONARY) {
+            return decodeWithDictionary(binarySessionData);
+        }
+        return codec.marshalledAttributesSerializer.deserialize(binarySessionData, PayloadHeader.LENGTH,
+                binarySessionData.length - PayloadHeader.LENGTH, marshalledAttributesMapClass);
+    }
+
+    private byte[] encodeWithDictionary(final Map<String, MarshalledAttribute> marshalledAttributes) {
+        final Set<String> names = new HashSet<>();
+        for (Map.Entry<String, MarshalledAttribute> entry : marshalledAttributes.entrySet()) {
+            names.add(entry.getKey());
+            names.add(entry.getValue().getClassName());
+        }
+        if (!attributeDictionary.ensure(names)) {
+            return null;
+        }
+        final int epoch = attributeDictionary.getEpoch();
+        final CodecOutput out = new CodecOutput(256);
+        out.writeBytes(dictionaryHeaderBytes, 0, dictionaryHeaderBytes.length);
+        out.writeInt(epoch);
+        out.writeVarInt(marshalledAttributes.size());
+        for (Map.Entry<String, MarshalledAttribute> entry : marshalledAttributes.entrySet()) {
+            final int nameId = attributeDictionary.idOf(entry.getKey());
+            final int classNameId = attributeDictionary.idOf(entry.getValue().getClassName());
+            if (nameId < 0 || classNameId < 0) {
+                return null;
             }
+            out.writeVarInt(nameId);
+            out.writeVarInt(classNameId);
+            out.writeByteArray(entry.getValue().getContent());
         }
+        // ids are stable only within the same dictionary
+        return attributeDictionary.getEpoch() == epoch ? out.toByteArray() : null;
+    }
 
-        // map
-        if (Map.class.isAssignableFrom(attrValue.getClass())) {
-            Map m = (Map) attrValue;
-            for (Object key : m.keySet()) {
-                if (!Serializable.class.isAssignableFrom(key.getClass())) {
-                    log.trace("key in map is not serializble: {}", key);
-                    return false;
-                }
-                Object value = m.get(key);
-                if (!Serializable.class.isAssignableFrom(value.getClass())) {
-                    log.trace("value in map is not serializble: {}", value);
-                    return false;
-                }
+    /**
+     * Reads marshalled attributes written by
+     * {@link #encodeWithDictionary(Map)}.
+     * 
+     * @param payload
+     * @return marshalled attributes
+     * @throws SerializationException
+     *             if payload is corrupted or written with unknown dictionary
+     */
+    private Map<String, MarshalledAttribute> decodeWithDictionary(final byte[] payload) {
+        final CodecInput in = new CodecInput(payload, PayloadHeader.LENGTH, payload.length - PayloadHeader.LENGTH);
+        attributeDictionary.checkEpoch(in.readInt());
+        final int count = in.readVarInt();
+        final Map<String, MarshalledAttribute> marshalledAttributes = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            final String attributeName = attributeDictionary.nameOf(in.readVarInt());
+            final String className = attributeDictionary.nameOf(in.readVarInt());
+            final byte[] content = in.readByteArray();
+            if (content == null) {
+                throw new SerializationException("Missing content of attribute " + attributeName);
             }
+            marshalledAttributes.put(attributeName, new MarshalledAttribute(attributeName, className, content));
         }
+        return marshalledAttributes;
+    }
 
-        // array
-        if (attrValue.getClass().isArray()) {
-            for (int i = 0; i < Array.getLength(attrValue); i++) {
-                if (!Serializable.class.isAssignableFrom(Array.get(attrValue, i).getClass())) {
-                    log.trace("array element is not serializble: {}", Array.get(attrValue, i));
-                    return false;
-                }
+    /**
+     * Checks if session is large enough to unmarshal its attributes in
+     * parallel.
+     * 
+     * @param attributeCount
+     * @param size
+     *            session payload size in bytes
+     * @return <code>true</code> if either threshold is reached
+     */
+    private boolean isParallelUnmarshalEligible(final int attributeCount, final int size) {
+        if (attributeCount < 2) {
+            return false;
+        }
+        final int countThreshold = storeMetadata.getParallelUnmarshalAttributeThreshold();
+        final int sizeThreshold = storeMetadata.getParallelUnmarshalSizeThreshold();
+        return (countThreshold > 0 && attributeCount >= countThreshold)
+                || (sizeThreshold > 0 && size >= sizeThreshold);
+    }
+
+    /**
+     * Restores single attribute. Errors are isolated - attribute which can't be
+     * restored is removed from session.
+     * 
+     * @param marshalledAttribute
+     * @param codec
+     * @param tagged
+     * @param currentFormat
+     *            <code>true</code> if unknown attributes can be kept 'as-is'
+     * @param header
+     *            payload header, <code>null</code> for payload written without
+     *            header
+     * @return attribute value, marshalled attribute to keep 'as-is' or
+     *         <code>null</code> if the attribute is removed
+     */
+    private Object restoreAttribute(final MarshalledAttribute marshalledAttribute, final PayloadCodec codec,
+            final boolean tagged, final boolean currentFormat, final PayloadHeader header) {
+        log.trace("Load session attribute '{}' from serialized form {}", marshalledAttribute.getAttributeName(),
+                marshalledAttribute);
+        // check if we can de-serialize value
+        try {
+            return unmarshalAttribute(marshalledAttribute, codec, tagged);
+        } catch (ClassNotFoundException e) {
+            // Probably created by another webapp
+            if (currentFormat) {
+                log.debug("Unknown class '{}' for attribute '{}' in stored session. Put it in session 'as-is'",
+                        marshalledAttribute.getClassName(), marshalledAttribute.getAttributeName());
+                return marshalledAttribute;
             }
+            log.debug("Unknown class '{}' for attribute '{}' in {} session. Put it in session in current format",
+                    marshalledAttribute.getClassName(), marshalledAttribute.getAttributeName(),
+                    header == null ? "legacy" : header);
+            return toCurrentFormat(marshalledAttribute, codec, tagged, header);
+        } catch (SerializationException e) {
+            // Something else
+            log.warn(
+                    "Unable to deserialize class '{}' for attribute '{}' in stored session. Attribute removed. Error: {}",
+                    marshalledAttribute.getClassName(), marshalledAttribute.getAttributeName(), e.getMessage());
+            log.debug("", e);
+            metrics.deserializationFailure();
         }
+        return null;
+    }
+
+    /**
+     * Converts attribute of other payload format to current one without
+     * deserializing it: serializer data of configured serializer is tagged,
+     * data of other serializer is wrapped with
+     * {@link AttributeCodecRegistry#FOREIGN_SERIALIZER_TAG} and its format.
+     * Attribute codec data does not depend on payload format and is kept.
+     * 
+     * @param marshalledAttribute
+     * @param codec
+     * @param tagged
+     * @param header
+     * @return marshalled attribute in current format
+     */
+    private MarshalledAttribute toCurrentFormat(final MarshalledAttribute marshalledAttribute,
+            final PayloadCodec codec, final boolean tagged, final PayloadHeader header) {
+        final byte[] content = marshalledAttribute.getContent();
+        if (tagged && (content[0] != AttributeCodecRegistry.SERIALIZER_TAG || codec == defaultCodec)) {
+            return marshalledAttribute;
+        }
+        final int offset = tagged ? 1 : 0;
+        final byte[] prefix;
+        if (codec == defaultCodec) {
+            prefix = SERIALIZER_TAG_PREFIX;
+        } else {
+            prefix = new byte[] { (byte) AttributeCodecRegistry.FOREIGN_SERIALIZER_TAG,
+                    header.getSerializationType().getId(), header.getCompression().getId() };
+        }
+        final byte[] converted = new byte[prefix.length + content.length - offset];
+        System.arraycopy(prefix, 0, converted, 0, prefix.length);
+        System.arraycopy(content, offset, converted, prefix.length, content.length - offset);
+        return new MarshalledAttribute(marshalledAttribute.getAttributeName(), marshalledAttribute.getClassName(),
+                converted);
+    }
 
-        // everything else
-        if (Serializable.class.isAssignableFrom(attrValue.getClass())) {
-            return true;
+    private void putRestoredAttribute(final String attributeName, final MarshalledAttribute marshalledAttribute,
+            final Object attrValue, final boolean currentFormat, final Map<String, Object> unmarshalledAttributes,
+            final Map<String, MarshalledAttribute> marshalledAttrs) {
+        if (attrValue == null) {
+            return;
         }
-        log.trace("attribute is not serializble: {}", attrValue);
-        return false;
+        unmarshalledAttributes.put(attributeName, attrValue);
+        if (currentFormat && marshalledAttrs != null && attrValue != marshalledAttribute) {
+            marshalledAttrs.put(attributeName, marshalledAttribute);
+        }
+    }
+
+    /**
+     * Restores attribute value. Tagged attributes are decoded by attribute codec
+     * or store serializer depending on the tag, untagged ones are always
+     * deserialized by store serializer.
+     * 
+     * @param marshalledAttribute
+     * @param codec
+     *            payload codec
+     * @param tagged
+     *            <code>true</code> if attribute content starts with codec tag
+     * @return attribute value
+     * @throws ClassNotFoundException
+     *             if attribute class or codec is unknown
+     */
+    private Object unmarshalAttribute(final MarshalledAttribute marshalledAttribute, final PayloadCodec codec,
+            final boolean tagged) throws ClassNotFoundException {
+        final byte[] content = marshalledAttribute.getContent();
+        if (!tagged) {
+            classLoader.resolve(marshalledAttribute.getClassName());
+            return codec.attributeSerializer.deserialize(content, Serializable.class);
+        }
+        if (content.length == 0) {
+            throw new SerializationException("Empty attribute content");
+        }
+        if ((content[0] & 0xFF) == AttributeCodecRegistry.FOREIGN_SERIALIZER_TAG) {
+            return unmarshalForeignAttribute(marshalledAttribute);
+        }
+        if (content[0] != AttributeCodecRegistry.SERIALIZER_TAG) {
+            if (!codecRegistry.canDecode(content)) {
+                throw new ClassNotFoundException("No attribute codec for tag " + (content[0] & 0xFF));
+            }
+            return codecRegistry.decode(content);
+        }
+        classLoader.resolve(marshalledAttribute.getClassName());
+        return codec.attributeSerializer.deserialize(content, 1, content.length - 1, Serializable.class);
+    }
+
+    /**
+     * Restores attribute kept with
+     * {@link AttributeCodecRegistry#FOREIGN_SERIALIZER_TAG} by serializer it
+     * was written with.
+     * 
+     * @param marshalledAttribute
+     * @return attribute value
+     * @throws ClassNotFoundException
+     *             if attribute class is unknown
+     */
+    private Object unmarshalForeignAttribute(final MarshalledAttribute marshalledAttribute)
+            throws ClassNotFoundException {
+        final byte[] content = marshalledAttribute.getContent();
+        if (content.length < 3) {
+            throw new SerializationException("Truncated foreign serializer attribute");
+        }
+        final StoreSerializationType serializationType = StoreSerializationType.fromId(content[1]);
+        final StoreCompression compression = StoreCompression.fromId(content[2]);
+        if (serializationType == null || compression == null) {
+            throw new SerializationException(
+                    "Unsupported foreign serializer attribute format " + content[1] + "/" + content[2]);
+        }
+        final PayloadCodec codec = codecFor(new PayloadHeader(serializationType, compression));
+        classLoader.resolve(marshalledAttribute.getClassName());
+        return codec.attributeSerializer.deserialize(content, 3, content.length - 3, Serializable.class);
+    }
+
+    /**
+     * Returns codec for payload header. Payloads written with configured store
+     * settings use injected serializers, others get their own serializers
+     * created once and reused.
+     * 
+     * @param header
+     * @return payload codec
+     */
+    private PayloadCodec codecFor(final PayloadHeader header) {
+        if (header.getSerializationType() == defaultHeader.getSerializationType()
+                && header.getCompression() == defaultHeader.getCompression()) {
+            return defaultCodec;
+        }
+        final String key = header.getSerializationType() + "/" + header.getCompression();
+        PayloadCodec codec = foreignCodecs.get(key);
+        if (codec == null) {
+            log.info("Session payload written as {} - create codec", header);
+            codec = foreignCodecs.computeIfAbsent(key,
+                    k -> new PayloadCodec(header.getSerializationType(), header.getCompression(), classLoader));
+        }
+        return codec;
+    }
+
+    /**
+     * Serializers used to decode a payload of particular format.
+     */
+    private static class PayloadCodec {
+        private final StoreSerializer<Serializable> attributeSerializer;
+        private final StoreSerializer<Map<String, MarshalledAttribute>> marshalledAttributesSerializer;
+
+        PayloadCodec(final StoreSerializer<Serializable> attributeSerializer,
+                final StoreSerializer<Map<String, MarshalledAttribute>> marshalledAttributesSerializer) {
+            this.attributeSerializer = attributeSerializer;
+            this.marshalledAttributesSerializer = marshalledAttributesSerializer;
+        }
+
+        PayloadCodec(final StoreSerializationType serializationType, final StoreCompression compression,
+                final ClassLoader classLoader) {
+            this(StoreSerializers.attributeSerializer(serializationType, compression, classLoader),
+                    StoreSerializers.marshalledAttributesSerializer(serializationType));
+        }
+
+        void close() {
+            attributeSerializer.close();
+            marshalledAttributesSerializer.close();
+        }
+    }
+
+    /**
+     * Checks if object itself of all elements in collections are serializble.
+     * 
+     * @param attrValue
+     * @return
+     */
+    private boolean isEligebleForSerialization(final Object attrValue) {
+        return serializationPlanCache.isEligible(attrValue);
     }
 }
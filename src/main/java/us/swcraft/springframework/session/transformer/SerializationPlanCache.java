@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.transformer;
+
+import java.io.Serializable;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides if attribute value is eligible for serialization. Verdicts are
+ * cached per class, so the decision for a value of a known shape is a lookup.
+ * Elements of collections, maps and arrays are still visited, but only an
+ * element of different class than the previous one is looked up, so a
+ * homogeneous collection costs one lookup. Arrays of primitive or final
+ * component type are decided by the component type without visiting elements.
+ * 
+ * @author Vlad Aleksandrov
+ */
+class SerializationPlanCache {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final ConcurrentMap<Class<?>, Boolean> verdicts = new ConcurrentHashMap<>();
+
+    /**
+     * Checks if attribute value may be serialized.
+     * 
+     * @param value
+     *            attribute value, not null
+     * @return <code>true</code> if value and all its elements are serializable
+     */
+    boolean isEligible(final Object value) {
+        final Class<?> type = value.getClass();
+        if (!isSerializable(type)) {
+            log.trace("attribute is not serializble: {}", value);
+            return false;
+        }
+
+        // array
+        if (type.isArray()) {
+            final Class<?> componentType = type.getComponentType();
+            if (componentType.isPrimitive()) {
+                return true;
+            }
+            if (Modifier.isFinal(componentType.getModifiers())) {
+                return isSerializable(componentType);
+            }
+            return allEligible(Arrays.asList((Object[]) value), "array element is not serializble: {}");
+        }
+
+        // list or set
+        if (value instanceof Iterable) {
+            return allEligible((Iterable<?>) value, "one element in collection is not serializble: {}");
+        }
+
+        // map
+        if (value instanceof Map) {
+            final Map<?, ?> m = (Map<?, ?>) value;
+            return allEligible(m.keySet(), "key in map is not serializble: {}")
+                    && allEligible(m.values(), "value in map is not serializble: {}");
+        }
+        return true;
+    }
+
+    /**
+     * Removes all cached verdicts.
+     */
+    void clear() {
+        verdicts.clear();
+    }
+
+    /**
+     * @return number of cached verdicts
+     */
+    int size() {
+        return verdicts.size();
+    }
+
+    private boolean allEligible(final Iterable<?> elements, final String message) {
+        Class<?> lastType = null;
+        for (Object element : elements) {
+            if (element == null) {
+                continue;
+            }
+            final Class<?> type = element.getClass();
+            if (type == lastType) {
+                continue;
+            }
+            if (!isSerializable(type)) {
+                log.trace(message, element);
+                return false;
+            }
+            lastType = type;
+        }
+        return true;
+    }
+
+    private boolean isSerializable(final Class<?> type) {
+        final Boolean verdict = verdicts.get(type);
+        if (verdict != null) {
+            return verdict;
+        }
+        final boolean serializable = type.isPrimitive() || Serializable.class.isAssignableFrom(type);
+        verdicts.putIfAbsent(type, serializable);
+        return serializable;
+    }
+
+}
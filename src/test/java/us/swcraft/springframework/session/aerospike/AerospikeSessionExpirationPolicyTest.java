@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.aerospike;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.Session;
+import org.springframework.session.events.SessionDestroyedEvent;
+import org.springframework.session.events.SessionExpiredEvent;
+
+import us.swcraft.springframework.session.aerospike.AerospikeStoreSessionRepository.AerospikeSession;
+import us.swcraft.springframework.session.aerospike.config.annotation.web.http.EnableAerospikeHttpSession;
+import us.swcraft.springframework.session.store.SizeLimitPolicy;
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+
+public class AerospikeSessionExpirationPolicyTest {
+
+    private static final List<SessionDestroyedEvent> events = new CopyOnWriteArrayList<>();
+
+    private static final AtomicInteger publishedBatches = new AtomicInteger();
+
+    private static AnnotationConfigApplicationContext context;
+
+    private static AerospikeStoreSessionRepository repository;
+
+    private static AerospikeOperations<String> store;
+
+    @Configuration
+    @EnableAerospikeHttpSession(inMemoryStore = true, expiredEventBatchSize = 2,
+            expiredEventAttributes = { "principal", "report" }, maxAttributeBytes = 1000,
+            attributeSizePolicy = SizeLimitPolicy.OFFLOAD)
+    static class Config {
+
+        @Bean("ssa-taskExecutor")
+        public Executor taskExecutor() {
+            return Runnable::run;
+        }
+
+        @Bean("ssa-eventExecutor")
+        public Executor eventExecutor() {
+            return task -> {
+                publishedBatches.incrementAndGet();
+                task.run();
+            };
+        }
+
+        @Bean
+        public ApplicationListener<SessionDestroyedEvent> listener() {
+            return new ApplicationListener<SessionDestroyedEvent>() {
+                @Override
+                public void onApplicationEvent(final SessionDestroyedEvent event) {
+                    events.add(event);
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @BeforeAll
+    public static void setUp() {
+        context = new AnnotationConfigApplicationContext(Config.class);
+        repository = context.getBean(AerospikeStoreSessionRepository.class);
+        store = context.getBean("ssa-sessionAerospikeTemplate", AerospikeOperations.class);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void expiredSessionsAreAnnounced() {
+        events.clear();
+        publishedBatches.set(0);
+        for (int i = 0; i < 3; i++) {
+            final AerospikeSession session = repository.createSession();
+            session.setAttribute("principal", "user" + i);
+            session.setAttribute("cart", "items");
+            session.setMaxInactiveIntervalInSeconds(1);
+            session.setLastAccessedTime(System.currentTimeMillis() - 10000);
+            repository.save(session);
+        }
+
+        repository.cleanupExpiredSessions();
+
+        // batch size 2 - one full batch and the remainder
+        assertThat(publishedBatches.get(), is(2));
+        assertThat(events.size(), is(3));
+        for (SessionDestroyedEvent event : events) {
+            assertThat(event instanceof SessionExpiredEvent, is(true));
+            final Session session = event.getSession();
+            assertThat(((String) session.getAttribute("principal")).startsWith("user"), is(true));
+            assertThat(session.getAttribute("cart"), nullValue());
+            assertThat(repository.getSession(event.getSessionId()), nullValue());
+        }
+    }
+
+    @Test
+    public void offloadedAttributesAreDeletedWithExpiredSession() {
+        events.clear();
+        final AerospikeSession session = repository.createSession();
+        session.setAttribute("principal", "user");
+        session.setAttribute("report", new byte[2000]);
+        session.setMaxInactiveIntervalInSeconds(1);
+        session.setLastAccessedTime(System.currentTimeMillis() - 10000);
+        repository.save(session);
+        assertThat(store.hasKey(session.getId() + "#report"), is(true));
+
+        repository.cleanupExpiredSessions();
+
+        assertThat(store.hasKey(session.getId() + "#report"), is(false));
+        assertThat(events.size(), is(1));
+        // offloaded attribute is not projected as placeholder
+        assertThat(events.get(0).getSession().getAttribute("principal"), is("user"));
+        assertThat(events.get(0).getSession().getAttribute("report"), nullValue());
+    }
+
+    @Test
+    public void offloadedAttributesAreDeletedWithSession() {
+        final AerospikeSession session = repository.createSession();
+        session.setAttribute("report", new byte[2000]);
+        repository.save(session);
+        assertThat(store.hasKey(session.getId() + "#report"), is(true));
+
+        repository.delete(session.getId());
+
+        assertThat(store.hasKey(session.getId() + "#report"), is(false));
+        assertThat(store.hasKey(session.getId()), is(false));
+    }
+
+    @Test
+    public void deletedSessionIsAnnounced() {
+        events.clear();
+        final AerospikeSession session = repository.createSession();
+        repository.save(session);
+
+        repository.delete(session.getId());
+
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0) instanceof SessionExpiredEvent, is(false));
+        assertThat(events.get(0).getSessionId(), is(session.getId()));
+    }
+
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.aerospike;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import us.swcraft.springframework.session.aerospike.AerospikeStoreSessionRepository.AerospikeSession;
+import us.swcraft.springframework.session.aerospike.config.annotation.web.http.EnableAerospikeHttpSession;
+import us.swcraft.springframework.session.model.MarshalledAttribute;
+import us.swcraft.springframework.session.model.StoreMetadata;
+import us.swcraft.springframework.session.store.SessionAttributesTransformer;
+import us.swcraft.springframework.session.store.SizeLimitPolicy;
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+
+public class AerospikeStoreSessionRepositoryTest {
+
+    private static AnnotationConfigApplicationContext context;
+
+    private static AerospikeStoreSessionRepository repository;
+
+    private static AerospikeOperations<String> store;
+
+    private static final List<String> marshalled = Collections.synchronizedList(new ArrayList<>());
+
+    @Configuration
+    @EnableAerospikeHttpSession(inMemoryStore = true)
+    static class Config {
+
+        /**
+         * Save on calling thread.
+         */
+        @Bean("ssa-taskExecutor")
+        public Executor taskExecutor() {
+            return Runnable::run;
+        }
+
+        @Bean
+        @Primary
+        public SessionAttributesTransformer recordingTransformer() {
+            return new RecordingTransformer();
+        }
+    }
+
+    /**
+     * Records names of marshalled attributes.
+     */
+    static class RecordingTransformer implements SessionAttributesTransformer {
+
+        @Inject
+        @Named("ssa-defaultSessionAttributesTransformer")
+        private SessionAttributesTransformer delegate;
+
+        @Override
+        public byte[] marshall(final Map<String, Object> attrs) {
+            return delegate.marshall(attrs);
+        }
+
+        @Override
+        public MarshalledAttribute marshallAttribute(final String name, final Object value) {
+            marshalled.add(name);
+            return delegate.marshallAttribute(name, value);
+        }
+
+        @Override
+        public Object unmarshalAttribute(final MarshalledAttribute attr) {
+            return delegate.unmarshalAttribute(attr);
+        }
+
+        @Override
+        public boolean isSerializable(final Object value) {
+            return delegate.isSerializable(value);
+        }
+
+        @Override
+        public Map<String, Object> unmarshal(final byte[] attrs) {
+            return delegate.unmarshal(attrs);
+        }
+
+        @Override
+        public Map<String, Object> unmarshal(final byte[] attrs, final Map<String, MarshalledAttribute> marshalledAttrs) {
+            return delegate.unmarshal(attrs, marshalledAttrs);
+        }
+
+        @Override
+        public Map<String, MarshalledAttribute> unmarshalStored(final byte[] attrs) {
+            return delegate.unmarshalStored(attrs);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @BeforeAll
+    public static void setUp() {
+        context = new AnnotationConfigApplicationContext(Config.class);
+        repository = context.getBean(AerospikeStoreSessionRepository.class);
+        store = context.getBean("ssa-sessionAerospikeTemplate", AerospikeOperations.class);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        context.close();
+    }
+
+    @BeforeEach
+    public void clear() {
+        marshalled.clear();
+    }
+
+    @Test
+    public void dirtyTracking() {
+        final String id = saved();
+        final AerospikeSession session = repository.getSession(id);
+        assertThat(session.isUpdated(), is(false));
+
+        // immutable value read and equal value set are not changes
+        assertThat(session.getAttribute("user"), is("john"));
+        session.setAttribute("user", "john");
+        assertThat(session.isUpdated(), is(false));
+
+        // mutable value read may be changed in place
+        session.getAttribute("cart");
+        assertThat(session.isUpdated(), is(true));
+
+        final AerospikeSession other = repository.getSession(id);
+        other.setAttribute("user", "jane");
+        assertThat(other.isUpdated(), is(true));
+        final AerospikeSession removed = repository.getSession(id);
+        removed.removeAttribute("user");
+        assertThat(removed.isUpdated(), is(true));
+    }
+
+    @Test
+    public void reuseStoredAttributes() {
+        final String id = saved();
+        final AerospikeSession session = repository.getSession(id);
+        session.setAttribute("locale", "en");
+        repository.save(session);
+        // untouched attributes are saved in stored form
+        assertThat(marshalled, is(Arrays.asList("locale")));
+
+        final AerospikeSession reloaded = repository.getSession(id);
+        assertThat(reloaded.getAttribute("user"), is("john"));
+        assertThat(reloaded.getAttribute("cart"), is(Arrays.asList("book")));
+        assertThat(reloaded.getAttribute("locale"), is("en"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void saveMutatedAttribute() {
+        final String id = saved();
+        final AerospikeSession session = repository.getSession(id);
+        ((List<String>) session.getAttribute("cart")).add("pen");
+        repository.save(session);
+        assertThat(marshalled, is(Arrays.asList("cart")));
+
+        assertThat(repository.getSession(id).getAttribute("cart"), is(Arrays.asList("book", "pen")));
+    }
+
+    @Test
+    public void skipUnchangedAttributes() {
+        final String id = saved();
+        final Object stored = attributesBin(id);
+
+        // read only - nothing to save
+        final AerospikeSession session = repository.getSession(id);
+        session.getAttribute("user");
+        repository.save(session);
+        assertThat(marshalled.isEmpty(), is(true));
+        assertThat(attributesBin(id), sameInstance(stored));
+
+        // mutable value is marshalled again, but has the same content
+        final AerospikeSession read = repository.getSession(id);
+        read.getAttribute("cart");
+        repository.save(read);
+        assertThat(marshalled, is(Arrays.asList("cart")));
+        assertThat(attributesBin(id), sameInstance(stored));
+    }
+
+    @Test
+    public void sessionConfigurationsOfOtherContextsAreNotScanned() {
+        assertThat(context.getBeanNamesForAnnotation(EnableAerospikeHttpSession.class).length, is(1));
+        assertThat(context.getBean(AerospikeSessionExpirationPolicy.class), notNullValue());
+    }
+
+    @Test
+    public void checkedAttributeIsNotMarshalledAgain() {
+        final StoreMetadata metadata = context.getBean(StoreMetadata.class);
+        metadata.setMaxAttributeBytes(1000);
+        metadata.setAttributeSizePolicy(SizeLimitPolicy.REJECT);
+        try {
+            final String id = saved();
+            final AerospikeSession session = repository.getSession(id);
+            session.setAttribute("locale", "en");
+            session.setAttribute("tags", new ArrayList<>(Arrays.asList("a")));
+            assertThat(marshalled, is(Arrays.asList("locale", "tags")));
+            // mutable value read after set is marshalled again
+            session.getAttribute("tags");
+            repository.save(session);
+            assertThat(marshalled, is(Arrays.asList("locale", "tags", "tags")));
+
+            final AerospikeSession reloaded = repository.getSession(id);
+            assertThat(reloaded.getAttribute("locale"), is("en"));
+            assertThat(reloaded.getAttribute("tags"), is(Arrays.asList("a")));
+        } finally {
+            metadata.setMaxAttributeBytes(0);
+            metadata.setAttributeSizePolicy(SizeLimitPolicy.DROP);
+        }
+    }
+
+    @Test
+    public void removeNotMarshallableAttribute() {
+        final String id = saved();
+        final Object stored = attributesBin(id);
+        final AerospikeSession session = repository.getSession(id);
+        session.setAttribute("cart", Arrays.asList(new Object()));
+        repository.save(session);
+        assertThat(attributesBin(id), not(sameInstance(stored)));
+
+        final AerospikeSession reloaded = repository.getSession(id);
+        assertThat(reloaded.getAttribute("cart"), nullValue());
+        assertThat(reloaded.getAttribute("user"), is("john"));
+    }
+
+    private static String saved() {
+        final AerospikeSession session = repository.createSession();
+        session.setAttribute("user", "john");
+        session.setAttribute("cart", new ArrayList<>(Arrays.asList("book")));
+        repository.save(session);
+        marshalled.clear();
+        return session.getId();
+    }
+
+    private static Object attributesBin(final String id) {
+        return store.fetchUntouched(id).getValue(PersistentSessionAerospike.SESSION_ATTRIBUTES_BIN);
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.aerospike;
+
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import ch.qos.logback.classic.Level;
+
+import us.swcraft.springframework.session.aerospike.AerospikeStoreSessionRepository.AerospikeSession;
+import us.swcraft.springframework.session.aerospike.config.annotation.web.http.EnableAerospikeHttpSession;
+import us.swcraft.springframework.session.store.SessionAttributesTransformer;
+
+/**
+ * Checks allocated bytes per operation of the request hot path against
+ * budgets in <code>allocation-budgets.properties</code>. Allocation is
+ * measured on the current thread, so sessions are saved synchronously. Debug
+ * logging is turned off while measuring - it is not part of the budget.
+ * <p>
+ * Budgets are checked only on the Java version they were recorded on, as JDK
+ * code allocates differently in other versions.
+ */
+public class AllocationBudgetTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AllocationBudgetTest.class);
+
+    private static final ch.qos.logback.classic.Logger sessionLogger = (ch.qos.logback.classic.Logger) LoggerFactory
+            .getLogger("us.swcraft.springframework.session");
+
+    private static final int WARMUP = 2000;
+
+    private static final int ITERATIONS = 200;
+
+    private static final String JAVA_VERSION_KEY = "java.specification.version";
+
+    private static com.sun.management.ThreadMXBean threadMXBean;
+
+    private static AnnotationConfigApplicationContext context;
+
+    private static AerospikeStoreSessionRepository repository;
+
+    private static SessionAttributesTransformer transformer;
+
+    private static Properties budgets;
+
+    /**
+     * <code>false</code> if budgets were recorded on another Java version.
+     */
+    private static boolean budgetsApply;
+
+    private static final Map<String, Long> measured = new TreeMap<>();
+
+    @Configuration
+    @EnableAerospikeHttpSession(inMemoryStore = true)
+    static class Config {
+
+        /**
+         * Save on calling thread.
+         */
+        @Bean("ssa-taskExecutor")
+        public Executor taskExecutor() {
+            return Runnable::run;
+        }
+    }
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "Thread allocation counters are not available");
+        threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported(), "Thread allocation counters are not supported");
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        budgets = new Properties();
+        try (InputStream in = AllocationBudgetTest.class.getResourceAsStream("/allocation-budgets.properties")) {
+            budgets.load(in);
+        }
+        final String recordedOn = budgets.getProperty(JAVA_VERSION_KEY);
+        budgetsApply = System.getProperty(JAVA_VERSION_KEY).equals(recordedOn);
+        if (!budgetsApply) {
+            log.warn("Allocation budgets were recorded on Java {}, not checked on Java {}", recordedOn,
+                    System.getProperty(JAVA_VERSION_KEY));
+        }
+        context = new AnnotationConfigApplicationContext(Config.class);
+        repository = context.getBean(AerospikeStoreSessionRepository.class);
+        transformer = context.getBean(SessionAttributesTransformer.class);
+    }
+
+    @AfterAll
+    public static void tearDown() throws IOException {
+        if (context != null) {
+            context.close();
+        }
+        final String recordTo = System.getProperty("allocation.budgets.record");
+        if (recordTo != null && !measured.isEmpty()) {
+            final Properties record = new Properties();
+            record.setProperty(JAVA_VERSION_KEY, System.getProperty(JAVA_VERSION_KEY));
+            for (Map.Entry<String, Long> entry : measured.entrySet()) {
+                record.setProperty(entry.getKey(), entry.getValue().toString());
+            }
+            try (OutputStream out = new FileOutputStream(recordTo)) {
+                record.store(out, "Measured allocated bytes per operation");
+            }
+        }
+    }
+
+    @Test
+    public void marshall() {
+        for (Map.Entry<String, Map<String, Object>> session : referenceSessions().entrySet()) {
+            final Map<String, Object> attributes = session.getValue();
+            check("marshall." + session.getKey(), () -> transformer.marshall(attributes));
+        }
+    }
+
+    @Test
+    public void unmarshal() {
+        for (Map.Entry<String, Map<String, Object>> session : referenceSessions().entrySet()) {
+            final byte[] payload = transformer.marshall(session.getValue());
+            check("unmarshal." + session.getKey(), () -> transformer.unmarshal(payload));
+        }
+    }
+
+    @Test
+    public void load() {
+        for (Map.Entry<String, Map<String, Object>> session : referenceSessions().entrySet()) {
+            final String id = store(session.getValue());
+            check("load." + session.getKey(), () -> repository.getSession(id));
+        }
+    }
+
+    @Test
+    public void save() {
+        for (Map.Entry<String, Map<String, Object>> session : referenceSessions().entrySet()) {
+            final String id = store(session.getValue());
+            final AerospikeSession loaded = repository.getSession(id);
+            final long[] counter = { 0 };
+            check("save." + session.getKey(), () -> {
+                loaded.setAttribute("counter", ++counter[0]);
+                repository.save(loaded);
+            });
+        }
+    }
+
+    private static String store(final Map<String, Object> attributes) {
+        final AerospikeSession session = repository.createSession();
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            session.setAttribute(attribute.getKey(), attribute.getValue());
+        }
+        repository.save(session);
+        return session.getId();
+    }
+
+    /**
+     * Measures allocated bytes per operation and compares them with the
+     * budget.
+     */
+    private static void check(final String name, final Runnable operation) {
+        final long perOperation;
+        final Level level = sessionLogger.getLevel();
+        sessionLogger.setLevel(Level.INFO);
+        try {
+            for (int i = 0; i < WARMUP; i++) {
+                operation.run();
+            }
+            final long threadId = Thread.currentThread().getId();
+            final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < ITERATIONS; i++) {
+                operation.run();
+            }
+            perOperation = (threadMXBean.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+        } finally {
+            sessionLogger.setLevel(level);
+        }
+        measured.put(name, perOperation);
+        if (!budgetsApply) {
+            log.info("{}: {} bytes/op", name, perOperation);
+            return;
+        }
+
+        final String budgetValue = budgets.getProperty(name);
+        if (budgetValue == null) {
+            fail("No allocation budget for " + name + ", measured " + perOperation + " bytes/op");
+        }
+        final long budget = Long.parseLong(budgetValue);
+        final double tolerance = Double.parseDouble(budgets.getProperty("tolerance", "0"));
+        log.info("{}: {} bytes/op, budget {}", name, perOperation, budget);
+        if (perOperation > budget * (1 + tolerance)) {
+            fail(String.format("%s allocates %d bytes/op, budget %d bytes/op: +%d bytes (+%.1f%%)", name,
+                    perOperation, budget, perOperation - budget, (perOperation - budget) * 100.0 / budget));
+        }
+    }
+
+    /**
+     * Reference sessions: small (login state) and shopping cart.
+     */
+    private static Map<String, Map<String, Object>> referenceSessions() {
+        final Map<String, Map<String, Object>> sessions = new TreeMap<>();
+
+        final Map<String, Object> small = new HashMap<>();
+        small.put("user", "user@example.com");
+        small.put("userId", UUID.fromString("7c3d4b8e-1f2a-4c5d-9e6f-0a1b2c3d4e5f"));
+        small.put("locale", Locale.US);
+        small.put("visits", 12);
+        sessions.put("small", small);
+
+        final Map<String, Object> cart = new HashMap<>(small);
+        final ArrayList<HashMap<String, Object>> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final HashMap<String, Object> item = new HashMap<>();
+            item.put("sku", "SKU-" + i);
+            item.put("quantity", i % 3 + 1);
+            item.put("price", BigDecimal.valueOf(1999 + i, 2));
+            items.add(item);
+        }
+        cart.put("cart", items);
+        sessions.put("cart", cart);
+        return sessions;
+    }
+
+}
@@ -18,8 +18,14 @@ package us.swcraft.springframework.session.aerospike;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -55,4 +61,19 @@ public class AttributesTest {
 
     }
 
+    @Test
+    public void immutable() {
+        assertThat(Attributes.isImmutable("value"), is(true));
+        assertThat(Attributes.isImmutable(4L), is(true));
+        assertThat(Attributes.isImmutable(new BigDecimal("4.20")), is(true));
+        assertThat(Attributes.isImmutable(UUID.randomUUID()), is(true));
+        assertThat(Attributes.isImmutable(Locale.CANADA_FRENCH), is(true));
+        assertThat(Attributes.isImmutable(TimeUnit.SECONDS), is(true));
+
+        assertThat(Attributes.isImmutable(new AtomicLong(4)), is(false));
+        assertThat(Attributes.isImmutable(new Date()), is(false));
+        assertThat(Attributes.isImmutable(new ArrayList<String>()), is(false));
+        assertThat(Attributes.isImmutable(new HashMap<String, String>()), is(false));
+    }
+
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.aerospike;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static us.swcraft.springframework.session.aerospike.PersistentSessionAerospike.SESSION_ATTRIBUTES_BIN;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URL;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EventObject;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aerospike.client.Bin;
+
+import us.swcraft.springframework.session.aerospike.config.annotation.web.http.EnableAerospikeHttpSession;
+import us.swcraft.springframework.session.store.SessionAttributesTransformer;
+import us.swcraft.springframework.session.store.aerospike.InMemoryAerospikeOperations;
+import us.swcraft.springframework.session.store.aerospike.shard.Shard;
+import us.swcraft.springframework.session.store.aerospike.shard.ShardedAerospikeOperations;
+
+public class SessionPayloadCaptureTest {
+
+    @Configuration
+    @EnableAerospikeHttpSession(inMemoryStore = true)
+    static class Config {
+    }
+
+    static class LoginEvent extends EventObject {
+
+        private static final long serialVersionUID = 1L;
+
+        LoginEvent(final Object source) {
+            super(source);
+        }
+
+    }
+
+    static class Principal implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+
+        private final List<String> roles;
+
+        private final int level;
+
+        Principal(final String name, final List<String> roles, final int level) {
+            this.name = name;
+            this.roles = roles;
+            this.level = level;
+        }
+    }
+
+    @Test
+    public void readCorpus() throws IOException {
+        final File corpus = File.createTempFile("sessions", ".corpus");
+        corpus.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(corpus))) {
+            out.writeInt(SessionPayloadCapture.MAGIC);
+            out.writeInt(2);
+            out.write(new byte[] { 1, 2 });
+            out.writeInt(0);
+        }
+
+        final List<byte[]> payloads = SessionPayloadCapture.readCorpus(corpus);
+        assertThat(payloads.size(), is(2));
+        assertThat(payloads.get(0)[1], is((byte) 2));
+        assertThat(payloads.get(1).length, is(0));
+    }
+
+    @Test
+    public void notCorpus() throws IOException {
+        final File file = File.createTempFile("sessions", ".corpus");
+        file.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(42);
+        }
+        assertThrows(IOException.class, () -> SessionPayloadCapture.readCorpus(file));
+    }
+
+    @Test
+    public void invalidSampleRate() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SessionPayloadCapture(new File("sessions.corpus"), 0, 10));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void anonymizeNestedValues() {
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("user", "john@example.com");
+        final Map<String, Object> profile = new HashMap<>();
+        profile.put("email", "john@example.com");
+        profile.put("age", 42);
+        profile.put("password", "secret".toCharArray());
+        attributes.put("profile", profile);
+        attributes.put("tags", new HashSet<>(Arrays.asList("red", "green", "blue")));
+        attributes.put("history", Collections.unmodifiableList(Arrays.asList("/home", "/cart")));
+        attributes.put("principal", new Principal("john", new ArrayList<>(Arrays.asList("ADMIN", "USER")), 3));
+
+        final Map<String, Object> anonymized = new PayloadAnonymizer().anonymize(attributes);
+
+        assertThat(anonymized.keySet(), is(attributes.keySet()));
+        final String user = (String) anonymized.get("user");
+        assertThat(user.length(), is("john@example.com".length()));
+        assertThat(user, not("john@example.com"));
+
+        // nested map keys are masked as well
+        final Map<String, Object> anonymizedProfile = (Map<String, Object>) anonymized.get("profile");
+        assertThat(anonymizedProfile.size(), is(3));
+        assertThat(anonymizedProfile.containsKey("email"), is(false));
+        assertThat(anonymizedProfile.containsValue(user), is(true));
+        assertThat(anonymizedProfile.containsValue(42), is(true));
+        for (Object value : anonymizedProfile.values()) {
+            if (value instanceof char[]) {
+                assertThat(((char[]) value).length, is(6));
+                assertThat(new String((char[]) value), not("secret"));
+            }
+        }
+
+        final Set<String> tags = (Set<String>) anonymized.get("tags");
+        assertThat(tags.size(), is(3));
+        assertThat(tags.contains("red"), is(false));
+
+        final List<String> history = (List<String>) anonymized.get("history");
+        assertThat(history.size(), is(2));
+        assertThat(history.get(0).length(), is(5));
+        assertThat(history.contains("/home"), is(false));
+
+        final Principal principal = (Principal) anonymized.get("principal");
+        assertThat(principal.name.length(), is(4));
+        assertThat(principal.name, not("john"));
+        assertThat(principal.roles.size(), is(2));
+        assertThat(principal.roles.contains("ADMIN"), is(false));
+        assertThat(principal.level, is(3));
+    }
+
+    @Test
+    public void jdkTypesOutsideAllowlistAreNotAnonymized() throws Exception {
+        final Object[] kept = { 42L, new BigDecimal("1.5"), UUID.randomUUID(), Locale.CANADA, new Date(),
+                Instant.now(), LocalDate.now(), TimeUnit.SECONDS };
+        for (Object value : kept) {
+            final Map<String, Object> attributes = new HashMap<>();
+            attributes.put("value", value);
+            assertThat(new PayloadAnonymizer().anonymize(attributes).get("value"), is(value));
+        }
+
+        final Object[] rejected = { Optional.of("john"), new AtomicReference<>("john"), new URI("http://john@host"),
+                new URL("http://john@host"), new X500Principal("CN=john"), new EventObject("john") };
+        for (Object value : rejected) {
+            final Map<String, Object> attributes = new HashMap<>();
+            attributes.put("value", Collections.singletonList(value));
+            assertThrows(IllegalStateException.class, () -> new PayloadAnonymizer().anonymize(attributes),
+                    value.getClass().getName());
+        }
+        // application class extending JDK class with state
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("event", new LoginEvent("john"));
+        assertThrows(IllegalStateException.class, () -> new PayloadAnonymizer().anonymize(attributes));
+    }
+
+    @Test
+    public void captureDecoratedStore() throws IOException {
+        final File corpus = File.createTempFile("sessions", ".corpus");
+        corpus.deleteOnExit();
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(Config.class)) {
+            final SessionAttributesTransformer transformer = context.getBean(SessionAttributesTransformer.class);
+            final ShardedAerospikeOperations store = new ShardedAerospikeOperations(
+                    Arrays.asList(new Shard("a", new InMemoryAerospikeOperations(), 1),
+                            new Shard("b", new InMemoryAerospikeOperations(), 1)));
+            final SessionPayloadCapture capture = new SessionPayloadCapture(corpus, 1, 2);
+            ReflectionTestUtils.setField(capture, "aerospikeOperations", store);
+            ReflectionTestUtils.setField(capture, "transformer", transformer);
+            capture.init();
+
+            for (int i = 0; i < 3; i++) {
+                final Map<String, Object> attributes = new HashMap<>();
+                attributes.put("user", "user" + i);
+                store.persist("session" + i, new Bin(SESSION_ATTRIBUTES_BIN, transformer.marshall(attributes)));
+                store.fetch("session" + i);
+            }
+            capture.close();
+
+            final List<byte[]> payloads = SessionPayloadCapture.readCorpus(corpus);
+            assertThat(payloads.size(), is(2));
+            for (byte[] payload : payloads) {
+                final Object user = transformer.unmarshal(payload).get("user");
+                assertThat(user, instanceOf(String.class));
+                assertThat(((String) user).startsWith("user"), is(false));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.aerospike;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.client.Bin;
+
+import us.swcraft.springframework.session.model.MarshalledAttribute;
+import us.swcraft.springframework.session.model.StoreMetadata;
+import us.swcraft.springframework.session.store.SessionAttributesTransformer;
+import us.swcraft.springframework.session.store.SizeLimitPolicy;
+import us.swcraft.springframework.session.store.aerospike.InMemoryAerospikeOperations;
+
+public class SessionSizeGuardTest {
+
+    private final StoreMetadata metadata = new StoreMetadata();
+
+    private final InMemoryAerospikeOperations store = new InMemoryAerospikeOperations();
+
+    private final List<SessionSizeLimitEvent> events = new ArrayList<>();
+
+    private final SessionSizeGuard guard = new SessionSizeGuard(this, metadata, store, new SizeTransformer(),
+            e -> events.add((SessionSizeLimitEvent) e));
+
+    @Test
+    public void rejectOnSet() {
+        metadata.setMaxAttributeBytes(10);
+        metadata.setAttributeSizePolicy(SizeLimitPolicy.REJECT);
+        guard.checkAttribute("small", new byte[10]);
+        assertThrows(IllegalArgumentException.class, () -> guard.checkAttribute("large", new byte[11]));
+
+        // drop policy is applied on save
+        metadata.setAttributeSizePolicy(SizeLimitPolicy.DROP);
+        guard.checkAttribute("large", new byte[11]);
+    }
+
+    @Test
+    public void dropAttribute() {
+        metadata.setMaxAttributeBytes(10);
+        final Map<String, Object> attrs = attrs(5, 20);
+        final byte[] payload = guard.marshall("s1", attrs, Collections.emptyMap());
+        assertThat(payload.length, is(5));
+        assertThat(attrs.containsKey("a20"), is(false));
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0).getAttributeName(), is("a20"));
+        assertThat(events.get(0).getSize(), is(20));
+        assertThat(events.get(0).getPolicy(), is(SizeLimitPolicy.DROP));
+    }
+
+    @Test
+    public void offloadAndRestore() {
+        metadata.setMaxAttributeBytes(10);
+        metadata.setAttributeSizePolicy(SizeLimitPolicy.OFFLOAD);
+        final Map<String, Object> attrs = attrs(5, 20);
+        guard.marshall("s1", attrs, Collections.emptyMap());
+        assertThat(store.hasKey("s1#a20"), is(true));
+        final MarshalledAttribute placeholder = (MarshalledAttribute) attrs.get("a20");
+        assertThat(placeholder.getClassName(), is(OffloadedAttribute.class.getName()));
+
+        final Map<String, Object> loaded = new HashMap<>();
+        loaded.put("a5", new byte[5]);
+        loaded.put("a20", new OffloadedAttribute(byte[].class.getName(), 20));
+        guard.restoreOffloaded("s1", loaded);
+        assertThat(((byte[]) loaded.get("a20")).length, is(20));
+
+        // attribute is small again - side record is deleted
+        final Map<String, MarshalledAttribute> stored = new HashMap<>();
+        stored.put("a20", placeholder);
+        guard.marshall("s1", attrs(5), stored);
+        assertThat(store.hasKey("s1#a20"), is(false));
+
+        // lost offloaded attribute is removed
+        guard.restoreOffloaded("s1", loaded);
+        loaded.put("a20", new OffloadedAttribute(byte[].class.getName(), 20));
+        guard.restoreOffloaded("s1", loaded);
+        assertThat(loaded.containsKey("a20"), is(false));
+    }
+
+    @Test
+    public void deleteOffloaded() {
+        metadata.setMaxAttributeBytes(10);
+        metadata.setAttributeSizePolicy(SizeLimitPolicy.OFFLOAD);
+        final byte[] payload = guard.marshall("s1", attrs(5, 20, 30), Collections.emptyMap());
+        store.persist("s1", new Bin(PersistentSessionAerospike.SESSION_ATTRIBUTES_BIN, payload));
+        store.persist("s2#a20", new Bin(PersistentSessionAerospike.OFFLOADED_CONTENT_BIN, new byte[20]));
+        assertThat(store.hasKey("s1#a20"), is(true));
+        assertThat(store.hasKey("s1#a30"), is(true));
+
+        guard.deleteOffloaded("s1");
+        assertThat(store.hasKey("s1#a20"), is(false));
+        assertThat(store.hasKey("s1#a30"), is(false));
+        assertThat(store.hasKey("s1"), is(true));
+        // side records of other sessions are kept
+        assertThat(store.hasKey("s2#a20"), is(true));
+        // deleted session
+        guard.deleteOffloaded("s3");
+    }
+
+    @Test
+    public void recordLimit() {
+        metadata.setMaxRecordBytes(30);
+        // the largest attributes are dropped until the session fits
+        metadata.setRecordSizePolicy(SizeLimitPolicy.DROP);
+        final Map<String, Object> attrs = attrs(5, 10, 20);
+        final byte[] payload = guard.marshall("s1", attrs, Collections.emptyMap());
+        assertThat(payload.length, is(15));
+        assertThat(attrs.containsKey("a20"), is(false));
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0).getAttributeName(), is("a20"));
+        assertThat(events.get(0).getPolicy(), is(SizeLimitPolicy.DROP));
+    }
+
+    @Test
+    public void recordLimitRejectDropsAttributes() {
+        metadata.setMaxRecordBytes(30);
+        metadata.setRecordSizePolicy(SizeLimitPolicy.REJECT);
+        // attributes of the same size are dropped in name order
+        final Map<String, Object> attrs = attrs(5, 10, 20);
+        attrs.put("b20", new MarshalledAttribute("b20", byte[].class.getName(), new byte[20]));
+        attrs.put("a19", new MarshalledAttribute("a19", byte[].class.getName(), new byte[19]));
+        final byte[] payload = guard.marshall("s1", attrs, Collections.emptyMap());
+        assertThat(payload.length, is(15));
+        assertThat(attrs.keySet(), is(new HashSet<>(Arrays.asList("a5", "a10"))));
+        assertThat(events.size(), is(3));
+        assertThat(events.get(0).getAttributeName(), is("a20"));
+        assertThat(events.get(1).getAttributeName(), is("b20"));
+        assertThat(events.get(2).getAttributeName(), is("a19"));
+        assertThat(events.get(0).getPolicy(), is(SizeLimitPolicy.DROP));
+    }
+
+    @Test
+    public void checkedAttributeIsReused() {
+        metadata.setMaxAttributeBytes(10);
+        metadata.setAttributeSizePolicy(SizeLimitPolicy.REJECT);
+        final MarshalledAttribute checked = guard.checkAttribute("small", new byte[10]);
+        assertThat(checked.getContent().length, is(10));
+
+        // not checked - marshalled on save
+        metadata.setAttributeSizePolicy(SizeLimitPolicy.DROP);
+        assertThat(guard.checkAttribute("small", new byte[10]), nullValue());
+    }
+
+    private static Map<String, Object> attrs(final int... sizes) {
+        final Map<String, Object> attrs = new HashMap<>();
+        for (int size : sizes) {
+            attrs.put("a" + size, new MarshalledAttribute("a" + size, byte[].class.getName(), new byte[size]));
+        }
+        return attrs;
+    }
+
+    /**
+     * Marshalls byte arrays as is, session payload size is sum of attribute
+     * sizes.
+     */
+    private static class SizeTransformer implements SessionAttributesTransformer {
+
+        /**
+         * Attributes of the last marshalled session.
+         */
+        private final Map<String, MarshalledAttribute> stored = new HashMap<>();
+
+        @Override
+        public byte[] marshall(final Map<String, Object> attrs) {
+            int size = 0;
+            stored.clear();
+            for (Object attr : attrs.values()) {
+                final MarshalledAttribute marshalled = (MarshalledAttribute) attr;
+                size += marshalled.getContent().length;
+                stored.put(marshalled.getAttributeName(), marshalled);
+            }
+            return new byte[size];
+        }
+
+        @Override
+        public MarshalledAttribute marshallAttribute(final String name, final Object value) {
+            if (value instanceof OffloadedAttribute) {
+                return new MarshalledAttribute(name, OffloadedAttribute.class.getName(), new byte[1]);
+            }
+            return new MarshalledAttribute(name, byte[].class.getName(), ((byte[]) value).clone());
+        }
+
+        @Override
+        public Object unmarshalAttribute(final MarshalledAttribute attr) {
+            return attr.getContent();
+        }
+
+        @Override
+        public boolean isSerializable(final Object value) {
+            return true;
+        }
+
+        @Override
+        public Map<String, Object> unmarshal(final byte[] attrs) {
+            return new HashMap<>();
+        }
+
+        @Override
+        public Map<String, Object> unmarshal(final byte[] attrs, final Map<String, MarshalledAttribute> marshalledAttrs) {
+            return new HashMap<>();
+        }
+
+        @Override
+        public Map<String, MarshalledAttribute> unmarshalStored(final byte[] attrs) {
+            return new HashMap<>(stored);
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import us.swcraft.springframework.session.model.MarshalledAttribute;
+
+public class AttributeSizeAnalyticsTest {
+
+    private final AttributeSizeAnalytics analytics = new AttributeSizeAnalytics(1, "test");
+
+    @Test
+    public void sizeAndFrequencyByAttribute() {
+        analytics.recordWrite(attributes(attribute("cart", 1000), attribute("user", 100)), 1200);
+        analytics.recordWrite(attributes(attribute("cart", 3000), attribute("user", 100)), 3200);
+        analytics.recordWrite(attributes(attribute("user", 100)), 200);
+        analytics.recordLoad();
+        analytics.recordRead("user", "java.lang.String");
+        analytics.recordRead("user", "java.lang.String");
+
+        assertThat(analytics.getSampledSaves(), is(3L));
+        assertThat(analytics.getSampledLoads(), is(1L));
+        assertThat(analytics.getMeanSessionBytes(), is(1533.3333333333333));
+
+        final List<AttributeSizeStats> stats = analytics.getAttributes();
+        assertThat(stats.size(), is(2));
+        final AttributeSizeStats cart = stats.get(0);
+        assertThat(cart.getName(), is("cart"));
+        assertThat(cart.getSampledWrites(), is(2L));
+        assertThat(cart.getEstimatedWrites(), is(2L));
+        assertThat(cart.getMeanBytes(), is(2000.0));
+        assertThat(cart.getMaxBytes(), is(3000L));
+        assertThat(cart.getP50Bytes(), is(1024L));
+        assertThat(cart.getP99Bytes(), is(4096L));
+        assertThat(cart.getPresence(), is(2.0 / 3));
+        final AttributeSizeStats user = stats.get(1);
+        assertThat(user.getSampledReads(), is(2L));
+        assertThat(user.getPresence(), is(1.0));
+
+        // index and mean record size for every replica
+        assertThat(analytics.projectNamespaceBytes(1000, 2), is(Math.round(1000 * (64 + 1533.3333333333333) * 2)));
+
+        analytics.reset();
+        assertThat(analytics.getAttributes().isEmpty(), is(true));
+    }
+
+    @Test
+    public void estimatesScaledBySampleRate() {
+        analytics.setSampleRate(0.25);
+        analytics.recordWrite(attributes(attribute("a", 10)), 20);
+        assertThat(analytics.getAttributes().get(0).getEstimatedWrites(), is(4L));
+
+        analytics.setSampleRate(0);
+        assertThat(analytics.sample(), is(false));
+    }
+
+    @Test
+    public void trackedAttributesAreLimited() {
+        for (int i = 0; i < AttributeSizeAnalytics.MAX_TRACKED_ATTRIBUTES + 10; i++) {
+            analytics.recordWrite(attributes(attribute("a" + i, 10)), 20);
+        }
+        assertThat(analytics.getAttributes().size(), is(AttributeSizeAnalytics.MAX_TRACKED_ATTRIBUTES + 1));
+    }
+
+    @Test
+    public void registeredAsMXBean() throws Exception {
+        final ObjectName name = new ObjectName(
+                "us.swcraft.springframework.session:type=AttributeSizeAnalytics,name=\"test\"");
+        analytics.register();
+        try {
+            analytics.recordWrite(attributes(attribute("a", 10)), 20);
+            assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "SampledSaves"), is(1L));
+        } finally {
+            analytics.unregister();
+        }
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name), is(false));
+    }
+
+    private static MarshalledAttribute attribute(final String name, final int size) {
+        return new MarshalledAttribute(name, "java.lang.String", new byte[size]);
+    }
+
+    private static Map<String, MarshalledAttribute> attributes(final MarshalledAttribute... attributes) {
+        final Map<String, MarshalledAttribute> map = new HashMap<>();
+        for (MarshalledAttribute attribute : attributes) {
+            map.put(attribute.getAttributeName(), attribute);
+        }
+        return map;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import us.swcraft.springframework.session.metrics.SessionStoreMetrics.Outcome;
+import us.swcraft.springframework.session.metrics.SessionStoreMetrics.StoreOperation;
+
+public class MicrometerSessionStoreMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final SessionStoreMetrics metrics = new MicrometerSessionStoreMetrics(registry);
+
+    @Test
+    public void storeOperationsByOutcome() {
+        metrics.recordStoreOperation(StoreOperation.FETCH, Outcome.SUCCESS, 1000000L);
+        metrics.recordStoreOperation(StoreOperation.FETCH, Outcome.SUCCESS, 3000000L);
+        metrics.recordStoreOperation(StoreOperation.FETCH, Outcome.NOT_FOUND, 1000000L);
+        metrics.recordStoreOperation(StoreOperation.PERSIST, Outcome.CONFLICT, 1000000L);
+
+        assertThat(registry.get("ssa.store.operations").tag("operation", "fetch").tag("outcome", "success").timer()
+                .count(), is(2L));
+        assertThat(registry.get("ssa.store.operations").tag("operation", "fetch").tag("outcome", "success").timer()
+                .totalTime(TimeUnit.MILLISECONDS), is(4.0));
+        assertThat(registry.get("ssa.store.operations").tag("operation", "fetch").tag("outcome", "not.found")
+                .timer().count(), is(1L));
+        assertThat(registry.get("ssa.store.operations").tag("operation", "persist").tag("outcome", "conflict")
+                .timer().count(), is(1L));
+        assertThat(registry.get("ssa.store.operations").tag("operation", "query").tag("outcome", "error").timer()
+                .count(), is(0L));
+    }
+
+    @Test
+    public void sessionSizeAndCounters() {
+        metrics.recordMarshall(1000L, 512, 4);
+        metrics.recordUnmarshal(1000L, 2048, 8);
+        metrics.transientSessionSkipped();
+        metrics.deserializationFailure();
+        metrics.deserializationFailure();
+
+        assertThat(registry.get("ssa.session.size").tag("operation", "marshall").summary().totalAmount(), is(512.0));
+        assertThat(registry.get("ssa.session.attributes").tag("operation", "unmarshal").summary().max(), is(8.0));
+        assertThat(registry.get("ssa.transformer.marshall").timer().count(), is(1L));
+        assertThat(registry.get("ssa.session.transient.skipped").counter().count(), is(1.0));
+        assertThat(registry.get("ssa.deserialization.failures").counter().count(), is(2.0));
+    }
+
+    @Test
+    public void executorGauges() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new SynchronousQueue<>());
+        try {
+            metrics.monitorExecutor("test", executor);
+            metrics.callerRunsFallback();
+            assertThat(registry.get("ssa.executor.active").tag("name", "test").gauge().value(), is(0.0));
+            assertThat(registry.get("ssa.executor.queued").tag("name", "test").gauge().value(), is(0.0));
+            assertThat(registry.get("ssa.executor.caller.runs").counter().count(), is(1.0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class SessionStoreEventsTest {
+
+    @Test
+    public void notRecordedWithoutRecording() {
+        assertThat(SessionStoreEvents.beginLoad(), nullValue());
+        assertThat(SessionStoreEvents.beginSave(), nullValue());
+        // null event is ignored
+        SessionStoreEvents.commitLoad(null, "id", true, 1, 1, 1, 1);
+    }
+
+    @Test
+    public void recordedWithShippedSettings() throws Exception {
+        final Configuration configuration;
+        try (Reader reader = new InputStreamReader(
+                getClass().getResourceAsStream("/META-INF/jfr/spring-session-aerospike.jfc"),
+                StandardCharsets.UTF_8)) {
+            configuration = Configuration.create(reader);
+        }
+        final File dump = File.createTempFile("ssa", ".jfr");
+        try (Recording recording = new Recording(configuration)) {
+            recording.enable("us.swcraft.session.SessionLoad").withThreshold(Duration.ZERO);
+            recording.start();
+
+            final Object load = SessionStoreEvents.beginLoad();
+            assertThat(load, notNullValue());
+            SessionStoreEvents.commitLoad(load, "session-1", true, 512, 3, 2000L, 1000L);
+            // below 2 ms threshold
+            SessionStoreEvents.commitMarshall(SessionStoreEvents.beginMarshall(), false, 512, 3);
+            SessionStoreEvents.commitSweep(SessionStoreEvents.beginSweep(), 7, 3000L);
+
+            recording.stop();
+            recording.dump(dump.toPath());
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(dump.toPath());
+            assertThat(events.size(), is(2));
+            for (RecordedEvent event : events) {
+                if (event.getEventType().getName().equals("us.swcraft.session.SessionLoad")) {
+                    assertThat(event.getInt("sessionIdHash"), is("session-1".hashCode()));
+                    assertThat(event.getInt("bytes"), is(512));
+                    assertThat(event.getDuration("storeLatency"), is(Duration.ofNanos(2000L)));
+                } else {
+                    assertThat(event.getEventType().getName(), is("us.swcraft.session.ExpiredSessionSweep"));
+                    assertThat(event.getInt("expiredSessions"), is(7));
+                }
+            }
+        } finally {
+            dump.delete();
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.model;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class SessionSnapshotTest {
+
+    @Test
+    public void attributesAreNotCopied() {
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("a", "value");
+        final Map<String, MarshalledAttribute> stored = new HashMap<>();
+        stored.put("a", new MarshalledAttribute("a", String.class.getName(), new byte[] { 1, 2 }));
+
+        final SessionSnapshot snapshot = new SessionSnapshot.Builder("id").attributes(attributes)
+                .storedAttributes(stored).dirtyAttributes(Collections.singleton("b")).build();
+
+        assertThat(snapshot.getSessionAttrs(), sameInstance(attributes));
+        assertThat(snapshot.getStoredAttrs(), sameInstance(stored));
+        assertThat(snapshot.isDirty("a"), is(false));
+        assertThat(snapshot.isDirty("b"), is(true));
+    }
+
+    @Test
+    public void addedAttributeDoesNotChangeAdoptedMap() {
+        final Map<String, Object> attributes = Collections.singletonMap("a", "value");
+
+        final SessionSnapshot snapshot = new SessionSnapshot.Builder("id").attributes(attributes)
+                .addAattribute("b", 1).build();
+
+        assertThat(attributes.size(), is(1));
+        assertThat(snapshot.getSessionAttrs().size(), is(2));
+        // all attributes are dirty by default
+        assertThat(snapshot.isDirty("a"), is(true));
+    }
+
+    @Test
+    public void marshalledContentIsShared() {
+        final byte[] content = { 1, 2, 3 };
+        final MarshalledAttribute attribute = new MarshalledAttribute("a", String.class.getName(), content);
+        assertThat(attribute.getContent(), sameInstance(content));
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+import com.aerospike.client.query.IndexType;
+
+import us.swcraft.springframework.session.store.aerospike.AerospikeOperations;
+
+public class AttributeDictionaryTest {
+
+    private final RecordStore store = new RecordStore();
+
+    @Test
+    public void namesAreSharedBetweenNodes() {
+        final AttributeDictionary node1 = new AttributeDictionary(store);
+        final AttributeDictionary node2 = new AttributeDictionary(store);
+
+        assertThat(node1.ensure(Arrays.asList("cart", "java.util.ArrayList")), is(true));
+        assertThat(node1.idOf("cart"), is(0));
+        assertThat(node1.idOf("java.util.ArrayList"), is(1));
+
+        // node2 has stale (empty) dictionary - CAS fails and it reloads
+        assertThat(node2.ensure(Arrays.asList("user", "cart")), is(true));
+        assertThat(node2.idOf("cart"), is(0));
+        assertThat(node2.idOf("user"), is(2));
+
+        // unknown id triggers refresh
+        assertThat(node1.nameOf(2), is("user"));
+        assertThat(node1.getEpoch(), is(node2.getEpoch()));
+        assertThat(node1.getEpoch(), not(0));
+        assertThat(store.generation, is(2));
+    }
+
+    @Test
+    public void unknownIdAndEpoch() {
+        final AttributeDictionary dictionary = new AttributeDictionary(store);
+        dictionary.ensure(Collections.singleton("cart"));
+        assertThrows(SerializationException.class, () -> dictionary.nameOf(5));
+        assertThrows(SerializationException.class, () -> dictionary.checkEpoch(dictionary.getEpoch() + 1));
+        dictionary.checkEpoch(dictionary.getEpoch());
+    }
+
+    @Test
+    public void lookupMissesAreRateLimited() throws Exception {
+        final AttributeDictionary dictionary = new AttributeDictionary(store);
+        dictionary.setRefreshInterval(20);
+        dictionary.ensure(Collections.singleton("cart"));
+
+        // lost epoch is looked up once
+        final int lostEpoch = dictionary.getEpoch() + 1;
+        int fetches = store.fetches;
+        for (int i = 0; i < 10; i++) {
+            assertThrows(SerializationException.class, () -> dictionary.checkEpoch(lostEpoch));
+        }
+        assertThat(store.fetches, is(fetches + 1));
+
+        // concurrent misses share refreshes at most once per interval
+        fetches = store.fetches;
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final long start = System.nanoTime();
+        try {
+            final List<Future<?>> misses = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                misses.add(executor.submit(() -> assertThrows(SerializationException.class,
+                        () -> dictionary.nameOf(5))));
+            }
+            for (Future<?> miss : misses) {
+                miss.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat(store.fetches - fetches <= elapsed / 20 + 1, is(true));
+    }
+
+    @Test
+    public void fullDictionary() {
+        final AttributeDictionary dictionary = new AttributeDictionary(store, 2);
+        assertThat(dictionary.ensure(Arrays.asList("a", "b")), is(true));
+        assertThat(dictionary.ensure(Arrays.asList("a", "c")), is(false));
+        assertThat(dictionary.size(), is(2));
+    }
+
+    /**
+     * Single record store with generation check.
+     */
+    private static class RecordStore implements AerospikeOperations<String> {
+        private Map<String, Object> bins;
+        private int generation;
+        private int fetches;
+
+        @Override
+        public synchronized Record fetchUntouched(final String key) {
+            fetches++;
+            return bins == null ? null : new Record(new HashMap<>(bins), generation, -1);
+        }
+
+        @Override
+        public synchronized boolean compareAndSet(final String key, final int expectedGeneration,
+                final Set<Bin> data, final int expiration) {
+            if (expectedGeneration != generation) {
+                return false;
+            }
+            bins = new HashMap<>();
+            for (Bin bin : data) {
+                // server returns integer bins as long
+                final Object value = bin.value.getObject();
+                bins.put(bin.name, value instanceof Integer ? Long.valueOf((Integer) value) : value);
+            }
+            generation++;
+            return true;
+        }
+
+        @Override
+        public boolean hasKey(final String key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(final String key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteBin(final String key, final String binName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteAll() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void persist(final String key, final Bin value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void persist(final String key, final Set<Bin> data) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Record fetch(final String key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void createIndex(final String binName, final String indexName, final IndexType indexType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Set<String> fetchRange(final String idBinName, final String indexedBinName, final long begin,
+                final long end) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
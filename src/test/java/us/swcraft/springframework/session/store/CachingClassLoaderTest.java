@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class CachingClassLoaderTest {
+
+    private final CachingClassLoader classLoader = new CachingClassLoader(getClass().getClassLoader(), 2);
+
+    @Test
+    public void resolvedClassesAreCached() throws Exception {
+        assertThat(classLoader.resolve("java.util.ArrayList"), sameInstance(java.util.ArrayList.class));
+        assertThat(classLoader.resolve("java.util.ArrayList"), sameInstance(java.util.ArrayList.class));
+        assertThat(classLoader.resolve("[Ljava.lang.String;"), sameInstance(String[].class));
+        assertThat(classLoader.loadClass("java.util.HashMap"), sameInstance(java.util.HashMap.class));
+        assertThat(classLoader.getCachedClassCount(), is(3));
+    }
+
+    @Test
+    public void missesAreCachedAndBounded() {
+        assertThrows(ClassNotFoundException.class, () -> classLoader.resolve("com.example.Missing1"));
+        assertThrows(ClassNotFoundException.class, () -> classLoader.resolve("com.example.Missing1"));
+        assertThat(classLoader.getCachedMissCount(), is(1));
+        assertThrows(ClassNotFoundException.class, () -> classLoader.resolve("com.example.Missing2"));
+        assertThrows(ClassNotFoundException.class, () -> classLoader.resolve("com.example.Missing3"));
+        assertThat(classLoader.getCachedMissCount(), is(1));
+    }
+
+    @Test
+    public void invalidate() throws Exception {
+        classLoader.resolve("java.util.ArrayList");
+        assertThrows(ClassNotFoundException.class, () -> classLoader.resolve("com.example.Missing"));
+        classLoader.invalidate();
+        assertThat(classLoader.getCachedClassCount(), is(0));
+        assertThat(classLoader.getCachedMissCount(), is(0));
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class PayloadHeaderTest {
+
+    @Test
+    public void writeAndRead() {
+        for (StoreSerializationType type : StoreSerializationType.values()) {
+            for (StoreCompression compression : StoreCompression.values()) {
+                final PayloadHeader header = new PayloadHeader(type, compression);
+                final byte[] bytes = header.toBytes();
+                assertThat(bytes.length, is(PayloadHeader.LENGTH));
+
+                final PayloadHeader restored = PayloadHeader.read(bytes);
+                assertThat(restored, is(header));
+                assertThat(restored.getVersion(), is(PayloadHeader.CURRENT_VERSION));
+                assertThat(restored.getSerializationType(), is(type));
+                assertThat(restored.getCompression(), is(compression));
+            }
+        }
+    }
+
+    @Test
+    public void legacyPayload() {
+        assertThat(PayloadHeader.read(null), nullValue());
+        assertThat(PayloadHeader.read(new byte[] { 1, 2 }), nullValue());
+        assertThat(PayloadHeader.read(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }), nullValue());
+    }
+
+    @Test
+    public void unknownSerializationType() {
+        final byte[] bytes = new PayloadHeader(StoreSerializationType.KRYO, StoreCompression.NONE).toBytes();
+        bytes[4] = 100;
+        assertThrows(SerializationException.class, () -> PayloadHeader.read(bytes));
+    }
+
+    @Test
+    public void unsupportedVersion() {
+        final byte[] bytes = new PayloadHeader(StoreSerializationType.FST, StoreCompression.SNAPPY).toBytes();
+        bytes[3] = PayloadHeader.LATEST_VERSION + 1;
+        assertThrows(SerializationException.class, () -> PayloadHeader.read(bytes));
+    }
+
+}
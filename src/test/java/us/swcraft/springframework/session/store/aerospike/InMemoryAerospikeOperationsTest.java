@@ -0,0 +1,162 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+import com.aerospike.client.query.IndexType;
+
+public class InMemoryAerospikeOperationsTest {
+
+    private final AtomicLong now = new AtomicLong(1000000L);
+
+    private final InMemoryAerospikeOperations store = new InMemoryAerospikeOperations(4, now::get);
+
+    @Test
+    public void binsAndGeneration() {
+        store.persist("k", bins(new Bin("a", "A"), new Bin("n", 1)));
+        store.persist("k", new Bin("b", "B"));
+        assertThat(store.hasKey("k"), is(true));
+
+        Record record = store.fetchUntouched("k");
+        assertThat(record.generation, is(2));
+        assertThat(record.getString("a"), is("A"));
+        assertThat(record.getString("b"), is("B"));
+        assertThat(record.getLong("n"), is(1L));
+
+        // fetch returns record as read and touches it
+        assertThat(store.fetch("k").generation, is(2));
+        store.deleteBin("k", "a");
+        record = store.fetchUntouched("k");
+        assertThat(record.generation, is(4));
+        assertThat(record.getValue("a"), nullValue());
+
+        store.delete("k");
+        assertThat(store.hasKey("k"), is(false));
+        assertThat(store.fetch("k"), nullValue());
+    }
+
+    @Test
+    public void expiration() {
+        store.setExpiration(10);
+        store.persist("k", new Bin("a", "A"));
+        store.compareAndSet("forever", 0, bins(new Bin("a", "A")), -1);
+
+        now.addAndGet(9000L);
+        // touch resets TTL
+        assertThat(store.fetch("k").getString("a"), is("A"));
+        now.addAndGet(9000L);
+        assertThat(store.hasKey("k"), is(true));
+        now.addAndGet(1000L);
+        assertThat(store.hasKey("k"), is(false));
+        assertThat(store.fetchUntouched("forever").expiration, is(0));
+        assertThat(store.size(), is(1));
+    }
+
+    @Test
+    public void defaultTtl() {
+        // namespace default is never expire
+        store.persist("forever", new Bin("a", "A"));
+        store.setDefaultTtl(10);
+        store.compareAndSet("default", 0, bins(new Bin("a", "A")), 0);
+        store.compareAndSet("never", 0, bins(new Bin("a", "A")), -1);
+        store.compareAndSet("short", 0, bins(new Bin("a", "A")), 5);
+
+        now.addAndGet(4000L);
+        // keep current TTL on update
+        assertThat(store.compareAndSet("short", 1, bins(new Bin("a", "B")), -2), is(true));
+        now.addAndGet(1000L);
+        assertThat(store.hasKey("short"), is(false));
+        now.addAndGet(5000L);
+        assertThat(store.hasKey("default"), is(false));
+        assertThat(store.hasKey("never"), is(true));
+        assertThat(store.hasKey("forever"), is(true));
+        assertThrows(IllegalArgumentException.class,
+                () -> store.compareAndSet("k", 0, bins(new Bin("a", "A")), -3));
+    }
+
+    @Test
+    public void compareAndSet() {
+        assertThat(store.compareAndSet("k", 1, bins(new Bin("v", 1)), -1), is(false));
+        assertThat(store.compareAndSet("k", 0, bins(new Bin("v", 1)), -1), is(true));
+        assertThat(store.compareAndSet("k", 0, bins(new Bin("v", 2)), -1), is(false));
+        assertThat(store.compareAndSet("k", 1, bins(new Bin("v", 2)), -1), is(true));
+        assertThat(store.fetchUntouched("k").getLong("v"), is(2L));
+    }
+
+    @Test
+    public void rangeQuery() {
+        store.persist("s1", bins(new Bin("id", "s1"), new Bin("expired", 100L)));
+        store.persist("s2", bins(new Bin("id", "s2"), new Bin("expired", 200L)));
+        // no index - nothing found
+        assertThat(store.fetchRange("id", "expired", 0L, 1000L).isEmpty(), is(true));
+
+        store.createIndex("expired", "expired_idx", IndexType.NUMERIC);
+        store.persist("s3", bins(new Bin("id", "s3"), new Bin("expired", 300L)));
+        assertThat(store.fetchRange("id", "expired", 0L, 250L), is(set("s1", "s2")));
+        assertThat(store.fetchRange("id", "expired", 200L, 300L), is(set("s2", "s3")));
+
+        // updated and removed records are reindexed
+        store.persist("s1", new Bin("expired", 400L));
+        store.delete("s2");
+        assertThat(store.fetchRange("id", "expired", 0L, 1000L), is(set("s1", "s3")));
+        assertThat(store.fetchRange("id", "expired", 0L, 350L), is(set("s3")));
+    }
+
+    @Test
+    public void concurrentCompareAndSet() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 800; i++) {
+            executor.execute(() -> {
+                while (true) {
+                    final Record current = store.fetchUntouched("counter");
+                    final int generation = current == null ? 0 : current.generation;
+                    final long value = current == null ? 0 : current.getLong("v");
+                    if (store.compareAndSet("counter", generation, bins(new Bin("v", value + 1)), -1)) {
+                        return;
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS), is(true));
+        assertThat(store.fetchUntouched("counter").getLong("v"), is(800L));
+    }
+
+    private static Set<Bin> bins(final Bin... bins) {
+        return new HashSet<>(Arrays.asList(bins));
+    }
+
+    private static Set<String> set(final String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.fault;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.ResultCode;
+
+import us.swcraft.springframework.session.store.aerospike.InMemoryAerospikeOperations;
+import us.swcraft.springframework.session.store.aerospike.fault.FaultRule.Fault;
+
+public class FaultInjectingAerospikeOperationsTest {
+
+    private final AtomicLong now = new AtomicLong(1000000L);
+
+    private final InMemoryAerospikeOperations store = new InMemoryAerospikeOperations();
+
+    private final Properties scenario = new Properties();
+
+    @BeforeEach
+    public void setUp() {
+        store.init();
+        store.persist("k", new Bin("a", "A"));
+    }
+
+    private FaultInjectingAerospikeOperations operations() {
+        return new FaultInjectingAerospikeOperations(store, new FaultInjector(scenario, now::get));
+    }
+
+    @Test
+    public void noFaults() {
+        final FaultInjectingAerospikeOperations operations = operations();
+        assertThat(operations.hasKey("k"), is(true));
+        assertThat(operations.fetch("k").getString("a"), is("A"));
+        operations.persist("k", new Bin("b", "B"));
+        assertThat(store.fetchUntouched("k").getString("b"), is("B"));
+    }
+
+    @Test
+    public void errorsPerOperationType() {
+        scenario.setProperty("write.errorRate", "1");
+        final FaultInjectingAerospikeOperations operations = operations();
+
+        // reads pass, writes are lost
+        assertThat(operations.fetchUntouched("k"), notNullValue());
+        operations.persist("k", new Bin("b", "B"));
+        final int generation = store.fetchUntouched("k").generation;
+        assertThat(operations.compareAndSet("k", generation, Collections.singleton(new Bin("b", "B")), 0),
+                is(false));
+        assertThat(store.fetchUntouched("k").getValue("b"), nullValue());
+    }
+
+    @Test
+    public void outageWindow() {
+        scenario.setProperty("all.outageStartSeconds", "10");
+        scenario.setProperty("all.outageSeconds", "5");
+        final FaultInjectingAerospikeOperations operations = operations();
+
+        assertThat(operations.hasKey("k"), is(true));
+        now.addAndGet(10000L);
+        assertThat(operations.hasKey("k"), is(false));
+        assertThat(operations.fetch("k"), nullValue());
+        now.addAndGet(5000L);
+        assertThat(operations.hasKey("k"), is(true));
+    }
+
+    @Test
+    public void timeoutDelaysOperation() {
+        scenario.setProperty("read.timeoutRate", "1");
+        scenario.setProperty("read.timeoutMillis", "50");
+        scenario.setProperty("read.latency", "fixed");
+        scenario.setProperty("read.latencyMillis", "20");
+        final FaultInjector injector = new FaultInjector(scenario, now::get);
+
+        final long start = System.nanoTime();
+        assertThat(injector.inject(OperationType.READ), is(Fault.TIMEOUT));
+        assertThat((System.nanoTime() - start) / 1000000 >= 70, is(true));
+        assertThat(injector.inject(OperationType.WRITE), is(Fault.NONE));
+    }
+
+    @Test
+    public void clientLayerThrowsAerospikeException() {
+        scenario.setProperty("delete.errorRate", "1");
+        scenario.setProperty("delete.errorCode", String.valueOf(ResultCode.KEY_BUSY));
+        final FaultInjector injector = new FaultInjector(scenario, now::get);
+        assertThat(injector.getLayer(), is(FaultInjector.Layer.CLIENT));
+
+        final AerospikeException e = injector.toException(OperationType.DELETE,
+                injector.inject(OperationType.of("delete")));
+        assertThat(e.getResultCode(), is(ResultCode.KEY_BUSY));
+        assertThat(OperationType.of("close"), nullValue());
+        assertThrows(IllegalArgumentException.class, () -> {
+            scenario.setProperty("layer", "network");
+            new FaultInjector(scenario, now::get);
+        });
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.replication;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+
+import us.swcraft.springframework.session.store.aerospike.InMemoryAerospikeOperations;
+
+public class ReplicatedAerospikeOperationsTest {
+
+    private final Cluster east = new Cluster();
+
+    private final Cluster west = new Cluster();
+
+    private final ReplicatedAerospikeOperations eastStore = new ReplicatedAerospikeOperations(east, west);
+
+    private final ReplicatedAerospikeOperations westStore = new ReplicatedAerospikeOperations(west, east);
+
+    @BeforeEach
+    public void setUp() {
+        eastStore.setRetryDelay(10);
+        eastStore.init();
+        westStore.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        eastStore.destroy();
+        westStore.destroy();
+    }
+
+    @Test
+    public void replication() {
+        eastStore.persist("s1", new Bin("a", "A"));
+        eastStore.persist("s1", new Bin("b", "B"));
+        eastStore.deleteBin("s1", "a");
+        assertThat(eastStore.awaitReplication(5000), is(true));
+
+        assertThat(west.fetchUntouched("s1").getString("b"), is("B"));
+        assertThat(west.fetchUntouched("s1").getValue("a"), nullValue());
+
+        eastStore.delete("s1");
+        assertThat(eastStore.awaitReplication(5000), is(true));
+        assertThat(west.hasKey("s1"), is(false));
+    }
+
+    @Test
+    public void remoteSessionIsCopiedOnRead() {
+        // not replicated yet
+        west.persist("s2", new Bin("a", "A"));
+        assertThat(eastStore.fetch("s2").getString("a"), is("A"));
+        assertThat(east.fetchUntouched("s2").getString("a"), is("A"));
+    }
+
+    @Test
+    public void failover() {
+        east.available = false;
+        eastStore.persist("s3", new Bin("a", "A"));
+        assertThat(eastStore.isFailedOver(), is(true));
+        assertThat(west.fetchUntouched("s3").getString("a"), is("A"));
+        assertThat(eastStore.fetch("s3"), notNullValue());
+
+        // replicated back to recovered cluster
+        assertThat(eastStore.getPendingReplications(), is(1));
+        east.available = true;
+        assertThat(eastStore.awaitReplication(5000), is(true));
+        assertThat(east.fetchUntouched("s3").getString("a"), is("A"));
+        eastStore.fetch("s3");
+        assertThat(eastStore.isFailedOver(), is(false));
+    }
+
+    @Test
+    public void failoverOnErrors() throws InterruptedException {
+        eastStore.setProbeInterval(50);
+        west.persist("s4", new Bin("a", "A"));
+        east.failing = true;
+        // read falls back to remote cluster
+        assertThat(eastStore.fetch("s4").getString("a"), is("A"));
+        assertThat(eastStore.isFailedOver(), is(false));
+        eastStore.fetch("s4");
+        eastStore.fetch("s4");
+        assertThat(eastStore.isFailedOver(), is(true));
+
+        // failed local cluster is not used
+        final int failures = east.failures;
+        eastStore.persist("s5", new Bin("a", "B"));
+        assertThat(east.failures, is(failures));
+        assertThat(west.fetchUntouched("s5").getString("a"), is("B"));
+
+        // failed probe keeps remote cluster
+        Thread.sleep(60);
+        assertThat(eastStore.fetch("s5").getString("a"), is("B"));
+        assertThat(east.failures, is(failures + 1));
+        assertThat(eastStore.isFailedOver(), is(true));
+
+        // successful probe recovers
+        east.failing = false;
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (eastStore.isFailedOver() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            eastStore.fetch("s4");
+        }
+        assertThat(eastStore.isFailedOver(), is(false));
+        assertThat(eastStore.awaitReplication(5000), is(true));
+        assertThat(east.fetchUntouched("s5").getString("a"), is("B"));
+    }
+
+    @Test
+    public void coalescingBoundedQueue() {
+        eastStore.destroy();
+        final ReplicatedAerospikeOperations store = new ReplicatedAerospikeOperations(east, west, 2);
+        for (int i = 0; i < 10; i++) {
+            store.persist("s" + (i % 2), new Bin("n", i));
+        }
+        assertThat(store.getPendingReplications(), is(2));
+        store.persist("s3", new Bin("n", 1));
+        assertThat(store.getDroppedCount(), is(1L));
+
+        store.init();
+        assertThat(store.awaitReplication(5000), is(true));
+        store.destroy();
+        assertThat(store.getReplicatedCount(), is(2L));
+        assertThat(west.fetchUntouched("s1").getLong("n"), is(9L));
+    }
+
+    /**
+     * In-process cluster stand-in which can be made unavailable or failing
+     * while it reports itself available.
+     */
+    private static class Cluster extends InMemoryAerospikeOperations {
+
+        private volatile boolean available = true;
+
+        private volatile boolean failing;
+
+        private volatile int failures;
+
+        @Override
+        public boolean isAvailable() {
+            return available;
+        }
+
+        @Override
+        public Record fetch(final String key) {
+            check();
+            return super.fetch(key);
+        }
+
+        @Override
+        public Record fetchUntouched(final String key) {
+            check();
+            return super.fetchUntouched(key);
+        }
+
+        @Override
+        public void persist(final String key, final Bin value) {
+            check();
+            super.persist(key, value);
+        }
+
+        @Override
+        public void persist(final String key, final Set<Bin> data) {
+            check();
+            super.persist(key, data);
+        }
+
+        @Override
+        public boolean compareAndSet(final String key, final int expectedGeneration, final Set<Bin> data,
+                final int expiration) {
+            check();
+            return super.compareAndSet(key, expectedGeneration, data, expiration);
+        }
+
+        private void check() {
+            if (failing) {
+                failures++;
+                throw new AerospikeException(ResultCode.TIMEOUT, "cluster stand-in is failing");
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.shard;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.query.IndexType;
+
+import us.swcraft.springframework.session.store.aerospike.InMemoryAerospikeOperations;
+
+public class ShardedAerospikeOperationsTest {
+
+    private final InMemoryAerospikeOperations a = new InMemoryAerospikeOperations();
+
+    private final InMemoryAerospikeOperations b = new InMemoryAerospikeOperations();
+
+    private final InMemoryAerospikeOperations c = new InMemoryAerospikeOperations();
+
+    @Test
+    public void weightedDistribution() {
+        final ShardedAerospikeOperations sharded = new ShardedAerospikeOperations(
+                Arrays.asList(new Shard("a", a, 1), new Shard("b", b, 3)));
+        final Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 40000; i++) {
+            counts.merge(sharded.shardOf("session-" + i).getName(), 1, Integer::sum);
+        }
+        // 25% and 75% within a few percent
+        assertThat(Math.abs(counts.get("a") - 10000) < 1000, is(true));
+        assertThat(Math.abs(counts.get("b") - 30000) < 1000, is(true));
+    }
+
+    @Test
+    public void addingShardMovesOnlyItsShare() {
+        final ShardedAerospikeOperations two = new ShardedAerospikeOperations(
+                Arrays.asList(new Shard("a", a), new Shard("b", b)));
+        final ShardedAerospikeOperations three = new ShardedAerospikeOperations(
+                Arrays.asList(new Shard("a", a), new Shard("b", b), new Shard("c", c)));
+        int moved = 0;
+        for (int i = 0; i < 30000; i++) {
+            final String key = "session-" + i;
+            final String before = two.shardOf(key).getName();
+            final String after = three.shardOf(key).getName();
+            if (!before.equals(after)) {
+                assertThat(after, is("c"));
+                moved++;
+            }
+        }
+        assertThat(Math.abs(moved - 10000) < 1000, is(true));
+    }
+
+    @Test
+    public void resharding() {
+        final ShardedAerospikeOperations sharded = new ShardedAerospikeOperations(
+                Arrays.asList(new Shard("a", a), new Shard("b", b)));
+        sharded.createIndex("expired", "expired_idx", IndexType.NUMERIC);
+        for (int i = 0; i < 300; i++) {
+            sharded.persist("s" + i, bins(new Bin("sessionId", "s" + i), new Bin("expired", 100L + i)));
+        }
+
+        sharded.reshard(Arrays.asList(new Shard("a", a), new Shard("b", b), new Shard("c", c)));
+        assertThat(sharded.isResharding(), is(true));
+        String movedKey = null;
+        for (int i = 0; i < 300 && movedKey == null; i++) {
+            if ("c".equals(sharded.shardOf("s" + i).getName())) {
+                movedKey = "s" + i;
+            }
+        }
+        assertThat(movedKey, notNullValue());
+        // read from old location
+        assertThat(c.hasKey(movedKey), is(false));
+        assertThat(sharded.fetch(movedKey).getString("sessionId"), is(movedKey));
+        // moved on write
+        sharded.persist(movedKey, new Bin("lastAccessed", 1L));
+        assertThat(c.fetchUntouched(movedKey).getString("sessionId"), is(movedKey));
+        assertThat(c.fetchUntouched(movedKey).getLong("lastAccessed"), is(1L));
+        assertThat(a.hasKey(movedKey) || b.hasKey(movedKey), is(false));
+
+        assertThat(sharded.migrate("sessionId", "expired") > 0, is(true));
+        sharded.finishResharding();
+        assertThat(sharded.fetchRange("sessionId", "expired", 0, Long.MAX_VALUE).size(), is(300));
+        for (int i = 0; i < 300; i++) {
+            final String key = "s" + i;
+            assertThat(sharded.fetch(key), notNullValue());
+            assertThat(sharded.shardOf(key).getOperations().hasKey(key), is(true));
+        }
+        sharded.delete(movedKey);
+        assertThat(sharded.fetch(movedKey), nullValue());
+    }
+
+    private static Set<Bin> bins(final Bin... bins) {
+        return new HashSet<>(Arrays.asList(bins));
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.aerospike.tier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+import com.aerospike.client.query.IndexType;
+
+import us.swcraft.springframework.session.store.aerospike.InMemoryAerospikeOperations;
+
+public class TieredAerospikeOperationsTest {
+
+    private final InMemoryAerospikeOperations hot = new InMemoryAerospikeOperations();
+
+    private final InMemoryAerospikeOperations cold = new InMemoryAerospikeOperations();
+
+    private final TieredAerospikeOperations tiered = new TieredAerospikeOperations(hot, cold, 60000);
+
+    private final byte[] attributes = new byte[4096];
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < attributes.length; i++) {
+            attributes[i] = (byte) (i % 16);
+        }
+        tiered.setMoveInterval(0);
+        tiered.init();
+        tiered.createIndex("expired", "ei", IndexType.NUMERIC);
+        final long now = System.currentTimeMillis();
+        tiered.persist("idle", session("idle", now - 120000));
+        tiered.persist("active", session("active", now));
+    }
+
+    @Test
+    public void idleSessionIsMovedAndRecompressed() {
+        assertThat(tiered.moveIdle(), is(1));
+
+        assertThat(hot.fetchUntouched("idle").getValue("attributes"), nullValue());
+        final byte[] stored = (byte[]) cold.fetchUntouched("idle").getValue("attributes");
+        assertThat(stored.length < attributes.length / 4, is(true));
+        assertThat(cold.hasKey("active"), is(false));
+        // both tiers are swept
+        assertThat(tiered.fetchRange("sessionId", "expired", 0, Long.MAX_VALUE).size(), is(2));
+
+        final Record record = tiered.fetch("idle");
+        assertThat(Arrays.equals((byte[]) record.getValue("attributes"), attributes), is(true));
+        assertThat(record.getString("sessionId"), is("idle"));
+        assertThat(hot.fetchUntouched("idle").getValue(TieredAerospikeOperations.COLD_BIN), nullValue());
+        assertThat(cold.hasKey("idle"), is(false));
+        assertThat(tiered.moveIdle(), is(1));
+    }
+
+    @Test
+    public void writeAfterMoveIsKept() {
+        tiered.moveIdle();
+        // session fetched before the move is saved after it
+        tiered.persist("idle", new Bin("lastAccessed", 42L));
+
+        final Record untouched = tiered.fetchUntouched("idle");
+        assertThat(untouched.getLong("lastAccessed"), is(42L));
+        final Record record = tiered.fetch("idle");
+        assertThat(record.getLong("lastAccessed"), is(42L));
+        assertThat(Arrays.equals((byte[]) record.getValue("attributes"), attributes), is(true));
+    }
+
+    @Test
+    public void deleteRemovesBothTiers() {
+        tiered.moveIdle();
+        tiered.delete("idle");
+        assertThat(hot.hasKey("idle"), is(false));
+        assertThat(cold.hasKey("idle"), is(false));
+        assertThat(tiered.fetch("idle"), nullValue());
+    }
+
+    @Test
+    public void coldSetInSameNamespace() {
+        final Set<String> indexNames = new HashSet<>();
+        final NamespaceSet hotSet = new NamespaceSet(indexNames);
+        final NamespaceSet coldSet = new NamespaceSet(indexNames);
+        final TieredAerospikeOperations store = new TieredAerospikeOperations(hotSet, coldSet, 60000);
+        store.setMoveInterval(0);
+        store.init();
+        store.createIndex("expired", "ei", IndexType.NUMERIC);
+        final long now = System.currentTimeMillis();
+        store.persist("idle", session("idle", now - 120000));
+        store.persist("active", session("active", now));
+
+        assertThat(store.moveIdle(), is(1));
+        assertThat(coldSet.hasKey("idle"), is(true));
+        // expired session is found in cold set
+        assertThat(store.fetchRange("sessionId", "expired", 0, Long.MAX_VALUE).size(), is(2));
+        assertThat(indexNames, is(new HashSet<>(Arrays.asList("lai", "ei", "ei_cold"))));
+    }
+
+    private Set<Bin> session(final String id, final long lastAccessed) {
+        return new HashSet<>(Arrays.asList(new Bin("sessionId", id), new Bin("lastAccessed", lastAccessed),
+                new Bin("expired", lastAccessed + 1800000), new Bin("attributes", attributes)));
+    }
+
+    /**
+     * Set stand-in sharing index names with other sets of the namespace.
+     * Index with a name already used in the namespace is not created, as
+     * "index already exists" error is ignored by the template.
+     */
+    private static class NamespaceSet extends InMemoryAerospikeOperations {
+
+        private final Set<String> indexNames;
+
+        NamespaceSet(final Set<String> indexNames) {
+            this.indexNames = indexNames;
+        }
+
+        @Override
+        public void createIndex(final String binName, final String indexName, final IndexType indexType) {
+            if (indexNames.add(indexName)) {
+                super.createIndex(binName, indexName, indexType);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.codec;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Locale;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import us.swcraft.springframework.session.store.SerializationException;
+
+public class AttributeCodecRegistryTest {
+
+    private final AttributeCodecRegistry registry = new AttributeCodecRegistry();
+
+    @Test
+    public void builtInTypes() {
+        final Object[] values = { "DEADBEF", "", "Gr\u00FC\u00DFe \uD83D\uDE00 \u043F\u0440\u0438\u0432\u0435\u0442",
+                Boolean.TRUE, Boolean.FALSE, 0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, 42L, Long.MIN_VALUE,
+                Long.MAX_VALUE, 3.14d, 2.5f, (short) -7, (byte) 5, 'x', new byte[] { 1, 2, 3 }, UUID.randomUUID(),
+                Locale.CANADA_FRENCH, new Locale("no", "NO", "NY"), new Date(), new BigDecimal("-12345.6789"),
+                new BigInteger("123456789012345678901234567890") };
+        for (Object value : values) {
+            final byte[] encoded = registry.encode(value);
+            assertThat(registry.canDecode(encoded), is(true));
+            assertThat(registry.decode(encoded), is(value));
+        }
+    }
+
+    @Test
+    public void unpairedSurrogateIsLeftToSerializer() {
+        for (String value : new String[] { "\uD800", "a\uDC00", "ab\uD83D", "\uDE00\uD83D" }) {
+            assertThat(registry.encode(value), nullValue());
+        }
+        // output is reused after the failure
+        assertThat(registry.decode(registry.encode("abc")), is("abc"));
+    }
+
+    @Test
+    public void compactEncoding() {
+        assertThat(registry.encode(Boolean.TRUE).length, is(2));
+        assertThat(registry.encode(1L).length, is(2));
+        assertThat(registry.encode("abc").length, is(5));
+    }
+
+    @Test
+    public void utf8MatchesJdkEncoding() {
+        final String value = "a\u00E9\u20AC\uD83D\uDE00z";
+        final byte[] encoded = registry.encode(value);
+        final byte[] jdk = value.getBytes(StandardCharsets.UTF_8);
+        assertThat(encoded.length, is(jdk.length + 2));
+        for (int i = 0; i < jdk.length; i++) {
+            assertThat(encoded[i + 2], is(jdk[i]));
+        }
+    }
+
+    @Test
+    public void unknownType() {
+        assertThat(registry.canEncode(new ArrayList<>()), is(false));
+        assertThat(registry.encode(new ArrayList<>()), nullValue());
+        assertThat(registry.encode(null), nullValue());
+    }
+
+    @Test
+    public void unknownTag() {
+        final byte[] content = { (byte) 200, 1, 2 };
+        assertThat(registry.canDecode(content), is(false));
+        assertThrows(SerializationException.class, () -> registry.decode(content));
+    }
+
+    @Test
+    public void truncatedContent() {
+        final byte[] encoded = registry.encode(UUID.randomUUID());
+        final byte[] truncated = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        assertThrows(SerializationException.class, () -> registry.decode(truncated));
+    }
+
+    @Test
+    public void customCodec() {
+        registry.register(new PointCodec());
+        final Point point = new Point(-3, 7);
+        final byte[] encoded = registry.encode(point);
+        assertThat(encoded[0], is((byte) 200));
+        final Point restored = (Point) registry.decode(encoded);
+        assertThat(restored.x, is(-3));
+        assertThat(restored.y, is(7));
+    }
+
+    @Test
+    public void duplicateRegistration() {
+        registry.register(new PointCodec());
+        assertThrows(IllegalArgumentException.class, () -> registry.register(new PointCodec()));
+    }
+
+    @Test
+    public void reservedTag() {
+        assertThrows(IllegalArgumentException.class, () -> registry.register(new AttributeCodec<Point>() {
+            public int getTag() {
+                return AttributeCodecRegistry.SERIALIZER_TAG;
+            }
+
+            public Class<Point> getType() {
+                return Point.class;
+            }
+
+            public void write(Point value, CodecOutput out) {
+            }
+
+            public Point read(CodecInput in) {
+                return null;
+            }
+        }));
+    }
+
+    static class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    static class PointCodec implements AttributeCodec<Point> {
+        public int getTag() {
+            return 200;
+        }
+
+        public Class<Point> getType() {
+            return Point.class;
+        }
+
+        public void write(Point value, CodecOutput out) {
+            out.writeSignedVarInt(value.x);
+            out.writeSignedVarInt(value.y);
+        }
+
+        public Point read(CodecInput in) {
+            return new Point(in.readSignedVarInt(), in.readSignedVarInt());
+        }
+    }
+
+}
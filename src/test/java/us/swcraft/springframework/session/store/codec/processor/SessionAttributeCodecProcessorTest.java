@@ -0,0 +1,211 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.codec.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+
+import us.swcraft.springframework.session.store.codec.AttributeCodecRegistry;
+
+public class SessionAttributeCodecProcessorTest {
+
+    private static final String CART = "package sample;\n"
+            + "import us.swcraft.springframework.session.store.codec.SessionAttributeCodec;\n"
+            + "@SessionAttributeCodec(tag = 40)\n"
+            + "public class Cart implements java.io.Serializable {\n"
+            + "    public enum Status { OPEN, CLOSED }\n"
+            + "    @SessionAttributeCodec(tag = 41)\n"
+            + "    public static class Item { String sku; boolean gift;\n"
+            + "        public String toString() { return sku + \":\" + gift; } }\n"
+            + "    String owner;\n"
+            + "    private int count;\n"
+            + "    private Long total;\n"
+            + "    java.math.BigDecimal price;\n"
+            + "    java.util.UUID id;\n"
+            + "    Status status;\n"
+            + "    byte[] token;\n"
+            + "    Item item;\n"
+            + "    Cart next;\n"
+            + "    transient Object ignored;\n"
+            + "    public int getCount() { return count; }\n"
+            + "    public void setCount(int count) { this.count = count; }\n"
+            + "    public Long getTotal() { return total; }\n"
+            + "    public void setTotal(Long total) { this.total = total; }\n"
+            + "    public static Cart sample() {\n"
+            + "        Cart c = new Cart(); c.owner = \"vlad\"; c.count = -3; c.price = new java.math.BigDecimal(\"12.50\");\n"
+            + "        c.id = new java.util.UUID(1, 2); c.status = Status.CLOSED; c.token = new byte[] { 1, 2 };\n"
+            + "        c.item = new Item(); c.item.sku = \"A-1\"; c.item.gift = true;\n"
+            + "        c.next = new Cart(); c.next.owner = \"next\"; return c;\n"
+            + "    }\n"
+            + "    public String toString() { return owner + \",\" + count + \",\" + total + \",\" + price + \",\" + id\n"
+            + "        + \",\" + status + \",\" + java.util.Arrays.toString(token) + \",\" + item + \",\" + next; }\n"
+            + "}\n";
+
+    private static final String GRAPH = "package sample;\n"
+            + "import us.swcraft.springframework.session.store.codec.SessionAttributeCodec;\n"
+            + "public class Graph {\n"
+            + "    @SessionAttributeCodec(tag = 43)\n"
+            + "    public static class Node { String name; Edge edge;\n"
+            + "        public String toString() { return edge == null ? name : name + \"->\" + edge.target; } }\n"
+            + "    @SessionAttributeCodec(tag = 44)\n"
+            + "    public static class Edge { Node target; }\n"
+            + "    static Node node(String name, Node next) {\n"
+            + "        Node n = new Node(); n.name = name;\n"
+            + "        if (next != null) { n.edge = new Edge(); n.edge.target = next; }\n"
+            + "        return n;\n"
+            + "    }\n"
+            + "    public static Node sample() { return node(\"a\", node(\"b\", node(\"c\", null))); }\n"
+            + "}\n";
+
+    private static final String ORDER = "package sample;\n"
+            + "import us.swcraft.springframework.session.store.codec.SessionAttributeCodec;\n"
+            + "@SessionAttributeCodec(tag = 45)\n"
+            + "public class Order implements java.io.Serializable {\n"
+            + "    @SessionAttributeCodec(tag = 46)\n"
+            + "    public static class Line implements java.io.Serializable { String sku; }\n"
+            + "    public static class GiftLine extends Line { String message; }\n"
+            + "    Line line;\n"
+            + "    public static Order sample(boolean gift) {\n"
+            + "        Order o = new Order(); o.line = gift ? new GiftLine() : new Line(); o.line.sku = \"A-1\";\n"
+            + "        return o;\n"
+            + "    }\n"
+            + "    public String toString() { return line.getClass().getSimpleName() + \":\" + line.sku; }\n"
+            + "}\n";
+
+    private static final String BROKEN = "package sample;\n"
+            + "import us.swcraft.springframework.session.store.codec.SessionAttributeCodec;\n"
+            + "@SessionAttributeCodec(tag = 42)\n"
+            + "public class Broken { private String hidden; Object unsupported; }\n";
+
+    @Test
+    public void generatedCodecIsLoadedAndRestoresValue() throws Exception {
+        final Path dir = Files.createTempDirectory("codec-processor");
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final boolean compiled = compile(dir, "Cart", CART, diagnostics);
+        assertThat(diagnostics.getDiagnostics().toString(), compiled, is(true));
+        assertThat(Files.exists(dir.resolve("classes").resolve(SessionAttributeCodecProcessor.SERVICE_FILE)),
+                is(true));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { dir.resolve("classes").toUri().toURL() },
+                getClass().getClassLoader())) {
+            final AttributeCodecRegistry registry = new AttributeCodecRegistry(classLoader);
+            final Object cart = classLoader.loadClass("sample.Cart").getMethod("sample").invoke(null);
+
+            final byte[] encoded = registry.encode(cart);
+            assertThat(encoded, notNullValue());
+            assertThat(encoded[0] & 0xFF, is(40));
+            final Object decoded = registry.decode(encoded);
+            assertThat(decoded.toString(), is(cart.toString()));
+        }
+    }
+
+    @Test
+    public void codecsOfTypesReferringEachOther() throws Exception {
+        final Path dir = Files.createTempDirectory("codec-processor");
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        assertThat(diagnostics.getDiagnostics().toString(), compile(dir, "Graph", GRAPH, diagnostics), is(true));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { dir.resolve("classes").toUri().toURL() },
+                getClass().getClassLoader())) {
+            // no codec is created on class initialization
+            for (String codec : Arrays.asList("sample.Graph_Node_AttributeCodec", "sample.Graph_Edge_AttributeCodec")) {
+                for (Field field : classLoader.loadClass(codec).getDeclaredFields()) {
+                    assertThat(field.getName(), Modifier.isStatic(field.getModifiers()), is(false));
+                }
+            }
+            final AttributeCodecRegistry registry = new AttributeCodecRegistry(classLoader);
+            final Object node = classLoader.loadClass("sample.Graph").getMethod("sample").invoke(null);
+            final byte[] encoded = registry.encode(node);
+            assertThat(encoded[0] & 0xFF, is(43));
+            assertThat(registry.decode(encoded).toString(), is("a->b->c"));
+        }
+    }
+
+    @Test
+    public void nestedSubclassIsLeftToSerializer() throws Exception {
+        final Path dir = Files.createTempDirectory("codec-processor");
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        assertThat(diagnostics.getDiagnostics().toString(), compile(dir, "Order", ORDER, diagnostics), is(true));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { dir.resolve("classes").toUri().toURL() },
+                getClass().getClassLoader())) {
+            final AttributeCodecRegistry registry = new AttributeCodecRegistry(classLoader);
+            final Method sample = classLoader.loadClass("sample.Order").getMethod("sample", boolean.class);
+
+            final byte[] encoded = registry.encode(sample.invoke(null, false));
+            assertThat(registry.decode(encoded).toString(), is("Line:A-1"));
+            // codec would restore the nested value as Line
+            assertThat(registry.encode(sample.invoke(null, true)), nullValue());
+        }
+    }
+
+    @Test
+    public void unsupportedFieldsAreReported() throws Exception {
+        final Path dir = Files.createTempDirectory("codec-processor");
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        assertThat(compile(dir, "Broken", BROKEN, diagnostics), is(false));
+        assertThat(diagnostics.getDiagnostics().size(), is(1));
+        assertThat(diagnostics.getDiagnostics().get(0).getMessage(null).contains("no accessible getter and setter"),
+                is(true));
+    }
+
+    private boolean compile(final Path dir, final String className, final String source,
+            final DiagnosticCollector<JavaFileObject> diagnostics) throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null, "JDK compiler is not available");
+        final Path sourceFile = dir.resolve("src").resolve("sample").resolve(className + ".java");
+        Files.createDirectories(sourceFile.getParent());
+        Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(dir.resolve("classes"));
+        Files.createDirectories(dir.resolve("generated"));
+
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null,
+                StandardCharsets.UTF_8)) {
+            final List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d",
+                    dir.resolve("classes").toString(), "-s", dir.resolve("generated").toString());
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjects(new File(sourceFile.toString())));
+            task.setProcessors(Collections.singletonList(new SessionAttributeCodecProcessor()));
+            return task.call();
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.store.smile;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import us.swcraft.springframework.session.model.MarshalledAttribute;
+import us.swcraft.springframework.session.store.StoreCompression;
+
+public class SmileStoreSerializerTest {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    @SuppressWarnings("rawtypes")
+    private final Class attributesMapClass = new HashMap<String, Object>().getClass();
+
+    @Test
+    public void serializeAndDeserializeCompressionNone_String() {
+        String token = "Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit. Integer in nisl a orci imperdiet posuere.";
+        SmileStoreSerializer<String> converter = new SmileStoreSerializer<>(StoreCompression.NONE);
+
+        byte[] marshalled = converter.serialize(token);
+        assertThat(marshalled, notNullValue());
+        assertThat(marshalled.length > 0, is(true));
+        log.debug("Result size: {}", marshalled.length);
+        String result = converter.deserialize(marshalled, String.class);
+
+        assertThat(result, is(token));
+    }
+
+    @Test
+    public void serializeAndDeserializeCompressionSnappy_map() {
+        HashMap<String, Object> m = new HashMap<>();
+        m.put("A1", "Vestibulum ut consectetur orci.");
+        m.put("A2", 42L);
+        m.put("A3", new byte[] { 1, 2, 3 });
+
+        SmileStoreSerializer<Map<String, Object>> converter = new SmileStoreSerializer<>(StoreCompression.SNAPPY);
+
+        byte[] marshalled = converter.serialize(m);
+        log.debug("Result size: {}", marshalled.length);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = converter.deserialize(marshalled, attributesMapClass);
+
+        assertThat(result.size(), is(3));
+        assertThat(result.get("A1"), is(m.get("A1")));
+        assertThat(result.get("A2"), is(42L));
+        assertThat(Arrays.equals((byte[]) result.get("A3"), new byte[] { 1, 2, 3 }), is(true));
+    }
+
+    @Test
+    public void serializeAndDeserializeMarshalledAttributesWithPrefix() {
+        HashMap<String, MarshalledAttribute> m = new HashMap<>();
+        m.put("A1", new MarshalledAttribute("A1", "java.lang.String", new byte[] { 1, 65, 66 }));
+        m.put("A2", new MarshalledAttribute("A2", "java.lang.Long", new byte[] { 4, 1 }));
+        final byte[] prefix = { 9, 8, 7 };
+
+        SmileStoreSerializer<Map<String, MarshalledAttribute>> converter = new SmileStoreSerializer<>();
+
+        byte[] marshalled = converter.serialize(m, prefix);
+        assertThat(Arrays.equals(Arrays.copyOf(marshalled, 3), prefix), is(true));
+
+        @SuppressWarnings("unchecked")
+        Map<String, MarshalledAttribute> result = converter.deserialize(marshalled, 3, marshalled.length - 3,
+                attributesMapClass);
+
+        assertThat(result.size(), is(2));
+        assertThat(result.get("A1").hasSameContent(m.get("A1")), is(true));
+        assertThat(result.get("A2").hasSameContent(m.get("A2")), is(true));
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.tracing;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import us.swcraft.springframework.session.tracing.SessionStoreTracing.TracedSpan;
+
+public class OpenTelemetrySessionStoreTracingTest {
+
+    private final InMemorySpanExporter exporter = InMemorySpanExporter.create();
+
+    private final SessionStoreTracing tracing = new OpenTelemetrySessionStoreTracing(OpenTelemetrySdk.builder()
+            .setTracerProvider(
+                    SdkTracerProvider.builder().addSpanProcessor(SimpleSpanProcessor.create(exporter)).build())
+            .build());
+
+    @Test
+    public void saveIsLinkedAcrossExecutorHop() throws Exception {
+        final Object origin;
+        try (TracedSpan request = tracing.startSpan("request")) {
+            request.setAttribute("session.count", 1);
+            origin = tracing.currentContext();
+        }
+        final Thread saver = new Thread(() -> {
+            try (TracedSpan save = tracing.startLinkedSpan("session.save", origin)) {
+                save.setAttribute("session.size", 128);
+                tracing.startStoreCall("put", "test", "sessions").close();
+            }
+        });
+        saver.start();
+        saver.join();
+
+        final List<SpanData> spans = exporter.getFinishedSpanItems();
+        assertThat(spans.size(), is(3));
+        final SpanData request = span(spans, "request");
+        final SpanData save = span(spans, "session.save");
+        final SpanData put = span(spans, "aerospike.put");
+
+        // new trace linked to request
+        assertThat(save.getParentSpanContext().isValid(), is(false));
+        assertThat(save.getLinks().get(0).getSpanContext().getSpanId(), is(request.getSpanId()));
+        assertThat(request.getAttributes().get(AttributeKey.longKey("session.count")), is(1L));
+        assertThat(save.getAttributes().get(AttributeKey.longKey("session.size")), is(128L));
+
+        // store call is child of save
+        assertThat(put.getParentSpanId(), is(save.getSpanId()));
+        assertThat(put.getKind(), is(SpanKind.CLIENT));
+        assertThat(put.getAttributes().get(AttributeKey.stringKey("db.system")), is("aerospike"));
+    }
+
+    @Test
+    public void nothingToLinkOutsideOfTrace() {
+        assertThat(tracing.currentContext(), nullValue());
+    }
+
+    private static SpanData span(final List<SpanData> spans, final String name) {
+        return spans.stream().filter(s -> s.getName().equals(name)).findFirst().get();
+    }
+
+}
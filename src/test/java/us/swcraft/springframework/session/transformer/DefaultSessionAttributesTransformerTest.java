@@ -0,0 +1,261 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.transformer;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+import us.swcraft.springframework.session.aerospike.config.annotation.web.http.EnableAerospikeHttpSession;
+import us.swcraft.springframework.session.model.MarshalledAttribute;
+import us.swcraft.springframework.session.model.StoreMetadata;
+import us.swcraft.springframework.session.store.PayloadHeader;
+import us.swcraft.springframework.session.store.SessionAttributesTransformer;
+import us.swcraft.springframework.session.store.StoreCompression;
+import us.swcraft.springframework.session.store.StoreSerializationType;
+import us.swcraft.springframework.session.store.StoreSerializer;
+import us.swcraft.springframework.session.store.StoreSerializers;
+import us.swcraft.springframework.session.store.codec.AttributeCodecRegistry;
+
+public class DefaultSessionAttributesTransformerTest {
+
+    private static final String UNKNOWN_CLASS = "com.example.other.webapp.Preferences";
+
+    private static AnnotationConfigApplicationContext context;
+
+    private static SessionAttributesTransformer transformer;
+
+    private static StoreMetadata storeMetadata;
+
+    /**
+     * Names of threads which deserialized {@link ThreadRecorder} values.
+     */
+    private static final List<String> readThreads = Collections.synchronizedList(new ArrayList<>());
+
+    @Configuration
+    @EnableAerospikeHttpSession(inMemoryStore = true)
+    static class Config {
+    }
+
+    @BeforeAll
+    public static void setUp() {
+        context = new AnnotationConfigApplicationContext(Config.class);
+        transformer = context.getBean(SessionAttributesTransformer.class);
+        storeMetadata = context.getBean(StoreMetadata.class);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void unpairedSurrogateIsKept() {
+        final String value = "a\uD800b";
+        final MarshalledAttribute marshalled = transformer.marshallAttribute("name", value);
+        assertThat(marshalled.getContent()[0] & 0xFF, is(AttributeCodecRegistry.SERIALIZER_TAG));
+        assertThat(transformer.unmarshalAttribute(marshalled), is(value));
+    }
+
+    @Test
+    public void keepUnknownClassOfLegacyPayload() {
+        final StoreSerializer<Serializable> attributeSerializer = StoreSerializers
+                .attributeSerializer(StoreSerializationType.FST, StoreCompression.NONE);
+        final byte[] content = attributeSerializer.serialize("dark");
+        final byte[] legacy = StoreSerializers.marshalledAttributesSerializer(StoreSerializationType.FST)
+                .serialize(attributes(StoreSerializationType.FST, StoreCompression.NONE,
+                        new MarshalledAttribute("theme", UNKNOWN_CLASS, content), "user", "john"));
+
+        final Map<String, Object> restored = transformer.unmarshal(legacy);
+        assertThat(restored.get("user"), is("john"));
+        assertThat(restored.get("theme"), instanceOf(MarshalledAttribute.class));
+        final MarshalledAttribute theme = (MarshalledAttribute) restored.get("theme");
+        assertThat(theme.getClassName(), is(UNKNOWN_CLASS));
+        assertThat((int) theme.getContent()[0], is(AttributeCodecRegistry.SERIALIZER_TAG));
+        assertThat(Arrays.copyOfRange(theme.getContent(), 1, theme.getContent().length), is(content));
+
+        // saved back in current format and kept on next load
+        final byte[] payload = transformer.marshall(restored);
+        assertThat(PayloadHeader.read(payload).getVersion(), is(PayloadHeader.CURRENT_VERSION));
+        final Map<String, Object> reloaded = transformer.unmarshal(payload);
+        assertThat(reloaded.get("user"), is("john"));
+        assertThat(((MarshalledAttribute) reloaded.get("theme")).hasSameContent(theme), is(true));
+
+        // class is known to this webapp - attribute is restored
+        assertThat(transformer.unmarshalAttribute(new MarshalledAttribute("theme", String.class.getName(),
+                theme.getContent())), is("dark"));
+    }
+
+    @Test
+    public void keepUnknownClassOfForeignSerializer() {
+        final StoreSerializer<Serializable> attributeSerializer = StoreSerializers
+                .attributeSerializer(StoreSerializationType.KRYO, StoreCompression.SNAPPY);
+        final byte[] content = attributeSerializer.serialize("dark");
+        final byte[] foreign = StoreSerializers.marshalledAttributesSerializer(StoreSerializationType.KRYO)
+                .serialize(attributes(StoreSerializationType.KRYO, StoreCompression.SNAPPY,
+                        new MarshalledAttribute("theme", UNKNOWN_CLASS, content), "user", "john"),
+                        new PayloadHeader(PayloadHeader.VERSION_SERIALIZER_ONLY, StoreSerializationType.KRYO,
+                                StoreCompression.SNAPPY).toBytes());
+
+        final Map<String, Object> restored = transformer.unmarshal(foreign);
+        assertThat(restored.get("user"), is("john"));
+        final MarshalledAttribute theme = (MarshalledAttribute) restored.get("theme");
+        assertThat(theme.getContent()[0] & 0xFF, is(AttributeCodecRegistry.FOREIGN_SERIALIZER_TAG));
+
+        final byte[] payload = transformer.marshall(restored);
+        final PayloadHeader header = PayloadHeader.read(payload);
+        assertThat(header.getSerializationType(), is(StoreSerializationType.FST));
+        assertThat(header.getCompression(), is(StoreCompression.NONE));
+        final Map<String, Object> reloaded = transformer.unmarshal(payload);
+        assertThat(((MarshalledAttribute) reloaded.get("theme")).hasSameContent(theme), is(true));
+
+        // decoded with serializer it was written with
+        assertThat(transformer.unmarshalAttribute(new MarshalledAttribute("theme", String.class.getName(),
+                theme.getContent())), is("dark"));
+    }
+
+    @Test
+    public void parallelUnmarshalByAttributeCount() {
+        final Map<String, Object> attrs = new HashMap<>();
+        for (int i = 0; i < storeMetadata.getParallelUnmarshalAttributeThreshold() + 8; i++) {
+            attrs.put("attr" + i, i % 2 == 0 ? "value-" + i : new ArrayList<>(Arrays.asList(i, "item-" + i)));
+        }
+        attrs.put("recorder", new ThreadRecorder("count"));
+        assertThat(unmarshalInParallel(transformer.marshall(attrs)), is(attrs));
+    }
+
+    @Test
+    public void parallelUnmarshalBySize() {
+        final Map<String, Object> attrs = new HashMap<>();
+        final char[] text = new char[storeMetadata.getParallelUnmarshalSizeThreshold()];
+        Arrays.fill(text, 'x');
+        attrs.put("text", new String(text));
+        attrs.put("user", "john");
+        attrs.put("recorder", new ThreadRecorder("size"));
+        assertThat(attrs.size(), is(lessThan(storeMetadata.getParallelUnmarshalAttributeThreshold())));
+        assertThat(unmarshalInParallel(transformer.marshall(attrs)), is(attrs));
+    }
+
+    @Test
+    public void parallelUnmarshalDropsFailedAttribute() {
+        final Map<String, Object> attrs = new HashMap<>();
+        for (int i = 0; i < storeMetadata.getParallelUnmarshalAttributeThreshold(); i++) {
+            attrs.put("attr" + i, "value-" + i);
+        }
+        attrs.put("recorder", new ThreadRecorder("failure"));
+        attrs.put("broken", new Broken());
+        final byte[] payload = transformer.marshall(attrs);
+
+        final Map<String, Object> restored = unmarshalInParallel(payload);
+        attrs.remove("broken");
+        assertThat(restored, is(attrs));
+    }
+
+    /**
+     * Unmarshals the payload in parallel and checks that the result is the same
+     * as sequential unmarshalling.
+     */
+    private static Map<String, Object> unmarshalInParallel(final byte[] payload) {
+        readThreads.clear();
+        final Map<String, Object> parallel = transformer.unmarshal(payload);
+        assertThat(readThreads.size(), is(1));
+        assertThat(readThreads.get(0).startsWith("sessionUnmarshal-"), is(true));
+
+        final int countThreshold = storeMetadata.getParallelUnmarshalAttributeThreshold();
+        final int sizeThreshold = storeMetadata.getParallelUnmarshalSizeThreshold();
+        storeMetadata.setParallelUnmarshalAttributeThreshold(0);
+        storeMetadata.setParallelUnmarshalSizeThreshold(0);
+        try {
+            readThreads.clear();
+            final Map<String, Object> sequential = transformer.unmarshal(payload);
+            assertThat(readThreads, is(Arrays.asList(Thread.currentThread().getName())));
+            assertThat(parallel, is(sequential));
+        } finally {
+            storeMetadata.setParallelUnmarshalAttributeThreshold(countThreshold);
+            storeMetadata.setParallelUnmarshalSizeThreshold(sizeThreshold);
+        }
+        return parallel;
+    }
+
+    /**
+     * Records thread it is deserialized on.
+     */
+    static class ThreadRecorder implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+
+        ThreadRecorder(final String name) {
+            this.name = name;
+        }
+
+        private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            readThreads.add(Thread.currentThread().getName());
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof ThreadRecorder && Objects.equals(name, ((ThreadRecorder) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(name);
+        }
+    }
+
+    /**
+     * Can't be deserialized.
+     */
+    static class Broken implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private void readObject(final ObjectInputStream in) throws IOException {
+            throw new InvalidObjectException("broken");
+        }
+    }
+
+    private static HashMap<String, MarshalledAttribute> attributes(final StoreSerializationType serializationType,
+            final StoreCompression compression, final MarshalledAttribute unknown, final String name,
+            final String value) {
+        final byte[] content = StoreSerializers.attributeSerializer(serializationType, compression).serialize(value);
+        final HashMap<String, MarshalledAttribute> attributes = new HashMap<>();
+        attributes.put(unknown.getAttributeName(), unknown);
+        attributes.put(name, new MarshalledAttribute(name, value.getClass().getName(), content));
+        return attributes;
+    }
+
+}
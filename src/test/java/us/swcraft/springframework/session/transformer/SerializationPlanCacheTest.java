@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package us.swcraft.springframework.session.transformer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class SerializationPlanCacheTest {
+
+    private final SerializationPlanCache cache = new SerializationPlanCache();
+
+    @Test
+    public void simpleValues() {
+        assertThat(cache.isEligible("value"), is(true));
+        assertThat(cache.isEligible(new Object()), is(false));
+    }
+
+    @Test
+    public void homogeneousCollectionIsCheckedOncePerClass() {
+        final List<String> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add("item-" + i);
+        }
+        assertThat(cache.isEligible(list), is(true));
+        // ArrayList and String
+        assertThat(cache.size(), is(2));
+    }
+
+    @Test
+    public void mixedCollection() {
+        final List<Object> list = new ArrayList<>();
+        list.add("a");
+        list.add(null);
+        list.add(1);
+        assertThat(cache.isEligible(list), is(true));
+        list.add(new Object());
+        assertThat(cache.isEligible(list), is(false));
+    }
+
+    @Test
+    public void map() {
+        final Map<String, Object> map = new HashMap<>();
+        map.put("a", 1L);
+        assertThat(cache.isEligible(map), is(true));
+        map.put("b", new Object());
+        assertThat(cache.isEligible(map), is(false));
+    }
+
+    @Test
+    public void arrays() {
+        assertThat(cache.isEligible(new int[] { 1, 2, 3 }), is(true));
+        assertThat(cache.isEligible(new String[] { "a", "b" }), is(true));
+        assertThat(cache.isEligible(new Object[] { "a", 1 }), is(true));
+        assertThat(cache.isEligible(new Object[] { "a", new Object() }), is(false));
+        assertThat(cache.isEligible(Arrays.asList(new Object[] { "a", new Object() })), is(false));
+    }
+
+}